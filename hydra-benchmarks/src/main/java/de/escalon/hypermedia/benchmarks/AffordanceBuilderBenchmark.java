@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.benchmarks;
+
+import de.escalon.hypermedia.affordance.Affordance;
+import de.escalon.hypermedia.sample.beans.event.Event;
+import de.escalon.hypermedia.sample.event.EventController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static de.escalon.hypermedia.spring.AffordanceBuilder.linkTo;
+import static de.escalon.hypermedia.spring.AffordanceBuilder.methodOn;
+
+/**
+ * Builds affordances with <code>linkTo(methodOn(..))</code>, which records the invocation on a proxy of the controller
+ * and creates action descriptors from the handler method.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AffordanceBuilderBenchmark {
+
+    private Event event;
+
+    @Setup
+    public void setUp() {
+        SampleResources.bindRequest();
+        event = SampleResources.event(1, false);
+    }
+
+    @Benchmark
+    public Affordance pathVariable() {
+        return linkTo(methodOn(EventController.class)
+                .getEvent(1))
+                .withSelfRel();
+    }
+
+    @Benchmark
+    public Affordance requestParam() {
+        return linkTo(methodOn(EventController.class)
+                .findEvents(null))
+                .withRel("hydra:search");
+    }
+
+    @Benchmark
+    public Affordance requestBody() {
+        return linkTo(methodOn(EventController.class)
+                .updateEvent(1, event))
+                .withSelfRel();
+    }
+
+    @Benchmark
+    public Affordance combined() {
+        return linkTo(methodOn(EventController.class)
+                .getEvent(1))
+                .and(linkTo(methodOn(EventController.class)
+                        .updateEvent(1, event)))
+                .and(linkTo(methodOn(EventController.class)
+                        .deleteEvent(1)))
+                .withSelfRel();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.benchmarks;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.escalon.hypermedia.sample.beans.event.Event;
+import de.escalon.hypermedia.sample.beans.store.Order;
+import de.escalon.hypermedia.sample.beans.store.Product;
+import de.escalon.hypermedia.spring.hydra.JacksonHydraModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes single beans as json-ld with the JacksonHydraSerializer: an event with and without affordances, a
+ * product with a nested offer and accessories and an order with a parameterized number of items.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonLdBeanBenchmark {
+
+    @Param({"1", "10", "100"})
+    int orderItems;
+
+    private ObjectMapper objectMapper;
+    private Event event;
+    private Event eventWithAffordances;
+    private Product product;
+    private Order order;
+
+    @Setup
+    public void setUp() {
+        SampleResources.bindRequest();
+        objectMapper = new ObjectMapper();
+        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        objectMapper.registerModule(new JacksonHydraModule());
+        event = SampleResources.event(1, false);
+        eventWithAffordances = SampleResources.event(1, true);
+        product = SampleResources.product();
+        order = SampleResources.order(orderItems);
+    }
+
+    @Benchmark
+    public byte[] event() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public byte[] eventWithAffordances() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(eventWithAffordances);
+    }
+
+    @Benchmark
+    public byte[] nestedProduct() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(product);
+    }
+
+    @Benchmark
+    public byte[] order() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(order);
+    }
+}
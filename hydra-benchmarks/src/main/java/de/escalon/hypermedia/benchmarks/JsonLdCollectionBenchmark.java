@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.benchmarks;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.escalon.hypermedia.sample.beans.event.Event;
+import de.escalon.hypermedia.spring.hydra.JacksonHydraModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.hateoas.PagedResources;
+import org.springframework.hateoas.Resources;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes collections of events as json-ld, as hydra:Collection via the ResourcesSerializer and as
+ * hydra:PagedCollection via the PagedResourcesSerializer. Every event carries a self link with update and delete
+ * affordances, so the LinkListSerializer renders operations and supported properties for each member.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonLdCollectionBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    int size;
+
+    private ObjectMapper objectMapper;
+    private Resources<Event> resources;
+    private PagedResources<Event> pagedResources;
+
+    @Setup
+    public void setUp() {
+        SampleResources.bindRequest();
+        objectMapper = new ObjectMapper();
+        objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        objectMapper.registerModule(new JacksonHydraModule());
+        resources = SampleResources.eventResources(size);
+        pagedResources = SampleResources.pagedEventResources(size);
+    }
+
+    @Benchmark
+    public byte[] resources() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(resources);
+    }
+
+    @Benchmark
+    public byte[] pagedResources() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(pagedResources);
+    }
+}
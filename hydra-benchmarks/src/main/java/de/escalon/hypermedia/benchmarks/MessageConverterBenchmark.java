@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.benchmarks;
+
+import de.escalon.hypermedia.sample.beans.event.Event;
+import de.escalon.hypermedia.spring.HypermediaTypes;
+import de.escalon.hypermedia.spring.hydra.HydraMessageConverter;
+import de.escalon.hypermedia.spring.siren.SirenMessageConverter;
+import de.escalon.hypermedia.spring.uber.UberJackson2HttpMessageConverter;
+import de.escalon.hypermedia.spring.xhtml.XhtmlResourceMessageConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.hateoas.Resources;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a collection of events through each hypermedia message converter, including the rendering of forms for the
+ * update affordances of the events.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageConverterBenchmark {
+
+    @Param({"hydra", "siren", "uber", "xhtml"})
+    String converter;
+
+    @Param({"1", "10", "100"})
+    int size;
+
+    private HttpMessageConverter<Object> messageConverter;
+    private MediaType mediaType;
+    private Resources<Event> resources;
+
+    @Setup
+    public void setUp() {
+        SampleResources.bindRequest();
+        if ("hydra".equals(converter)) {
+            messageConverter = new HydraMessageConverter();
+            mediaType = HypermediaTypes.APPLICATION_JSONLD;
+        } else if ("siren".equals(converter)) {
+            messageConverter = new SirenMessageConverter();
+            mediaType = HypermediaTypes.SIREN_JSON;
+        } else if ("uber".equals(converter)) {
+            messageConverter = new UberJackson2HttpMessageConverter();
+            mediaType = HypermediaTypes.UBER_JSON;
+        } else if ("xhtml".equals(converter)) {
+            messageConverter = new XhtmlResourceMessageConverter();
+            mediaType = MediaType.TEXT_HTML;
+        } else {
+            throw new IllegalArgumentException("unknown converter " + converter);
+        }
+        resources = SampleResources.eventResources(size);
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+        messageConverter.write(resources, mediaType, outputMessage);
+        return outputMessage.getBodyAsBytes();
+    }
+}
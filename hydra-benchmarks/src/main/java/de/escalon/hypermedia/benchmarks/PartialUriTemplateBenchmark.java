@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.benchmarks;
+
+import de.escalon.hypermedia.affordance.PartialUriTemplate;
+import de.escalon.hypermedia.affordance.PartialUriTemplateComponents;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses and expands uri templates with path variables, a query and a fragment identifier, completely and partially.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartialUriTemplateBenchmark {
+
+    static final String TEMPLATE = "http://api.example.com/events/{eventId}/reviews{?offset,limit,sort}{#section}";
+
+    private PartialUriTemplate template;
+    private Map<String, Object> allValues;
+    private Map<String, Object> someValues;
+
+    @Setup
+    public void setUp() {
+        template = new PartialUriTemplate(TEMPLATE);
+        allValues = new HashMap<String, Object>();
+        allValues.put("eventId", 1);
+        allValues.put("offset", 20);
+        allValues.put("limit", 10);
+        allValues.put("sort", "dateCreated");
+        allValues.put("section", "top");
+        someValues = new HashMap<String, Object>();
+        someValues.put("eventId", 1);
+        someValues.put("limit", 10);
+    }
+
+    @Benchmark
+    public PartialUriTemplate parse() {
+        return new PartialUriTemplate(TEMPLATE);
+    }
+
+    @Benchmark
+    public PartialUriTemplateComponents expand() {
+        return template.expand(allValues);
+    }
+
+    @Benchmark
+    public PartialUriTemplateComponents expandPartially() {
+        return template.expand(someValues);
+    }
+
+    @Benchmark
+    public String parseAndExpand() {
+        return new PartialUriTemplate(TEMPLATE).expand(allValues)
+                .toString();
+    }
+}
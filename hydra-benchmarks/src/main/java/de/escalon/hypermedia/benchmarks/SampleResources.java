@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.benchmarks;
+
+import de.escalon.hypermedia.sample.beans.event.Event;
+import de.escalon.hypermedia.sample.beans.store.Offer;
+import de.escalon.hypermedia.sample.beans.store.Order;
+import de.escalon.hypermedia.sample.beans.store.Product;
+import de.escalon.hypermedia.sample.event.EventController;
+import de.escalon.hypermedia.sample.event.ReviewController;
+import de.escalon.hypermedia.sample.model.event.CreativeWork;
+import de.escalon.hypermedia.sample.model.event.EventStatusType;
+import de.escalon.hypermedia.sample.model.store.OrderStatus;
+import org.springframework.hateoas.PagedResources;
+import org.springframework.hateoas.Resources;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+
+import static de.escalon.hypermedia.spring.AffordanceBuilder.linkTo;
+import static de.escalon.hypermedia.spring.AffordanceBuilder.methodOn;
+
+/**
+ * Builds the sample beans used by the benchmarks, with affordances similar to those the sample controllers add. The
+ * review link points to the public review collection, since the handler which accepts reviews is not visible outside
+ * of the sample package.
+ */
+final class SampleResources {
+
+    private SampleResources() {
+        // prevent instantiation
+    }
+
+    /**
+     * Binds a request to the current thread, so that links can be built outside of a servlet container. Must be
+     * called from the benchmark thread.
+     */
+    static void bindRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/events");
+        request.setServerName("api.example.com");
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+    }
+
+    static Event event(int id, boolean withAffordances) {
+        Event event = new Event(id, "Walk off the Earth", new CreativeWork("Gang of Rhythm Tour"), "Wiesbaden",
+                EventStatusType.EVENT_SCHEDULED);
+        if (withAffordances) {
+            event.add(linkTo(methodOn(EventController.class)
+                    .getEvent(id))
+                    .and(linkTo(methodOn(EventController.class)
+                            .updateEvent(id, event)))
+                    .and(linkTo(methodOn(EventController.class)
+                            .deleteEvent(id)))
+                    .withSelfRel());
+            event.workPerformed.add(linkTo(methodOn(ReviewController.class)
+                    .getReviews(id))
+                    .withRel("review"));
+        }
+        return event;
+    }
+
+    static List<Event> events(int size) {
+        List<Event> events = new ArrayList<Event>(size);
+        for (int i = 0; i < size; i++) {
+            events.add(event(i, true));
+        }
+        return events;
+    }
+
+    static Resources<Event> eventResources(int size) {
+        Resources<Event> eventResources = new Resources<Event>(events(size));
+        eventResources.add(linkTo(methodOn(EventController.class)
+                .findEvents(null))
+                .withRel("hydra:search"));
+        return eventResources;
+    }
+
+    static PagedResources<Event> pagedEventResources(int size) {
+        PagedResources<Event> pagedResources = new PagedResources<Event>(events(size), new PagedResources
+                .PageMetadata(size, 1, size * 3L, 3));
+        pagedResources.add(linkTo(methodOn(EventController.class)
+                .findEvents(null))
+                .withRel("next"));
+        return pagedResources;
+    }
+
+    /**
+     * Creates a product with an offer and accessories, i.e. a bean with nested beans.
+     *
+     * @return product
+     */
+    static Product product() {
+        Product product = new Product("Instant Coffee", "9052001");
+        Offer offer = new Offer();
+        offer.setPrice(BigDecimal.valueOf(699, 2));
+        offer.setPriceCurrency(Currency.getInstance("EUR"));
+        offer.setItemOffered(product);
+        product.addOffer(offer);
+        product.addAccessory(new Product("Sugar", "9052006"));
+        product.addAccessory(new Product("Cream", "9052007"));
+        return product;
+    }
+
+    static Order order(int size) {
+        Order order = new Order();
+        for (int i = 0; i < size; i++) {
+            order.addItem(new Product("Latte Macchiato " + i, "90520" + i));
+        }
+        order.setOrderStatus(OrderStatus.ORDER_PROCESSING);
+        return order;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * Checked-in allocation baseline, i.e. allocated bytes per run by case name, read from
+ * <code>allocation-baseline.properties</code> on the test classpath. Allocations differ between Java versions, so the
+ * entries are prefixed with the <code>java.specification.version</code> they were recorded on, e.g.
+ * <code>1.8.affordance</code>.
+ * <p>
+ * The checks are only run with <code>-Dhydra.allocation.check=true</code>. The tolerated excess over the baseline is
+ * given as a fraction by the system property <code>hydra.allocation.margin</code>, default is 0.1. Running the tests
+ * with <code>-Dhydra.allocation.record=true</code> writes the measured values of the current Java version to
+ * <code>src/test/resources/allocation-baseline.properties</code> instead of checking them, so that the file can be
+ * committed after an intentional change.
+ */
+final class AllocationBaseline {
+
+    static final String RESOURCE = "allocation-baseline.properties";
+    static final String MARGIN_PROPERTY = "hydra.allocation.margin";
+    static final String RECORD_PROPERTY = "hydra.allocation.record";
+    static final String CHECK_PROPERTY = "hydra.allocation.check";
+
+    private final Properties baseline = new Properties();
+    private final double margin;
+    private final boolean record;
+    private final boolean check;
+    private final String keyPrefix;
+
+    AllocationBaseline() {
+        InputStream in = AllocationBaseline.class.getClassLoader()
+                .getResourceAsStream(RESOURCE);
+        if (in != null) {
+            try {
+                try {
+                    baseline.load(in);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("failed to read " + RESOURCE, e);
+            }
+        }
+        margin = Double.parseDouble(System.getProperty(MARGIN_PROPERTY, "0.1"));
+        record = Boolean.getBoolean(RECORD_PROPERTY);
+        check = Boolean.getBoolean(CHECK_PROPERTY);
+        keyPrefix = System.getProperty("java.specification.version") + ".";
+    }
+
+    boolean isRecording() {
+        return record;
+    }
+
+    /**
+     * Determines if allocations should be measured at all.
+     *
+     * @return true if checking or recording was requested
+     */
+    boolean isEnabled() {
+        return check || record;
+    }
+
+    /**
+     * Gets the baseline of a case.
+     *
+     * @param name
+     *         of case
+     * @return allocated bytes per run or null if the case has no baseline for the current Java version
+     */
+    Long getBaseline(String name) {
+        String value = baseline.getProperty(keyPrefix + name);
+        return value == null ? null : Long.valueOf(value.trim());
+    }
+
+    /**
+     * Gets the most bytes a case may allocate per run.
+     *
+     * @param baselineBytes
+     *         of case
+     * @return baseline plus margin
+     */
+    long getLimit(long baselineBytes) {
+        return (long) Math.ceil(baselineBytes * (1 + margin));
+    }
+
+    /**
+     * Stores the measured value of a case in the baseline file of the module.
+     *
+     * @param name
+     *         of case
+     * @param bytes
+     *         allocated per run
+     */
+    synchronized void record(String name, long bytes) {
+        baseline.setProperty(keyPrefix + name, String.valueOf(bytes));
+        File file = new File(System.getProperty("basedir", "."), "src/test/resources/" + RESOURCE);
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                baseline.store(out, "allocated bytes per run by java.specification.version, recorded with -D"
+                        + RECORD_PROPERTY + "=true");
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("failed to write " + file, e);
+        }
+    }
+}
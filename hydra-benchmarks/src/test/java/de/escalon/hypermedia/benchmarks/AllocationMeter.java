@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the bytes allocated by the current thread while running a task, using the allocation counter of the
+ * HotSpot ThreadMXBean. The task is warmed up first, so that lazily initialized caches are not counted, then the
+ * smallest average of several rounds is reported, since a round may include allocations of the JIT or of TLAB
+ * bookkeeping.
+ */
+final class AllocationMeter {
+
+    interface Task {
+        Object run() throws Exception;
+    }
+
+    private static final int WARMUP = 200;
+    private static final int ROUNDS = 5;
+    private static final int ITERATIONS = 20;
+
+    private final com.sun.management.ThreadMXBean threadMXBean;
+
+    /** keeps results reachable, so that the task cannot be optimized away */
+    private Object sink;
+
+    private AllocationMeter(com.sun.management.ThreadMXBean threadMXBean) {
+        this.threadMXBean = threadMXBean;
+    }
+
+    /**
+     * Creates meter for the current JVM.
+     *
+     * @return meter or null if the JVM cannot count allocated bytes per thread
+     */
+    static AllocationMeter create() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean hotSpotThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        if (!hotSpotThreadMXBean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        if (!hotSpotThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+            hotSpotThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+        }
+        return new AllocationMeter(hotSpotThreadMXBean);
+    }
+
+    /**
+     * Gets the bytes allocated by one run of the given task.
+     *
+     * @param task
+     *         to measure
+     * @return smallest average of allocated bytes per run
+     * @throws Exception
+     *         thrown by task
+     */
+    long bytesPerRun(Task task) throws Exception {
+        long threadId = Thread.currentThread()
+                .getId();
+        for (int i = 0; i < WARMUP; i++) {
+            sink = task.run();
+        }
+        long min = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < ITERATIONS; i++) {
+                sink = task.run();
+            }
+            long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+            min = Math.min(min, allocated / ITERATIONS);
+        }
+        sink = null;
+        return min;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.benchmarks;
+
+import de.escalon.hypermedia.sample.beans.event.Event;
+import de.escalon.hypermedia.sample.event.EventController;
+import de.escalon.hypermedia.spring.HypermediaTypes;
+import de.escalon.hypermedia.spring.hydra.HydraMessageConverter;
+import de.escalon.hypermedia.spring.siren.SirenMessageConverter;
+import de.escalon.hypermedia.spring.uber.UberJackson2HttpMessageConverter;
+import de.escalon.hypermedia.spring.xhtml.XhtmlResourceMessageConverter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.hateoas.PagedResources;
+import org.springframework.hateoas.Resources;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import static de.escalon.hypermedia.spring.AffordanceBuilder.linkTo;
+import static de.escalon.hypermedia.spring.AffordanceBuilder.methodOn;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Fails if rendering a representative resource allocates more bytes than recorded in
+ * <code>allocation-baseline.properties</code>, plus a margin. The measurements take a while, so the tests are skipped
+ * unless run with <code>-Dhydra.allocation.check=true</code>. See {@link AllocationBaseline} for the system properties
+ * which set the margin and record a new baseline. Cases without baseline for the current Java version are skipped.
+ */
+public class AllocationRegressionTest {
+
+    private static final int COLLECTION_SIZE = 10;
+
+    private static AllocationMeter allocationMeter;
+    private static AllocationBaseline allocationBaseline;
+
+    private Event event;
+    private Resources<Event> resources;
+    private PagedResources<Event> pagedResources;
+
+    @BeforeClass
+    public static void setUpClass() {
+        allocationBaseline = new AllocationBaseline();
+        assumeTrue("allocation checks are enabled with -D" + AllocationBaseline.CHECK_PROPERTY + "=true",
+                allocationBaseline.isEnabled());
+        allocationMeter = AllocationMeter.create();
+    }
+
+    @Before
+    public void setUp() {
+        assumeNotNull(allocationMeter);
+        SampleResources.bindRequest();
+        event = SampleResources.event(1, true);
+        resources = SampleResources.eventResources(COLLECTION_SIZE);
+        pagedResources = SampleResources.pagedEventResources(COLLECTION_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void hydraEvent() throws Exception {
+        assertAllocation("hydra.event", write(new HydraMessageConverter(), event, HypermediaTypes
+                .APPLICATION_JSONLD));
+    }
+
+    @Test
+    public void hydraCollection() throws Exception {
+        assertAllocation("hydra.collection", write(new HydraMessageConverter(), resources, HypermediaTypes
+                .APPLICATION_JSONLD));
+    }
+
+    @Test
+    public void hydraPagedCollection() throws Exception {
+        assertAllocation("hydra.pagedCollection", write(new HydraMessageConverter(), pagedResources,
+                HypermediaTypes.APPLICATION_JSONLD));
+    }
+
+    @Test
+    public void sirenCollection() throws Exception {
+        assertAllocation("siren.collection", write(new SirenMessageConverter(), resources, HypermediaTypes
+                .SIREN_JSON));
+    }
+
+    @Test
+    public void uberCollection() throws Exception {
+        assertAllocation("uber.collection", write(new UberJackson2HttpMessageConverter(), resources,
+                HypermediaTypes.UBER_JSON));
+    }
+
+    @Test
+    public void xhtmlCollection() throws Exception {
+        assertAllocation("xhtml.collection", write(new XhtmlResourceMessageConverter(), resources, MediaType
+                .TEXT_HTML));
+    }
+
+    @Test
+    public void affordance() throws Exception {
+        assertAllocation("affordance", new AllocationMeter.Task() {
+            @Override
+            public Object run() {
+                return linkTo(methodOn(EventController.class)
+                        .getEvent(1))
+                        .and(linkTo(methodOn(EventController.class)
+                                .updateEvent(1, event)))
+                        .and(linkTo(methodOn(EventController.class)
+                                .deleteEvent(1)))
+                        .withSelfRel();
+            }
+        });
+    }
+
+    private static AllocationMeter.Task write(final HttpMessageConverter<Object> messageConverter, final Object
+            resource, final MediaType mediaType) {
+        return new AllocationMeter.Task() {
+            @Override
+            public Object run() throws Exception {
+                MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+                messageConverter.write(resource, mediaType, outputMessage);
+                return outputMessage.getBodyAsBytes();
+            }
+        };
+    }
+
+    private static void assertAllocation(String name, AllocationMeter.Task task) throws Exception {
+        long bytes = allocationMeter.bytesPerRun(task);
+        if (allocationBaseline.isRecording()) {
+            allocationBaseline.record(name, bytes);
+            return;
+        }
+        Long baseline = allocationBaseline.getBaseline(name);
+        assumeTrue("no allocation baseline for " + name + ", measured " + bytes + " bytes", baseline != null);
+        long limit = allocationBaseline.getLimit(baseline);
+        assertTrue(name + " allocated " + bytes + " bytes per run, baseline is " + baseline + " bytes, limit "
+                + limit + " bytes", bytes <= limit);
+    }
+}
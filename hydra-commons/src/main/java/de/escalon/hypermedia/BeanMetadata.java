@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia;
+
+import de.escalon.hypermedia.metrics.HypermediaMetrics;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Introspection results for a bean class, computed once per class and cached. Holds the bean properties in
+ * introspection order, the public fields, the writable properties and the constructors which can be used to create a
+ * bean, together with accessors which read and write values without repeating the introspection.
+ */
+public final class BeanMetadata {
+
+    private static final ClassCache<BeanMetadata> CACHE = new ClassCache<BeanMetadata>();
+
+    private static final Object NO_CONSTRUCTOR = new Object();
+
+    private final Class<?> beanClass;
+    private final Map<String, PropertyDescriptor> propertyDescriptors;
+    private final Map<String, Method> readMethods;
+    private final Map<String, Method> writeMethods;
+    private final Map<String, Field> fields;
+    private final Constructor defaultConstructor;
+    private final ConcurrentMap<Class<? extends Annotation>, Object> creatorConstructors = new
+            ConcurrentHashMap<Class<? extends Annotation>, Object>();
+
+    private BeanMetadata(Class<?> beanClass) {
+        this.beanClass = beanClass;
+        PropertyDescriptor[] pds;
+        try {
+            pds = Introspector.getBeanInfo(beanClass)
+                    .getPropertyDescriptors();
+        } catch (IntrospectionException e) {
+            throw new RuntimeException("failed to get property descriptors of class " + beanClass.getSimpleName(),
+                    e);
+        }
+        Map<String, PropertyDescriptor> propertyDescriptors = new LinkedHashMap<String, PropertyDescriptor>();
+        Map<String, Method> readMethods = new LinkedHashMap<String, Method>();
+        Map<String, Method> writeMethods = new LinkedHashMap<String, Method>();
+        for (PropertyDescriptor pd : pds) {
+            String name = pd.getName();
+            propertyDescriptors.put(name, pd);
+            Method readMethod = pd.getReadMethod();
+            if (readMethod != null) {
+                readMethods.put(name, makeAccessible(readMethod));
+            }
+            Method writeMethod = pd.getWriteMethod();
+            if (writeMethod != null) {
+                writeMethods.put(name, makeAccessible(writeMethod));
+            }
+        }
+        Map<String, Field> fields = new LinkedHashMap<String, Field>();
+        for (Field field : beanClass.getFields()) {
+            if (!fields.containsKey(field.getName())) {
+                fields.put(field.getName(), makeAccessible(field));
+            }
+        }
+        Constructor defaultConstructor = null;
+        for (Constructor constructor : beanClass.getConstructors()) {
+            if (constructor.getParameterTypes().length == 0) {
+                defaultConstructor = constructor;
+            }
+        }
+        this.propertyDescriptors = Collections.unmodifiableMap(propertyDescriptors);
+        this.readMethods = Collections.unmodifiableMap(readMethods);
+        this.writeMethods = Collections.unmodifiableMap(writeMethods);
+        this.fields = Collections.unmodifiableMap(fields);
+        this.defaultConstructor = defaultConstructor;
+    }
+
+    /**
+     * Gets metadata for the given class, introspecting the class on first access only.
+     *
+     * @param beanClass
+     *         to describe
+     * @return metadata, never null
+     */
+    public static BeanMetadata forClass(Class<?> beanClass) {
+        BeanMetadata ret = CACHE.get(beanClass);
+        HypermediaMetrics metrics = HypermediaMetrics.getInstance();
+        if (metrics.isEnabled()) {
+            metrics.recordCacheAccess("BeanMetadata", ret != null);
+        }
+        if (ret == null) {
+            ret = CACHE.putIfAbsent(beanClass, new BeanMetadata(beanClass));
+        }
+        return ret;
+    }
+
+    /**
+     * Gets metadata for the class of the given bean.
+     *
+     * @param bean
+     *         to describe, must not be null
+     * @return metadata, never null
+     */
+    public static BeanMetadata forBean(Object bean) {
+        return forClass(bean.getClass());
+    }
+
+    public Class<?> getBeanClass() {
+        return beanClass;
+    }
+
+    /**
+     * Bean properties by name, in introspection order.
+     *
+     * @return unmodifiable property descriptors, never null
+     */
+    public Map<String, PropertyDescriptor> getPropertyDescriptors() {
+        return propertyDescriptors;
+    }
+
+    /**
+     * Readable bean properties by name, in introspection order. The methods can be invoked without access checks.
+     *
+     * @return unmodifiable read methods, never null
+     */
+    public Map<String, Method> getReadMethods() {
+        return readMethods;
+    }
+
+    /**
+     * Writable bean properties by name, in introspection order.
+     *
+     * @return unmodifiable write methods, never null
+     */
+    public Map<String, Method> getWriteMethods() {
+        return writeMethods;
+    }
+
+    /**
+     * Public fields by name, in the order returned by {@link Class#getFields()}. If a field is hidden, only the field
+     * declared by the most specific class is contained. The fields can be read without access checks.
+     *
+     * @return unmodifiable fields, never null
+     */
+    public Map<String, Field> getFields() {
+        return fields;
+    }
+
+    /**
+     * Public no-arg constructor.
+     *
+     * @return default constructor or null
+     */
+    public Constructor getDefaultConstructor() {
+        return defaultConstructor;
+    }
+
+    /**
+     * Public constructor annotated with the given creator annotation, e.g. <code>&#064;JsonCreator</code>.
+     *
+     * @param creatorAnnotation
+     *         marking the creator constructor
+     * @return creator constructor or null
+     */
+    public Constructor getCreatorConstructor(Class<? extends Annotation> creatorAnnotation) {
+        Object ret = creatorConstructors.get(creatorAnnotation);
+        if (ret == null) {
+            ret = NO_CONSTRUCTOR;
+            for (Constructor constructor : beanClass.getConstructors()) {
+                if (AnnotationUtils.findAnnotation(constructor, creatorAnnotation) != null) {
+                    ret = constructor;
+                    break;
+                }
+            }
+            creatorConstructors.putIfAbsent(creatorAnnotation, ret);
+        }
+        return ret == NO_CONSTRUCTOR ? null : (Constructor) ret;
+    }
+
+    /**
+     * Reads a bean property.
+     *
+     * @param bean
+     *         to read from
+     * @param propertyName
+     *         to read
+     * @return property value or null if the property does not exist or is not readable
+     */
+    public Object getPropertyValue(Object bean, String propertyName) {
+        Method readMethod = readMethods.get(propertyName);
+        if (readMethod == null) {
+            return null;
+        }
+        try {
+            return readMethod.invoke(bean);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException("Failed to read property " + propertyName + " from " + bean, e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Failed to read property " + propertyName + " from " + bean, e);
+        }
+    }
+
+    /**
+     * Reads a public field.
+     *
+     * @param bean
+     *         to read from
+     * @param fieldName
+     *         to read
+     * @return field value or null if there is no such public field
+     */
+    public Object getFieldValue(Object bean, String fieldName) {
+        Field field = fields.get(fieldName);
+        if (field == null) {
+            return null;
+        }
+        try {
+            return field.get(bean);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Failed to read field " + fieldName + " from " + bean, e);
+        }
+    }
+
+    /**
+     * Reads a bean property, or a public field of the same name if the property does not exist or is null.
+     *
+     * @param bean
+     *         to read from
+     * @param propertyOrFieldName
+     *         to read
+     * @return value or null
+     */
+    public Object getPropertyOrFieldValue(Object bean, String propertyOrFieldName) {
+        Object ret = getPropertyValue(bean, propertyOrFieldName);
+        if (ret == null) {
+            ret = getFieldValue(bean, propertyOrFieldName);
+        }
+        return ret;
+    }
+
+    /**
+     * Writes a bean property.
+     *
+     * @param bean
+     *         to write to
+     * @param propertyName
+     *         to write
+     * @param value
+     *         to set
+     * @throws IllegalArgumentException
+     *         if the property is not writable
+     */
+    public void setPropertyValue(Object bean, String propertyName, Object value) {
+        Method writeMethod = writeMethods.get(propertyName);
+        if (writeMethod == null) {
+            throw new IllegalArgumentException("property " + propertyName + " of " + beanClass.getName()
+                    + " is not writable");
+        }
+        try {
+            writeMethod.invoke(bean, value);
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException("Failed to write property " + propertyName + " of " + bean, e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Failed to write property " + propertyName + " of " + bean, e);
+        }
+    }
+
+    private static <T extends AccessibleObject> T makeAccessible(T accessibleObject) {
+        // public members of non-public classes are otherwise inaccessible, and access checks are skipped
+        try {
+            accessibleObject.setAccessible(true);
+        } catch (RuntimeException e) {
+            // SecurityException, or InaccessibleObjectException for members of packages which are not open on
+            // Java 9+: keep access checks
+        }
+        return accessibleObject;
+    }
+
+    private static Method makeAccessible(Method method) {
+        try {
+            method.setAccessible(true);
+            return method;
+        } catch (RuntimeException e) {
+            // keep access checks, but prefer a declaration of the method in a public type which can be invoked
+            Method publicMethod = findPublicDeclaration(method.getDeclaringClass(), method);
+            return publicMethod == null ? method : publicMethod;
+        }
+    }
+
+    private static Method findPublicDeclaration(Class<?> type, Method method) {
+        if (type == null) {
+            return null;
+        }
+        if (Modifier.isPublic(type.getModifiers()) && type != method.getDeclaringClass()) {
+            try {
+                return type.getMethod(method.getName(), method.getParameterTypes());
+            } catch (NoSuchMethodException e) {
+                // not declared by this type
+            }
+        }
+        for (Class<?> anInterface : type.getInterfaces()) {
+            Method ret = findPublicDeclaration(anInterface, method);
+            if (ret != null) {
+                return ret;
+            }
+        }
+        return findPublicDeclaration(type.getSuperclass(), method);
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Concurrent cache of values computed per class which does not keep the classes reachable, so that the class loader
+ * of a redeployed web application can be collected even if hydra-java was loaded by a parent class loader. Classes
+ * are held weakly and values softly, since values usually reference their class, e.g. through its methods. A value
+ * which was cleared by the garbage collector must be computed again.
+ *
+ * @param <V>
+ *         type of the cached values
+ */
+public final class ClassCache<V> {
+
+    private final ConcurrentMap<Object, SoftReference<V>> values = new ConcurrentHashMap<Object,
+            SoftReference<V>>();
+    private final ReferenceQueue<Class<?>> collectedClasses = new ReferenceQueue<Class<?>>();
+
+    /**
+     * Gets the value cached for a class.
+     *
+     * @param clazz
+     *         key
+     * @return value or null if there is none or it has been cleared
+     */
+    public V get(Class<?> clazz) {
+        SoftReference<V> value = values.get(new LookupKey(clazz));
+        return value == null ? null : value.get();
+    }
+
+    /**
+     * Caches a value unless another value is cached for the class already.
+     *
+     * @param clazz
+     *         key
+     * @param value
+     *         to cache
+     * @return the value cached for the class, which is either the given value or the value cached before
+     */
+    public V putIfAbsent(Class<?> clazz, V value) {
+        removeCollectedClasses();
+        ClassKey key = new ClassKey(clazz, collectedClasses);
+        SoftReference<V> reference = new SoftReference<V>(value);
+        while (true) {
+            SoftReference<V> existingReference = values.putIfAbsent(key, reference);
+            if (existingReference == null) {
+                return value;
+            }
+            V existing = existingReference.get();
+            if (existing != null) {
+                return existing;
+            }
+            if (values.replace(key, existingReference, reference)) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of cached values, including values which have been cleared but not yet removed.
+     *
+     * @return size
+     */
+    public int size() {
+        removeCollectedClasses();
+        return values.size();
+    }
+
+    private void removeCollectedClasses() {
+        Reference<? extends Class<?>> collected;
+        while ((collected = collectedClasses.poll()) != null) {
+            values.remove(collected);
+        }
+    }
+
+    /**
+     * Stored key, equal to a lookup key for the same class while the class is reachable.
+     */
+    private static final class ClassKey extends WeakReference<Class<?>> {
+
+        private final int hashCode;
+
+        ClassKey(Class<?> clazz, ReferenceQueue<Class<?>> queue) {
+            super(clazz, queue);
+            this.hashCode = System.identityHashCode(clazz);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            Class<?> clazz = get();
+            return clazz != null && (o instanceof ClassKey && ((ClassKey) o).get() == clazz
+                    || o instanceof LookupKey && ((LookupKey) o).clazz == clazz);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * Key for lookups, which does not need to be enqueued.
+     */
+    private static final class LookupKey {
+
+        private final Class<?> clazz;
+
+        LookupKey(Class<?> clazz) {
+            this.clazz = clazz;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ClassKey ? o.equals(this) : o instanceof LookupKey && ((LookupKey) o).clazz == clazz;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(clazz);
+        }
+    }
+}
@@ -1,14 +1,7 @@
 package de.escalon.hypermedia;
 
-import java.beans.BeanInfo;
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.Constructor;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -21,34 +14,28 @@ public class PropertyUtils {
     }
 
     public static Object getPropertyValue(Object currentCallValue, PropertyDescriptor propertyDescriptor) {
-        Object propertyValue = null;
-        if (currentCallValue != null && propertyDescriptor.getReadMethod() != null) {
-            try {
-                propertyValue = propertyDescriptor.getReadMethod()
-                        .invoke(currentCallValue);
-            } catch (Exception e) {
-                throw new RuntimeException("failed to read property from call value", e);
-            }
+        if (currentCallValue == null) {
+            return null;
         }
-        return propertyValue;
+        return BeanMetadata.forBean(currentCallValue)
+                .getPropertyValue(currentCallValue, propertyDescriptor.getName());
     }
 
     public static Map<String, PropertyDescriptor> getPropertyDescriptors(Object bean) {
         return PropertyUtils.getPropertyDescriptors(bean.getClass());
     }
 
+    /**
+     * Gets property descriptors of the given class by name, in introspection order.
+     *
+     * @param clazz
+     *         to introspect
+     * @return unmodifiable property descriptors, cached per class
+     * @see BeanMetadata#getPropertyDescriptors()
+     */
     public static Map<String, PropertyDescriptor> getPropertyDescriptors(Class<?> clazz) {
-        try {
-            PropertyDescriptor[] propertyDescriptors = Introspector.getBeanInfo(clazz)
-                    .getPropertyDescriptors();
-            Map<String, PropertyDescriptor> ret = new LinkedHashMap<String, PropertyDescriptor>();
-            for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
-                ret.put(propertyDescriptor.getName(), propertyDescriptor);
-            }
-            return ret;
-        } catch (IntrospectionException e) {
-            throw new RuntimeException("failed to get property descriptors of class " + clazz.getSimpleName(), e);
-        }
+        return BeanMetadata.forClass(clazz)
+                .getPropertyDescriptors();
     }
 
     public static Constructor findDefaultCtor(Constructor[] constructors) {
@@ -74,57 +61,25 @@ public class PropertyUtils {
         return constructor;
     }
 
-    // TODO move to PropertyUtil and remove current method for propertyDescriptors, cache search results
     public static Object getPropertyOrFieldValue(Object currentCallValue, String propertyOrFieldName) {
         if (currentCallValue == null) {
             return null;
         }
-        Object propertyValue = getBeanPropertyValue(currentCallValue, propertyOrFieldName);
-        if (propertyValue == null) {
-            propertyValue = getFieldValue(currentCallValue, propertyOrFieldName);
-        }
-        return propertyValue;
+        return BeanMetadata.forBean(currentCallValue)
+                .getPropertyOrFieldValue(currentCallValue, propertyOrFieldName);
     }
 
     public static Object getFieldValue(Object currentCallValue, String fieldName) {
-        try {
-            Class<?> beanType = currentCallValue.getClass();
-            Object propertyValue = null;
-            Field[] fields = beanType.getFields();
-            for (Field field : fields) {
-                if (fieldName.equals(field.getName())) {
-                    propertyValue = field.get(currentCallValue);
-                    break;
-                }
-            }
-            return propertyValue;
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to read field " + fieldName + " from " + currentCallValue.toString(), e);
-        }
+        return BeanMetadata.forBean(currentCallValue)
+                .getFieldValue(currentCallValue, fieldName);
     }
 
     public static Object getBeanPropertyValue(Object currentCallValue, String paramName) {
         if (currentCallValue == null) {
             return null;
         }
-        try {
-            Object propertyValue = null;
-            BeanInfo info = Introspector.getBeanInfo(currentCallValue.getClass());
-            PropertyDescriptor[] pds = info.getPropertyDescriptors();
-            for (PropertyDescriptor pd : pds) {
-                if (paramName.equals(pd.getName())) {
-                    Method readMethod = pd.getReadMethod();
-                    if (readMethod != null) {
-                        propertyValue = readMethod.invoke(currentCallValue);
-                    }
-                    break;
-                }
-            }
-            return propertyValue;
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to read property " + paramName + " from " + currentCallValue.toString
-                    (), e);
-        }
+        return BeanMetadata.forBean(currentCallValue)
+                .getPropertyValue(currentCallValue, paramName);
     }
 
 }
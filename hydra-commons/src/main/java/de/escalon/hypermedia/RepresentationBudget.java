@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Limits the representation a message converter writes for a single response: the nesting depth of its nodes, the
+ * number of nodes and the number of bytes. Converters enforce the budget with counters while they write, a
+ * representation which exceeds it fails fast with a {@link RepresentationBudgetExceededException}, so that a single
+ * huge or cyclic object graph cannot tie up a request thread. A budget is immutable, create one from {@link
+ * #UNLIMITED}, e.g.
+ * <pre>
+ * RepresentationBudget.UNLIMITED.withMaxDepth(8).withMaxNodes(10000).withMaxBytes(4 * 1024 * 1024)
+ * </pre>
+ * and use a new {@link Usage} for every representation.
+ */
+public final class RepresentationBudget {
+
+    /**
+     * Limits of a budget.
+     */
+    public enum Limit {
+        DEPTH, NODES, BYTES
+    }
+
+    public static final RepresentationBudget UNLIMITED = new RepresentationBudget(Integer.MAX_VALUE, Integer
+            .MAX_VALUE, Long.MAX_VALUE);
+
+    private final int maxDepth;
+    private final int maxNodes;
+    private final long maxBytes;
+
+    private RepresentationBudget(int maxDepth, int maxNodes, long maxBytes) {
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Creates budget with the given maximum depth.
+     *
+     * @param maxDepth
+     *         maximum number of enclosing nodes of a node, 0 allows only the root node
+     * @return new budget
+     */
+    public RepresentationBudget withMaxDepth(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("maxDepth must not be negative");
+        }
+        return new RepresentationBudget(maxDepth, maxNodes, maxBytes);
+    }
+
+    /**
+     * Creates budget with the given maximum number of nodes.
+     *
+     * @param maxNodes
+     *         maximum number of nodes, including the root node
+     * @return new budget
+     */
+    public RepresentationBudget withMaxNodes(int maxNodes) {
+        if (maxNodes < 1) {
+            throw new IllegalArgumentException("maxNodes must be positive");
+        }
+        return new RepresentationBudget(maxDepth, maxNodes, maxBytes);
+    }
+
+    /**
+     * Creates budget with the given maximum output size.
+     *
+     * @param maxBytes
+     *         maximum number of bytes written
+     * @return new budget
+     */
+    public RepresentationBudget withMaxBytes(long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        return new RepresentationBudget(maxDepth, maxNodes, maxBytes);
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Determines if the budget limits anything. Converters may skip counting otherwise.
+     *
+     * @return true if no limit is set
+     */
+    public boolean isUnlimited() {
+        return maxDepth == Integer.MAX_VALUE && maxNodes == Integer.MAX_VALUE && maxBytes == Long.MAX_VALUE;
+    }
+
+    /**
+     * Starts counting the nodes of a representation.
+     *
+     * @return usage of this budget by one representation
+     */
+    public Usage newUsage() {
+        return new Usage(this);
+    }
+
+    /**
+     * Limits the number of bytes written to the given stream. Since converters usually write through a buffering
+     * generator, the limit is detected when the buffer is flushed.
+     *
+     * @param out
+     *         stream to limit
+     * @return limited stream or out if the number of bytes is unlimited
+     */
+    public OutputStream limit(OutputStream out) {
+        if (maxBytes == Long.MAX_VALUE) {
+            return out;
+        }
+        return new LimitedOutputStream(out, maxBytes);
+    }
+
+    /**
+     * Nodes counted for a single representation, not thread-safe.
+     */
+    public static final class Usage {
+
+        private final RepresentationBudget budget;
+        private final int maxNodes;
+        private int nodes;
+        private int deepest = -1;
+
+        private Usage(RepresentationBudget budget) {
+            this(budget, budget.maxNodes);
+        }
+
+        private Usage(RepresentationBudget budget, int maxNodes) {
+            this.budget = budget;
+            this.maxNodes = maxNodes;
+        }
+
+        /**
+         * Counts a node which is about to be written.
+         *
+         * @param depth
+         *         number of enclosing nodes of the node
+         * @throws RepresentationBudgetExceededException
+         *         if the node is nested too deeply or there are too many nodes
+         */
+        public void countNode(int depth) throws RepresentationBudgetExceededException {
+            countNodes(1, depth);
+        }
+
+        /**
+         * Counts nodes which are written at once, e.g. from a cache.
+         *
+         * @param count
+         *         number of nodes
+         * @param depth
+         *         number of enclosing nodes of the most deeply nested node
+         * @throws RepresentationBudgetExceededException
+         *         if a node is nested too deeply or there are too many nodes
+         */
+        public void countNodes(int count, int depth) throws RepresentationBudgetExceededException {
+            if (depth > budget.maxDepth) {
+                throw new RepresentationBudgetExceededException(Limit.DEPTH, budget.maxDepth);
+            }
+            if (count > maxNodes - nodes) {
+                throw new RepresentationBudgetExceededException(Limit.NODES, budget.maxNodes);
+            }
+            nodes += count;
+            if (depth > deepest) {
+                deepest = depth;
+            }
+        }
+
+        /**
+         * Starts counting the nodes of a part of the representation separately, e.g. of a fragment which is cached
+         * for reuse. The part may use the nodes left in this usage; count its nodes here with {@link
+         * #countNodes(int, int)} when it is complete.
+         *
+         * @return usage of the nodes left by a part of the representation
+         */
+        public Usage newPartUsage() {
+            return new Usage(budget, maxNodes - nodes);
+        }
+
+        /**
+         * Gets the number of nodes counted so far.
+         *
+         * @return nodes
+         */
+        public int getNodes() {
+            return nodes;
+        }
+
+        /**
+         * Gets the depth of the most deeply nested node counted so far.
+         *
+         * @return depth or -1 if no node was counted
+         */
+        public int getDeepest() {
+            return deepest;
+        }
+    }
+
+    private static class LimitedOutputStream extends FilterOutputStream {
+
+        private final long maxBytes;
+        private long count;
+
+        LimitedOutputStream(OutputStream out, long maxBytes) {
+            super(out);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            count(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            count(len);
+            out.write(b, off, len);
+        }
+
+        private void count(int len) throws RepresentationBudgetExceededException {
+            count += len;
+            if (count > maxBytes) {
+                throw new RepresentationBudgetExceededException(Limit.BYTES, maxBytes);
+            }
+        }
+    }
+}
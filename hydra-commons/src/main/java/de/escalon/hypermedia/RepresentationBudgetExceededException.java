@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Signals that a representation exceeds its {@link RepresentationBudget}. It is an IOException, so that Jackson
+ * serializers pass it on unchanged and message converters fail with it instead of a generic serialization error.
+ * Bytes written before the budget was exceeded may already have been sent to the client.
+ */
+public class RepresentationBudgetExceededException extends IOException {
+
+    private final RepresentationBudget.Limit limit;
+    private final long maxValue;
+
+    /**
+     * Creates exception.
+     *
+     * @param limit
+     *         which was exceeded
+     * @param maxValue
+     *         of the limit
+     */
+    public RepresentationBudgetExceededException(RepresentationBudget.Limit limit, long maxValue) {
+        super("representation exceeds maximum " + limit.name()
+                .toLowerCase(Locale.ENGLISH) + " of " + maxValue);
+        this.limit = limit;
+        this.maxValue = maxValue;
+    }
+
+    public RepresentationBudget.Limit getLimit() {
+        return limit;
+    }
+
+    public long getMaxValue() {
+        return maxValue;
+    }
+}
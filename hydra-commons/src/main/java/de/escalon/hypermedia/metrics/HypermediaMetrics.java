@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.metrics;
+
+/**
+ * Receives measurements from the message converters, the affordance builder and the internal caches of hydra-java.
+ * The metrics in use are set once at startup with {@link #setInstance(HypermediaMetrics)}, by default measurements
+ * are discarded by a no-op implementation.
+ * <p>
+ * Callers only take timestamps and record cache accesses if {@link #isEnabled()} returns true, so the no-op
+ * implementation adds no overhead beyond a volatile read. Implementations must be thread-safe and should return quickly, they are called on the
+ * request threads.
+ */
+public abstract class HypermediaMetrics {
+
+    /**
+     * Discards all measurements.
+     */
+    public static final HypermediaMetrics NOOP = new HypermediaMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void recordWrite(String converter, String mediaType, long nanos, long bytes) {
+        }
+
+        @Override
+        public void recordLinkTo(long nanos) {
+        }
+
+        @Override
+        public void recordAffordanceBuilt() {
+        }
+
+        @Override
+        public void recordOptionsLookup(Class<?> options, long nanos) {
+        }
+
+        @Override
+        public void recordCacheAccess(String cache, boolean hit) {
+        }
+    };
+
+    private static volatile HypermediaMetrics instance = NOOP;
+
+    /**
+     * Gets the metrics in use.
+     *
+     * @return metrics, never null
+     */
+    public static HypermediaMetrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Sets the metrics to use.
+     *
+     * @param metrics
+     *         to use, may be null to discard measurements
+     */
+    public static void setInstance(HypermediaMetrics metrics) {
+        instance = metrics == null ? NOOP : metrics;
+    }
+
+    /**
+     * Determines if measurements are recorded at all.
+     *
+     * @return false if measurements are discarded
+     */
+    public abstract boolean isEnabled();
+
+    /**
+     * Records that a message converter has written a response.
+     *
+     * @param converter
+     *         simple class name of the converter
+     * @param mediaType
+     *         content type without parameters
+     * @param nanos
+     *         time spent writing
+     * @param bytes
+     *         written to the response body
+     */
+    public abstract void recordWrite(String converter, String mediaType, long nanos, long bytes);
+
+    /**
+     * Records that an affordance builder was created from a handler method.
+     *
+     * @param nanos
+     *         time spent in <code>linkTo</code>
+     */
+    public abstract void recordLinkTo(long nanos);
+
+    /**
+     * Records that an affordance was built.
+     */
+    public abstract void recordAffordanceBuilt();
+
+    /**
+     * Records a synchronous lookup of possible values.
+     *
+     * @param options
+     *         class of the options implementation
+     * @param nanos
+     *         time spent in the lookup
+     */
+    public abstract void recordOptionsLookup(Class<?> options, long nanos);
+
+    /**
+     * Records an access to an internal cache.
+     *
+     * @param cache
+     *         name of the cache, usually the simple name of the owning class
+     * @param hit
+     *         true if the cached value was found
+     */
+    public abstract void recordCacheAccess(String cache, boolean hit);
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps counters in memory and exposes them as MXBean. Usage:
+ * <pre>
+ * InMemoryHypermediaMetrics metrics = new InMemoryHypermediaMetrics();
+ * metrics.registerMBean();
+ * HypermediaMetrics.setInstance(metrics);
+ * </pre>
+ */
+public class InMemoryHypermediaMetrics extends HypermediaMetrics implements InMemoryHypermediaMetricsMXBean {
+
+    public static final String OBJECT_NAME = "de.escalon.hypermedia:type=HypermediaMetrics";
+
+    private final ConcurrentMap<String, Timer> writes = new ConcurrentHashMap<String, Timer>();
+    private final Timer linkTo = new Timer();
+    private final AtomicLong affordancesBuilt = new AtomicLong();
+    private final ConcurrentMap<String, Timer> optionsLookups = new ConcurrentHashMap<String, Timer>();
+    private final ConcurrentMap<String, CacheCounter> caches = new ConcurrentHashMap<String, CacheCounter>();
+
+    private static class Timer {
+
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLong totalBytes = new AtomicLong();
+
+        void record(long nanos, long bytes) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            totalBytes.addAndGet(bytes);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        void reset() {
+            count.set(0);
+            totalNanos.set(0);
+            maxNanos.set(0);
+            totalBytes.set(0);
+        }
+
+        TimerStatistics snapshot() {
+            return new TimerStatistics(count.get(), totalNanos.get(), maxNanos.get(), totalBytes.get());
+        }
+    }
+
+    private static class CacheCounter {
+
+        final AtomicLong hits = new AtomicLong();
+        final AtomicLong misses = new AtomicLong();
+
+        CacheStatistics snapshot() {
+            return new CacheStatistics(hits.get(), misses.get());
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void recordWrite(String converter, String mediaType, long nanos, long bytes) {
+        timer(writes, converter + " " + mediaType).record(nanos, bytes);
+    }
+
+    @Override
+    public void recordLinkTo(long nanos) {
+        linkTo.record(nanos, 0);
+    }
+
+    @Override
+    public void recordAffordanceBuilt() {
+        affordancesBuilt.incrementAndGet();
+    }
+
+    @Override
+    public void recordOptionsLookup(Class<?> options, long nanos) {
+        timer(optionsLookups, options.getName()).record(nanos, 0);
+    }
+
+    @Override
+    public void recordCacheAccess(String cache, boolean hit) {
+        CacheCounter counter = caches.get(cache);
+        if (counter == null) {
+            counter = new CacheCounter();
+            CacheCounter existing = caches.putIfAbsent(cache, counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        (hit ? counter.hits : counter.misses).incrementAndGet();
+    }
+
+    private static Timer timer(ConcurrentMap<String, Timer> timers, String key) {
+        Timer timer = timers.get(key);
+        if (timer == null) {
+            timer = new Timer();
+            Timer existing = timers.putIfAbsent(key, timer);
+            if (existing != null) {
+                timer = existing;
+            }
+        }
+        return timer;
+    }
+
+    @Override
+    public Map<String, TimerStatistics> getWrites() {
+        return snapshot(writes);
+    }
+
+    @Override
+    public TimerStatistics getLinkTo() {
+        return linkTo.snapshot();
+    }
+
+    @Override
+    public long getAffordancesBuilt() {
+        return affordancesBuilt.get();
+    }
+
+    @Override
+    public Map<String, TimerStatistics> getOptionsLookups() {
+        return snapshot(optionsLookups);
+    }
+
+    @Override
+    public Map<String, CacheStatistics> getCaches() {
+        Map<String, CacheStatistics> ret = new TreeMap<String, CacheStatistics>();
+        for (Map.Entry<String, CacheCounter> entry : caches.entrySet()) {
+            ret.put(entry.getKey(), entry.getValue()
+                    .snapshot());
+        }
+        return ret;
+    }
+
+    private static Map<String, TimerStatistics> snapshot(Map<String, Timer> timers) {
+        Map<String, TimerStatistics> ret = new TreeMap<String, TimerStatistics>();
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            ret.put(entry.getKey(), entry.getValue()
+                    .snapshot());
+        }
+        return ret;
+    }
+
+    @Override
+    public void reset() {
+        writes.clear();
+        linkTo.reset();
+        affordancesBuilt.set(0);
+        optionsLookups.clear();
+        caches.clear();
+    }
+
+    /**
+     * Registers this instance with the platform MBeanServer under {@link #OBJECT_NAME}.
+     */
+    public void registerMBean() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            mBeanServer.registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            throw new RuntimeException("failed to register " + OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Removes the registration made by {@link #registerMBean()}.
+     */
+    public void unregisterMBean() {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            mBeanServer.unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            throw new RuntimeException("failed to unregister " + OBJECT_NAME, e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link InMemoryHypermediaMetrics}.
+ */
+public interface InMemoryHypermediaMetricsMXBean {
+
+    /**
+     * Gets write statistics.
+     *
+     * @return statistics by converter and media type, separated by a blank
+     */
+    Map<String, TimerStatistics> getWrites();
+
+    /**
+     * Gets statistics of <code>linkTo</code> calls.
+     *
+     * @return statistics
+     */
+    TimerStatistics getLinkTo();
+
+    long getAffordancesBuilt();
+
+    /**
+     * Gets statistics of synchronous lookups of possible values.
+     *
+     * @return statistics by options class name
+     */
+    Map<String, TimerStatistics> getOptionsLookups();
+
+    /**
+     * Gets hit and miss counts of internal caches.
+     *
+     * @return statistics by cache name
+     */
+    Map<String, CacheStatistics> getCaches();
+
+    /**
+     * Discards all measurements so far.
+     */
+    void reset();
+}
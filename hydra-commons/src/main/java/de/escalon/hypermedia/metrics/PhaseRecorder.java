@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.metrics;
+
+/**
+ * Records the duration of rendering phases, e.g. as events of a profiler. The recorder in use is set once at startup
+ * with {@link #setInstance(PhaseRecorder)}, by default phases are not recorded. Usage:
+ * <pre>
+ * PhaseSpan span = PhaseRecorder.getInstance().begin(RenderingPhase.CONTEXT_COMPUTATION);
+ * // compute context
+ * span.finish(beanClass, null, terms.size());
+ * </pre>
+ * Implementations should return a shared span which does nothing while the phase is not recorded, so that
+ * rendering allocates nothing for disabled phases.
+ */
+public abstract class PhaseRecorder {
+
+    /**
+     * Span which records nothing.
+     */
+    public static final PhaseSpan NOOP_SPAN = new PhaseSpan() {
+        @Override
+        public boolean isRecording() {
+            return false;
+        }
+
+        @Override
+        public void finish(Class<?> subject, String mediaType, long size) {
+        }
+    };
+
+    /**
+     * Records nothing.
+     */
+    public static final PhaseRecorder NOOP = new PhaseRecorder() {
+        @Override
+        public PhaseSpan begin(RenderingPhase phase) {
+            return NOOP_SPAN;
+        }
+    };
+
+    private static volatile PhaseRecorder instance = NOOP;
+
+    /**
+     * Gets the recorder in use.
+     *
+     * @return recorder, never null
+     */
+    public static PhaseRecorder getInstance() {
+        return instance;
+    }
+
+    /**
+     * Sets the recorder to use.
+     *
+     * @param phaseRecorder
+     *         to use, may be null to record nothing
+     */
+    public static void setInstance(PhaseRecorder phaseRecorder) {
+        instance = phaseRecorder == null ? NOOP : phaseRecorder;
+    }
+
+    /**
+     * Begins a phase.
+     *
+     * @param phase
+     *         to begin
+     * @return span to finish when the phase is complete
+     */
+    public abstract PhaseSpan begin(RenderingPhase phase);
+}
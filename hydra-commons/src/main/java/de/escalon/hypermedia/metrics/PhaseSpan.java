@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.metrics;
+
+/**
+ * A rendering phase which has begun, see {@link PhaseRecorder#begin(RenderingPhase)}.
+ */
+public interface PhaseSpan {
+
+    /**
+     * Determines if the phase will be recorded. Callers may skip collecting details for {@link #finish(Class,
+     * String, long)} otherwise.
+     *
+     * @return true if the phase is recorded
+     */
+    boolean isRecording();
+
+    /**
+     * Ends the phase. Spans of phases which fail need not be finished.
+     *
+     * @param subject
+     *         class the phase worked on, may be null
+     * @param mediaType
+     *         being rendered, may be null
+     * @param size
+     *         of the result, see {@link RenderingPhase}
+     */
+    void finish(Class<?> subject, String mediaType, long size);
+}
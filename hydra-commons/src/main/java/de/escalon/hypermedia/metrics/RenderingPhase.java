@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.metrics;
+
+/**
+ * Phases of rendering a hypermedia response which are reported to the {@link PhaseRecorder}. The meaning of the
+ * subject class, the media type and the size passed to {@link PhaseSpan#finish(Class, String, long)} depends on the
+ * phase.
+ */
+public enum RenderingPhase {
+    /**
+     * Building an affordance from a handler method. Subject is the controller, size the number of parameters.
+     */
+    AFFORDANCE_BUILD,
+    /**
+     * Computing the json-ld context of a bean. Subject is the bean class, size the number of terms.
+     */
+    CONTEXT_COMPUTATION,
+    /**
+     * Serializing the links of a bean as json-ld. Subject is the bean class if known, size the number of links.
+     */
+    LINK_SERIALIZATION,
+    /**
+     * Describing the expected request body or request parameters of an action. Subject is the request body class if
+     * any, media type that of the representation containing the description, size the number of fields.
+     */
+    FORM_DESCRIPTION,
+    /**
+     * Writing a whole message in a converter. Subject is the class of the written object, size the bytes written.
+     */
+    MESSAGE_WRITE
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.metrics;
+
+/**
+ * Snapshot of a timed operation, as exposed by {@link InMemoryHypermediaMetricsMXBean}.
+ */
+public class TimerStatistics {
+
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+    private final long totalBytes;
+
+    public TimerStatistics(long count, long totalNanos, long maxNanos, long totalBytes) {
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+        this.totalBytes = totalBytes;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public double getMeanMicros() {
+        return count == 0 ? 0 : totalNanos / (count * 1000.0);
+    }
+
+    /**
+     * Gets the bytes written, if the operation writes bytes.
+     *
+     * @return total bytes, 0 for operations which do not write
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BeanMetadataTest {
+
+    @Retention(RetentionPolicy.RUNTIME)
+    @interface Creator {
+
+    }
+
+    static class Person {
+
+        public String nickname = "Bob";
+        private String name;
+        private int age;
+
+        public Person() {
+        }
+
+        @Creator
+        public Person(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+    }
+
+    static class Immutable {
+
+        public Immutable(int value) {
+        }
+    }
+
+    @Test
+    public void isComputedOncePerClass() {
+        assertSame(BeanMetadata.forClass(Person.class), BeanMetadata.forBean(new Person()));
+    }
+
+    @Test
+    public void describesPropertiesFieldsAndSetters() {
+        BeanMetadata beanMetadata = BeanMetadata.forClass(Person.class);
+
+        assertTrue(beanMetadata.getPropertyDescriptors()
+                .keySet()
+                .containsAll(Arrays.asList("age", "class", "name")));
+        assertEquals(1, beanMetadata.getWriteMethods()
+                .size());
+        assertTrue(beanMetadata.getWriteMethods()
+                .containsKey("name"));
+        assertEquals(1, beanMetadata.getFields()
+                .size());
+        assertTrue(beanMetadata.getFields()
+                .containsKey("nickname"));
+    }
+
+    @Test
+    public void findsConstructors() throws NoSuchMethodException {
+        BeanMetadata person = BeanMetadata.forClass(Person.class);
+        assertEquals(Person.class.getConstructor(), person.getDefaultConstructor());
+        assertEquals(Person.class.getConstructor(String.class), person.getCreatorConstructor(Creator.class));
+
+        BeanMetadata immutable = BeanMetadata.forClass(Immutable.class);
+        assertNull(immutable.getDefaultConstructor());
+        assertNull(immutable.getCreatorConstructor(Creator.class));
+    }
+
+    @Test
+    public void readsAndWritesValuesOfNonPublicClass() {
+        BeanMetadata beanMetadata = BeanMetadata.forClass(Person.class);
+        Person person = new Person();
+
+        beanMetadata.setPropertyValue(person, "name", "Alice");
+
+        assertEquals("Alice", beanMetadata.getPropertyValue(person, "name"));
+        assertEquals(0, beanMetadata.getPropertyValue(person, "age"));
+        assertEquals("Bob", beanMetadata.getFieldValue(person, "nickname"));
+        assertEquals("Bob", beanMetadata.getPropertyOrFieldValue(person, "nickname"));
+        assertNull(beanMetadata.getPropertyOrFieldValue(person, "unknown"));
+    }
+
+    @Test
+    public void describesNonPublicJdkClass() {
+        // on Java 9+, the members of a path implementation in a package which is not open cannot be made accessible
+        Path path = new File("example.txt").toPath();
+        BeanMetadata metadata = BeanMetadata.forBean(path);
+        assertEquals(Boolean.FALSE, metadata.getPropertyValue(path, "absolute"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWritingReadOnlyProperty() {
+        BeanMetadata.forClass(Person.class)
+                .setPropertyValue(new Person(), "age", 42);
+    }
+}
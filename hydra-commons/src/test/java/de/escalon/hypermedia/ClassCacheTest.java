@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ClassCacheTest {
+
+    @Test
+    public void keepsFirstValuePerClass() {
+        ClassCache<String> cache = new ClassCache<String>();
+        assertNull(cache.get(String.class));
+
+        assertEquals("first", cache.putIfAbsent(String.class, "first"));
+        assertEquals("first", cache.putIfAbsent(String.class, "second"));
+        assertEquals("first", cache.get(String.class));
+
+        cache.putIfAbsent(Integer.class, "integer");
+        assertEquals("integer", cache.get(Integer.class));
+        assertEquals(2, cache.size());
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RepresentationBudgetTest {
+
+    @Test
+    public void countsNodes() throws Exception {
+        RepresentationBudget.Usage usage = RepresentationBudget.UNLIMITED.withMaxNodes(2)
+                .newUsage();
+        usage.countNode(0);
+        usage.countNode(1);
+        assertEquals(2, usage.getNodes());
+        try {
+            usage.countNode(1);
+            fail("node budget not enforced");
+        } catch (RepresentationBudgetExceededException e) {
+            assertEquals(RepresentationBudget.Limit.NODES, e.getLimit());
+            assertEquals(2, e.getMaxValue());
+        }
+    }
+
+    @Test
+    public void limitsDepth() throws Exception {
+        RepresentationBudget.Usage usage = RepresentationBudget.UNLIMITED.withMaxDepth(1)
+                .newUsage();
+        usage.countNode(1);
+        try {
+            usage.countNode(2);
+            fail("depth budget not enforced");
+        } catch (RepresentationBudgetExceededException e) {
+            assertEquals(RepresentationBudget.Limit.DEPTH, e.getLimit());
+        }
+    }
+
+    @Test
+    public void limitsPartToNodesLeft() throws Exception {
+        RepresentationBudget.Usage usage = RepresentationBudget.UNLIMITED.withMaxNodes(3)
+                .newUsage();
+        usage.countNode(0);
+        RepresentationBudget.Usage part = usage.newPartUsage();
+        part.countNode(1);
+        part.countNode(2);
+        assertEquals(2, part.getDeepest());
+        try {
+            part.countNode(1);
+            fail("node budget not enforced for part");
+        } catch (RepresentationBudgetExceededException e) {
+            assertEquals(3, e.getMaxValue());
+        }
+        usage.countNodes(part.getNodes(), part.getDeepest());
+        assertEquals(3, usage.getNodes());
+        assertEquals(2, usage.getDeepest());
+    }
+
+    @Test
+    public void limitsBytes() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OutputStream limited = RepresentationBudget.UNLIMITED.withMaxBytes(4)
+                .limit(out);
+        limited.write(new byte[]{1, 2, 3}, 0, 3);
+        limited.write(4);
+        try {
+            limited.write(5);
+            fail("byte budget not enforced");
+        } catch (RepresentationBudgetExceededException e) {
+            assertEquals(RepresentationBudget.Limit.BYTES, e.getLimit());
+        }
+        assertEquals(4, out.size());
+    }
+
+    @Test
+    public void leavesStreamOfUnlimitedBudget() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertSame(out, RepresentationBudget.UNLIMITED.limit(out));
+        assertTrue(RepresentationBudget.UNLIMITED.isUnlimited());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.metrics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class InMemoryHypermediaMetricsTest {
+
+    InMemoryHypermediaMetrics metrics = new InMemoryHypermediaMetrics();
+
+    @After
+    public void tearDown() {
+        HypermediaMetrics.setInstance(null);
+    }
+
+    @Test
+    public void discardsMeasurementsByDefault() {
+        assertSame(HypermediaMetrics.NOOP, HypermediaMetrics.getInstance());
+        assertFalse(HypermediaMetrics.getInstance()
+                .isEnabled());
+        HypermediaMetrics.setInstance(metrics);
+        assertSame(metrics, HypermediaMetrics.getInstance());
+    }
+
+    @Test
+    public void recordsWritesByConverterAndMediaType() {
+        metrics.recordWrite("SirenMessageConverter", "application/vnd.siren+json", 2000, 100);
+        metrics.recordWrite("SirenMessageConverter", "application/vnd.siren+json", 4000, 300);
+
+        TimerStatistics writes = metrics.getWrites()
+                .get("SirenMessageConverter application/vnd.siren+json");
+        assertEquals(2, writes.getCount());
+        assertEquals(6000, writes.getTotalNanos());
+        assertEquals(4000, writes.getMaxNanos());
+        assertEquals(400, writes.getTotalBytes());
+        assertEquals(3.0, writes.getMeanMicros(), 0.0001);
+    }
+
+    @Test
+    public void recordsCacheAccesses() {
+        metrics.recordCacheAccess("FormTemplate", false);
+        metrics.recordCacheAccess("FormTemplate", true);
+        metrics.recordCacheAccess("FormTemplate", true);
+        metrics.recordCacheAccess("FormTemplate", true);
+
+        CacheStatistics cacheStatistics = metrics.getCaches()
+                .get("FormTemplate");
+        assertEquals(3, cacheStatistics.getHits());
+        assertEquals(1, cacheStatistics.getMisses());
+        assertEquals(0.75, cacheStatistics.getHitRatio(), 0.0001);
+
+        metrics.reset();
+        assertTrue(metrics.getCaches()
+                .isEmpty());
+    }
+
+    @Test
+    public void exposesMeasurementsAsMXBean() throws Exception {
+        metrics.recordLinkTo(1000);
+        metrics.recordAffordanceBuilt();
+        metrics.recordOptionsLookup(String.class, 500);
+        metrics.registerMBean();
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(InMemoryHypermediaMetrics.OBJECT_NAME);
+            assertEquals(1L, mBeanServer.getAttribute(objectName, "AffordancesBuilt"));
+            CompositeData linkTo = (CompositeData) mBeanServer.getAttribute(objectName, "LinkTo");
+            assertEquals(1L, linkTo.get("count"));
+            TabularData optionsLookups = (TabularData) mBeanServer.getAttribute(objectName, "OptionsLookups");
+            assertEquals(1, optionsLookups.size());
+        } finally {
+            metrics.unregisterMBean();
+        }
+    }
+}
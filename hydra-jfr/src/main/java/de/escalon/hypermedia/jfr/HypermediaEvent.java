@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.jfr;
+
+import de.escalon.hypermedia.metrics.PhaseSpan;
+import jdk.jfr.Category;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of a rendering phase. The meaning of the fields depends on the phase, see {@link
+ * de.escalon.hypermedia.metrics.RenderingPhase}. Events are disabled unless a recording enables them explicitly, since
+ * recordings enable all events without <code>&#064;Enabled(false)</code>.
+ */
+@Category({"Hypermedia"})
+@Enabled(false)
+@StackTrace(false)
+abstract class HypermediaEvent extends Event implements PhaseSpan {
+
+    @Label("Subject")
+    Class<?> subject;
+
+    @Label("Media Type")
+    String mediaType;
+
+    @Label("Size")
+    long size;
+
+    /**
+     * Creates a new event of the same type.
+     *
+     * @return new event
+     */
+    abstract HypermediaEvent newEvent();
+
+    @Override
+    public boolean isRecording() {
+        return isEnabled();
+    }
+
+    @Override
+    public void finish(Class<?> subject, String mediaType, long size) {
+        end();
+        if (shouldCommit()) {
+            this.subject = subject;
+            this.mediaType = mediaType;
+            this.size = size;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.jfr;
+
+import de.escalon.hypermedia.metrics.PhaseRecorder;
+import de.escalon.hypermedia.metrics.PhaseSpan;
+import de.escalon.hypermedia.metrics.RenderingPhase;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Records rendering phases as flight recorder events in the category <code>Hypermedia</code>. Install it once at
+ * startup:
+ * <pre>
+ * JfrPhaseRecorder.install();
+ * </pre>
+ * The events are registered on installation, so they are listed by recording tools, but disabled by default. While
+ * no recording enables an event type, beginning a phase of that type returns a shared span and allocates nothing.
+ * To record all phases, start a recording with a settings file which enables the
+ * <code>de.escalon.hypermedia.*</code> events, optionally with a threshold.
+ */
+public class JfrPhaseRecorder extends PhaseRecorder {
+
+    /** one event per rendering phase, only used to create events and to check if the event type is enabled */
+    private final HypermediaEvent[] prototypes = new HypermediaEvent[RenderingPhase.values().length];
+
+    public JfrPhaseRecorder() {
+        prototypes[RenderingPhase.AFFORDANCE_BUILD.ordinal()] = new AffordanceBuildEvent();
+        prototypes[RenderingPhase.CONTEXT_COMPUTATION.ordinal()] = new ContextComputationEvent();
+        prototypes[RenderingPhase.LINK_SERIALIZATION.ordinal()] = new LinkSerializationEvent();
+        prototypes[RenderingPhase.FORM_DESCRIPTION.ordinal()] = new FormDescriptionEvent();
+        prototypes[RenderingPhase.MESSAGE_WRITE.ordinal()] = new MessageWriteEvent();
+        for (HypermediaEvent prototype : prototypes) {
+            FlightRecorder.register(prototype.getClass());
+        }
+    }
+
+    /**
+     * Creates a recorder and makes it the {@link PhaseRecorder} in use. This replaces the recorder in use, so install
+     * it before recorders which decorate the recorder in use, e.g. before creating a
+     * <code>ServerTimingFilter</code>. Otherwise the server timing recorder is dropped and the
+     * <code>Server-Timing</code> header stays empty.
+     *
+     * @return installed recorder
+     */
+    public static JfrPhaseRecorder install() {
+        JfrPhaseRecorder phaseRecorder = new JfrPhaseRecorder();
+        PhaseRecorder.setInstance(phaseRecorder);
+        return phaseRecorder;
+    }
+
+    @Override
+    public PhaseSpan begin(RenderingPhase phase) {
+        HypermediaEvent prototype = prototypes[phase.ordinal()];
+        if (!prototype.isEnabled()) {
+            return NOOP_SPAN;
+        }
+        HypermediaEvent event = prototype.newEvent();
+        event.begin();
+        return event;
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("de.escalon.hypermedia.LinkSerialization")
+@Label("Link Serialization")
+@Description("Serializes the links of a bean as json-ld, size is the number of links")
+class LinkSerializationEvent extends HypermediaEvent {
+
+    @Override
+    HypermediaEvent newEvent() {
+        return new LinkSerializationEvent();
+    }
+}
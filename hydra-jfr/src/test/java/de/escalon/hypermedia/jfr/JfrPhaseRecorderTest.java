@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.jfr;
+
+import de.escalon.hypermedia.metrics.PhaseRecorder;
+import de.escalon.hypermedia.metrics.PhaseSpan;
+import de.escalon.hypermedia.metrics.RenderingPhase;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JfrPhaseRecorderTest {
+
+    JfrPhaseRecorder phaseRecorder = new JfrPhaseRecorder();
+
+    @After
+    public void tearDown() {
+        PhaseRecorder.setInstance(null);
+    }
+
+    @Test
+    public void returnsSharedSpanWithoutRecording() {
+        assertSame(PhaseRecorder.NOOP_SPAN, phaseRecorder.begin(RenderingPhase.MESSAGE_WRITE));
+    }
+
+    @Test
+    public void installsRecorder() {
+        JfrPhaseRecorder installed = JfrPhaseRecorder.install();
+        assertSame(installed, PhaseRecorder.getInstance());
+    }
+
+    @Test
+    public void recordsEnabledPhase() throws Exception {
+        File file = File.createTempFile("hydra", ".jfr");
+        try {
+            Recording recording = new Recording();
+            recording.enable("de.escalon.hypermedia.MessageWrite");
+            recording.start();
+
+            PhaseSpan span = phaseRecorder.begin(RenderingPhase.MESSAGE_WRITE);
+            assertTrue(span.isRecording());
+            span.finish(String.class, "application/ld+json", 42);
+            // not enabled in the recording
+            assertSame(PhaseRecorder.NOOP_SPAN, phaseRecorder.begin(RenderingPhase.LINK_SERIALIZATION));
+
+            recording.stop();
+            Path path = file.toPath();
+            recording.dump(path);
+            recording.close();
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(path);
+            assertEquals(1, events.size());
+            RecordedEvent event = events.get(0);
+            assertEquals("de.escalon.hypermedia.MessageWrite", event.getEventType()
+                    .getName());
+            assertEquals("java.lang.String", event.getClass("subject")
+                    .getName());
+            assertEquals("application/ld+json", event.getString("mediaType"));
+            assertEquals(42, event.getLong("size"));
+        } finally {
+            file.delete();
+        }
+    }
+}
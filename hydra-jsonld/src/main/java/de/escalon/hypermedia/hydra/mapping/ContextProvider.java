@@ -12,4 +12,13 @@ import java.lang.annotation.*;
 @Target({ElementType.METHOD})
 @Retention(RetentionPolicy.RUNTIME)
 public @interface ContextProvider {
+
+    /**
+     * Declares the type of the objects returned by the annotated method. If set, the jsonld context of the generic
+     * type is determined from the declared type alone, without looking at the returned objects. Enum properties of
+     * the declared type contribute their property definitions, but not terms for their current values.
+     *
+     * @return type of the provided objects, Object if the provided objects should be inspected
+     */
+    Class<?> itemType() default Object.class;
 }
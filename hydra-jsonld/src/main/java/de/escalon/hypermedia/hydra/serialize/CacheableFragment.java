@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.hydra.serialize;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Implemented by beans whose json-ld representation may be cached by a {@link FragmentCache}, e.g. members of large
+ * collections which rarely change. The representation is reused as long as identity and version of the bean are
+ * unchanged and the bean is rendered within the same json-ld context.
+ */
+public interface CacheableFragment {
+
+    /**
+     * Gets the identity of the bean, e.g. its entity id.
+     *
+     * @return identity, must implement equals and hashCode
+     */
+    @JsonIgnore
+    Object getFragmentId();
+
+    /**
+     * Gets the version of the bean, e.g. an entity version or an ETag. The version must change whenever the
+     * representation of the bean changes, including its links and actions. If link urls depend on the request, e.g.
+     * on forwarded host headers, the version must reflect that, too.
+     *
+     * @return version, must implement equals and hashCode, or null if the representation must not be cached
+     */
+    @JsonIgnore
+    Object getFragmentVersion();
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.hydra.serialize;
+
+import de.escalon.hypermedia.metrics.HypermediaMetrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Base for proxy unwrappers which decide per class if an instance is a proxy. The decision is cached, so that
+ * unwrapping a bean which is not a proxy costs a single map lookup. Unwrapping is repeated as long as the target is
+ * itself a proxy.
+ */
+public abstract class CachingProxyUnwrapper implements ProxyUnwrapper {
+
+    private final ConcurrentMap<Class<?>, Boolean> proxyClasses = new ConcurrentHashMap<Class<?>, Boolean>();
+
+    @Override
+    public Object unwrapProxy(Object possibleProxy) {
+        Object ret = possibleProxy;
+        while (ret != null && isProxy(ret.getClass())) {
+            ret = unwrapTarget(ret);
+        }
+        return ret;
+    }
+
+    private boolean isProxy(Class<?> clazz) {
+        Boolean proxy = proxyClasses.get(clazz);
+        HypermediaMetrics metrics = HypermediaMetrics.getInstance();
+        if (metrics.isEnabled()) {
+            metrics.recordCacheAccess("CachingProxyUnwrapper", proxy != null);
+        }
+        if (proxy == null) {
+            proxy = isProxyClass(clazz);
+            proxyClasses.putIfAbsent(clazz, proxy);
+        }
+        return proxy;
+    }
+
+    /**
+     * Determines if instances of the given class are proxies handled by this unwrapper. Called once per class.
+     *
+     * @param clazz
+     *         to check
+     * @return true if instances of clazz are proxies
+     */
+    protected abstract boolean isProxyClass(Class<?> clazz);
+
+    /**
+     * Gets the target of the given proxy.
+     *
+     * @param proxy
+     *         whose class is a proxy class according to {@link #isProxyClass(Class)}
+     * @return target object or null if there is no underlying target
+     */
+    protected abstract Object unwrapTarget(Object proxy);
+}
@@ -21,6 +21,7 @@ import com.fasterxml.jackson.databind.ser.std.StdScalarSerializer;
 import java.io.IOException;
 
 /**
+ * Writes the name of an enum constant, pre-encoded once per constant by {@link EnumTerms}.
  * Created by dschulten on 24.09.2014.
  */
 public class EnumSerializer extends StdScalarSerializer<Enum<?>> {
@@ -33,7 +34,8 @@ public class EnumSerializer extends StdScalarSerializer<Enum<?>> {
     public void serialize(Enum<?> value, JsonGenerator jgen,
                           SerializerProvider provider) throws IOException, JsonGenerationException {
         if (value != null) {
-            jgen.writeString(value.name());
+            jgen.writeString(EnumTerms.forValue(value)
+                    .getJsonValue(value));
         }
     }
 }
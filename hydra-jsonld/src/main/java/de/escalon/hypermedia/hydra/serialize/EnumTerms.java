@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.hydra.serialize;
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import de.escalon.hypermedia.ClassCache;
+import de.escalon.hypermedia.hydra.mapping.Expose;
+import de.escalon.hypermedia.metrics.HypermediaMetrics;
+import org.apache.commons.lang3.text.WordUtils;
+
+import static de.escalon.hypermedia.AnnotationUtils.findAnnotation;
+
+/**
+ * Context terms and json values of the constants of an enum class, computed once per enum class. The term of a
+ * constant is its <code>&#064;Expose</code> value or the camel-cased constant, e.g. <code>EventScheduled</code> for
+ * <code>EVENT_SCHEDULED</code>. The json value is the name of the constant, pre-encoded for the JsonGenerator.
+ */
+public final class EnumTerms {
+
+    private static final ClassCache<EnumTerms> TABLES = new ClassCache<EnumTerms>();
+
+    private final String[] keys;
+    private final String[] terms;
+    private final SerializableString[] jsonValues;
+
+    private EnumTerms(Class<? extends Enum> enumClass) {
+        Enum[] constants = enumClass.getEnumConstants();
+        keys = new String[constants.length];
+        terms = new String[constants.length];
+        jsonValues = new SerializableString[constants.length];
+        try {
+            for (Enum constant : constants) {
+                int ordinal = constant.ordinal();
+                keys[ordinal] = constant.toString();
+                final Expose enumValueExpose = findAnnotation(enumClass.getField(constant.name()), Expose.class);
+                if (enumValueExpose != null) {
+                    terms[ordinal] = enumValueExpose.value();
+                } else {
+                    // might use upperToCamelCase if nothing is exposed
+                    terms[ordinal] = WordUtils.capitalizeFully(keys[ordinal], new char[]{'_'})
+                            .replaceAll("_", "");
+                }
+                jsonValues[ordinal] = new SerializedString(constant.name());
+            }
+        } catch (NoSuchFieldException e) {
+            throw new RuntimeException("failed to find enum constant field of " + enumClass.getName(), e);
+        }
+    }
+
+    /**
+     * Gets table for the enum class of the given value.
+     *
+     * @param value
+     *         enum constant
+     * @return table
+     */
+    public static EnumTerms forValue(Enum<?> value) {
+        Class<? extends Enum> enumClass = value.getDeclaringClass();
+        EnumTerms enumTerms = TABLES.get(enumClass);
+        HypermediaMetrics metrics = HypermediaMetrics.getInstance();
+        if (metrics.isEnabled()) {
+            metrics.recordCacheAccess("EnumTerms", enumTerms != null);
+        }
+        if (enumTerms == null) {
+            enumTerms = new EnumTerms(enumClass);
+            enumTerms = TABLES.putIfAbsent(enumClass, enumTerms);
+        }
+        return enumTerms;
+    }
+
+    /**
+     * Gets the key under which the term for the given constant is defined in a context, i.e. its string value.
+     *
+     * @param value
+     *         enum constant
+     * @return term key
+     */
+    public String getKey(Enum<?> value) {
+        return keys[value.ordinal()];
+    }
+
+    /**
+     * Gets the term for the given constant.
+     *
+     * @param value
+     *         enum constant
+     * @return exposed or camel-cased term
+     */
+    public String getTerm(Enum<?> value) {
+        return terms[value.ordinal()];
+    }
+
+    /**
+     * Gets the name of the given constant for direct output by a JsonGenerator.
+     *
+     * @param value
+     *         enum constant
+     * @return pre-encoded name
+     */
+    public SerializableString getJsonValue(Enum<?> value) {
+        return jsonValues[value.ordinal()];
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.hydra.serialize;
+
+import de.escalon.hypermedia.metrics.HypermediaMetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the serialized json-ld of {@link CacheableFragment} beans, so that unchanged members of a collection can be
+ * written as they are instead of being serialized again. A fragment is keyed by the serializer which wrote it, the
+ * class, identity and version of the bean, the active view and the json-ld contexts the bean was rendered in. Since
+ * the context of a bean is written as a difference to the inherited contexts, a fragment is only reused within equal
+ * inherited contexts. The least recently used fragments are evicted when the total length of the cached fragments
+ * exceeds the configured maximum.
+ */
+public class FragmentCache {
+
+    private final long maxChars;
+    private long chars;
+
+    private final LinkedHashMap<Key, Fragment> fragments = new LinkedHashMap<Key, Fragment>(16, 0.75f, true);
+
+    /**
+     * Creates fragment cache.
+     *
+     * @param maxChars
+     *         maximum total length of the cached fragments
+     */
+    public FragmentCache(long maxChars) {
+        if (maxChars <= 0) {
+            throw new IllegalArgumentException("maxChars must be positive");
+        }
+        this.maxChars = maxChars;
+    }
+
+    Fragment get(Key key) {
+        Fragment fragment;
+        synchronized (fragments) {
+            fragment = fragments.get(key);
+        }
+        HypermediaMetrics metrics = HypermediaMetrics.getInstance();
+        if (metrics.isEnabled()) {
+            metrics.recordCacheAccess("FragmentCache", fragment != null);
+        }
+        return fragment;
+    }
+
+    void put(Key key, Fragment fragment) {
+        if (fragment.json.length() > maxChars) {
+            return;
+        }
+        synchronized (fragments) {
+            Fragment replaced = fragments.put(key, fragment);
+            if (replaced != null) {
+                chars -= replaced.json.length();
+            }
+            chars += fragment.json.length();
+            Iterator<Fragment> eldest = fragments.values()
+                    .iterator();
+            while (chars > maxChars) {
+                chars -= eldest.next().json
+                        .length();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all fragments.
+     */
+    public void invalidateAll() {
+        synchronized (fragments) {
+            fragments.clear();
+            chars = 0;
+        }
+    }
+
+    /**
+     * Gets the number of cached fragments.
+     *
+     * @return size
+     */
+    public int size() {
+        synchronized (fragments) {
+            return fragments.size();
+        }
+    }
+
+    /**
+     * Serialized json-ld of a bean together with the ids of the nodes written in full within it, which later nodes
+     * of a document containing the fragment may reference, and the nodes within it which count against a {@link
+     * de.escalon.hypermedia.RepresentationBudget} whenever the fragment is written.
+     */
+    static final class Fragment {
+
+        final String json;
+        final Set<String> nodeIds;
+        /** number of nodes below the root node of the fragment */
+        final int nodes;
+        /** depth of the most deeply nested node relative to the root node of the fragment */
+        final int depth;
+
+        Fragment(String json, Set<String> nodeIds, int nodes, int depth) {
+            this.json = json;
+            this.nodeIds = Collections.unmodifiableSet(nodeIds);
+            this.nodes = nodes;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Identifies a fragment.
+     */
+    static final class Key {
+
+        private final Object serializer;
+        private final Class<?> beanClass;
+        private final Object id;
+        private final Object version;
+        private final Class<?> activeView;
+        private final String profile;
+        /** vocab and terms of the inherited contexts, innermost first */
+        private final List<Object> inheritedContexts;
+        private final int hashCode;
+
+        Key(Object serializer, CacheableFragment bean, Object version, Class<?> activeView, String profile,
+            Deque<LdContext> contextStack) {
+            this.serializer = serializer;
+            this.beanClass = bean.getClass();
+            this.id = bean.getFragmentId();
+            this.version = version;
+            this.activeView = activeView;
+            this.profile = profile;
+            List<Object> inheritedContexts = new ArrayList<Object>();
+            for (LdContext context : contextStack) {
+                inheritedContexts.add(context.vocab);
+                inheritedContexts.add(context.terms);
+            }
+            this.inheritedContexts = inheritedContexts;
+            int result = System.identityHashCode(serializer);
+            result = 31 * result + beanClass.hashCode();
+            result = 31 * result + (id != null ? id.hashCode() : 0);
+            result = 31 * result + version.hashCode();
+            result = 31 * result + (activeView != null ? activeView.hashCode() : 0);
+            result = 31 * result + (profile != null ? profile.hashCode() : 0);
+            result = 31 * result + inheritedContexts.hashCode();
+            this.hashCode = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return serializer == key.serializer
+                    && beanClass == key.beanClass
+                    && (id != null ? id.equals(key.id) : key.id == null)
+                    && version.equals(key.version)
+                    && activeView == key.activeView
+                    && (profile != null ? profile.equals(key.profile) : key.profile == null)
+                    && inheritedContexts.equals(key.inheritedContexts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.hydra.serialize;
+
+import java.lang.reflect.Method;
+
+/**
+ * Unwraps Hibernate entity proxies, regardless if they were generated by javassist or ByteBuddy. Hibernate is
+ * accessed reflectively, so it need not be on the classpath unless proxies are actually serialized. Unwrapping
+ * initializes the proxy.
+ */
+public class HibernateProxyUnwrapper extends CachingProxyUnwrapper {
+
+    private static final String HIBERNATE_PROXY = "org.hibernate.proxy.HibernateProxy";
+
+    private volatile Method getHibernateLazyInitializer;
+    private volatile Method getImplementation;
+
+    @Override
+    protected boolean isProxyClass(Class<?> clazz) {
+        for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+            for (Class<?> implemented : current.getInterfaces()) {
+                if (HIBERNATE_PROXY.equals(implemented.getName())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected Object unwrapTarget(Object proxy) {
+        try {
+            if (getHibernateLazyInitializer == null) {
+                Class<?> hibernateProxy = Class.forName(HIBERNATE_PROXY, false, proxy.getClass()
+                        .getClassLoader());
+                Method lazyInitializerGetter = hibernateProxy.getMethod("getHibernateLazyInitializer");
+                getImplementation = lazyInitializerGetter.getReturnType()
+                        .getMethod("getImplementation");
+                getHibernateLazyInitializer = lazyInitializerGetter;
+            }
+            Object lazyInitializer = getHibernateLazyInitializer.invoke(proxy);
+            return getImplementation.invoke(lazyInitializer);
+        } catch (Exception e) {
+            throw new RuntimeException("failed to unwrap hibernate proxy " + proxy.getClass()
+                    .getName(), e);
+        }
+    }
+}
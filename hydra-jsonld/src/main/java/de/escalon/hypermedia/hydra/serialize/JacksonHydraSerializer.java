@@ -17,33 +17,48 @@ import com.fasterxml.jackson.databind.BeanProperty;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
 import com.fasterxml.jackson.databind.ser.impl.BeanAsArraySerializer;
 import com.fasterxml.jackson.databind.ser.impl.ObjectIdWriter;
 import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
 import com.fasterxml.jackson.databind.util.NameTransformer;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import de.escalon.hypermedia.RepresentationBudget;
 import de.escalon.hypermedia.hydra.mapping.Expose;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 
 import static de.escalon.hypermedia.AnnotationUtils.findAnnotation;
 
 public class JacksonHydraSerializer extends BeanSerializerBase {
 
     public static final String KEY_LD_CONTEXT = "de.escalon.hypermedia.ld-context";
+    public static final String KEY_WRITTEN_NODES = "de.escalon.hypermedia.written-nodes";
+    public static final String KEY_PROJECTION = "de.escalon.hypermedia.projection";
+    /** profile of the representation, e.g. from the profile parameter of the media type, part of fragment keys */
+    public static final String KEY_PROFILE = "de.escalon.hypermedia.profile";
+    /** {@link RepresentationBudget.Usage} which counts the nodes of the current serialization */
+    public static final String KEY_BUDGET = "de.escalon.hypermedia.budget";
 
     protected LdContextFactory ldContextFactory;
     private ProxyUnwrapper proxyUnwrapper;
+    private FragmentCache fragmentCache;
+    private NodeIdResolver nodeIdResolver;
 
     public JacksonHydraSerializer(BeanSerializerBase source) {
         this(source, (ProxyUnwrapper) null);
     }
 
     /**
-     * Creates new serializer with optional proxy unwrapper.
+     * Creates new serializer with optional proxy unwrapper. If the source is a JacksonHydraSerializer, its fragment
+     * cache and node id resolver are used, too.
      *
      * @param source
      *         wrapped serializer
@@ -55,17 +70,49 @@ public class JacksonHydraSerializer extends BeanSerializerBase {
         this.proxyUnwrapper = proxyUnwrapper;
         this.ldContextFactory = new LdContextFactory();
         ldContextFactory.setProxyUnwrapper(proxyUnwrapper);
+        if (source instanceof JacksonHydraSerializer) {
+            JacksonHydraSerializer hydraSource = (JacksonHydraSerializer) source;
+            this.fragmentCache = hydraSource.fragmentCache;
+            this.nodeIdResolver = hydraSource.nodeIdResolver;
+        }
     }
 
 
     public JacksonHydraSerializer(BeanSerializerBase source,
                                   ObjectIdWriter objectIdWriter) {
         super(source, objectIdWriter);
+        copySettings(source);
     }
 
     public JacksonHydraSerializer(BeanSerializerBase source,
                                   String[] toIgnore) {
         super(source, toIgnore);
+        copySettings(source);
+    }
+
+    protected JacksonHydraSerializer(JacksonHydraSerializer source, ObjectIdWriter objectIdWriter, Object
+            filterId) {
+        super(source, objectIdWriter, filterId);
+        copySettings(source);
+    }
+
+    /**
+     * Takes over proxy unwrapper, fragment cache and node id resolver when Jackson derives a serializer from a
+     * configured one, e.g. for a property with ignorals, object ids or a filter.
+     *
+     * @param source
+     *         serializer to derive from
+     */
+    private void copySettings(BeanSerializerBase source) {
+        if (source instanceof JacksonHydraSerializer) {
+            JacksonHydraSerializer hydraSource = (JacksonHydraSerializer) source;
+            this.ldContextFactory = hydraSource.ldContextFactory;
+            this.proxyUnwrapper = hydraSource.proxyUnwrapper;
+            this.fragmentCache = hydraSource.fragmentCache;
+            this.nodeIdResolver = hydraSource.nodeIdResolver;
+        } else {
+            this.ldContextFactory = new LdContextFactory();
+        }
     }
 
     public BeanSerializerBase withObjectIdWriter(
@@ -97,26 +144,108 @@ public class JacksonHydraSerializer extends BeanSerializerBase {
 
     @Override
     public BeanSerializerBase withFilterId(Object filterId) {
-        final JacksonHydraSerializer ret = new JacksonHydraSerializer(this);
-        ret.withFilterId(filterId);
-        return ret;
+        return new JacksonHydraSerializer(this, _objectIdWriter, filterId);
     }
 
     @Override
     public void serialize(Object bean, JsonGenerator jgen,
                           SerializerProvider serializerProvider) throws IOException {
-        if (!isUnwrappingSerializer()) {
-            jgen.writeStartObject();
-        }
         Deque<LdContext> contextStack = (Deque<LdContext>) serializerProvider.getAttribute(KEY_LD_CONTEXT);
         if (contextStack == null) {
             contextStack = new ArrayDeque<LdContext>();
             serializerProvider.setAttribute(KEY_LD_CONTEXT, contextStack);
         }
 
-        serializeContext(bean, jgen, serializerProvider, contextStack);
-        serializeType(bean, jgen, serializerProvider);
-        serializeFields(bean, jgen, serializerProvider);
+        if (!isUnwrappingSerializer()) {
+            RepresentationBudget.Usage budgetUsage = (RepresentationBudget.Usage) serializerProvider.getAttribute
+                    (KEY_BUDGET);
+            if (budgetUsage != null) {
+                budgetUsage.countNode(contextStack.size());
+            }
+        }
+
+        // unwrap once, context and type are determined from the target
+        Object target = ldContextFactory.unwrapProxy(bean);
+        Projection projection = (Projection) serializerProvider.getAttribute(KEY_PROJECTION);
+        if (projection != null && !isUnwrappingSerializer() && contextStack.size() > projection.getMaxDepth()) {
+            writeDepthReference(target, jgen, serializerProvider);
+            return;
+        }
+        if (writeNodeReference(target, jgen, serializerProvider)) {
+            return;
+        }
+        // fragments are cached without projection
+        FragmentCache.Key fragmentKey = projection == null ? getFragmentKey(target, jgen, serializerProvider,
+                contextStack) : null;
+        if (fragmentKey == null) {
+            serializeBean(bean, target, jgen, serializerProvider, contextStack, projection);
+            return;
+        }
+        FragmentCache.Fragment fragment = fragmentCache.get(fragmentKey);
+        Set<String> writtenNodes = nodeIdResolver == null ? null : getWrittenNodes(serializerProvider);
+        RepresentationBudget.Usage budgetUsage = (RepresentationBudget.Usage) serializerProvider.getAttribute
+                (KEY_BUDGET);
+        if (fragment == null) {
+            StringWriter fragmentWriter = new StringWriter();
+            JsonGenerator fragmentGenerator = jgen.getCodec()
+                    .getFactory()
+                    .createGenerator(fragmentWriter);
+            fragmentGenerator.setFeatureMask(jgen.getFeatureMask());
+            if (jgen.getCharacterEscapes() != null) {
+                fragmentGenerator.setCharacterEscapes(jgen.getCharacterEscapes());
+            }
+            // a fragment may be reused in documents which do not contain the nodes written so far,
+            // so it may only reference nodes within itself
+            Set<String> fragmentNodes = new HashSet<String>();
+            if (writtenNodes != null) {
+                serializerProvider.setAttribute(KEY_WRITTEN_NODES, fragmentNodes);
+            }
+            // the nodes of a fragment are counted separately, they count against the budget on every reuse
+            if (budgetUsage == null) {
+                budgetUsage = RepresentationBudget.UNLIMITED.newUsage();
+            }
+            RepresentationBudget.Usage fragmentUsage = budgetUsage.newPartUsage();
+            serializerProvider.setAttribute(KEY_BUDGET, fragmentUsage);
+            try {
+                serializeBean(bean, target, fragmentGenerator, serializerProvider, contextStack, null);
+            } finally {
+                if (writtenNodes != null) {
+                    serializerProvider.setAttribute(KEY_WRITTEN_NODES, writtenNodes);
+                }
+                serializerProvider.setAttribute(KEY_BUDGET, budgetUsage);
+            }
+            fragmentGenerator.close();
+            fragment = new FragmentCache.Fragment(fragmentWriter.toString(), fragmentNodes, fragmentUsage
+                    .getNodes(), fragmentUsage.getNodes() == 0 ? 0 : fragmentUsage.getDeepest() - contextStack
+                    .size());
+            fragmentCache.put(fragmentKey, fragment);
+        }
+        if (budgetUsage != null && fragment.nodes > 0) {
+            budgetUsage.countNodes(fragment.nodes, contextStack.size() + fragment.depth);
+        }
+        if (writtenNodes != null) {
+            // nodes after the fragment may reference the nodes within it
+            writtenNodes.addAll(fragment.nodeIds);
+        }
+        jgen.writeRawValue(fragment.json);
+    }
+
+    private void serializeBean(Object bean, Object target, JsonGenerator jgen, SerializerProvider
+            serializerProvider, Deque<LdContext> contextStack, Projection projection) throws IOException {
+        if (!isUnwrappingSerializer()) {
+            jgen.writeStartObject();
+            // like BeanSerializer, make the bean accessible to serializers of its properties
+            jgen.setCurrentValue(bean);
+        }
+        serializeContext(target, jgen, serializerProvider, contextStack);
+        serializeType(target, jgen, serializerProvider);
+        if (_propertyFilterId != null) {
+            serializeFieldsFiltered(bean, jgen, serializerProvider);
+        } else if (projection != null && projection.isSparse()) {
+            serializeProjectedFields(bean, jgen, serializerProvider, projection);
+        } else {
+            serializeFields(bean, jgen, serializerProvider);
+        }
         if (!isUnwrappingSerializer()) {
             jgen.writeEndObject();
         }
@@ -126,10 +255,136 @@ public class JacksonHydraSerializer extends BeanSerializerBase {
         }
     }
 
-    protected void serializeType(Object bean, JsonGenerator jgen, SerializerProvider provider) throws IOException {
-        if (proxyUnwrapper != null) {
-            bean = proxyUnwrapper.unwrapProxy(bean);
+    /**
+     * Writes the properties of the given bean which are selected by the projection. Unwrapped properties are
+     * always written, their serializers may apply the projection themselves.
+     */
+    private void serializeProjectedFields(Object bean, JsonGenerator jgen, SerializerProvider serializerProvider,
+                                          Projection projection) throws IOException {
+        BeanPropertyWriter[] props = (_filteredProps != null && serializerProvider.getActiveView() != null) ?
+                _filteredProps : _props;
+        for (BeanPropertyWriter prop : props) {
+            if (prop != null && (prop.isUnwrapping() || projection.includes(prop.getName()))) {
+                try {
+                    prop.serializeAsField(bean, jgen, serializerProvider);
+                } catch (Exception e) {
+                    wrapAndThrow(serializerProvider, e, bean, prop.getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a node nested deeper than the projection allows as node reference <code>{"&#064;id": ...}</code>, or
+     * just with its type if it has no node id.
+     */
+    private void writeDepthReference(Object target, JsonGenerator jgen, SerializerProvider serializerProvider)
+            throws IOException {
+        String nodeId = nodeIdResolver == null ? null : nodeIdResolver.getNodeId(target);
+        jgen.writeStartObject();
+        if (nodeId != null) {
+            jgen.writeStringField(JsonLdKeywords.AT_ID, nodeId);
+        } else {
+            serializeType(target, jgen, serializerProvider);
         }
+        jgen.writeEndObject();
+    }
+
+    /**
+     * Writes a node reference <code>{"&#064;id": ...}</code> instead of the given bean if a node with the same id
+     * has already been written to the current document.
+     *
+     * @return true if the reference was written
+     */
+    private boolean writeNodeReference(Object target, JsonGenerator jgen, SerializerProvider serializerProvider)
+            throws IOException {
+        if (nodeIdResolver == null || isUnwrappingSerializer()) {
+            return false;
+        }
+        String nodeId = nodeIdResolver.getNodeId(target);
+        if (nodeId == null) {
+            return false;
+        }
+        if (getWrittenNodes(serializerProvider).add(nodeId)) {
+            return false;
+        }
+        jgen.writeStartObject();
+        jgen.writeStringField(JsonLdKeywords.AT_ID, nodeId);
+        jgen.writeEndObject();
+        return true;
+    }
+
+    /**
+     * Gets the ids of the nodes written in full to the current document so far.
+     */
+    @SuppressWarnings("unchecked")
+    private static Set<String> getWrittenNodes(SerializerProvider serializerProvider) {
+        Set<String> writtenNodes = (Set<String>) serializerProvider.getAttribute(KEY_WRITTEN_NODES);
+        if (writtenNodes == null) {
+            writtenNodes = new HashSet<String>();
+            serializerProvider.setAttribute(KEY_WRITTEN_NODES, writtenNodes);
+        }
+        return writtenNodes;
+    }
+
+    /**
+     * Gets the key of the cached fragment for the given bean. Fragments are only written as complete objects into
+     * generators which write plain json text without pretty printing. Beans with a property filter are not cached,
+     * since the filter is looked up per call.
+     *
+     * @return key or null if the bean cannot be cached
+     */
+    private FragmentCache.Key getFragmentKey(Object target, JsonGenerator jgen, SerializerProvider
+            serializerProvider, Deque<LdContext> contextStack) {
+        if (fragmentCache == null || !(target instanceof CacheableFragment) || isUnwrappingSerializer()
+                || _propertyFilterId != null || jgen.getPrettyPrinter() != null || jgen instanceof TokenBuffer
+                || jgen.getCodec() == null) {
+            return null;
+        }
+        CacheableFragment cacheableFragment = (CacheableFragment) target;
+        Object version = cacheableFragment.getFragmentVersion();
+        if (version == null) {
+            return null;
+        }
+        return new FragmentCache.Key(this, cacheableFragment, version, serializerProvider.getActiveView(),
+                (String) serializerProvider.getAttribute(KEY_PROFILE), contextStack);
+    }
+
+    /**
+     * Sets cache for the serialized json-ld of {@link CacheableFragment} beans.
+     *
+     * @param fragmentCache
+     *         to use, may be null to serialize every bean
+     */
+    public void setFragmentCache(FragmentCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
+
+    /**
+     * Sets resolver for the node ids of beans. If set, a bean whose node id has already been written to the current
+     * document is written as node reference <code>{"&#064;id": ...}</code>, which shrinks highly connected graphs
+     * where the same nodes occur many times.
+     *
+     * @param nodeIdResolver
+     *         to use, may be null to write every occurrence of a node in full
+     */
+    public void setNodeIdResolver(NodeIdResolver nodeIdResolver) {
+        this.nodeIdResolver = nodeIdResolver;
+    }
+
+    /**
+     * Writes the type of the given bean.
+     *
+     * @param bean
+     *         unwrapped bean
+     * @param jgen
+     *         to write to
+     * @param provider
+     *         of current serialization
+     * @throws IOException
+     *         if writing fails
+     */
+    protected void serializeType(Object bean, JsonGenerator jgen, SerializerProvider provider) throws IOException {
         // adds @type attribute, reflecting the simple name of the class or the exposed annotation on the class.
         final Expose classExpose = findAnnotation(bean.getClass(), Expose.class);
         // TODO allow to search up the hierarchy for ResourceSupport mixins and cache found result?
@@ -150,6 +405,20 @@ public class JacksonHydraSerializer extends BeanSerializerBase {
         jgen.writeStringField(JsonLdKeywords.AT_TYPE, val);
     }
 
+    /**
+     * Writes the context of the given bean, if it is not covered by the parent context.
+     *
+     * @param bean
+     *         unwrapped bean
+     * @param jgen
+     *         to write to
+     * @param serializerProvider
+     *         of current serialization
+     * @param contextStack
+     *         contexts of enclosing beans
+     * @throws IOException
+     *         if writing fails
+     */
     protected void serializeContext(Object bean, JsonGenerator jgen,
                                     SerializerProvider serializerProvider, Deque<LdContext> contextStack)
             throws IOException {
@@ -158,29 +427,30 @@ public class JacksonHydraSerializer extends BeanSerializerBase {
         // couldn't inherit from this because this is a serializer wrapper
         // make it a static utility or a common collaborator dependency?
 
-        if (proxyUnwrapper != null) {
-            bean = proxyUnwrapper.unwrapProxy(bean);
-        }
         MixinSource mixinSource = new JacksonMixinSource(serializerProvider.getConfig());
         final Class<?> mixInClass = mixinSource.findMixInClassFor(bean.getClass());
 
         final LdContext parentContext = contextStack.peek();
-        Map<String, Object> termsOfBean = ldContextFactory.getTerms(mixinSource, bean, mixInClass);
+        LdContext contextOfBean = ldContextFactory.getTargetContext(mixinSource, bean, mixInClass);
+        Map<String, Object> termsOfBean = contextOfBean.terms;
+        Projection projection = (Projection) serializerProvider.getAttribute(KEY_PROJECTION);
+        Set<String> omittedProperties = projection != null && projection.isSparse() ?
+                getOmittedProperties(projection) : null;
         Map<String, Object> newTermsOfBean;
-        if (parentContext != null) {
+        if (parentContext != null || omittedProperties != null) {
             newTermsOfBean = new LinkedHashMap<String, Object>();
             for (Map.Entry<String, Object> termEntry : termsOfBean.entrySet()) {
                 String term = termEntry.getKey();
                 Object value = termEntry.getValue();
-                if (!parentContext.hasEqualTerm(term, value)) {
+                if ((parentContext == null || !parentContext.hasEqualTerm(term, value))
+                        && (omittedProperties == null || !omittedProperties.contains(term))) {
                     newTermsOfBean.put(term, value);
                 }
             }
         } else {
             newTermsOfBean = termsOfBean;
         }
-        LdContext currentContext = new LdContext(parentContext, ldContextFactory.getVocab(mixinSource, bean,
-                mixInClass), newTermsOfBean);
+        LdContext currentContext = new LdContext(parentContext, contextOfBean.vocab, newTermsOfBean);
         contextStack.push(currentContext);
         // check if we need to write a context for the current bean at all
         // If it is in the same vocab: no context
@@ -215,6 +485,19 @@ public class JacksonHydraSerializer extends BeanSerializerBase {
         }
     }
 
+    /**
+     * Gets the names of the properties which the projection omits, their terms are not needed in the context.
+     */
+    private Set<String> getOmittedProperties(Projection projection) {
+        Set<String> omittedProperties = new HashSet<String>();
+        for (BeanPropertyWriter prop : _props) {
+            if (!prop.isUnwrapping() && !projection.includes(prop.getName())) {
+                omittedProperties.add(prop.getName());
+            }
+        }
+        return omittedProperties;
+    }
+
     @Override
     public JsonSerializer<Object> unwrappingSerializer(NameTransformer unwrapper) {
         UnwrappingJacksonHydraSerializer unwrappingJacksonHydraSerializer = new UnwrappingJacksonHydraSerializer
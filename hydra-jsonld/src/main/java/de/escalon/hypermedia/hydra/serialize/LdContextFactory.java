@@ -1,13 +1,14 @@
 package de.escalon.hypermedia.hydra.serialize;
 
 import de.escalon.hypermedia.AnnotationUtils;
+import de.escalon.hypermedia.BeanMetadata;
+import de.escalon.hypermedia.ClassCache;
 import de.escalon.hypermedia.hydra.mapping.*;
-import org.apache.commons.lang3.text.WordUtils;
+import de.escalon.hypermedia.metrics.HypermediaMetrics;
+import de.escalon.hypermedia.metrics.PhaseRecorder;
+import de.escalon.hypermedia.metrics.PhaseSpan;
+import de.escalon.hypermedia.metrics.RenderingPhase;
 
-import java.beans.BeanInfo;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
@@ -15,6 +16,8 @@ import java.lang.reflect.Modifier;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static de.escalon.hypermedia.AnnotationUtils.findAnnotation;
 
@@ -24,6 +27,9 @@ import static de.escalon.hypermedia.AnnotationUtils.findAnnotation;
 public class LdContextFactory {
 
     public static final String HTTP_SCHEMA_ORG = "http://schema.org/";
+
+    private static final ClassCache<LdContext> CLASS_CONTEXTS = new ClassCache<LdContext>();
+
     private ProxyUnwrapper proxyUnwrapper;
 
     /**
@@ -36,45 +42,81 @@ public class LdContextFactory {
      * @return explicitly defined vocab or http://schema.org
      */
     public String getVocab(MixinSource mixinSource, Object bean, Class<?> mixInClass) {
-        if (proxyUnwrapper != null) {
-            bean = proxyUnwrapper.unwrapProxy(bean);
-        }
-
-        // determine vocab in context
-        String classVocab = bean == null ? null : vocabFromClassOrPackage(bean.getClass());
+        return getTargetVocab(mixinSource, unwrapProxy(bean), mixInClass);
+    }
 
-        final Vocab mixinVocab = findAnnotation(mixInClass, Vocab.class);
+    /**
+     * Gets vocab for given bean which has already been unwrapped by {@link #unwrapProxy(Object)}.
+     *
+     * @param target
+     *         to inspect for vocab
+     * @param mixInClass
+     *         for bean which might define a vocab or has a context provider
+     * @return explicitly defined vocab or http://schema.org
+     */
+    public String getTargetVocab(MixinSource mixinSource, Object target, Class<?> mixInClass) {
+        return getTargetContext(mixinSource, target, mixInClass).vocab;
+    }
 
-        Object nestedContextProviderFromMixin = getNestedContextProviderFromMixin(mixinSource, bean, mixInClass);
-        String contextProviderVocab = null;
-        if (nestedContextProviderFromMixin != null) {
-            contextProviderVocab = getVocab(mixinSource, nestedContextProviderFromMixin, null);
-        }
+    public Map<String, Object> getTerms(MixinSource mixinSource, Object bean, Class<?> mixInClass) {
+        return getTargetTerms(mixinSource, unwrapProxy(bean), mixInClass);
+    }
 
-        String vocab;
-        if (mixinVocab != null) {
-            vocab = mixinVocab.value(); // wins over class
-        } else if (classVocab != null) {
-            vocab = classVocab; // wins over context provider
-        } else if (contextProviderVocab != null) {
-            vocab = contextProviderVocab; // wins over last resort
-        } else {
-            vocab = HTTP_SCHEMA_ORG;
-        }
-        return vocab;
+    /**
+     * Gets terms for given bean which has already been unwrapped by {@link #unwrapProxy(Object)}.
+     *
+     * @param bean
+     *         unwrapped bean
+     * @param mixInClass
+     *         for bean which might define terms or has a context provider
+     * @return terms
+     */
+    public Map<String, Object> getTargetTerms(MixinSource mixinSource, Object bean, Class<?> mixInClass) {
+        return new LinkedHashMap<String, Object>(getTargetContext(mixinSource, bean, mixInClass).terms);
     }
 
-    public Map<String, Object> getTerms(MixinSource mixinSource, Object bean, Class<?> mixInClass) {
+    /**
+     * Gets vocab and terms for given bean which has already been unwrapped by {@link #unwrapProxy(Object)}. The
+     * context provider of the mixin, if any, is evaluated once for both.
+     *
+     * @param target
+     *         unwrapped bean, may be null
+     * @param mixInClass
+     *         for bean which might define a vocab or terms or has a context provider
+     * @return context without parent context
+     */
+    public LdContext getTargetContext(MixinSource mixinSource, Object target, Class<?> mixInClass) {
+        PhaseSpan span = PhaseRecorder.getInstance()
+                .begin(RenderingPhase.CONTEXT_COMPUTATION);
+        LdContext ldContext = computeTargetContext(mixinSource, target, mixInClass);
+        span.finish(target == null ? null : target.getClass(), null, ldContext.terms.size());
+        return ldContext;
+    }
 
+    private LdContext computeTargetContext(MixinSource mixinSource, Object target, Class<?> mixInClass) {
         try {
+            LdContext contextProviderContext = null;
+            if (target != null) {
+                contextProviderContext = getContextProviderContext(mixinSource, target, mixInClass);
+            }
 
-            if (proxyUnwrapper != null) {
-                bean = proxyUnwrapper.unwrapProxy(bean);
+            // determine vocab in context
+            String classVocab = target == null ? null : vocabFromClassOrPackage(target.getClass());
+            final Vocab mixinVocab = findAnnotation(mixInClass, Vocab.class);
+            String vocab;
+            if (mixinVocab != null) {
+                vocab = mixinVocab.value(); // wins over class
+            } else if (classVocab != null) {
+                vocab = classVocab; // wins over context provider
+            } else if (contextProviderContext != null) {
+                vocab = contextProviderContext.vocab; // wins over last resort
+            } else {
+                vocab = HTTP_SCHEMA_ORG;
             }
 
             Map<String, Object> termsMap = new LinkedHashMap<String, Object>();
-            if (bean != null) {
-                final Class<?> beanClass = bean.getClass();
+            if (target != null) {
+                final Class<?> beanClass = target.getClass();
                 termsMap.putAll(termsFromClass(beanClass));
                 Map<String, Object> mixinTermsMap = getAnnotatedTerms(mixInClass, beanClass
                         .getName());
@@ -82,51 +124,88 @@ public class LdContextFactory {
                 // mixin terms override class terms
                 termsMap.putAll(mixinTermsMap);
 
-                Object nestedContextProviderFromMixin = getNestedContextProviderFromMixin(mixinSource, bean,
-                        mixInClass);
-
-                if (nestedContextProviderFromMixin != null) {
-                    termsMap.putAll(getTerms(mixinSource, nestedContextProviderFromMixin, null));
+                if (contextProviderContext != null) {
+                    termsMap.putAll(contextProviderContext.terms);
                 }
+                addPropertyTerms(termsMap, beanClass, target);
+            }
+            return new LdContext(null, vocab, termsMap);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-                final Field[] fields = beanClass
-                        .getDeclaredFields();
-                for (Field field : fields) {
-                    if (Modifier.isPublic(field.getModifiers())) {
-                        final Expose expose = field.getAnnotation(Expose.class);
-                        if (Enum.class.isAssignableFrom(field.getType())) {
-                            addEnumTerms(termsMap, expose, field.getName(), (Enum) field.get(bean));
-                        } else {
-                            if (expose != null) {
-                                termsMap.put(field.getName(), expose.value());
-                            }
-                        }
+    /**
+     * Gets vocab and terms which can be determined from the given class alone. Enum properties contribute the
+     * definition of the property, but not the term of their value.
+     *
+     * @param beanClass
+     *         to inspect
+     * @return context without parent context
+     */
+    public LdContext getClassContext(Class<?> beanClass) {
+        LdContext classContext = CLASS_CONTEXTS.get(beanClass);
+        HypermediaMetrics metrics = HypermediaMetrics.getInstance();
+        if (metrics.isEnabled()) {
+            metrics.recordCacheAccess("LdContextFactory", classContext != null);
+        }
+        if (classContext == null) {
+            try {
+                String classVocab = vocabFromClassOrPackage(beanClass);
+                Map<String, Object> termsMap = new LinkedHashMap<String, Object>(termsFromClass(beanClass));
+                addPropertyTerms(termsMap, beanClass, null);
+                classContext = new LdContext(null, classVocab == null ? HTTP_SCHEMA_ORG : classVocab, termsMap);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            classContext = CLASS_CONTEXTS.putIfAbsent(beanClass, classContext);
+        }
+        return classContext;
+    }
+
+    /**
+     * Adds terms of exposed properties and of enum properties.
+     *
+     * @param termsMap
+     *         to add to
+     * @param beanClass
+     *         of bean
+     * @param bean
+     *         whose enum values should be defined as terms, may be null
+     */
+    private void addPropertyTerms(Map<String, Object> termsMap, Class<?> beanClass, Object bean) throws Exception {
+        final Field[] fields = beanClass
+                .getDeclaredFields();
+        for (Field field : fields) {
+            if (Modifier.isPublic(field.getModifiers())) {
+                final Expose expose = field.getAnnotation(Expose.class);
+                if (Enum.class.isAssignableFrom(field.getType())) {
+                    addEnumTerms(termsMap, expose, field.getName(), bean == null ? null : (Enum) field.get(bean),
+                            bean == null);
+                } else {
+                    if (expose != null) {
+                        termsMap.put(field.getName(), expose.value());
                     }
                 }
+            }
+        }
 
-                final BeanInfo beanInfo = Introspector.getBeanInfo(beanClass);
-                final PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
-                for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
-                    final Method method = propertyDescriptor.getReadMethod();
-                    if (method != null) {
-                        final Expose expose = method.getAnnotation(Expose.class);
-                        if (Enum.class.isAssignableFrom(method.getReturnType())) {
-                            addEnumTerms(termsMap, expose, propertyDescriptor.getName(), (Enum) method.invoke(bean));
-                        } else {
-                            if (expose != null) {
-                                termsMap.put(propertyDescriptor.getName(), expose.value());
-                            }
-                        }
-                    }
+        for (Map.Entry<String, Method> readMethod : BeanMetadata.forClass(beanClass)
+                .getReadMethods()
+                .entrySet()) {
+            final Method method = readMethod.getValue();
+            final Expose expose = method.getAnnotation(Expose.class);
+            if (Enum.class.isAssignableFrom(method.getReturnType())) {
+                addEnumTerms(termsMap, expose, readMethod.getKey(), bean == null ? null : (Enum) method.invoke(bean),
+                        bean == null);
+            } else {
+                if (expose != null) {
+                    termsMap.put(readMethod.getKey(), expose.value());
                 }
             }
-            return termsMap;
-        } catch (Exception e) {
-            throw new RuntimeException(e);
         }
     }
 
-
     /**
      * Gets explicitly defined terms, e.g. on package, class or mixin.
      *
@@ -171,28 +250,53 @@ public class LdContextFactory {
         }
     }
 
+    /**
+     * Gets the context of the objects returned by the context provider of the mixin.
+     *
+     * @param bean
+     *         unwrapped bean
+     * @param mixinClass
+     *         of bean, may be null
+     * @return context or null if there is no context provider or it returns nothing
+     */
+    private LdContext getContextProviderContext(MixinSource mixinSource, Object bean, Class<?> mixinClass) {
+        ContextProviderHandle contextProvider = ContextProviderHandle.forMixin(mixinClass);
+        if (contextProvider == null) {
+            return null;
+        }
+        if (contextProvider.itemType != null) {
+            return getClassContext(contextProvider.itemType);
+        }
+        Object nestedContextProvider = getNestedContextProvider(mixinSource, bean, contextProvider);
+        if (nestedContextProvider == null) {
+            return null;
+        }
+        // part of the context computation of the bean, not timed as a phase of its own
+        return computeTargetContext(mixinSource, nestedContextProvider, null);
+    }
+
     private Object getNestedContextProviderFromMixin(MixinSource mixinSource, Object bean, Class<?> mixinClass) {
+        ContextProviderHandle contextProvider = ContextProviderHandle.forMixin(mixinClass);
+        if (contextProvider == null) {
+            return null;
+        }
+        return getNestedContextProvider(mixinSource, bean, contextProvider);
+    }
+
+    private Object getNestedContextProvider(MixinSource mixinSource, Object bean, ContextProviderHandle
+            contextProvider) {
         // TODO does not consider Collection<Resource> or Collection<PersistentEntityResource> to find mixin of
         // object wrapped in resource
         // TODO does not consider package of object wrapped in resource
         // TODO: we do not know Resources here
-        if (mixinClass == null) {
-            return null;
-        }
         try {
-            Method mixinContextProvider = getContextProvider(mixinClass);
-            if (mixinContextProvider == null) {
-                return null;
-            }
-            Class<?> beanClass = bean.getClass();
-            Object contextual = beanClass.getMethod(mixinContextProvider.getName())
-                    .invoke(bean);
+            Object contextual = contextProvider.invoke(bean);
             Object ret = null;
             if (contextual instanceof Collection) {
                 Collection collection = (Collection) contextual;
                 if (!collection.isEmpty()) {
-                    Object item = collection.iterator()
-                            .next();
+                    Object item = unwrapProxy(collection.iterator()
+                            .next());
                     final Class<?> mixInClass = mixinSource.findMixInClassFor(item.getClass());
                     if (mixInClass == null) {
                         ret = item;
@@ -203,9 +307,9 @@ public class LdContextFactory {
             } else if (contextual instanceof Map) {
                 Map map = (Map) contextual;
                 if (!map.isEmpty()) {
-                    Object item = map.values()
+                    Object item = unwrapProxy(map.values()
                             .iterator()
-                            .next();
+                            .next());
                     final Class<?> mixInClass = mixinSource.findMixInClassFor(item.getClass());
                     if (mixInClass == null) {
                         ret = item;
@@ -214,7 +318,7 @@ public class LdContextFactory {
                     }
                 }
             } else {
-                ret = contextual;
+                ret = unwrapProxy(contextual);
             }
             return ret;
         } catch (Exception e) {
@@ -222,35 +326,81 @@ public class LdContextFactory {
         }
     }
 
-    private Method getContextProvider(Class<?> beanClass) {
-        Class<? extends Annotation> annotation = ContextProvider.class;
-        Method contextProvider = AnnotationUtils.getAnnotatedMethod(beanClass, annotation);
-        if (contextProvider != null && contextProvider.getParameterTypes().length > 0) {
-            throw new IllegalStateException("the context provider method " + contextProvider.getName() + " must not " +
-                    "have arguments");
+    /**
+     * The <code>&#064;ContextProvider</code> method of a mixin class, resolved once per mixin class. The method is
+     * invoked by name on the bean class, looked up once per bean class.
+     */
+    private static final class ContextProviderHandle {
+
+        private static final ContextProviderHandle NONE = new ContextProviderHandle(null);
+        private static final ClassCache<ContextProviderHandle> HANDLES = new ClassCache<ContextProviderHandle>();
+
+        private final Method contextProvider;
+        /** statically declared type of the provided objects, null if the objects must be inspected */
+        private final Class<?> itemType;
+        private final ConcurrentMap<Class<?>, Method> beanMethods = new ConcurrentHashMap<Class<?>, Method>();
+
+        private ContextProviderHandle(Method contextProvider) {
+            this.contextProvider = contextProvider;
+            if (contextProvider == null) {
+                this.itemType = null;
+            } else {
+                Class<?> declaredItemType = contextProvider.getAnnotation(ContextProvider.class)
+                        .itemType();
+                this.itemType = declaredItemType == Object.class ? null : declaredItemType;
+            }
+        }
+
+        /**
+         * Gets the context provider of the given mixin class.
+         *
+         * @param mixinClass
+         *         may be null
+         * @return context provider or null if there is none
+         */
+        static ContextProviderHandle forMixin(Class<?> mixinClass) {
+            if (mixinClass == null) {
+                return null;
+            }
+            ContextProviderHandle handle = HANDLES.get(mixinClass);
+            if (handle == null) {
+                Method contextProvider = AnnotationUtils.getAnnotatedMethod(mixinClass, ContextProvider.class);
+                if (contextProvider == null) {
+                    handle = NONE;
+                } else if (contextProvider.getParameterTypes().length > 0) {
+                    throw new IllegalStateException("the context provider method " + contextProvider.getName() +
+                            " must not have arguments");
+                } else {
+                    handle = new ContextProviderHandle(contextProvider);
+                }
+                handle = HANDLES.putIfAbsent(mixinClass, handle);
+            }
+            return handle == NONE ? null : handle;
+        }
+
+        Object invoke(Object bean) throws Exception {
+            Class<?> beanClass = bean.getClass();
+            Method beanMethod = beanMethods.get(beanClass);
+            if (beanMethod == null) {
+                beanMethod = beanClass.getMethod(contextProvider.getName());
+                beanMethods.putIfAbsent(beanClass, beanMethod);
+            }
+            return beanMethod.invoke(bean);
         }
-        return contextProvider;
     }
 
     private void addEnumTerms(Map<String, Object> termsMap, Expose expose, String name,
-                              Enum value) throws NoSuchFieldException {
-        if (value != null) {
+                              Enum value, boolean withoutValue) {
+        if (value != null || withoutValue) {
             Map<String, String> map = new LinkedHashMap<String, String>();
             if (expose != null) {
                 map.put(JsonLdKeywords.AT_ID, expose.value());
             }
             map.put(JsonLdKeywords.AT_TYPE, JsonLdKeywords.AT_VOCAB);
             termsMap.put(name, map);
-            final Expose enumValueExpose = findAnnotation(value.getClass()
-                    .getField(value.name()), Expose.class);
-
-            if (enumValueExpose != null) {
-                termsMap.put(value.toString(), enumValueExpose.value());
-            } else {
-                // might use upperToCamelCase if nothing is exposed
-                final String camelCaseEnumValue = WordUtils.capitalizeFully(value.toString(), new char[]{'_'})
-                        .replaceAll("_", "");
-                termsMap.put(value.toString(), camelCaseEnumValue);
+            if (value != null) {
+                EnumTerms enumTerms = EnumTerms.forValue(value);
+                termsMap.put(enumTerms.getKey(value), enumTerms.getTerm(value));
             }
         }
     }
@@ -283,6 +433,21 @@ public class LdContextFactory {
         return termsMap;
     }
 
+    /**
+     * Unwraps the given bean if a proxy unwrapper is set. Serializers unwrap a bean once and pass the target to
+     * {@link #getTargetVocab(MixinSource, Object, Class)} and {@link #getTargetTerms(MixinSource, Object, Class)}.
+     *
+     * @param bean
+     *         to unwrap, may be null
+     * @return target object or the given bean if it is no proxy
+     */
+    public Object unwrapProxy(Object bean) {
+        if (proxyUnwrapper == null || bean == null) {
+            return bean;
+        }
+        return proxyUnwrapper.unwrapProxy(bean);
+    }
+
     public void setProxyUnwrapper(ProxyUnwrapper proxyUnwrapper) {
         this.proxyUnwrapper = proxyUnwrapper;
     }
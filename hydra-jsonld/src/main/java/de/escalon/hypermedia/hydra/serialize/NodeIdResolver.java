@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.hydra.serialize;
+
+/**
+ * Determines the <code>&#064;id</code> of beans, so that the {@link JacksonHydraSerializer} can write a node only
+ * once per document and refer to it by its <code>&#064;id</code> wherever it occurs again.
+ */
+public interface NodeIdResolver {
+
+    /**
+     * Gets the node id of the given bean. The id must be the <code>&#064;id</code> which the representation of the
+     * bean contains, e.g. the url of its self link.
+     *
+     * @param bean
+     *         to identify, unwrapped if it was a proxy
+     * @return node id or null if the bean must always be written in full
+     */
+    String getNodeId(Object bean);
+}
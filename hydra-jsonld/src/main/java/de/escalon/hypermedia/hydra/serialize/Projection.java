@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.hydra.serialize;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Restricts the json-ld written by the {@link JacksonHydraSerializer} to a sparse fieldset and a maximum embedding
+ * depth. The projection is passed to the serializer as attribute {@link JacksonHydraSerializer#KEY_PROJECTION} of
+ * the current serialization, e.g.
+ * <pre>
+ * mapper.writer().withAttribute(JacksonHydraSerializer.KEY_PROJECTION, new Projection(fields, 1));
+ * </pre>
+ * <code>&#064;context</code>, <code>&#064;type</code> and <code>&#064;id</code> are always written. Nodes nested
+ * deeper than the maximum depth are written as node reference <code>{"&#064;id": ...}</code>.
+ */
+public final class Projection {
+
+    public static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+
+    private final Set<String> fields;
+    private final int maxDepth;
+
+    /**
+     * Creates projection.
+     *
+     * @param fields
+     *         names of the properties and link relations to write, null to write all
+     * @param maxDepth
+     *         maximum number of enclosing nodes of a node which is written in full, 0 writes only the root node in
+     *         full
+     */
+    public Projection(Collection<String> fields, int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("maxDepth must not be negative");
+        }
+        this.fields = fields == null ? null : Collections.unmodifiableSet(new HashSet<String>(fields));
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Determines if the projection restricts the properties to write.
+     *
+     * @return true if only selected properties are written
+     */
+    public boolean isSparse() {
+        return fields != null;
+    }
+
+    /**
+     * Determines if the given property or link relation is written. Json-ld keywords are always written.
+     *
+     * @param field
+     *         property name or link relation
+     * @return true if field is written
+     */
+    public boolean includes(String field) {
+        return fields == null || fields.contains(field) || field.startsWith("@");
+    }
+
+    /**
+     * Gets the maximum depth of nodes written in full.
+     *
+     * @return depth
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Gets the selected fields.
+     *
+     * @return fields or null if all fields are written
+     */
+    public Set<String> getFields() {
+        return fields;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.hydra.serialize;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CachingProxyUnwrapperTest {
+
+    static class Person {
+    }
+
+    static class PersonProxy extends Person {
+        final Object target;
+
+        PersonProxy(Object target) {
+            this.target = target;
+        }
+    }
+
+    static class CountingProxyUnwrapper extends CachingProxyUnwrapper {
+
+        int classChecks;
+
+        @Override
+        protected boolean isProxyClass(Class<?> clazz) {
+            classChecks++;
+            return PersonProxy.class == clazz;
+        }
+
+        @Override
+        protected Object unwrapTarget(Object proxy) {
+            return ((PersonProxy) proxy).target;
+        }
+    }
+
+    CountingProxyUnwrapper proxyUnwrapper = new CountingProxyUnwrapper();
+
+    @Test
+    public void returnsBeanWhichIsNoProxy() {
+        Person person = new Person();
+        assertSame(person, proxyUnwrapper.unwrapProxy(person));
+        assertSame(person, proxyUnwrapper.unwrapProxy(person));
+        assertEquals(1, proxyUnwrapper.classChecks);
+    }
+
+    @Test
+    public void unwrapsNestedProxies() {
+        Person person = new Person();
+        assertSame(person, proxyUnwrapper.unwrapProxy(new PersonProxy(new PersonProxy(person))));
+        assertSame(person, proxyUnwrapper.unwrapProxy(new PersonProxy(person)));
+        assertEquals(2, proxyUnwrapper.classChecks);
+    }
+
+    @Test
+    public void unwrapsProxyWithoutTarget() {
+        assertNull(proxyUnwrapper.unwrapProxy(new PersonProxy(null)));
+        assertNull(proxyUnwrapper.unwrapProxy(null));
+    }
+}
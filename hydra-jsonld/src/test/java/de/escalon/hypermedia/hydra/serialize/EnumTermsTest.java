@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.hydra.serialize;
+
+import de.escalon.hypermedia.hydra.mapping.Expose;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class EnumTermsTest {
+
+    enum OrderStatus {
+        @Expose("gr:PaymentComplete")
+        PAYMENT_DUE,
+        ORDER_IN_TRANSIT,
+        DELIVERED {
+            @Override
+            public String toString() {
+                return "delivered";
+            }
+        }
+    }
+
+    @Test
+    public void usesExposedTerm() {
+        EnumTerms enumTerms = EnumTerms.forValue(OrderStatus.PAYMENT_DUE);
+        assertEquals("PAYMENT_DUE", enumTerms.getKey(OrderStatus.PAYMENT_DUE));
+        assertEquals("gr:PaymentComplete", enumTerms.getTerm(OrderStatus.PAYMENT_DUE));
+    }
+
+    @Test
+    public void camelCasesUnexposedTerm() {
+        assertEquals("OrderInTransit", EnumTerms.forValue(OrderStatus.ORDER_IN_TRANSIT)
+                .getTerm(OrderStatus.ORDER_IN_TRANSIT));
+    }
+
+    @Test
+    public void handlesConstantWithBody() {
+        EnumTerms enumTerms = EnumTerms.forValue(OrderStatus.DELIVERED);
+        assertSame(EnumTerms.forValue(OrderStatus.PAYMENT_DUE), enumTerms);
+        assertEquals("delivered", enumTerms.getKey(OrderStatus.DELIVERED));
+        assertEquals("Delivered", enumTerms.getTerm(OrderStatus.DELIVERED));
+        assertEquals("DELIVERED", enumTerms.getJsonValue(OrderStatus.DELIVERED)
+                .getValue());
+    }
+}
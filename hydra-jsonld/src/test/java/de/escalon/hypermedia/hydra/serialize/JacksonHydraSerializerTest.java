@@ -13,16 +13,23 @@
 
 package de.escalon.hypermedia.hydra.serialize;
 
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.BeanDescription;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationConfig;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
 import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
 import com.github.jsonldjava.core.JsonLdError;
 import com.jayway.jsonassert.JsonAssert;
+import de.escalon.hypermedia.RepresentationBudget;
+import de.escalon.hypermedia.RepresentationBudgetExceededException;
 import de.escalon.hypermedia.hydra.JsonLdTestUtils;
 import de.escalon.hypermedia.hydra.mapping.Expose;
 import de.escalon.hypermedia.hydra.mapping.Term;
@@ -39,6 +46,9 @@ import java.util.List;
 
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 
 public class JacksonHydraSerializerTest {
@@ -50,7 +60,15 @@ public class JacksonHydraSerializerTest {
 
     @Before
     public void setUp() {
-        mapper = new ObjectMapper();
+        mapper = createMapper(null);
+    }
+
+    private ObjectMapper createMapper(final FragmentCache fragmentCache) {
+        return createMapper(fragmentCache, null);
+    }
+
+    private ObjectMapper createMapper(final FragmentCache fragmentCache, final NodeIdResolver nodeIdResolver) {
+        ObjectMapper mapper = new ObjectMapper();
         // see https://github.com/json-ld/json-ld.org/issues/76
         mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
 
@@ -67,8 +85,11 @@ public class JacksonHydraSerializerTest {
                             JsonSerializer<?> serializer) {
 
                         if (serializer instanceof BeanSerializerBase) {
-                            return new JacksonHydraSerializer(
+                            JacksonHydraSerializer jacksonHydraSerializer = new JacksonHydraSerializer(
                                     (BeanSerializerBase) serializer);
+                            jacksonHydraSerializer.setFragmentCache(fragmentCache);
+                            jacksonHydraSerializer.setNodeIdResolver(nodeIdResolver);
+                            return jacksonHydraSerializer;
                         } else {
                             return serializer;
                         }
@@ -76,7 +97,7 @@ public class JacksonHydraSerializerTest {
                 });
             }
         });
-
+        return mapper;
     }
 
     @Test
@@ -397,5 +418,312 @@ public class JacksonHydraSerializerTest {
                 w.toString());
     }
 
+    @Term(define = "gr", as = "http://purl.org/goodrelations/v1#")
+    public static class Product implements CacheableFragment {
+
+        static int serializations;
+
+        private final int id;
+        private int version;
+
+        Product(int id) {
+            this.id = id;
+        }
+
+        @Expose("gr:name")
+        public String getName() {
+            serializations++;
+            return "Product " + id;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        @Override
+        public Object getFragmentId() {
+            return id;
+        }
+
+        @Override
+        public Object getFragmentVersion() {
+            return version;
+        }
+    }
+
+    public static class Catalog {
+
+        private final List<Product> products;
+
+        Catalog(Product... products) {
+            this.products = Arrays.asList(products);
+        }
+
+        public List<Product> getProducts() {
+            return products;
+        }
+    }
+
+    @Test
+    public void testReusesCachedFragmentsOfUnchangedMembers() throws IOException {
+        FragmentCache fragmentCache = new FragmentCache(1024 * 1024);
+        ObjectMapper cachingMapper = createMapper(fragmentCache);
+        Product first = new Product(1);
+        Product second = new Product(2);
+        Catalog catalog = new Catalog(first, second);
+
+        Product.serializations = 0;
+        String uncached = mapper.writeValueAsString(catalog);
+        assertEquals(uncached, cachingMapper.writeValueAsString(catalog));
+        assertEquals(uncached, cachingMapper.writeValueAsString(catalog));
+        assertEquals(4, Product.serializations);
+
+        second.version++;
+        assertEquals(uncached, cachingMapper.writeValueAsString(catalog));
+        assertEquals(5, Product.serializations);
+    }
+
+    @Test
+    public void testDoesNotReuseFragmentInDifferentContext() throws IOException {
+        ObjectMapper cachingMapper = createMapper(new FragmentCache(1024 * 1024));
+        Product product = new Product(1);
+
+        cachingMapper.writeValueAsString(new Catalog(product));
+        assertEquals(mapper.writeValueAsString(product), cachingMapper.writeValueAsString(product));
+    }
+
+    private static final NodeIdResolver PRODUCT_IDS = new NodeIdResolver() {
+        @Override
+        public String getNodeId(Object bean) {
+            return bean instanceof IdentifiedProduct ? ((IdentifiedProduct) bean).getUri() : null;
+        }
+    };
+
+    public static class IdentifiedProduct extends Product {
+
+        IdentifiedProduct(int id) {
+            super(id);
+        }
+
+        @JsonProperty("@id")
+        public String getUri() {
+            return "http://example.com/products/" + getId();
+        }
+    }
+
+    @Test
+    public void testWritesRepeatedNodeAsReference() throws IOException {
+        ObjectMapper dedupMapper = createMapper(null, PRODUCT_IDS);
+        IdentifiedProduct first = new IdentifiedProduct(1);
+        Catalog catalog = new Catalog(first, new IdentifiedProduct(2), first);
+
+        String json = dedupMapper.writeValueAsString(catalog);
+        assertEquals(mapper.writeValueAsString(new Catalog(first, new IdentifiedProduct(2)))
+                .replace("}]}", "},{\"@id\":\"http://example.com/products/1\"}]}"), json);
+        // node ids are tracked per document
+        assertEquals(json, dedupMapper.writeValueAsString(catalog));
+    }
+
+    public static class IgnoringCatalog {
+
+        private final List<Product> products;
+
+        IgnoringCatalog(Product... products) {
+            this.products = Arrays.asList(products);
+        }
+
+        @JsonIgnoreProperties("id")
+        public List<Product> getProducts() {
+            return products;
+        }
+    }
+
+    public static class FilteredCatalog {
+
+        private final List<Product> products;
+
+        FilteredCatalog(Product... products) {
+            this.products = Arrays.asList(products);
+        }
+
+        @JsonFilter("products")
+        public List<Product> getProducts() {
+            return products;
+        }
+    }
+
+    @Test
+    public void testReusesCachedFragmentsForPropertyWithIgnorals() throws IOException {
+        ObjectMapper cachingMapper = createMapper(new FragmentCache(1024 * 1024));
+        IgnoringCatalog catalog = new IgnoringCatalog(new Product(1), new Product(2));
+
+        Product.serializations = 0;
+        String json = cachingMapper.writeValueAsString(catalog);
+        assertEquals(json, cachingMapper.writeValueAsString(catalog));
+        assertEquals(2, Product.serializations);
+        assertFalse(json.contains("\"id\""));
+    }
+
+    @Test
+    public void testWritesRepeatedNodeAsReferenceForFilteredProperty() throws IOException {
+        ObjectMapper dedupMapper = createMapper(new FragmentCache(1024 * 1024), PRODUCT_IDS);
+        dedupMapper.setFilterProvider(new SimpleFilterProvider().addFilter("products", SimpleBeanPropertyFilter
+                .serializeAllExcept("id")));
+        IdentifiedProduct first = new IdentifiedProduct(1);
+
+        String json = dedupMapper.writeValueAsString(new FilteredCatalog(first, new IdentifiedProduct(2), first));
+        assertTrue(json.endsWith("},{\"@id\":\"http://example.com/products/1\"}]}"));
+        assertFalse(json.contains("\"id\""));
+    }
+
+    public static class Shelf implements CacheableFragment {
+
+        private final Product product;
+
+        Shelf(Product product) {
+            this.product = product;
+        }
+
+        public Product getProduct() {
+            return product;
+        }
+
+        @Override
+        public Object getFragmentId() {
+            return "shelf";
+        }
+
+        @Override
+        public Object getFragmentVersion() {
+            return 0;
+        }
+    }
+
+    public static class Assortment {
+
+        private final List<Object> items;
+
+        Assortment(Object... items) {
+            this.items = Arrays.asList(items);
+        }
+
+        public List<Object> getItems() {
+            return items;
+        }
+    }
 
+    @Test
+    public void testCachedFragmentDoesNotReferenceNodesOutsideOfIt() throws IOException {
+        ObjectMapper dedupMapper = createMapper(new FragmentCache(1024 * 1024), PRODUCT_IDS);
+        IdentifiedProduct product = new IdentifiedProduct(1);
+        Shelf shelf = new Shelf(product);
+
+        dedupMapper.writeValueAsString(new Assortment(product, shelf));
+        assertEquals(mapper.writeValueAsString(new Assortment(shelf)), dedupMapper.writeValueAsString(new
+                Assortment(shelf)));
+    }
+
+    @Test
+    public void testReferencesNodesOfCachedFragment() throws IOException {
+        ObjectMapper dedupMapper = createMapper(new FragmentCache(1024 * 1024), PRODUCT_IDS);
+        IdentifiedProduct product = new IdentifiedProduct(1);
+        Assortment assortment = new Assortment(new Shelf(product), product);
+
+        String json = dedupMapper.writeValueAsString(assortment);
+        assertTrue(json.endsWith("},{\"@id\":\"http://example.com/products/1\"}]}"));
+        // the fragment of the shelf is reused
+        assertEquals(json, dedupMapper.writeValueAsString(assortment));
+    }
+
+    @Test
+    public void testWritesSparseFieldset() throws IOException {
+        Product.serializations = 0;
+        String json = mapper.writer()
+                .withAttribute(JacksonHydraSerializer.KEY_PROJECTION, new Projection(Arrays.asList("id"),
+                        Projection.UNLIMITED_DEPTH))
+                .writeValueAsString(new Product(1));
+
+        // the term of the omitted name property is not defined
+        assertEquals("{\"@context\":{\"@vocab\":\"http://schema.org/\"," +
+                "\"gr\":\"http://purl.org/goodrelations/v1#\"}," +
+                "\"@type\":\"Product\"," +
+                "\"id\":1}", json);
+        assertEquals(0, Product.serializations);
+    }
+
+    @Test
+    public void testReducesNodesBeyondEmbedDepth() throws IOException {
+        Catalog catalog = new Catalog(new IdentifiedProduct(1), new Product(2));
+        Projection topLevel = new Projection(null, 0);
+
+        Product.serializations = 0;
+        String json = createMapper(null, PRODUCT_IDS).writer()
+                .withAttribute(JacksonHydraSerializer.KEY_PROJECTION, topLevel)
+                .writeValueAsString(catalog);
+        assertEquals("{\"@context\":{\"@vocab\":\"http://schema.org/\"}," +
+                "\"@type\":\"Catalog\"," +
+                "\"products\":[{\"@id\":\"http://example.com/products/1\"},{\"@type\":\"Product\"}]}", json);
+        assertEquals(0, Product.serializations);
+    }
+
+    @Test
+    public void testFailsBeyondNodeBudget() throws IOException {
+        Catalog catalog = new Catalog(new IdentifiedProduct(1), new Product(2));
+        RepresentationBudget budget = RepresentationBudget.UNLIMITED.withMaxNodes(2);
+        try {
+            mapper.writer()
+                    .withAttribute(JacksonHydraSerializer.KEY_BUDGET, budget.newUsage())
+                    .writeValue(new StringWriter(), catalog);
+            fail("node budget not enforced");
+        } catch (RepresentationBudgetExceededException e) {
+            assertEquals(RepresentationBudget.Limit.NODES, e.getLimit());
+            assertEquals(2, e.getMaxValue());
+        }
+    }
+
+    @Test
+    public void testFailsBeyondDepthBudget() throws IOException {
+        Catalog catalog = new Catalog(new Product(1));
+        RepresentationBudget budget = RepresentationBudget.UNLIMITED.withMaxDepth(0);
+        try {
+            mapper.writer()
+                    .withAttribute(JacksonHydraSerializer.KEY_BUDGET, budget.newUsage())
+                    .writeValue(new StringWriter(), catalog);
+            fail("depth budget not enforced");
+        } catch (RepresentationBudgetExceededException e) {
+            assertEquals(RepresentationBudget.Limit.DEPTH, e.getLimit());
+        }
+    }
+
+    @Test
+    public void testChargesCachedFragmentAgainstBudget() throws IOException {
+        ObjectMapper cachingMapper = createMapper(new FragmentCache(1024 * 1024));
+        // three nodes, the product is nested in the shelf fragment at depth 2
+        Assortment assortment = new Assortment(new Shelf(new Product(1)));
+        RepresentationBudget sufficient = RepresentationBudget.UNLIMITED.withMaxNodes(3)
+                .withMaxDepth(2);
+
+        for (int i = 0; i < 2; i++) {
+            // the first write caches the shelf, the second reuses it
+            assertBudgetExceeded(cachingMapper, assortment, sufficient.withMaxNodes(2), RepresentationBudget.Limit
+                    .NODES);
+            assertBudgetExceeded(cachingMapper, assortment, sufficient.withMaxDepth(1), RepresentationBudget.Limit
+                    .DEPTH);
+            cachingMapper.writer()
+                    .withAttribute(JacksonHydraSerializer.KEY_BUDGET, sufficient.newUsage())
+                    .writeValue(new StringWriter(), assortment);
+        }
+    }
+
+    private void assertBudgetExceeded(ObjectMapper objectMapper, Object bean, RepresentationBudget budget,
+                                      RepresentationBudget.Limit limit) throws IOException {
+        try {
+            objectMapper.writer()
+                    .withAttribute(JacksonHydraSerializer.KEY_BUDGET, budget.newUsage())
+                    .writeValue(new StringWriter(), bean);
+            fail(limit + " budget not enforced");
+        } catch (RepresentationBudgetExceededException e) {
+            assertEquals(limit, e.getLimit());
+        }
+    }
 }
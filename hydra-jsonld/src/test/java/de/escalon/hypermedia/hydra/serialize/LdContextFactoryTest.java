@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.hydra.serialize;
+
+import de.escalon.hypermedia.hydra.mapping.ContextProvider;
+import de.escalon.hypermedia.hydra.mapping.Expose;
+import de.escalon.hypermedia.hydra.mapping.Term;
+import de.escalon.hypermedia.hydra.mapping.Vocab;
+import de.escalon.hypermedia.metrics.PhaseRecorder;
+import de.escalon.hypermedia.metrics.PhaseSpan;
+import de.escalon.hypermedia.metrics.RenderingPhase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class LdContextFactoryTest {
+
+    LdContextFactory ldContextFactory = new LdContextFactory();
+
+    enum Availability {
+        IN_STOCK
+    }
+
+    @Vocab("http://example.com/vocab#")
+    @Term(define = "gr", as = "http://purl.org/goodrelations/v1#")
+    public static class Offer {
+
+        public Availability availability = Availability.IN_STOCK;
+
+        @Expose("gr:hasCurrencyValue")
+        public int getPrice() {
+            return 10;
+        }
+    }
+
+    public static class Catalog {
+
+        int contentCalls;
+        private final List<Offer> offers;
+
+        Catalog(Offer... offers) {
+            this.offers = Arrays.asList(offers);
+        }
+
+        public List<Offer> getContent() {
+            contentCalls++;
+            return offers;
+        }
+    }
+
+    public abstract static class CatalogMixin {
+        @ContextProvider
+        public abstract List<Offer> getContent();
+    }
+
+    public abstract static class TypedCatalogMixin {
+        @ContextProvider(itemType = Offer.class)
+        public abstract List<Offer> getContent();
+    }
+
+    static class NoMixinSource implements MixinSource {
+
+        @Override
+        public Class<?> findMixInClassFor(Class<?> clazz) {
+            return null;
+        }
+    }
+
+    @Test
+    public void evaluatesContextProviderOnce() {
+        Catalog catalog = new Catalog(new Offer());
+        LdContext context = ldContextFactory.getTargetContext(new NoMixinSource(), catalog, CatalogMixin.class);
+
+        assertEquals(1, catalog.contentCalls);
+        assertEquals("http://example.com/vocab#", context.vocab);
+        assertEquals("http://purl.org/goodrelations/v1#", context.terms.get("gr"));
+        assertEquals("gr:hasCurrencyValue", context.terms.get("price"));
+        assertEquals("InStock", context.terms.get("IN_STOCK"));
+    }
+
+    @Test
+    public void timesContextOfContextProviderAsPartOfBeanContext() {
+        final List<RenderingPhase> phases = new ArrayList<RenderingPhase>();
+        PhaseRecorder.setInstance(new PhaseRecorder() {
+            @Override
+            public PhaseSpan begin(RenderingPhase phase) {
+                phases.add(phase);
+                return NOOP_SPAN;
+            }
+        });
+        try {
+            ldContextFactory.getTargetContext(new NoMixinSource(), new Catalog(new Offer()), CatalogMixin.class);
+        } finally {
+            PhaseRecorder.setInstance(null);
+        }
+
+        assertEquals(Arrays.asList(RenderingPhase.CONTEXT_COMPUTATION), phases);
+    }
+
+    @Test
+    public void usesDeclaredItemTypeWithoutInvokingContextProvider() {
+        Catalog catalog = new Catalog();
+        LdContext context = ldContextFactory.getTargetContext(new NoMixinSource(), catalog, TypedCatalogMixin
+                .class);
+
+        assertEquals(0, catalog.contentCalls);
+        assertEquals("http://example.com/vocab#", context.vocab);
+        assertEquals("gr:hasCurrencyValue", context.terms.get("price"));
+        assertEquals("@vocab", ((Map) context.terms.get("availability")).get("@type"));
+        assertFalse(context.terms.containsKey("IN_STOCK"));
+    }
+
+    @Test
+    public void fallsBackToSchemaOrgForEmptyContent() {
+        Catalog catalog = new Catalog();
+        assertEquals(LdContextFactory.HTTP_SCHEMA_ORG, ldContextFactory.getVocab(new NoMixinSource(), catalog,
+                CatalogMixin.class));
+        assertEquals(new ArrayList<String>(), new ArrayList<String>(ldContextFactory.getTerms(new NoMixinSource(),
+                catalog, CatalogMixin.class)
+                .keySet()));
+    }
+}
@@ -14,19 +14,54 @@
 package de.escalon.hypermedia.spring.hydra;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import de.escalon.hypermedia.RepresentationBudget;
+import de.escalon.hypermedia.hydra.serialize.FragmentCache;
+import de.escalon.hypermedia.hydra.serialize.JacksonHydraSerializer;
+import de.escalon.hypermedia.hydra.serialize.NodeIdResolver;
+import de.escalon.hypermedia.hydra.serialize.Projection;
 import de.escalon.hypermedia.hydra.serialize.ProxyUnwrapper;
 import de.escalon.hypermedia.spring.HypermediaTypes;
+import de.escalon.hypermedia.spring.MeteredOutputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotWritableException;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.util.TypeUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.lang.reflect.Type;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Created by dschulten on 04.10.2014.
  */
 public class HydraMessageConverter extends MappingJackson2HttpMessageConverter {
 
+    /**
+     * Profile for clients which know the API documentation: resources have data and links only, e.g.
+     * <code>Accept: application/ld+json;profile="urn:de.escalon.hypermedia:profile:lean"</code>.
+     */
+    public static final String LEAN_PROFILE = "urn:de.escalon.hypermedia:profile:lean";
+
+    private final JacksonHydraModule jacksonHydraModule;
+    private String fieldsParameter;
+    private String embedDepthParameter;
+    private RepresentationBudget budget = RepresentationBudget.UNLIMITED;
 
     public HydraMessageConverter() {
         this(null);
@@ -43,9 +78,196 @@ public class HydraMessageConverter extends MappingJackson2HttpMessageConverter {
         // see https://github.com/json-ld/json-ld.org/issues/76
         objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
         objectMapper.registerModules(additionalModules);
-        objectMapper.registerModule(new JacksonHydraModule(proxyUnwrapper));
+        jacksonHydraModule = new JacksonHydraModule(proxyUnwrapper);
+        objectMapper.registerModule(jacksonHydraModule);
         this.setObjectMapper(objectMapper);
         this.setSupportedMediaTypes(
                 Arrays.asList(HypermediaTypes.APPLICATION_JSONLD));
     }
+
+    /**
+     * Sets cache for the serialized json-ld of {@link de.escalon.hypermedia.hydra.serialize.CacheableFragment}
+     * beans, e.g. members of large collections. Must be set before the converter writes its first response.
+     *
+     * @param fragmentCache
+     *         to use, may be null to serialize every bean
+     */
+    public void setFragmentCache(FragmentCache fragmentCache) {
+        jacksonHydraModule.setFragmentCache(fragmentCache);
+    }
+
+    /**
+     * Sets resolver for node ids, e.g. a {@link SelfLinkNodeIdResolver}. Resources which occur repeatedly in a
+     * response, such as the same product in several offers, are then written in full only once and referenced by
+     * <code>&#064;id</code> elsewhere. Must be set before the converter writes its first response.
+     *
+     * @param nodeIdResolver
+     *         to use, may be null to write every occurrence of a resource in full
+     */
+    public void setNodeIdResolver(NodeIdResolver nodeIdResolver) {
+        jacksonHydraModule.setNodeIdResolver(nodeIdResolver);
+    }
+
+    /**
+     * Sets the request parameter which selects a sparse fieldset, e.g. <code>fields</code> for
+     * <code>?fields=name,offers</code>. Only the listed properties and link relations are written, besides
+     * <code>&#064;id</code>, <code>&#064;type</code> and <code>&#064;context</code>, whose terms are reduced to the
+     * written properties. Operations of a resource are selected by <code>hydra:operation</code>, related
+     * collections by <code>hydra:collection</code>.
+     *
+     * @param fieldsParameter
+     *         name of the request parameter, null to ignore sparse fieldsets (default)
+     */
+    public void setFieldsParameter(String fieldsParameter) {
+        this.fieldsParameter = fieldsParameter;
+    }
+
+    /**
+     * Sets the request parameter which selects the maximum embedding depth, e.g. <code>embed</code> for
+     * <code>?embed=1</code>. Nested resources beyond that depth are written as node reference
+     * <code>{"&#064;id": ...}</code>, provided a node id resolver such as {@link SelfLinkNodeIdResolver} is set,
+     * otherwise just with their <code>&#064;type</code>. Skipped nodes are never traversed.
+     *
+     * @param embedDepthParameter
+     *         name of the request parameter, null to ignore embedding depth (default)
+     * @see #setNodeIdResolver(NodeIdResolver)
+     */
+    public void setEmbedDepthParameter(String embedDepthParameter) {
+        this.embedDepthParameter = embedDepthParameter;
+    }
+
+    /**
+     * Sets limits for the depth, number of nodes and size of every json-ld response. Responses which exceed them
+     * fail with a {@link de.escalon.hypermedia.RepresentationBudgetExceededException}.
+     *
+     * @param budget
+     *         to enforce, {@link RepresentationBudget#UNLIMITED} by default
+     */
+    public void setBudget(RepresentationBudget budget) {
+        Assert.notNull(budget, "budget must not be null");
+        this.budget = budget;
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException,
+            HttpMessageNotWritableException {
+        HttpOutputMessage message = MeteredOutputMessage.wrap(outputMessage);
+        try {
+            Projection projection = null;
+            boolean lean = false;
+            if (!(object instanceof MappingJacksonValue)) {
+                projection = getRequestedProjection();
+                lean = isLeanProfile(message.getHeaders()
+                        .getContentType());
+            }
+            if (projection == null && !lean && budget.isUnlimited()) {
+                super.writeInternal(object, type, message);
+            } else {
+                writeWithAttributes(object, type, projection, lean, message);
+            }
+        } finally {
+            MeteredOutputMessage.record(message, this, object);
+        }
+    }
+
+    /**
+     * Gets the projection requested by the parameters of the current request.
+     *
+     * @return projection or null if the request asks for the full representation
+     */
+    private Projection getRequestedProjection() {
+        if (fieldsParameter == null && embedDepthParameter == null) {
+            return null;
+        }
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (!(requestAttributes instanceof ServletRequestAttributes)) {
+            return null;
+        }
+        HttpServletRequest request = ((ServletRequestAttributes) requestAttributes).getRequest();
+        List<String> fields = null;
+        if (fieldsParameter != null) {
+            String fieldsValue = request.getParameter(fieldsParameter);
+            if (fieldsValue != null) {
+                fields = Arrays.asList(StringUtils.tokenizeToStringArray(fieldsValue, ","));
+            }
+        }
+        int maxDepth = Projection.UNLIMITED_DEPTH;
+        if (embedDepthParameter != null) {
+            String depthValue = request.getParameter(embedDepthParameter);
+            if (depthValue != null && depthValue.matches("\\d{1,9}")) {
+                maxDepth = Integer.parseInt(depthValue);
+            }
+        }
+        if (fields == null && maxDepth == Projection.UNLIMITED_DEPTH) {
+            return null;
+        }
+        return new Projection(fields, maxDepth);
+    }
+
+    /**
+     * Determines if the negotiated media type asks for the {@link #LEAN_PROFILE}.
+     */
+    private static boolean isLeanProfile(MediaType contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String profile = contentType.getParameter("profile");
+        if (profile == null) {
+            return false;
+        }
+        if (profile.length() > 1 && profile.startsWith("\"") && profile.endsWith("\"")) {
+            profile = profile.substring(1, profile.length() - 1);
+        }
+        // profile may be a space separated list
+        return Arrays.asList(profile.split(" "))
+                .contains(LEAN_PROFILE);
+    }
+
+    /**
+     * Writes the given object like the superclass does, with projection, profile and budget usage as attributes of
+     * the serialization.
+     */
+    private void writeWithAttributes(Object object, Type type, Projection projection, boolean lean,
+                                     HttpOutputMessage outputMessage) throws IOException {
+        JsonEncoding encoding = getJsonEncoding(outputMessage.getHeaders()
+                .getContentType());
+        JsonGenerator generator = getObjectMapper().getFactory()
+                .createGenerator(budget.limit(outputMessage.getBody()), encoding);
+        try {
+            writePrefix(generator, object);
+            Object value = object;
+            ObjectWriter objectWriter;
+            if (object instanceof MappingJacksonValue) {
+                MappingJacksonValue container = (MappingJacksonValue) object;
+                value = container.getValue();
+                objectWriter = container.getSerializationView() != null ? getObjectMapper().writerWithView
+                        (container.getSerializationView()) : getObjectMapper().writer();
+                if (container.getFilters() != null) {
+                    objectWriter = objectWriter.with(container.getFilters());
+                }
+            } else {
+                objectWriter = getObjectMapper().writer();
+            }
+            if (!budget.isUnlimited()) {
+                objectWriter = objectWriter.withAttribute(JacksonHydraSerializer.KEY_BUDGET, budget.newUsage());
+            }
+            if (projection != null) {
+                objectWriter = objectWriter.withAttribute(JacksonHydraSerializer.KEY_PROJECTION, projection);
+            }
+            if (lean) {
+                objectWriter = objectWriter.withAttribute(JacksonHydraSerializer.KEY_PROFILE, LEAN_PROFILE);
+            }
+            if (type != null && value != null && TypeUtils.isAssignable(type, value.getClass())) {
+                JavaType javaType = getJavaType(type, null);
+                if (javaType.isContainerType()) {
+                    objectWriter = objectWriter.forType(javaType);
+                }
+            }
+            objectWriter.writeValue(generator, value);
+            writeSuffix(generator, object);
+            generator.flush();
+        } catch (JsonProcessingException ex) {
+            throw new HttpMessageNotWritableException("Could not write JSON-LD: " + ex.getOriginalMessage(), ex);
+        }
+    }
 }
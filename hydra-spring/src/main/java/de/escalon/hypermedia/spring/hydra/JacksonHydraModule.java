@@ -21,7 +21,9 @@ import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
 import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
 import de.escalon.hypermedia.affordance.TypedResource;
+import de.escalon.hypermedia.hydra.serialize.FragmentCache;
 import de.escalon.hypermedia.hydra.serialize.JacksonHydraSerializer;
+import de.escalon.hypermedia.hydra.serialize.NodeIdResolver;
 import de.escalon.hypermedia.hydra.serialize.ProxyUnwrapper;
 import org.springframework.hateoas.PagedResources;
 import org.springframework.hateoas.Resource;
@@ -35,6 +37,8 @@ import org.springframework.hateoas.Resources;
 public class JacksonHydraModule extends SimpleModule {
 
     private ProxyUnwrapper proxyUnwrapper;
+    private FragmentCache fragmentCache;
+    private NodeIdResolver nodeIdResolver;
 
     public JacksonHydraModule() {
         this(null);
@@ -53,6 +57,29 @@ public class JacksonHydraModule extends SimpleModule {
 
     }
 
+    /**
+     * Sets cache for the serialized json-ld of {@link de.escalon.hypermedia.hydra.serialize.CacheableFragment}
+     * beans. Must be set before the first bean is serialized.
+     *
+     * @param fragmentCache
+     *         to use, may be null to serialize every bean
+     */
+    public void setFragmentCache(FragmentCache fragmentCache) {
+        this.fragmentCache = fragmentCache;
+    }
+
+    /**
+     * Sets resolver for node ids, so that nodes which occur repeatedly in a document are written in full only once
+     * and referenced by <code>&#064;id</code> elsewhere. Must be set before the first bean is serialized.
+     *
+     * @param nodeIdResolver
+     *         to use, may be null to write every occurrence of a node in full
+     * @see SelfLinkNodeIdResolver
+     */
+    public void setNodeIdResolver(NodeIdResolver nodeIdResolver) {
+        this.nodeIdResolver = nodeIdResolver;
+    }
+
     public void setupModule(SetupContext context) {
         super.setupModule(context);
 
@@ -66,6 +93,8 @@ public class JacksonHydraModule extends SimpleModule {
                 if (serializer instanceof BeanSerializerBase) {
                     JacksonHydraSerializer jacksonHydraSerializer = new JacksonHydraSerializer(
                             (BeanSerializerBase) serializer, proxyUnwrapper);
+                    jacksonHydraSerializer.setFragmentCache(fragmentCache);
+                    jacksonHydraSerializer.setNodeIdResolver(nodeIdResolver);
                     return jacksonHydraSerializer;
                 } else {
                     return serializer;
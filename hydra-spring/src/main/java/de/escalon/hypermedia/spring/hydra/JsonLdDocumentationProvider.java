@@ -1,24 +1,43 @@
 package de.escalon.hypermedia.spring.hydra;
 
 import de.escalon.hypermedia.AnnotationUtils;
+import de.escalon.hypermedia.BeanMetadata;
 import de.escalon.hypermedia.affordance.ActionInputParameter;
 import de.escalon.hypermedia.hydra.mapping.Expose;
 import de.escalon.hypermedia.hydra.serialize.LdContextFactory;
 import de.escalon.hypermedia.hydra.serialize.MixinSource;
+import de.escalon.hypermedia.metrics.HypermediaMetrics;
 import de.escalon.hypermedia.spring.DocumentationProvider;
 import de.escalon.hypermedia.spring.SpringActionInputParameter;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.Nullable;
 
+import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
+ * Documentation provider which resolves documentation urls from the vocab and terms of the documented bean. Since
+ * vocab and terms are defined by annotations, urls are resolved once per bean class and name. Only curies whose
+ * prefix might be defined by the value of an enum property of the bean are resolved against the bean itself, as the
+ * terms for enum properties depend on their current value.
  * Created by Dietrich on 05.04.2015.
  */
 public class JsonLdDocumentationProvider implements DocumentationProvider {
 
+    /** cached in place of a null url */
+    private static final String NO_URL = new String("no url");
+    /** cached in place of urls which must be resolved against the current bean */
+    private static final String ENUM_DEPENDENT = new String("enum dependent");
+
     private LdContextFactory ldContextFactory = new LdContextFactory();
 
     private MixinSource mixinSource = new MixinSource() {
@@ -28,78 +47,167 @@ public class JsonLdDocumentationProvider implements DocumentationProvider {
         }
     };
 
+    private final ConcurrentMap<Class<?>, DocumentedTerms> beanTerms = new ConcurrentHashMap<Class<?>,
+            DocumentedTerms>();
+    private final ConcurrentMap<Class<?>, DocumentedTerms> declaringClassTerms = new ConcurrentHashMap<Class<?>,
+            DocumentedTerms>();
+    private final DocumentedTerms noContentTerms = new DocumentedTerms(LdContextFactory.HTTP_SCHEMA_ORG,
+            Collections.<String, Object>emptyMap(), Collections.<String>emptySet(), false);
+    private final ConcurrentMap<AnnotatedElement, String> exposedNames = new ConcurrentHashMap<AnnotatedElement,
+            String>();
+
+    /**
+     * Vocab and terms of a bean class, together with the urls resolved from them.
+     */
+    private static final class DocumentedTerms {
+
+        private final String vocab;
+        private final Map<String, Object> terms;
+        /** curie prefixes which might be defined by the value of an enum property */
+        private final Set<String> enumDependentPrefixes;
+        /** true if enum properties have no specific enum type, so that any prefix might be an enum value */
+        private final boolean allPrefixesEnumDependent;
+        private final ConcurrentMap<String, String> urls = new ConcurrentHashMap<String, String>();
+
+        DocumentedTerms(String vocab, Map<String, Object> terms, Set<String> enumDependentPrefixes, boolean
+                allPrefixesEnumDependent) {
+            this.vocab = vocab;
+            this.terms = terms;
+            this.enumDependentPrefixes = enumDependentPrefixes;
+            this.allPrefixesEnumDependent = allPrefixesEnumDependent;
+        }
+
+        private boolean isEnumDependent(String prefix) {
+            return allPrefixesEnumDependent || enumDependentPrefixes.contains(prefix);
+        }
+    }
+
     @Override
     public String getDocumentationUrl(ActionInputParameter parameter, Object content) {
         final Expose expose = parameter.getAnnotation(Expose.class);
+        final String name = expose != null ? expose.value() : parameter.getParameterName();
         String ret;
         if (content == null) {
             if (parameter instanceof SpringActionInputParameter) {
                 Class<?> clazz = ((SpringActionInputParameter) parameter).getDeclaringClass();
-                ret = getExposedUrl(parameter.getParameterName(), vocabFromClass(clazz), termsFromClazz(clazz), expose);
+                ret = getUrl(name, getDeclaringClassTerms(clazz), null);
             } else {
                 ret = null;
             }
         } else {
-            ret = getExposedUrl(parameter.getParameterName(), vocabFromBean(content), termsFromBean(content), expose);
+            ret = getUrl(name, content);
         }
         return ret;
     }
 
     @Override
     public String getDocumentationUrl(Field field, Object content) {
-        final Expose expose = AnnotationUtils.findAnnotation(field, Expose.class);
-        // TODO can we support Mixins from here?
+        String name = exposedNames.get(field);
+        if (name == null) {
+            final Expose expose = AnnotationUtils.findAnnotation(field, Expose.class);
+            // TODO can we support Mixins from here?
 //        final Class<?> mixin = provider.getConfig()
 //                .findMixInClassFor(bean.getClass());
 //        final Expose mixinExpose = findAnnotation(mixin, Expose.class);
-        return getExposedUrl(field.getName(), vocabFromBean(content), termsFromBean(content), expose);
+            name = expose != null ? expose.value() : field.getName();
+            exposedNames.putIfAbsent(field, name);
+        }
+        return getUrl(name, content);
     }
 
     @Override
     public String getDocumentationUrl(Method method, Object content) {
-        final Expose expose = AnnotationUtils.findAnnotation(method, Expose.class);
-        // TODO can we support Mixins from here?
+        String name = exposedNames.get(method);
+        if (name == null) {
+            final Expose expose = AnnotationUtils.findAnnotation(method, Expose.class);
+            // TODO can we support Mixins from here?
 //        final Class<?> mixin = provider.getConfig()
 //                .findMixInClassFor(bean.getClass());
 //        final Expose mixinExpose = findAnnotation(mixin, Expose.class);
-        String methodName = method.getName();
-        String propertyName;
-        if (methodName.startsWith("get")) {
-            propertyName = StringUtils.uncapitalize(StringUtils.removeStart(methodName, "get"));
-        } else {
-            propertyName = StringUtils.uncapitalize(StringUtils.removeStart(methodName, "is"));
+            if (expose != null) {
+                name = expose.value();
+            } else {
+                String methodName = method.getName();
+                if (methodName.startsWith("get")) {
+                    name = StringUtils.uncapitalize(StringUtils.removeStart(methodName, "get"));
+                } else {
+                    name = StringUtils.uncapitalize(StringUtils.removeStart(methodName, "is"));
+                }
+            }
+            exposedNames.putIfAbsent(method, name);
         }
-        return getExposedUrl(propertyName, vocabFromBean(content), termsFromBean(content), expose);
+        return getUrl(name, content);
     }
 
     @Override
     public String getDocumentationUrl(Class clazz, Object content) {
-        final Expose expose = AnnotationUtils.findAnnotation(clazz, Expose.class);
-        // TODO can we support Mixins from here?
+        String name = exposedNames.get(clazz);
+        if (name == null) {
+            final Expose expose = AnnotationUtils.findAnnotation(clazz, Expose.class);
+            // TODO can we support Mixins from here?
 //        final Class<?> mixin = provider.getConfig()
 //                .findMixInClassFor(bean.getClass());
 //        final Expose mixinExpose = findAnnotation(mixin, Expose.class);
-        return getExposedUrl(clazz.getSimpleName(), vocabFromBean(content), termsFromBean(content), expose);
+            name = expose != null ? expose.value() : clazz.getSimpleName();
+            exposedNames.putIfAbsent(clazz, name);
+        }
+        return getUrl(name, content);
     }
 
-    @Nullable
-    private String getExposedUrl(String plainName, String vocab, Map<String, Object> terms, Expose expose) {
-        final String name;
-        if (expose != null) {
-            name = expose.value(); // expose is better than Java name
+    @Override
+    public String getDocumentationUrl(String name, Object content) {
+        String ret;
+        if (content == null) {
+            ret = null;
         } else {
-            name = plainName;
+            ret = getUrl(name, content);
+        }
+        return ret;
+    }
+
+    private String getUrl(String name, Object content) {
+        DocumentedTerms documentedTerms = content == null ? noContentTerms : getBeanTerms(content.getClass());
+        return getUrl(name, documentedTerms, content);
+    }
+
+    /**
+     * Gets url for exposed name from the cached urls of the documented terms.
+     *
+     * @param name
+     *         exposed name
+     * @param documentedTerms
+     *         of the content
+     * @param content
+     *         to resolve enum dependent curies, may be null if documentedTerms has no enum dependent prefixes
+     * @return url or null
+     */
+    @Nullable
+    private String getUrl(String name, DocumentedTerms documentedTerms, Object content) {
+        String url = documentedTerms.urls.get(name);
+        if (url == null) {
+            url = resolveUrl(name, documentedTerms);
+            documentedTerms.urls.putIfAbsent(name, url);
+        }
+        if (url == ENUM_DEPENDENT) {
+            return resolveCurie(termsFromBean(content), name);
         }
+        return url == NO_URL ? null : url;
+    }
 
+    private String resolveUrl(String name, DocumentedTerms documentedTerms) {
         String url;
         if (name.matches("http(s)?://.+")) {
             url = name;
         } else if (name.contains(":")) {
-            url = resolveCurie(terms, name);
+            String prefix = name.substring(0, name.indexOf(':'));
+            if (documentedTerms.isEnumDependent(prefix)) {
+                return ENUM_DEPENDENT;
+            }
+            url = resolveCurie(documentedTerms.terms, name);
         } else {
-            url = makeVocabUrl(vocab, name);
+            url = makeVocabUrl(documentedTerms.vocab, name);
         }
-        return url;
+        return url == null ? NO_URL : url;
     }
 
     @Nullable
@@ -120,17 +228,6 @@ public class JsonLdDocumentationProvider implements DocumentationProvider {
         return url;
     }
 
-    @Override
-    public String getDocumentationUrl(String name, Object content) {
-        String ret;
-        if (content == null) {
-            ret = null;
-        } else {
-            ret = getExposedUrl(name, vocabFromBean(content), termsFromBean(content), null);
-        }
-        return ret;
-    }
-
     @Nullable
     private String makeVocabUrl(String vocab, String name) {
         String url;
@@ -142,17 +239,84 @@ public class JsonLdDocumentationProvider implements DocumentationProvider {
         return url;
     }
 
-    @Nullable
-    private String vocabFromBean(Object content) {
-        return ldContextFactory.getVocab(mixinSource, content, null);
-    }
-
     private Map<String, Object> termsFromBean(Object content) {
         return ldContextFactory.getTerms(mixinSource, content, null);
     }
 
-    private Map<String, Object> termsFromClazz(Class<?> clazz) {
-        return ldContextFactory.termsFromClass(clazz);
+    /**
+     * Gets vocab and terms which apply to beans of the given class, except for the terms defined by enum properties.
+     *
+     * @param beanClass
+     *         of documented bean
+     * @return documented terms
+     */
+    private DocumentedTerms getBeanTerms(Class<?> beanClass) {
+        DocumentedTerms documentedTerms = beanTerms.get(beanClass);
+        HypermediaMetrics metrics = HypermediaMetrics.getInstance();
+        if (metrics.isEnabled()) {
+            metrics.recordCacheAccess("JsonLdDocumentationProvider", documentedTerms != null);
+        }
+        if (documentedTerms == null) {
+            Map<String, Object> terms = new LinkedHashMap<String, Object>(ldContextFactory.termsFromClass(beanClass));
+            Set<String> enumDependentPrefixes = new HashSet<String>();
+            boolean allPrefixesEnumDependent = false;
+            for (Field field : beanClass.getDeclaredFields()) {
+                if (Modifier.isPublic(field.getModifiers())) {
+                    allPrefixesEnumDependent |= collectTerm(terms, enumDependentPrefixes, field.getName(), field
+                            .getType(), field.getAnnotation(Expose.class));
+                }
+            }
+            for (Map.Entry<String, Method> readMethod : BeanMetadata.forClass(beanClass)
+                    .getReadMethods()
+                    .entrySet()) {
+                Method method = readMethod.getValue();
+                allPrefixesEnumDependent |= collectTerm(terms, enumDependentPrefixes, readMethod.getKey(), method
+                        .getReturnType(), method.getAnnotation(Expose.class));
+            }
+            documentedTerms = new DocumentedTerms(vocabFromClass(beanClass), terms, enumDependentPrefixes,
+                    allPrefixesEnumDependent);
+            DocumentedTerms existing = beanTerms.putIfAbsent(beanClass, documentedTerms);
+            if (existing != null) {
+                documentedTerms = existing;
+            }
+        }
+        return documentedTerms;
+    }
+
+    /**
+     * Collects the term for a bean property as in {@link LdContextFactory#getTerms}. Properties of enum type define
+     * terms for the property name and the current value, these are collected as enum dependent prefixes.
+     *
+     * @return true if the enum values of the property cannot be determined from its type
+     */
+    private static boolean collectTerm(Map<String, Object> terms, Set<String> enumDependentPrefixes, String name,
+                                       Class<?> type, Expose expose) {
+        if (Enum.class.isAssignableFrom(type)) {
+            enumDependentPrefixes.add(name);
+            Object[] enumConstants = type.getEnumConstants();
+            if (enumConstants == null) {
+                return true;
+            }
+            for (Object enumConstant : enumConstants) {
+                enumDependentPrefixes.add(enumConstant.toString());
+            }
+        } else if (expose != null) {
+            terms.put(name, expose.value());
+        }
+        return false;
+    }
+
+    private DocumentedTerms getDeclaringClassTerms(Class<?> clazz) {
+        DocumentedTerms documentedTerms = declaringClassTerms.get(clazz);
+        if (documentedTerms == null) {
+            documentedTerms = new DocumentedTerms(vocabFromClass(clazz), ldContextFactory.termsFromClass(clazz),
+                    Collections.<String>emptySet(), false);
+            DocumentedTerms existing = declaringClassTerms.putIfAbsent(clazz, documentedTerms);
+            if (existing != null) {
+                documentedTerms = existing;
+            }
+        }
+        return documentedTerms;
     }
 
     private String vocabFromClass(Class<?> clazz) {
@@ -18,15 +18,22 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import de.escalon.hypermedia.BeanMetadata;
 import de.escalon.hypermedia.PropertyUtils;
 import de.escalon.hypermedia.action.Cardinality;
 import de.escalon.hypermedia.action.Input;
 import de.escalon.hypermedia.affordance.*;
 import de.escalon.hypermedia.hydra.mapping.Expose;
+import de.escalon.hypermedia.hydra.serialize.EnumTerms;
 import de.escalon.hypermedia.hydra.serialize.JacksonHydraSerializer;
 import de.escalon.hypermedia.hydra.serialize.JsonLdKeywords;
 import de.escalon.hypermedia.hydra.serialize.LdContext;
 import de.escalon.hypermedia.hydra.serialize.LdContextFactory;
+import de.escalon.hypermedia.hydra.serialize.Projection;
+import de.escalon.hypermedia.metrics.PhaseRecorder;
+import de.escalon.hypermedia.metrics.PhaseSpan;
+import de.escalon.hypermedia.metrics.RenderingPhase;
+import de.escalon.hypermedia.spring.HypermediaTypes;
 import de.escalon.hypermedia.spring.SpringActionInputParameter;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.Nullable;
@@ -38,9 +45,7 @@ import org.springframework.hateoas.IanaRels;
 import org.springframework.hateoas.Link;
 import org.springframework.util.Assert;
 
-import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
-import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
@@ -67,14 +72,39 @@ public class LinkListSerializer extends StdSerializer<List<Link>> {
     @Override
     public void serialize(List<Link> links, JsonGenerator jgen,
                           SerializerProvider serializerProvider) throws IOException {
-
+        PhaseSpan span = PhaseRecorder.getInstance()
+                .begin(RenderingPhase.LINK_SERIALIZATION);
         try {
             Collection<Link> simpleLinks = new ArrayList<Link>();
             Collection<Affordance> affordances = new ArrayList<Affordance>();
             Collection<Link> templatedLinks = new ArrayList<Link>();
             Collection<Affordance> collectionAffordances = new ArrayList<Affordance>();
             Link selfRel = null;
+            // a sparse projection selects link relations like properties, the self link is the @id
+            Projection projection = (Projection) serializerProvider.getAttribute(JacksonHydraSerializer
+                    .KEY_PROJECTION);
+            if (projection != null && !projection.isSparse()) {
+                projection = null;
+            }
+            // the lean profile has affordances as plain links and IriTemplates, without action descriptors
+            boolean lean = HydraMessageConverter.LEAN_PROFILE.equals(serializerProvider.getAttribute
+                    (JacksonHydraSerializer.KEY_PROFILE));
             for (Link link : links) {
+                if ("self".equals(link.getRel())) {
+                    selfRel = link;
+                }
+                if (projection != null && !Link.REL_SELF.equals(link.getRel()) && !projection.includes(link
+                        .getRel()) && !projection.includes("hydra:collection")) {
+                    continue;
+                }
+                if (lean) {
+                    if (link.isTemplated()) {
+                        templatedLinks.add(link);
+                    } else {
+                        simpleLinks.add(link);
+                    }
+                    continue;
+                }
                 if (link instanceof Affordance) {
                     final Affordance affordance = (Affordance) link;
                     final List<ActionDescriptor> actionDescriptors = affordance.getActionDescriptors();
@@ -111,12 +141,22 @@ public class LinkListSerializer extends StdSerializer<List<Link>> {
                 } else {
                     simpleLinks.add(link);
                 }
-                if ("self".equals(link.getRel())) {
-                    selfRel = link;
+            }
+            if (projection != null) {
+                if (!projection.includes("hydra:collection")) {
+                    retainProjected(collectionAffordances, projection);
                 }
+                retainProjected(templatedLinks, projection);
+                retainProjected(affordances, projection);
+                retainProjected(simpleLinks, projection);
             }
 
             for (Link templatedLink : templatedLinks) {
+                if (lean) {
+                    writeLeanIriTemplate(templatedLink.getRel(), templatedLink.getHref(), templatedLink
+                            .getVariableNames(), jgen);
+                    continue;
+                }
                 // templated affordance might turn out to have all variables satisfied or
                 // only optional unsatisfied variables
                 ActionDescriptor actionDescriptorForHttpGet = getActionDescriptorForHttpGet(templatedLink);
@@ -196,6 +236,10 @@ public class LinkListSerializer extends StdSerializer<List<Link>> {
                 final String rel = affordance.getRel();
                 List<ActionDescriptor> actionDescriptors = affordance.getActionDescriptors();
 
+                if (projection != null && Link.REL_SELF.equals(rel) && !projection.includes("hydra:operation")) {
+                    jgen.writeStringField(JsonLdKeywords.AT_ID, affordance.getHref());
+                    continue;
+                }
                 if (!actionDescriptors.isEmpty()) {
                     if (!Link.REL_SELF.equals(rel)) {
                         jgen.writeObjectFieldStart(rel); // begin rel
@@ -230,6 +274,21 @@ public class LinkListSerializer extends StdSerializer<List<Link>> {
         } catch (IntrospectionException e) {
             throw new RuntimeException(e);
         }
+        Object bean = jgen.getCurrentValue();
+        span.finish(bean == null ? null : bean.getClass(), HypermediaTypes.APPLICATION_JSONLD_STR, links.size());
+    }
+
+    /**
+     * Removes links whose relation is not selected by the projection, except for the self link.
+     */
+    private static void retainProjected(Collection<? extends Link> links, Projection projection) {
+        for (Iterator<? extends Link> iterator = links.iterator(); iterator.hasNext(); ) {
+            String rel = iterator.next()
+                    .getRel();
+            if (!Link.REL_SELF.equals(rel) && !projection.includes(rel)) {
+                iterator.remove();
+            }
+        }
     }
 
     private void writeIriTemplate(String rel, String href, List<String> variableNames, ActionDescriptor
@@ -246,6 +305,28 @@ public class LinkListSerializer extends StdSerializer<List<Link>> {
         jgen.writeEndObject();
     }
 
+    /**
+     * Writes an IriTemplate whose mapping only names the variables, the client is expected to know their meaning
+     * from the API documentation.
+     */
+    private void writeLeanIriTemplate(String rel, String href, List<String> variableNames, JsonGenerator jgen)
+            throws IOException {
+        jgen.writeObjectFieldStart(rel);
+
+        jgen.writeStringField("@type", "hydra:IriTemplate");
+        jgen.writeStringField("hydra:template", href);
+        jgen.writeArrayFieldStart("hydra:mapping");
+        for (String variableName : variableNames) {
+            jgen.writeStartObject();
+            jgen.writeStringField("@type", "hydra:IriTemplateMapping");
+            jgen.writeStringField("hydra:variable", variableName);
+            jgen.writeEndObject();
+        }
+        jgen.writeEndArray();
+
+        jgen.writeEndObject();
+    }
+
     private void writeCollectionHolder(String fieldName, TypedResource collectionHolder, JsonGenerator jgen) throws
             IOException {
         jgen.writeObjectFieldStart(fieldName);
@@ -303,8 +384,12 @@ public class LinkListSerializer extends StdSerializer<List<Link>> {
 
                 jgen.writeArrayFieldStart("hydra:supportedProperty"); // begin hydra:supportedProperty
                 // TODO check need for allRootParameters and requestBodyInputParameter here:
+                PhaseSpan span = PhaseRecorder.getInstance()
+                        .begin(RenderingPhase.FORM_DESCRIPTION);
                 recurseSupportedProperties(jgen, currentVocab, clazz, actionDescriptor,
                         requestBodyInputParameter, requestBodyInputParameter.getValue(), "");
+                span.finish(clazz, HypermediaTypes.APPLICATION_JSONLD_STR, jgen.getOutputContext()
+                        .getEntryCount());
                 jgen.writeEndArray(); // end hydra:supportedProperty
 
                 jgen.writeEndObject(); // end hydra:expects
@@ -339,12 +424,12 @@ public class LinkListSerializer extends StdSerializer<List<Link>> {
 
         // collect supported properties from ctor
 
-        Constructor[] constructors = valueType.getConstructors();
+        BeanMetadata beanMetadata = BeanMetadata.forClass(valueType);
         // find default ctor
-        Constructor constructor = PropertyUtils.findDefaultCtor(constructors);
+        Constructor constructor = beanMetadata.getDefaultConstructor();
         // find ctor with JsonCreator ann
         if (constructor == null) {
-            constructor = PropertyUtils.findJsonCreator(constructors, JsonCreator.class);
+            constructor = beanMetadata.getCreatorConstructor(JsonCreator.class);
         }
         if (constructor == null) {
             // TODO this can be a generic collection, find a way to describe it
@@ -387,11 +472,10 @@ public class LinkListSerializer extends StdSerializer<List<Link>> {
         // collect supported properties from setters
 
         // TODO support Option provider by other method args?
-        final BeanInfo beanInfo = Introspector.getBeanInfo(valueType);
-        final PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
         // TODO collection and map
         // TODO distinguish which properties should be printed as supported - now just setters
-        for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
+        for (PropertyDescriptor propertyDescriptor : beanMetadata.getPropertyDescriptors()
+                .values()) {
             final Method writeMethod = propertyDescriptor.getWriteMethod();
             if (writeMethod == null) {
                 continue;
@@ -665,7 +749,9 @@ public class LinkListSerializer extends StdSerializer<List<Link>> {
         } else if (Boolean.class.isAssignableFrom(valueType)) {
             jgen.writeBoolean((Boolean) possibleValue);
         } else if (Enum.class.isAssignableFrom(valueType)) {
-            jgen.writeString(((Enum) possibleValue).name());
+            Enum<?> enumValue = (Enum<?>) possibleValue;
+            jgen.writeString(EnumTerms.forValue(enumValue)
+                    .getJsonValue(enumValue));
         } else {
             jgen.writeString(possibleValue.toString());
         }
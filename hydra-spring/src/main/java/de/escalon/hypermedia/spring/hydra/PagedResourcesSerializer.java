@@ -44,13 +44,11 @@ public class PagedResourcesSerializer extends StdSerializer<PagedResources> {
     }
 
     private final LdContextFactory ldContextFactory;
-    private final ProxyUnwrapper proxyUnwrapper;
 
     @SuppressWarnings("unused")
     public PagedResourcesSerializer(ProxyUnwrapper proxyUnwrapper) {
         super(PagedResources.class);
         this.ldContextFactory = new LdContextFactory();
-        this.proxyUnwrapper = proxyUnwrapper;
         ldContextFactory.setProxyUnwrapper(proxyUnwrapper);
     }
 
@@ -130,15 +128,13 @@ public class PagedResourcesSerializer extends StdSerializer<PagedResources> {
                                     SerializerProvider serializerProvider, Deque<LdContext> contextStack) throws
             IOException {
         // TODO: this code is duplicated from JacksonHydraSerializer, see there for considerations
-        if (proxyUnwrapper != null) {
-            bean = proxyUnwrapper.unwrapProxy(bean);
-        }
+        bean = ldContextFactory.unwrapProxy(bean);
         MixinSource mixinSource = new JacksonMixinSource(serializerProvider.getConfig());
         final Class<?> mixInClass = mixinSource.findMixInClassFor(bean.getClass());
 
         final LdContext parentContext = contextStack.peek();
-        LdContext currentContext = new LdContext(parentContext, ldContextFactory.getVocab(mixinSource, bean,
-                mixInClass), ldContextFactory.getTerms(mixinSource, bean, mixInClass));
+        LdContext contextOfBean = ldContextFactory.getTargetContext(mixinSource, bean, mixInClass);
+        LdContext currentContext = new LdContext(parentContext, contextOfBean.vocab, contextOfBean.terms);
         contextStack.push(currentContext);
         // check if we need to write a context for the current bean at all
         // If it is in the same vocab: no context
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring.hydra;
+
+import de.escalon.hypermedia.hydra.serialize.NodeIdResolver;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.ResourceSupport;
+
+/**
+ * Identifies resources by their self link, which the {@link LinkListSerializer} renders as <code>&#064;id</code>.
+ * Resources without self link or with a templated self link have no node id.
+ */
+public class SelfLinkNodeIdResolver implements NodeIdResolver {
+
+    @Override
+    public String getNodeId(Object bean) {
+        if (!(bean instanceof ResourceSupport)) {
+            return null;
+        }
+        Link selfLink = ((ResourceSupport) bean).getId();
+        return selfLink == null || selfLink.isTemplated() ? null : selfLink.getHref();
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring.hydra;
+
+import de.escalon.hypermedia.hydra.serialize.CachingProxyUnwrapper;
+import org.springframework.aop.framework.Advised;
+
+/**
+ * Unwraps Spring AOP proxies, both JDK dynamic proxies and CGLIB proxies, which expose their configuration as
+ * {@link Advised}. Opaque proxies are serialized as they are.
+ */
+public class SpringAopProxyUnwrapper extends CachingProxyUnwrapper {
+
+    @Override
+    protected boolean isProxyClass(Class<?> clazz) {
+        return Advised.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected Object unwrapTarget(Object proxy) {
+        try {
+            return ((Advised) proxy).getTargetSource()
+                    .getTarget();
+        } catch (Exception e) {
+            throw new RuntimeException("failed to unwrap proxy " + proxy.getClass()
+                    .getName(), e);
+        }
+    }
+}
@@ -24,6 +24,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
@@ -73,7 +74,9 @@ public class HydraMessageConverterTest {
         @Override
         public void configureMessageConverters(List<HttpMessageConverter<?>> converters) {
             super.configureMessageConverters(converters);
-            converters.add(new HydraMessageConverter());
+            HydraMessageConverter hydraMessageConverter = new HydraMessageConverter();
+            hydraMessageConverter.setFieldsParameter("fields");
+            converters.add(hydraMessageConverter);
         }
 
         @Override
@@ -144,6 +147,38 @@ public class HydraMessageConverterTest {
                 .getContentAsString());
     }
 
+    @Test
+    public void convertsSparseFieldset() throws Exception {
+        final MvcResult result = this.mockMvc.perform(MockMvcRequestBuilders.get("/events/resourcesupport/1")
+                .param("fields", "performer")
+                .accept(HypermediaTypes.APPLICATION_JSONLD))
+                .andExpect(MockMvcResultMatchers.status()
+                        .isOk())
+                .andExpect(jsonPath("$.@type").value("Event"))
+                .andExpect(jsonPath("$.performer").value("Cornelia Bielefeldt"))
+                .andExpect(jsonPath("$.location").doesNotExist())
+                .andExpect(jsonPath("$.review").doesNotExist())
+                .andReturn();
+        LOG.debug(result.getResponse()
+                .getContentAsString());
+    }
+
+    @Test
+    public void convertsLeanProfileWithoutOperations() throws Exception {
+        final MvcResult result = this.mockMvc.perform(MockMvcRequestBuilders.get("/events")
+                .accept(MediaType.parseMediaType("application/ld+json;profile=\"" + HydraMessageConverter
+                        .LEAN_PROFILE + "\"")))
+                .andExpect(MockMvcResultMatchers.status()
+                        .isOk())
+                .andExpect(jsonPath("$.['hydra:member'][0].workPerformed.review.@id")
+                        .value("http://localhost/reviews/events/1"))
+                .andExpect(jsonPath("$.['hydra:member'][0].workPerformed.['hydra:collection']").doesNotExist())
+                .andExpect(jsonPath("$.['hydra:member'][0].['hydra:operation']").doesNotExist())
+                .andReturn();
+        LOG.debug(result.getResponse()
+                .getContentAsString());
+    }
+
     @Test
     public void convertsListOfResourceOfEvent() throws Exception {
         final MvcResult result = this.mockMvc.perform(MockMvcRequestBuilders.get("/events/list")
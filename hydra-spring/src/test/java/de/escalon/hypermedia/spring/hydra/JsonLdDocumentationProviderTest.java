@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring.hydra;
+
+import de.escalon.hypermedia.hydra.mapping.Expose;
+import de.escalon.hypermedia.hydra.mapping.Term;
+import de.escalon.hypermedia.hydra.mapping.Vocab;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class JsonLdDocumentationProviderTest {
+
+    JsonLdDocumentationProvider documentationProvider = new JsonLdDocumentationProvider();
+
+    enum Availability {
+        IN_STOCK, OUT_OF_STOCK
+    }
+
+    @Vocab("http://example.com/vocab#")
+    @Term(define = "gr", as = "http://purl.org/goodrelations/v1#")
+    public static class Offer {
+
+        public Availability availability;
+
+        public String getName() {
+            return "Widget";
+        }
+
+        @Expose("gr:hasCurrencyValue")
+        public BigDecimal getPrice() {
+            return BigDecimal.TEN;
+        }
+
+        @Expose("IN_STOCK:Note")
+        public String getStockNote() {
+            return "few left";
+        }
+    }
+
+    @Test
+    public void resolvesPropertyFromVocab() throws Exception {
+        Offer offer = new Offer();
+        String url = documentationProvider.getDocumentationUrl(Offer.class.getMethod("getName"), offer);
+        assertEquals("http://example.com/vocab#name", url);
+        assertEquals(url, documentationProvider.getDocumentationUrl(Offer.class.getMethod("getName"), offer));
+        assertEquals("http://example.com/vocab#name", documentationProvider.getDocumentationUrl("name", offer));
+    }
+
+    @Test
+    public void resolvesCurieFromClassTerms() throws Exception {
+        assertEquals("http://purl.org/goodrelations/v1#hasCurrencyValue", documentationProvider
+                .getDocumentationUrl(Offer.class.getMethod("getPrice"), new Offer()));
+    }
+
+    @Test
+    public void resolvesEnumDependentCurieAgainstBean() throws Exception {
+        Offer offer = new Offer();
+        assertNull(documentationProvider.getDocumentationUrl(Offer.class.getMethod("getStockNote"), offer));
+
+        offer.availability = Availability.IN_STOCK;
+        assertEquals("InStockNote", documentationProvider.getDocumentationUrl(Offer.class.getMethod
+                ("getStockNote"), offer));
+    }
+
+    @Test
+    public void resolvesFromSchemaOrgWithoutContent() throws Exception {
+        assertEquals("http://schema.org/name", documentationProvider.getDocumentationUrl(Offer.class.getMethod
+                ("getName"), null));
+        assertNull(documentationProvider.getDocumentationUrl("name", null));
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring.hydra;
+
+import org.junit.Test;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.ResourceSupport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SelfLinkNodeIdResolverTest {
+
+    SelfLinkNodeIdResolver nodeIdResolver = new SelfLinkNodeIdResolver();
+
+    @Test
+    public void identifiesResourceBySelfLink() {
+        ResourceSupport product = new ResourceSupport();
+        product.add(new Link("http://example.com/products/1"));
+        product.add(new Link("http://example.com/offers", "offers"));
+        assertEquals("http://example.com/products/1", nodeIdResolver.getNodeId(product));
+    }
+
+    @Test
+    public void doesNotIdentifyTemplatedOrMissingSelfLink() {
+        ResourceSupport product = new ResourceSupport();
+        assertNull(nodeIdResolver.getNodeId(product));
+
+        product.add(new Link("http://example.com/products{?q}"));
+        assertNull(nodeIdResolver.getNodeId(product));
+        assertNull(nodeIdResolver.getNodeId("http://example.com/products/1"));
+    }
+}
@@ -1,15 +1,27 @@
 package de.escalon.hypermedia;
 
 import de.escalon.hypermedia.affordance.DataType;
+import de.escalon.hypermedia.metrics.HypermediaMetrics;
 import org.springframework.hateoas.Resource;
 import org.springframework.hateoas.ResourceSupport;
 import org.springframework.hateoas.Resources;
+import org.springframework.util.ConcurrentReferenceHashMap;
 
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentMap;
 
 /**
+ * Traverses resources, collections, maps and beans and reports them to a {@link ResourceSupportVisitor}. If a visitor
+ * method returns false, the traversal of the object currently being visited ends and the traversal continues with
+ * the next sibling of that object.
+ * <p>The traversal uses an explicit work stack rather than recursion, so deeply nested representations do not
+ * exhaust the call stack. Objects which are already being traversed on the current path are not entered again, which
+ * protects against cycles in bidirectional models. The nesting depth and the total number of traversed objects can be
+ * limited; objects beyond these limits are skipped. Bean properties are read according to a traversal plan which is
+ * computed once per class.</p>
  * Created by Dietrich on 07.05.2016.
  */
 public class ResourceTraversal {
@@ -21,160 +33,342 @@ public class ResourceTraversal {
     }
     public static final NullValue NULL_VALUE = new NullValue();
 
+    private static final ConcurrentMap<Class<?>, List<PropertyAccess>> TRAVERSAL_PLANS = new
+            ConcurrentReferenceHashMap<Class<?>, List<PropertyAccess>>();
+
+    private int maxDepth = Integer.MAX_VALUE;
+    private int maxNodes = Integer.MAX_VALUE;
+
+    /**
+     * Limits the nesting depth of traversed objects. The object passed to {@link #traverseResource} has depth 0.
+     *
+     * @param maxDepth
+     *         maximum depth, default is unlimited
+     */
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Limits the number of objects entered during one traversal.
+     *
+     * @param maxNodes
+     *         maximum number of objects, default is unlimited
+     */
+    public void setMaxNodes(int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
 
     public void traverseResource(ResourceSupportVisitor visitor, Object object) {
-        Set<String> filtered = FILTER_RESOURCE_SUPPORT;
-        if (object == null) {
-            return;
+        Traversal traversal = new Traversal(visitor);
+        try {
+            traversal.enter(object, 0);
+            traversal.run();
+        } catch (Exception ex) {
+            throw new RuntimeException("failed to transform object " + traversal.current, ex);
         }
+    }
 
-        try {
-            // TODO: move all returns to else branch of property descriptor handling
+    /**
+     * State of a single traversal.
+     */
+    private class Traversal {
+
+        private final ResourceSupportVisitor visitor;
+        private final Deque<Frame> stack = new ArrayDeque<Frame>();
+        private final Set<Object> path = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        private int nodes;
+        private Object current;
+
+        Traversal(ResourceSupportVisitor visitor) {
+            this.visitor = visitor;
+        }
+
+        void run() throws Exception {
+            while (!stack.isEmpty()) {
+                Frame frame = stack.peek();
+                current = frame.object;
+                frame.step();
+            }
+        }
+
+        /**
+         * Visits the beginning of the given object and schedules the traversal of its content.
+         */
+        void enter(Object object, int depth) throws Exception {
+            if (object == null || depth > maxDepth || nodes >= maxNodes || path.contains(object)) {
+                return;
+            }
+            current = object;
+            nodes++;
+            Frame frame;
             if (object instanceof Resource) {
                 Resource<?> resource = (Resource<?>) object;
-
-                if(!visitor.visitLinks(resource.getLinks())) {
+                if (!visitor.visitLinks(resource.getLinks())) {
                     return;
                 }
-                traverseResource(visitor, resource.getContent());
-                return;
+                frame = new ContentFrame(this, object, depth, resource.getContent());
             } else if (object instanceof Resources) {
                 Resources<?> resources = (Resources<?>) object;
-                if(!visitor.visitLinks(resources.getLinks())) {
-                    return;
-                }
-                traverseResource(visitor, resources.getContent());
-                return;
-            } else if (object instanceof ResourceSupport) {
-                ResourceSupport resource = (ResourceSupport) object;
-                if(!visitor.visitLinks(resource.getLinks())) {
+                if (!visitor.visitLinks(resources.getLinks())) {
                     return;
                 }
-                // wrap object attributes below to avoid endless loop
+                frame = new ContentFrame(this, object, depth, resources.getContent());
             } else if (object instanceof Collection) {
                 Collection<?> collection = (Collection<?>) object;
-                if(!visitor.visitEnterCollection(collection)) {
+                if (!visitor.visitEnterCollection(collection)) {
                     return;
                 }
-                for (Object item : collection) {
-                    traverseResource(visitor, item);
+                frame = new CollectionFrame(this, collection, depth);
+            } else {
+                if (object instanceof ResourceSupport) {
+                    ResourceSupport resource = (ResourceSupport) object;
+                    if (!visitor.visitLinks(resource.getLinks())) {
+                        return;
+                    }
+                    // wrap object attributes below to avoid endless loop
                 }
-                if(!visitor.visitLeaveCollection(collection)) {
-                    return;
+                if (object instanceof Map) {
+                    frame = new MapFrame(this, (Map<?, ?>) object, depth);
+                } else {
+                    frame = new BeanFrame(this, object, depth);
+                }
+            }
+            path.add(object);
+            stack.push(frame);
+        }
+
+        void leave(Frame frame) {
+            stack.pop();
+            path.remove(frame.object);
+        }
+    }
+
+    /**
+     * Unit of work on the traversal stack. Each call to {@link #step} either enters a child object, visits a property
+     * or leaves the frame.
+     */
+    private static abstract class Frame {
+
+        final Traversal traversal;
+        final Object object;
+        final int depth;
+
+        Frame(Traversal traversal, Object object, int depth) {
+            this.traversal = traversal;
+            this.object = object;
+            this.depth = depth;
+        }
+
+        abstract void step() throws Exception;
+    }
+
+    /**
+     * Content of a {@link Resource} or {@link Resources}.
+     */
+    private static class ContentFrame extends Frame {
+
+        private final Object content;
+        private boolean contentEntered;
+
+        ContentFrame(Traversal traversal, Object object, int depth, Object content) {
+            super(traversal, object, depth);
+            this.content = content;
+        }
+
+        @Override
+        void step() throws Exception {
+            if (contentEntered) {
+                traversal.leave(this);
+            } else {
+                contentEntered = true;
+                traversal.enter(content, depth + 1);
+            }
+        }
+    }
+
+    private static class CollectionFrame extends Frame {
+
+        private final Iterator<?> items;
+
+        CollectionFrame(Traversal traversal, Collection<?> collection, int depth) {
+            super(traversal, collection, depth);
+            this.items = collection.iterator();
+        }
+
+        @Override
+        void step() throws Exception {
+            if (items.hasNext()) {
+                traversal.enter(items.next(), depth + 1);
+            } else {
+                traversal.visitor.visitLeaveCollection((Collection<?>) object);
+                traversal.leave(this);
+            }
+        }
+    }
+
+    /**
+     * Visits named values of a map or bean. Scalar values are visited directly, other values are entered as child
+     * objects.
+     */
+    private static abstract class PropertiesFrame extends Frame {
+
+        String name;
+        Class<?> type;
+        Object content;
+        Object value;
+        private boolean leavePending;
+
+        PropertiesFrame(Traversal traversal, Object object, int depth) {
+            super(traversal, object, depth);
+        }
+
+        /**
+         * Advances to the next property and sets its name, type, content and scalar value.
+         *
+         * @return false if there are no more properties
+         */
+        abstract boolean nextProperty() throws Exception;
+
+        @Override
+        void step() throws Exception {
+            ResourceSupportVisitor visitor = traversal.visitor;
+            if (leavePending) {
+                leavePending = false;
+                if (!visitor.visitLeaveProperty(name, type, value)) {
+                    traversal.leave(this);
                 }
                 return;
             }
-            if (object instanceof Map) {
-                Map<?, ?> map = (Map<?, ?>) object;
-                for (Map.Entry<?, ?> entry : map.entrySet()) {
-                    String key = entry.getKey()
-                            .toString();
-                    Object content = entry.getValue();
-                    Object value = getContentAsScalarValue(content);
-//                    UberNode entryNode = new UberNode();
-//                    objectNode.addData(entryNode);
-//                    entryNode.setName(key);
-//                    if (value != null) {
-//                        entryNode.setValue(value);
-//                    } else {
-//                        traverseResource(visitor, content);
-//                    }
-
-                    Class<?> type = content != null ? content.getClass() : null;
-                    if(!visitor.visitEnterProperty(key, type, value)) {
-                        return;
-                    }
-                    if (value != null) {
-                        // for each scalar property of a simple bean, add valuepair nodes to data
-                        if(!visitor.visitProperty(key, type, value)) {
-                            return;
-                        }
-                    } else {
-                        traverseResource(visitor, content);
-                    }
-                    if(!visitor.visitLeaveProperty(key, type, value)) {
-                        return;
-                    }
+            if (!nextProperty()) {
+                traversal.leave(this);
+                return;
+            }
+            if (!visitor.visitEnterProperty(name, type, value)) {
+                traversal.leave(this);
+                return;
+            }
+            if (value != null) {
+                // for each scalar property of a simple bean, add valuepair nodes to data
+                if (!visitor.visitProperty(name, type, value)
+                        || !visitor.visitLeaveProperty(name, type, value)) {
+                    traversal.leave(this);
                 }
             } else {
-                Map<String, PropertyDescriptor> propertyDescriptors = PropertyUtils.getPropertyDescriptors(object);
-                for (PropertyDescriptor propertyDescriptor : propertyDescriptors.values()) {
-                    String name = propertyDescriptor.getName();
-                    if (filtered.contains(name)) {
-                        continue;
-                    }
+                leavePending = true;
+                traversal.enter(content, depth + 1);
+            }
+        }
+    }
 
-//                    UberNode propertyNode = new UberNode();
-                    Object content = propertyDescriptor.getReadMethod()
-                            .invoke(object);
-//
-//                    if (isEmptyCollectionOrMap(content, propertyDescriptor.getPropertyType())) {
-//                        continue;
-//                    }
-//
-                    Object value = getContentAsScalarValue(content);
-//                    propertyNode.setName(name);
-//                    objectNode.addData(propertyNode);
-                    Class<?> propertyType = propertyDescriptor.getPropertyType();
-                    if(!visitor.visitEnterProperty(name, propertyType, value)) {
-                        return;
-                    }
-                    if (value != null) {
-                        // for each scalar property of a simple bean, add valuepair nodes to data
-                        if(!visitor.visitProperty(name, propertyType, value)) {
-                            return;
-                        }
-                    } else {
-                        traverseResource(visitor, content);
-                    }
-                    if(!visitor.visitLeaveProperty(name, propertyType, value)) {
-                        return;
-                    }
-                }
+    private static class MapFrame extends PropertiesFrame {
 
-                Field[] fields = object.getClass()
-                        .getFields();
-                for (Field field : fields) {
-                    String name = field.getName();
-                    if (!propertyDescriptors.containsKey(name)) {
-                        Object content = field.get(object);
-                        Class<?> type = field.getType();
-//                        if (isEmptyCollectionOrMap(content, type)) {
-//                            continue;
-//                        }
-//                        UberNode propertyNode = new UberNode();
-//
-                        Object value = getContentAsScalarValue(content);
-//                        propertyNode.setName(name);
-//                        objectNode.addData(propertyNode);
-//                        if (value != null) {
-//                            // for each scalar property of a simple bean, add valuepair nodes to data
-//                            propertyNode.setValue(value);
-//                        } else {
-//                            toUberData(propertyNode, content);
-//                        }
-
-                        if(!visitor.visitEnterProperty(name, type, value)) {
-                            return;
-                        }
-                        if (value != null) {
-                            // for each scalar property of a simple bean, add valuepair nodes to data
-                            if(!visitor.visitProperty(name, type, value)) {
-                                return;
-                            }
-                        } else {
-                            traverseResource(visitor, content);
-                        }
-                        if(!visitor.visitLeaveProperty(name, type, value)) {
-                            return;
-                        }
+        private final Iterator<? extends Map.Entry<?, ?>> entries;
 
-                    }
+        MapFrame(Traversal traversal, Map<?, ?> map, int depth) {
+            super(traversal, map, depth);
+            this.entries = map.entrySet()
+                    .iterator();
+        }
+
+        @Override
+        boolean nextProperty() {
+            if (!entries.hasNext()) {
+                return false;
+            }
+            Map.Entry<?, ?> entry = entries.next();
+            name = entry.getKey()
+                    .toString();
+            content = entry.getValue();
+            type = content != null ? content.getClass() : null;
+            value = getContentAsScalarValue(content);
+            return true;
+        }
+    }
+
+    private static class BeanFrame extends PropertiesFrame {
+
+        private final Iterator<PropertyAccess> properties;
+
+        BeanFrame(Traversal traversal, Object bean, int depth) {
+            super(traversal, bean, depth);
+            this.properties = getTraversalPlan(bean.getClass()).iterator();
+        }
+
+        @Override
+        boolean nextProperty() throws Exception {
+            if (!properties.hasNext()) {
+                return false;
+            }
+            PropertyAccess property = properties.next();
+            name = property.name;
+            type = property.type;
+            content = property.read(object);
+            if (property.scalar) {
+                value = content == null ? NULL_VALUE : content.toString();
+            } else {
+                value = getContentAsScalarValue(content);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Precompiled access to a readable bean property or public field.
+     */
+    private static class PropertyAccess {
+
+        final String name;
+        final Class<?> type;
+        /** declared type is a single value type, so the value never needs to be traversed */
+        final boolean scalar;
+        private final Method readMethod;
+        private final Field field;
+
+        PropertyAccess(String name, Class<?> type, Method readMethod, Field field) {
+            this.name = name;
+            this.type = type;
+            this.scalar = DataType.isSingleValueType(type);
+            this.readMethod = readMethod;
+            this.field = field;
+        }
+
+        Object read(Object bean) throws Exception {
+            return readMethod != null ? readMethod.invoke(bean) : field.get(bean);
+        }
+    }
+
+    /**
+     * Gets the readable properties of the given class which are not filtered, followed by the public fields which do
+     * not have a property of the same name.
+     */
+    private static List<PropertyAccess> getTraversalPlan(Class<?> beanClass) {
+        List<PropertyAccess> ret = TRAVERSAL_PLANS.get(beanClass);
+        HypermediaMetrics metrics = HypermediaMetrics.getInstance();
+        if (metrics.isEnabled()) {
+            metrics.recordCacheAccess("ResourceTraversal", ret != null);
+        }
+        if (ret == null) {
+            BeanMetadata beanMetadata = BeanMetadata.forClass(beanClass);
+            Map<String, PropertyDescriptor> propertyDescriptors = beanMetadata.getPropertyDescriptors();
+            ret = new ArrayList<PropertyAccess>();
+            for (Map.Entry<String, Method> readMethod : beanMetadata.getReadMethods()
+                    .entrySet()) {
+                String name = readMethod.getKey();
+                if (!FILTER_RESOURCE_SUPPORT.contains(name)) {
+                    ret.add(new PropertyAccess(name, propertyDescriptors.get(name)
+                            .getPropertyType(), readMethod.getValue(), null));
                 }
             }
-        } catch (Exception ex) {
-            throw new RuntimeException("failed to transform object " + object, ex);
+            for (Field field : beanMetadata.getFields()
+                    .values()) {
+                if (!propertyDescriptors.containsKey(field.getName())) {
+                    ret.add(new PropertyAccess(field.getName(), field.getType(), null, field));
+                }
+            }
+            TRAVERSAL_PLANS.putIfAbsent(beanClass, ret);
         }
+        return ret;
     }
 
     private static Object getContentAsScalarValue(Object content) {
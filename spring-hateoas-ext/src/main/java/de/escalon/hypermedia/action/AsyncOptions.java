@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.action;
+
+import java.util.concurrent.Future;
+
+/**
+ * Variant of {@link Options} for implementations which determine possible values asynchronously, e.g. by means of a
+ * remote lookup. When possible values are prefetched using {@link de.escalon.hypermedia.spring.OptionsPrefetcher},
+ * {@link #getAsync} is used so that the lookups of all <code>&#064;Select</code> parameters of an action can run
+ * concurrently. The synchronous {@link #get} is still used if no prefetching takes place, it may simply wait for the
+ * result of {@link #getAsync}.
+ */
+public interface AsyncOptions extends Options {
+
+    /**
+     * Starts determining the possible values for an argument annotated with {@link Select}.
+     *
+     * @param value
+     *         parameters to be used by the implementation, see {@link Options#get}
+     * @param args
+     *         from the same method call, as defined by {@link Select#args()}
+     * @return future possible values
+     * @see Options#get
+     */
+    Future<Object[]> getAsync(String[] value, Object... args);
+}
@@ -14,6 +14,7 @@
 package de.escalon.hypermedia.spring;
 
 import de.escalon.hypermedia.affordance.*;
+import de.escalon.hypermedia.metrics.HypermediaMetrics;
 import org.springframework.hateoas.Identifiable;
 import org.springframework.hateoas.Link;
 import org.springframework.hateoas.LinkBuilder;
@@ -200,6 +201,8 @@ public class AffordanceBuilder implements LinkBuilder {
             affordance.addRev(reverseRel);
         }
         affordance.setCollectionHolder(collectionHolder);
+        HypermediaMetrics.getInstance()
+                .recordAffordanceBuilt();
         return affordance;
     }
 
@@ -22,6 +22,10 @@ import de.escalon.hypermedia.affordance.ActionDescriptor;
 import de.escalon.hypermedia.affordance.ActionInputParameter;
 import de.escalon.hypermedia.affordance.DataType;
 import de.escalon.hypermedia.affordance.PartialUriTemplate;
+import de.escalon.hypermedia.metrics.HypermediaMetrics;
+import de.escalon.hypermedia.metrics.PhaseRecorder;
+import de.escalon.hypermedia.metrics.PhaseSpan;
+import de.escalon.hypermedia.metrics.RenderingPhase;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.core.MethodParameter;
 import org.springframework.core.annotation.AnnotationUtils;
@@ -57,6 +61,29 @@ public class AffordanceBuilderFactory implements MethodLinkBuilderFactory<Afford
 
     @Override
     public AffordanceBuilder linkTo(Class<?> controller, Method method, Object... parameters) {
+        HypermediaMetrics metrics = HypermediaMetrics.getInstance();
+        PhaseSpan span = PhaseRecorder.getInstance()
+                .begin(RenderingPhase.AFFORDANCE_BUILD);
+        long start = metrics.isEnabled() ? System.nanoTime() : 0L;
+        AffordanceBuilder affordanceBuilder = linkToMethod(controller, method, parameters);
+        finishLinkTo(metrics, start, span, controller, method);
+        return affordanceBuilder;
+    }
+
+    /**
+     * Reports a successful <code>linkTo</code> call to metrics and phase recorder.
+     */
+    private static void finishLinkTo(HypermediaMetrics metrics, long start, PhaseSpan span, Class<?> controller,
+                                     Method method) {
+        if (metrics.isEnabled()) {
+            metrics.recordLinkTo(System.nanoTime() - start);
+        }
+        if (span.isRecording()) {
+            span.finish(controller, null, method.getParameterTypes().length);
+        }
+    }
+
+    private AffordanceBuilder linkToMethod(Class<?> controller, Method method, Object... parameters) {
 
         String pathMapping = MAPPING_DISCOVERER.getMapping(controller, method);
 
@@ -154,6 +181,18 @@ public class AffordanceBuilderFactory implements MethodLinkBuilderFactory<Afford
 
     @Override
     public AffordanceBuilder linkTo(Object invocationValue) {
+        HypermediaMetrics metrics = HypermediaMetrics.getInstance();
+        PhaseSpan span = PhaseRecorder.getInstance()
+                .begin(RenderingPhase.AFFORDANCE_BUILD);
+        long start = metrics.isEnabled() ? System.nanoTime() : 0L;
+        AffordanceBuilder affordanceBuilder = linkToInvocation(invocationValue);
+        Method invokedMethod = ((DummyInvocationUtils.LastInvocationAware) invocationValue).getLastInvocation()
+                .getMethod();
+        finishLinkTo(metrics, start, span, invokedMethod.getDeclaringClass(), invokedMethod);
+        return affordanceBuilder;
+    }
+
+    private AffordanceBuilder linkToInvocation(Object invocationValue) {
 
         Assert.isInstanceOf(DummyInvocationUtils.LastInvocationAware.class, invocationValue);
         DummyInvocationUtils.LastInvocationAware invocations = (DummyInvocationUtils.LastInvocationAware)
@@ -299,6 +338,7 @@ public class AffordanceBuilderFactory implements MethodLinkBuilderFactory<Afford
 
         SpringActionDescriptor actionDescriptor =
                 new SpringActionDescriptor(invokedMethod.getName(), httpMethod.name());
+        actionDescriptor.setHandlerMethod(invokedMethod);
 
         actionDescriptor.setCardinality(getCardinality(invokedMethod, httpMethod, genericReturnType));
 
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Answers conditional GET requests for {@link Fingerprinted} response bodies before a message converter runs. Unlike
+ * <code>ShallowEtagHeaderFilter</code>, which serializes the full body just to hash it, the advice computes a strong
+ * ETag from the fingerprint of the body, the negotiated media type, the selected converter and the converter
+ * configuration. If the ETag matches <code>If-None-Match</code>, the response is a 304 and the body is not
+ * serialized at all; otherwise the ETag header is added to the response.
+ * <p>Register the advice with the <code>RequestMappingHandlerAdapter</code>, e.g. with
+ * <code>setResponseBodyAdvice</code> or by declaring a <code>&#064;ControllerAdvice</code> subclass. Bodies
+ * returned as <code>ResponseEntity</code> which already have an ETag are left alone, as are responses other than
+ * 200 OK.</p>
+ */
+public class ConditionalRepresentationAdvice implements ResponseBodyAdvice<Object> {
+
+    private String converterConfiguration = "";
+
+    /**
+     * Sets a key for the configuration of the message converters, e.g. the application version. The key must
+     * change whenever a configuration change alters the representations, e.g. a new documentation provider or
+     * stylesheet. Empty by default.
+     *
+     * @param converterConfiguration
+     *         configuration key
+     */
+    public void setConverterConfiguration(String converterConfiguration) {
+        Assert.notNull(converterConfiguration);
+        this.converterConfiguration = converterConfiguration;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (!(body instanceof Fingerprinted) || !(request instanceof ServletServerHttpRequest)
+                || !(response instanceof ServletServerHttpResponse)
+                || response.getHeaders()
+                .getETag() != null) {
+            return body;
+        }
+        String fingerprint = ((Fingerprinted) body).fingerprint();
+        if (fingerprint == null) {
+            return body;
+        }
+        ServletWebRequest webRequest = new ServletWebRequest(((ServletServerHttpRequest) request)
+                .getServletRequest(), ((ServletServerHttpResponse) response).getServletResponse());
+        String method = webRequest.getRequest()
+                .getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method) || webRequest.getResponse()
+                .getStatus() != HttpServletResponse.SC_OK) {
+            return body;
+        }
+        String etag = getETag(fingerprint, selectedContentType, selectedConverterType);
+        return webRequest.checkNotModified(etag) ? null : body;
+    }
+
+    /**
+     * Computes the strong ETag of a representation.
+     *
+     * @param fingerprint
+     *         of the body
+     * @param contentType
+     *         negotiated media type
+     * @param converterType
+     *         selected converter
+     * @return quoted ETag
+     */
+    String getETag(String fingerprint, MediaType contentType, Class<?> converterType) {
+        String key = fingerprint + '\n' + contentType + '\n' + converterType.getName() + '\n' +
+                converterConfiguration;
+        try {
+            return "\"" + DigestUtils.md5DigestAsHex(key.getBytes("UTF-8")) + "\"";
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException("failed to compute ETag", e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring;
+
+/**
+ * Implemented by response bodies, e.g. <code>ResourceSupport</code> subclasses, which know a cheap fingerprint of
+ * their representation. The {@link ConditionalRepresentationAdvice} derives a strong ETag from it and answers
+ * conditional GET requests before a message converter serializes the body. The method is deliberately not a bean
+ * property getter, so that it does not appear in the representation.
+ */
+public interface Fingerprinted {
+
+    /**
+     * Gets the fingerprint of the representation, e.g. made up of entity id and version or last modification date.
+     * The fingerprint must change whenever the representation changes, including its links and actions. If link
+     * urls depend on the request, e.g. on forwarded host headers, the fingerprint must reflect that, too.
+     *
+     * @return fingerprint or null if the representation has no ETag
+     */
+    String fingerprint();
+}
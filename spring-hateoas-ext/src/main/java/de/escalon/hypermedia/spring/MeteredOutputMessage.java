@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring;
+
+import de.escalon.hypermedia.metrics.HypermediaMetrics;
+import de.escalon.hypermedia.metrics.PhaseRecorder;
+import de.escalon.hypermedia.metrics.PhaseSpan;
+import de.escalon.hypermedia.metrics.RenderingPhase;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output message which counts the bytes written by a message converter and reports them to the {@link
+ * HypermediaMetrics} together with the write latency, and to the {@link PhaseRecorder} as {@link
+ * RenderingPhase#MESSAGE_WRITE}. Converters use it as follows:
+ * <pre>
+ * HttpOutputMessage message = MeteredOutputMessage.wrap(outputMessage);
+ * try {
+ *     // write object to message
+ * } finally {
+ *     MeteredOutputMessage.record(message, this, object);
+ * }
+ * </pre>
+ * If neither metrics nor the phase are recorded, the output message is used as is.
+ */
+public final class MeteredOutputMessage implements HttpOutputMessage {
+
+    private final HttpOutputMessage outputMessage;
+    private final HypermediaMetrics metrics;
+    private final PhaseSpan span;
+    private final long start;
+    private CountingOutputStream body;
+
+    private MeteredOutputMessage(HttpOutputMessage outputMessage, HypermediaMetrics metrics, PhaseSpan span) {
+        this.outputMessage = outputMessage;
+        this.metrics = metrics;
+        this.span = span;
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Wraps the given output message if metrics are enabled or the write phase is recorded.
+     *
+     * @param outputMessage
+     *         to write to
+     * @return metered message or outputMessage
+     */
+    public static HttpOutputMessage wrap(HttpOutputMessage outputMessage) {
+        HypermediaMetrics metrics = HypermediaMetrics.getInstance();
+        PhaseSpan span = PhaseRecorder.getInstance()
+                .begin(RenderingPhase.MESSAGE_WRITE);
+        if (!metrics.isEnabled() && !span.isRecording()) {
+            return outputMessage;
+        }
+        return new MeteredOutputMessage(outputMessage, metrics, span);
+    }
+
+    /**
+     * Reports latency and bytes written if the given message was wrapped by {@link #wrap(HttpOutputMessage)}.
+     *
+     * @param message
+     *         returned by wrap
+     * @param converter
+     *         which has written the message
+     * @param object
+     *         written to the message
+     */
+    public static void record(HttpOutputMessage message, Object converter, Object object) {
+        if (message instanceof MeteredOutputMessage) {
+            ((MeteredOutputMessage) message).record(converter.getClass()
+                    .getSimpleName(), object);
+        }
+    }
+
+    private void record(String converter, Object object) {
+        MediaType contentType = outputMessage.getHeaders()
+                .getContentType();
+        String mediaType = contentType == null ? "" : contentType.getType() + "/" + contentType.getSubtype();
+        long bytes = body == null ? 0 : body.count;
+        if (metrics.isEnabled()) {
+            metrics.recordWrite(converter, mediaType, System.nanoTime() - start, bytes);
+        }
+        span.finish(object == null ? null : object.getClass(), mediaType, bytes);
+    }
+
+    @Override
+    public OutputStream getBody() throws IOException {
+        if (body == null) {
+            body = new CountingOutputStream(outputMessage.getBody());
+        }
+        return body;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        return outputMessage.getHeaders();
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import de.escalon.hypermedia.BeanMetadata;
+import de.escalon.hypermedia.action.AsyncOptions;
+import de.escalon.hypermedia.action.Options;
+import de.escalon.hypermedia.action.Select;
+import de.escalon.hypermedia.affordance.ActionDescriptor;
+import de.escalon.hypermedia.affordance.ActionInputParameter;
+import de.escalon.hypermedia.affordance.Affordance;
+import de.escalon.hypermedia.affordance.DataType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.MethodParameter;
+import org.springframework.hateoas.Link;
+import org.springframework.util.Assert;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Looks up the possible values of all <code>&#064;Select</code> parameters of an action concurrently, before the
+ * action is rendered. Without prefetching, the {@link Options} of an action are asked one after another while the
+ * form is written, so that the time to render a form is the sum of all lookups. With prefetching, it is the duration of
+ * the slowest lookup, limited by a per-form timeout. Lookups which do not finish in time are cancelled and rendered as
+ * an empty selection.
+ * <p>The prefetched values are returned as {@link PrefetchedOptions} for the response being rendered, the action
+ * descriptors are left unchanged. {@link AsyncOptions} implementations are asked via {@link AsyncOptions#getAsync},
+ * plain {@link Options} are executed on the given executor.</p>
+ */
+public class OptionsPrefetcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OptionsPrefetcher.class);
+
+    private final ExecutorService executorService;
+    private final long timeoutMillis;
+
+    /**
+     * Creates prefetcher.
+     *
+     * @param executorService
+     *         to run the lookups of plain {@link Options} on, should be bounded. The prefetcher does not shut it down.
+     * @param timeoutMillis
+     *         maximum time to wait for all lookups of one action
+     */
+    public OptionsPrefetcher(ExecutorService executorService, long timeoutMillis) {
+        Assert.notNull(executorService);
+        Assert.isTrue(timeoutMillis >= 0, "timeout must not be negative");
+        this.executorService = executorService;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Prefetches possible values for all actions of the given links.
+     *
+     * @param links
+     *         to prefetch, only {@link Affordance}s have actions
+     * @return prefetched values for the response being rendered
+     */
+    public PrefetchedOptions prefetch(List<Link> links) {
+        PrefetchedOptions ret = new PrefetchedOptions();
+        for (Link link : links) {
+            if (link instanceof Affordance) {
+                for (ActionDescriptor actionDescriptor : ((Affordance) link).getActionDescriptors()) {
+                    prefetch(actionDescriptor, ret);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Starts the lookups of all <code>&#064;Select</code> parameters of the given action concurrently and waits for
+     * them, at most for the configured timeout.
+     *
+     * @param actionDescriptor
+     *         to prefetch, only {@link SpringActionDescriptor}s are supported
+     * @return prefetched values for the response being rendered
+     */
+    public PrefetchedOptions prefetch(ActionDescriptor actionDescriptor) {
+        PrefetchedOptions ret = new PrefetchedOptions();
+        prefetch(actionDescriptor, ret);
+        return ret;
+    }
+
+    private void prefetch(ActionDescriptor actionDescriptor, PrefetchedOptions prefetchedOptions) {
+        if (!(actionDescriptor instanceof SpringActionDescriptor)) {
+            return;
+        }
+        SpringActionDescriptor springActionDescriptor = (SpringActionDescriptor) actionDescriptor;
+        List<MethodParameter> selectParameters = findSelectParameters(springActionDescriptor);
+        if (selectParameters.isEmpty()) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        Map<MethodParameter, Future<Object[]>> lookups = new LinkedHashMap<MethodParameter, Future<Object[]>>();
+        try {
+            for (MethodParameter selectParameter : selectParameters) {
+                lookups.put(selectParameter, startLookup(selectParameter, springActionDescriptor));
+            }
+            for (Map.Entry<MethodParameter, Future<Object[]>> lookup : lookups.entrySet()) {
+                MethodParameter selectParameter = lookup.getKey();
+                Future<Object[]> future = lookup.getValue();
+                Object[] possibleValues;
+                try {
+                    possibleValues = future.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    future.cancel(true);
+                    LOG.warn("lookup of possible values for " + selectParameter + " timed out after " +
+                            timeoutMillis + " ms, rendering empty selection");
+                    possibleValues = null;
+                }
+                prefetchedOptions.put(actionDescriptor, selectParameter, possibleValues == null ? new Object[0] :
+                        possibleValues);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                    .interrupt();
+            cancelAll(lookups.values());
+            throw new RuntimeException("interrupted while prefetching possible values for "
+                    + actionDescriptor.getActionName(), e);
+        } catch (ExecutionException e) {
+            cancelAll(lookups.values());
+            throw new RuntimeException("failed to prefetch possible values for " + actionDescriptor.getActionName(),
+                    e.getCause());
+        }
+    }
+
+    private Future<Object[]> startLookup(MethodParameter selectParameter, ActionDescriptor actionDescriptor) {
+        Select select = selectParameter.getParameterAnnotation(Select.class);
+        final String[] value = select.value();
+        final Object[] args = SpringActionInputParameter.getOptionsArgs(select, actionDescriptor);
+        final Options options;
+        try {
+            options = select.options()
+                    .newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("failed to instantiate " + select.options()
+                    .getName(), e);
+        }
+        if (options instanceof AsyncOptions) {
+            return ((AsyncOptions) options).getAsync(value, args);
+        } else {
+            return executorService.submit(new Callable<Object[]>() {
+                @Override
+                public Object[] call() throws Exception {
+                    return SpringActionInputParameter.lookUpOptions(options, value, args);
+                }
+            });
+        }
+    }
+
+    private void cancelAll(Collection<Future<Object[]>> futures) {
+        for (Future<Object[]> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * Finds all parameters whose possible values come from an {@link Options} implementation: request params, path
+     * variables and the constructor arguments or setters of a request body, recursively.
+     *
+     * @param actionDescriptor
+     *         to search
+     * @return method parameters having <code>&#064;Select</code>, never null
+     */
+    private List<MethodParameter> findSelectParameters(SpringActionDescriptor actionDescriptor) {
+        List<MethodParameter> ret = new ArrayList<MethodParameter>();
+        List<String> paramNames = new ArrayList<String>(actionDescriptor.getRequestParamNames());
+        paramNames.addAll(actionDescriptor.getPathVariableNames());
+        for (String paramName : paramNames) {
+            ActionInputParameter inputParameter = actionDescriptor.getActionInputParameter(paramName);
+            if (inputParameter instanceof SpringActionInputParameter) {
+                addIfSelect(ret, ((SpringActionInputParameter) inputParameter).getMethodParameter());
+            }
+        }
+        if (actionDescriptor.hasRequestBody()) {
+            addBeanSelectParameters(ret, actionDescriptor.getRequestBody()
+                    .getParameterType(), new HashSet<Class<?>>());
+        }
+        return ret;
+    }
+
+    private void addBeanSelectParameters(List<MethodParameter> ret, Class<?> beanType, Set<Class<?>> visited) {
+        if (DataType.isSingleValueType(beanType) || DataType.isArrayOrCollection(beanType)
+                || Map.class.isAssignableFrom(beanType) || !visited.add(beanType)) {
+            return;
+        }
+        BeanMetadata beanMetadata = BeanMetadata.forClass(beanType);
+        Constructor constructor = beanMetadata.getDefaultConstructor();
+        if (constructor == null) {
+            constructor = beanMetadata.getCreatorConstructor(JsonCreator.class);
+        }
+        if (constructor != null) {
+            Class[] parameterTypes = constructor.getParameterTypes();
+            for (int i = 0; i < parameterTypes.length; i++) {
+                MethodParameter methodParameter = new MethodParameter(constructor, i);
+                if (!addIfSelect(ret, methodParameter)) {
+                    addBeanSelectParameters(ret, parameterTypes[i], visited);
+                }
+            }
+        }
+        for (PropertyDescriptor propertyDescriptor : beanMetadata.getPropertyDescriptors()
+                .values()) {
+            Method writeMethod = beanMetadata.getWriteMethods()
+                    .get(propertyDescriptor.getName());
+            if (writeMethod != null) {
+                MethodParameter methodParameter = new MethodParameter(writeMethod, 0);
+                if (!addIfSelect(ret, methodParameter)) {
+                    addBeanSelectParameters(ret, propertyDescriptor.getPropertyType(), visited);
+                }
+            }
+        }
+    }
+
+    private boolean addIfSelect(List<MethodParameter> ret, MethodParameter methodParameter) {
+        // enum values are known without asking Options
+        boolean isSelect = methodParameter.hasParameterAnnotation(Select.class)
+                && SpringActionInputParameter.getEnumConstants(methodParameter) == null;
+        if (isSelect) {
+            ret.add(methodParameter);
+        }
+        return isSelect;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring;
+
+import de.escalon.hypermedia.affordance.ActionDescriptor;
+import de.escalon.hypermedia.affordance.ActionInputParameter;
+import org.springframework.core.MethodParameter;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Possible values of <code>&#064;Select</code> parameters which an {@link OptionsPrefetcher} looked up ahead of
+ * rendering a single response. Writers ask for possible values here; values which have not been prefetched are looked
+ * up by the {@link ActionInputParameter} as usual. The prefetched values are kept per action descriptor instance,
+ * since the arguments passed to the options may differ between actions of the same handler method.
+ */
+public final class PrefetchedOptions {
+
+    /**
+     * No prefetched values, all possible values are looked up while rendering.
+     */
+    public static final PrefetchedOptions NONE = new PrefetchedOptions();
+
+    private final Map<ActionDescriptor, Map<List<Object>, Object[]>> possibleValues = new
+            IdentityHashMap<ActionDescriptor, Map<List<Object>, Object[]>>();
+
+    PrefetchedOptions() {
+    }
+
+    void put(ActionDescriptor actionDescriptor, MethodParameter methodParameter, Object[] values) {
+        Map<List<Object>, Object[]> actionValues = possibleValues.get(actionDescriptor);
+        if (actionValues == null) {
+            actionValues = new HashMap<List<Object>, Object[]>();
+            possibleValues.put(actionDescriptor, actionValues);
+        }
+        actionValues.put(key(methodParameter.getMember(), methodParameter.getParameterIndex()), values);
+    }
+
+    /**
+     * Gets possible values of an action input parameter.
+     *
+     * @param inputParameter
+     *         to get possible values for
+     * @param actionDescriptor
+     *         of the action
+     * @return possible values
+     * @see ActionInputParameter#getPossibleValues(ActionDescriptor)
+     */
+    public Object[] getPossibleValues(ActionInputParameter inputParameter, ActionDescriptor actionDescriptor) {
+        Object[] ret = null;
+        if (inputParameter instanceof SpringActionInputParameter) {
+            MethodParameter methodParameter = ((SpringActionInputParameter) inputParameter).getMethodParameter();
+            ret = get(actionDescriptor, methodParameter.getMember(), methodParameter.getParameterIndex());
+        }
+        return ret != null ? ret : inputParameter.getPossibleValues(actionDescriptor);
+    }
+
+    /**
+     * Gets possible values of a method parameter of a request body.
+     *
+     * @param inputParameter
+     *         request body
+     * @param method
+     *         having the parameter, usually a setter
+     * @param parameterIndex
+     *         of the parameter
+     * @param actionDescriptor
+     *         of the action
+     * @return possible values
+     * @see ActionInputParameter#getPossibleValues(Method, int, ActionDescriptor)
+     */
+    public Object[] getPossibleValues(ActionInputParameter inputParameter, Method method, int parameterIndex,
+                                      ActionDescriptor actionDescriptor) {
+        Object[] ret = get(actionDescriptor, method, parameterIndex);
+        return ret != null ? ret : inputParameter.getPossibleValues(method, parameterIndex, actionDescriptor);
+    }
+
+    /**
+     * Gets possible values of a constructor parameter of a request body.
+     *
+     * @param inputParameter
+     *         request body
+     * @param constructor
+     *         having the parameter
+     * @param parameterIndex
+     *         of the parameter
+     * @param actionDescriptor
+     *         of the action
+     * @return possible values
+     * @see ActionInputParameter#getPossibleValues(Constructor, int, ActionDescriptor)
+     */
+    public Object[] getPossibleValues(ActionInputParameter inputParameter, Constructor constructor, int
+            parameterIndex, ActionDescriptor actionDescriptor) {
+        Object[] ret = get(actionDescriptor, constructor, parameterIndex);
+        return ret != null ? ret : inputParameter.getPossibleValues(constructor, parameterIndex, actionDescriptor);
+    }
+
+    /**
+     * Gets possible values of a method parameter of a request body.
+     *
+     * @param inputParameter
+     *         request body
+     * @param methodParameter
+     *         of a setter or constructor
+     * @param actionDescriptor
+     *         of the action
+     * @return possible values
+     * @see ActionInputParameter#getPossibleValues(MethodParameter, ActionDescriptor)
+     */
+    public Object[] getPossibleValues(ActionInputParameter inputParameter, MethodParameter methodParameter,
+                                      ActionDescriptor actionDescriptor) {
+        Object[] ret = get(actionDescriptor, methodParameter.getMember(), methodParameter.getParameterIndex());
+        return ret != null ? ret : inputParameter.getPossibleValues(methodParameter, actionDescriptor);
+    }
+
+    private Object[] get(ActionDescriptor actionDescriptor, Member member, int parameterIndex) {
+        Map<List<Object>, Object[]> actionValues = possibleValues.get(actionDescriptor);
+        return actionValues == null ? null : actionValues.get(key(member, parameterIndex));
+    }
+
+    private static List<Object> key(Member member, int parameterIndex) {
+        // method parameters are created anew for every lookup, compare member and index only
+        return Arrays.<Object>asList(member, parameterIndex);
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring;
+
+import de.escalon.hypermedia.metrics.HypermediaMetrics;
+import org.springframework.util.Assert;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps serialized representations in memory, so that a representation need neither be assembled nor serialized
+ * again as long as the resource version is unchanged. Representations are keyed by the resource version key supplied
+ * by the application, the request uri and the request headers a representation varies by, i.e. the accepted media
+ * types and the host and forwarding headers which determine the link urls. The least recently used representations
+ * are evicted when the total size of the cached bodies exceeds the configured maximum.
+ *
+ * @see RepresentationCacheFilter
+ */
+public class RepresentationCache {
+
+    private final long maxBytes;
+    private long bytes;
+
+    private final LinkedHashMap<Key, Representation> representations = new LinkedHashMap<Key, Representation>(16,
+            0.75f, true);
+
+    /**
+     * Creates cache.
+     *
+     * @param maxBytes
+     *         maximum total size of the cached bodies, larger bodies are not cached at all
+     */
+    public RepresentationCache(long maxBytes) {
+        Assert.isTrue(maxBytes > 0, "maxBytes must be positive");
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets a cached representation.
+     *
+     * @param key
+     *         of representation
+     * @return representation or null
+     */
+    public Representation get(Key key) {
+        Representation representation;
+        synchronized (representations) {
+            representation = representations.get(key);
+        }
+        HypermediaMetrics metrics = HypermediaMetrics.getInstance();
+        if (metrics.isEnabled()) {
+            metrics.recordCacheAccess("RepresentationCache", representation != null);
+        }
+        return representation;
+    }
+
+    /**
+     * Caches a representation, evicting least recently used representations if necessary.
+     *
+     * @param key
+     *         of representation
+     * @param representation
+     *         to cache
+     */
+    public void put(Key key, Representation representation) {
+        if (representation.body.length > maxBytes) {
+            return;
+        }
+        synchronized (representations) {
+            Representation replaced = representations.put(key, representation);
+            if (replaced != null) {
+                bytes -= replaced.body.length;
+            }
+            bytes += representation.body.length;
+            Iterator<Representation> eldest = representations.values()
+                    .iterator();
+            while (bytes > maxBytes) {
+                bytes -= eldest.next().body.length;
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all representations of the given resource version, e.g. when the application knows that the resource
+     * changed without a change of its version key.
+     *
+     * @param versionKey
+     *         of resource
+     */
+    public void invalidate(String versionKey) {
+        synchronized (representations) {
+            Iterator<Map.Entry<Key, Representation>> entries = representations.entrySet()
+                    .iterator();
+            while (entries.hasNext()) {
+                Map.Entry<Key, Representation> entry = entries.next();
+                if (entry.getKey().versionKey.equals(versionKey)) {
+                    bytes -= entry.getValue().body.length;
+                    entries.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all representations.
+     */
+    public void invalidateAll() {
+        synchronized (representations) {
+            representations.clear();
+            bytes = 0;
+        }
+    }
+
+    /**
+     * Gets the number of cached representations.
+     *
+     * @return size
+     */
+    public int size() {
+        synchronized (representations) {
+            return representations.size();
+        }
+    }
+
+    /**
+     * Identifies a representation of a resource version.
+     */
+    public static final class Key {
+
+        private final String versionKey;
+        private final String requestUri;
+        private final String variance;
+
+        /**
+         * Creates key.
+         *
+         * @param versionKey
+         *         of resource, supplied by the application
+         * @param requestUri
+         *         including query
+         * @param variance
+         *         values of the request headers the representation depends on
+         */
+        public Key(String versionKey, String requestUri, String variance) {
+            Assert.notNull(versionKey);
+            Assert.notNull(requestUri);
+            Assert.notNull(variance);
+            this.versionKey = versionKey;
+            this.requestUri = requestUri;
+            this.variance = variance;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return versionKey.equals(key.versionKey)
+                    && requestUri.equals(key.requestUri)
+                    && variance.equals(key.variance);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = versionKey.hashCode();
+            result = 31 * result + requestUri.hashCode();
+            result = 31 * result + variance.hashCode();
+            return result;
+        }
+    }
+
+    /**
+     * Serialized representation with the response headers written along with it.
+     */
+    public static final class Representation {
+
+        final byte[] body;
+        final String contentType;
+        final Map<String, List<String>> headers;
+
+        /**
+         * Creates representation.
+         *
+         * @param body
+         *         serialized body
+         * @param contentType
+         *         of body
+         * @param headers
+         *         further response headers
+         */
+        public Representation(byte[] body, String contentType, Map<String, List<String>> headers) {
+            Assert.notNull(body);
+            this.body = body;
+            this.contentType = contentType;
+            this.headers = Collections.unmodifiableMap(headers);
+        }
+    }
+}
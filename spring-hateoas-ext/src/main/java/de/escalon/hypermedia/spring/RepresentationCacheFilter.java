@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring;
+
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serves GET requests from a {@link RepresentationCache}. The filter sits in front of the hypermedia message
+ * converters: on a cache hit, neither the handler method which assembles the resource nor a message converter is
+ * invoked, the cached bytes are written as they are. On a miss, the response is recorded and cached if it is a
+ * successful response of one of the cacheable media types, by default json-ld, siren, uber and html.
+ * <p>Caching is opt-in per request: the application supplies a {@link RepresentationKeyResolver} which returns the
+ * version key of the requested resource or null if the response must not be cached. Responses which set cookies or
+ * have <code>Cache-Control: private</code> or <code>no-store</code> are never cached. Requests which carry
+ * credentials in an <code>Authorization</code> or <code>Cookie</code> header bypass the cache, since their
+ * representation may depend on the caller.</p>
+ */
+public class RepresentationCacheFilter extends OncePerRequestFilter {
+
+    /**
+     * Request headers the representation depends on, in addition to the version key and request uri: the accepted
+     * media types select the message converter, the host and forwarding headers determine the link urls.
+     */
+    private static final String[] VARYING_HEADERS = {"Accept", "Host", "Forwarded", "X-Forwarded-Host",
+            "X-Forwarded-Port", "X-Forwarded-Proto", "X-Forwarded-Prefix", "X-Forwarded-Ssl"};
+
+    /**
+     * Request headers which identify the caller.
+     */
+    private static final String[] CREDENTIAL_HEADERS = {"Authorization", "Cookie"};
+
+    private static final String KEY_ATTRIBUTE = RepresentationCacheFilter.class.getName() + ".KEY";
+
+    private final RepresentationCache representationCache;
+    private final RepresentationKeyResolver keyResolver;
+    private List<MediaType> cacheableMediaTypes = Arrays.asList(HypermediaTypes.APPLICATION_JSONLD,
+            HypermediaTypes.SIREN_JSON, HypermediaTypes.UBER_JSON, MediaType.TEXT_HTML);
+
+    /**
+     * Creates filter.
+     *
+     * @param representationCache
+     *         to serve from, can be shared with the application for invalidation
+     * @param keyResolver
+     *         supplies the version key of requested resources
+     */
+    public RepresentationCacheFilter(RepresentationCache representationCache, RepresentationKeyResolver
+            keyResolver) {
+        Assert.notNull(representationCache);
+        Assert.notNull(keyResolver);
+        this.representationCache = representationCache;
+        this.keyResolver = keyResolver;
+    }
+
+    /**
+     * Sets the media types of responses which may be cached.
+     *
+     * @param cacheableMediaTypes
+     *         to cache
+     */
+    public void setCacheableMediaTypes(List<MediaType> cacheableMediaTypes) {
+        Assert.notNull(cacheableMediaTypes);
+        this.cacheableMediaTypes = cacheableMediaTypes;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain
+            filterChain) throws ServletException, IOException {
+        RepresentationCache.Key key;
+        ContentCachingResponseWrapper responseWrapper;
+        if (isAsyncDispatch(request)) {
+            key = (RepresentationCache.Key) request.getAttribute(KEY_ATTRIBUTE);
+            responseWrapper = WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+        } else {
+            key = getKey(request);
+            if (key != null) {
+                RepresentationCache.Representation representation = representationCache.get(key);
+                if (representation != null) {
+                    writeRepresentation(representation, response);
+                    return;
+                }
+                request.setAttribute(KEY_ATTRIBUTE, key);
+            }
+            responseWrapper = key == null ? null : new ContentCachingResponseWrapper(response);
+        }
+        if (key == null || responseWrapper == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        boolean completed = false;
+        try {
+            filterChain.doFilter(request, responseWrapper);
+            completed = true;
+        } finally {
+            if (!isAsyncStarted(request)) {
+                if (completed && isCacheable(responseWrapper)) {
+                    representationCache.put(key, new RepresentationCache.Representation(responseWrapper
+                            .getContentAsByteArray(), responseWrapper.getContentType(), getHeaders
+                            (responseWrapper)));
+                }
+                responseWrapper.copyBodyToResponse();
+            }
+        }
+    }
+
+    private RepresentationCache.Key getKey(HttpServletRequest request) {
+        if (!"GET".equals(request.getMethod())) {
+            return null;
+        }
+        for (String credentialHeader : CREDENTIAL_HEADERS) {
+            if (request.getHeader(credentialHeader) != null) {
+                return null;
+            }
+        }
+        String versionKey = keyResolver.resolveVersionKey(request);
+        if (versionKey == null) {
+            return null;
+        }
+        StringBuilder requestUri = new StringBuilder(request.getRequestURI());
+        if (request.getQueryString() != null) {
+            requestUri.append('?')
+                    .append(request.getQueryString());
+        }
+        StringBuilder variance = new StringBuilder(request.getScheme());
+        for (String varyingHeader : VARYING_HEADERS) {
+            variance.append('\n');
+            Enumeration<String> values = request.getHeaders(varyingHeader);
+            while (values != null && values.hasMoreElements()) {
+                variance.append(values.nextElement())
+                        .append(',');
+            }
+        }
+        return new RepresentationCache.Key(versionKey, requestUri.toString(), variance.toString());
+    }
+
+    private boolean isCacheable(HttpServletResponse response) {
+        if (response.getStatus() != HttpServletResponse.SC_OK || response.getContentType() == null
+                || response.containsHeader("Set-Cookie")) {
+            return false;
+        }
+        String cacheControl = response.getHeader("Cache-Control");
+        if (cacheControl != null && (cacheControl.contains("private") || cacheControl.contains("no-store"))) {
+            return false;
+        }
+        MediaType contentType = MediaType.parseMediaType(response.getContentType());
+        for (MediaType cacheableMediaType : cacheableMediaTypes) {
+            if (cacheableMediaType.isCompatibleWith(contentType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Map<String, List<String>> getHeaders(HttpServletResponse response) {
+        Map<String, List<String>> headers = new LinkedHashMap<String, List<String>>();
+        for (String headerName : response.getHeaderNames()) {
+            if (!"Content-Type".equalsIgnoreCase(headerName) && !"Content-Length".equalsIgnoreCase(headerName)) {
+                Collection<String> values = response.getHeaders(headerName);
+                headers.put(headerName, new ArrayList<String>(values));
+            }
+        }
+        return headers;
+    }
+
+    private void writeRepresentation(RepresentationCache.Representation representation, HttpServletResponse
+            response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(representation.contentType);
+        for (Map.Entry<String, List<String>> header : representation.headers.entrySet()) {
+            for (String value : header.getValue()) {
+                response.addHeader(header.getKey(), value);
+            }
+        }
+        response.setContentLength(representation.body.length);
+        response.getOutputStream()
+                .write(representation.body);
+    }
+}
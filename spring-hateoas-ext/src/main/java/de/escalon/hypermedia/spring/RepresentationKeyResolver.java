@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Supplies the version of the resource requested by a GET request, before the resource is assembled. The
+ * version key must change whenever the representation of the resource would change, e.g. it can be made up of the
+ * entity id and its version or last modification date.
+ */
+public interface RepresentationKeyResolver {
+
+    /**
+     * Determines the version key of the requested resource.
+     *
+     * @param request
+     *         current GET request
+     * @return version key or null if the response must not be cached
+     */
+    String resolveVersionKey(HttpServletRequest request);
+}
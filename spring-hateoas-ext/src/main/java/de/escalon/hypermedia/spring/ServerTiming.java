@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring;
+
+import de.escalon.hypermedia.metrics.PhaseSpan;
+import de.escalon.hypermedia.metrics.RenderingPhase;
+
+/**
+ * Durations of the rendering phases of one request, rendered as <code>Server-Timing</code> header value. Resource
+ * assembly is the time from the start of the request until the message converter begins to write, the other
+ * metrics are the sums of the recorded phases of their kind. A request is handled by one thread at a time, hence
+ * the timing is not synchronized.
+ */
+final class ServerTiming {
+
+    private final long start = System.nanoTime();
+    private final long[] durations = new long[RenderingPhase.values().length];
+    private long writeStart;
+
+    /**
+     * Span which adds its duration to the timing and finishes the span of the recorder it decorates.
+     */
+    private final class TimedSpan implements PhaseSpan {
+
+        private final RenderingPhase phase;
+        private final PhaseSpan delegate;
+        private final long begin = System.nanoTime();
+
+        TimedSpan(RenderingPhase phase, PhaseSpan delegate) {
+            this.phase = phase;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean isRecording() {
+            return true;
+        }
+
+        @Override
+        public void finish(Class<?> subject, String mediaType, long size) {
+            durations[phase.ordinal()] += System.nanoTime() - begin;
+            if (delegate.isRecording()) {
+                delegate.finish(subject, mediaType, size);
+            }
+        }
+    }
+
+    /**
+     * Begins to time a phase.
+     *
+     * @param phase
+     *         to time
+     * @param delegate
+     *         span of the decorated recorder, finished together with the returned span
+     * @return span to finish when the phase is complete
+     */
+    PhaseSpan begin(RenderingPhase phase, PhaseSpan delegate) {
+        TimedSpan span = new TimedSpan(phase, delegate);
+        if (phase == RenderingPhase.MESSAGE_WRITE && writeStart == 0L) {
+            writeStart = span.begin;
+        }
+        return span;
+    }
+
+    /**
+     * Gets the accumulated duration of a phase.
+     *
+     * @param phase
+     *         to look up
+     * @return nanoseconds
+     */
+    long getDuration(RenderingPhase phase) {
+        return durations[phase.ordinal()];
+    }
+
+    /**
+     * Renders the timing as <code>Server-Timing</code> header value, durations in milliseconds, e.g.
+     * <code>assembly;dur=12.3, links;dur=4.1, context;dur=0.8, serialization;dur=5.2, total;dur=17.5</code>.
+     *
+     * @return header value
+     */
+    String toHeaderValue() {
+        long now = System.nanoTime();
+        StringBuilder sb = new StringBuilder(96);
+        appendMetric(sb, "assembly", (writeStart == 0L ? now : writeStart) - start);
+        appendMetric(sb.append(", "), "links", getDuration(RenderingPhase.AFFORDANCE_BUILD));
+        appendMetric(sb.append(", "), "context", getDuration(RenderingPhase.CONTEXT_COMPUTATION));
+        appendMetric(sb.append(", "), "serialization", getDuration(RenderingPhase.MESSAGE_WRITE));
+        appendMetric(sb.append(", "), "total", now - start);
+        return sb.toString();
+    }
+
+    private static void appendMetric(StringBuilder sb, String name, long nanos) {
+        long tenthMillis = nanos / 100000L;
+        sb.append(name)
+                .append(";dur=")
+                .append(tenthMillis / 10)
+                .append('.')
+                .append(tenthMillis % 10);
+    }
+}
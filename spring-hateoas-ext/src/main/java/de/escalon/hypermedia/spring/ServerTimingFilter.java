@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring;
+
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Adds a <code>Server-Timing</code> header to hypermedia responses which breaks the request down into the time
+ * spent for resource assembly, link building, context computation and serialization, e.g.
+ * <pre>
+ * Server-Timing: assembly;dur=12.3, links;dur=4.1, context;dur=0.8, serialization;dur=5.2, total;dur=17.5
+ * </pre>
+ * Browser developer tools show the header in their timing view. Link building and context computation happen
+ * partly during assembly and partly during serialization, so the metrics overlap.
+ * <p>Since the body is written after the headers, the filter buffers the response until the request is complete,
+ * which also defeats progressive flushing of html. Register the filter only where the breakdown is wanted, e.g. in
+ * development, or switch it on at runtime with {@link #setEnabled(boolean)}; while disabled, requests pass the
+ * filter without buffering or timing.</p>
+ * <p>Phases are timed by a {@link de.escalon.hypermedia.metrics.PhaseRecorder} which decorates the recorder in use
+ * when the filter is created. Install other recorders before creating the filter.</p>
+ */
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    public static final String SERVER_TIMING = "Server-Timing";
+
+    private static final String TIMING_ATTRIBUTE = ServerTimingFilter.class.getName() + ".TIMING";
+
+    private volatile boolean enabled = true;
+    private List<MediaType> timedMediaTypes = Arrays.asList(HypermediaTypes.APPLICATION_JSONLD, HypermediaTypes
+            .SIREN_JSON, HypermediaTypes.UBER_JSON, MediaType.TEXT_HTML);
+
+    /**
+     * Creates filter and installs the phase recorder which times requests passing the filter. The phase recorder
+     * decorates the recorder in use, so install other recorders such as <code>JfrPhaseRecorder</code> before.
+     */
+    public ServerTimingFilter() {
+        ServerTimingPhaseRecorder.install();
+    }
+
+    /**
+     * Switches timing on or off, on by default.
+     *
+     * @param enabled
+     *         true to time requests
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Sets the media types of responses which receive a Server-Timing header.
+     *
+     * @param timedMediaTypes
+     *         to time
+     */
+    public void setTimedMediaTypes(List<MediaType> timedMediaTypes) {
+        Assert.notNull(timedMediaTypes);
+        this.timedMediaTypes = timedMediaTypes;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain
+            filterChain) throws ServletException, IOException {
+        ServerTiming timing;
+        ContentCachingResponseWrapper responseWrapper;
+        if (isAsyncDispatch(request)) {
+            timing = (ServerTiming) request.getAttribute(TIMING_ATTRIBUTE);
+            responseWrapper = WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+        } else if (enabled) {
+            timing = new ServerTiming();
+            request.setAttribute(TIMING_ATTRIBUTE, timing);
+            responseWrapper = new ContentCachingResponseWrapper(response);
+        } else {
+            timing = null;
+            responseWrapper = null;
+        }
+        if (timing == null || responseWrapper == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        ServerTiming previous = ServerTimingPhaseRecorder.bind(timing);
+        try {
+            filterChain.doFilter(request, responseWrapper);
+        } finally {
+            ServerTimingPhaseRecorder.bind(previous);
+            if (!isAsyncStarted(request)) {
+                if (isTimed(responseWrapper)) {
+                    responseWrapper.setHeader(SERVER_TIMING, timing.toHeaderValue());
+                }
+                responseWrapper.copyBodyToResponse();
+            }
+        }
+    }
+
+    private boolean isTimed(HttpServletResponse response) {
+        if (response.isCommitted() || response.getContentType() == null) {
+            return false;
+        }
+        MediaType contentType = MediaType.parseMediaType(response.getContentType());
+        for (MediaType timedMediaType : timedMediaTypes) {
+            if (timedMediaType.isCompatibleWith(contentType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring;
+
+import de.escalon.hypermedia.metrics.PhaseRecorder;
+import de.escalon.hypermedia.metrics.PhaseSpan;
+import de.escalon.hypermedia.metrics.RenderingPhase;
+
+/**
+ * Decorates the phase recorder in use and times the phases of requests which have a {@link ServerTiming} bound to
+ * the current thread. Phases outside of such requests are only passed to the decorated recorder.
+ */
+final class ServerTimingPhaseRecorder extends PhaseRecorder {
+
+    private static final ThreadLocal<ServerTiming> CURRENT = new ThreadLocal<ServerTiming>();
+
+    private final PhaseRecorder delegate;
+
+    private ServerTimingPhaseRecorder(PhaseRecorder delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Installs a server timing recorder which decorates the recorder in use, unless one is installed already.
+     * Recorders which replace the recorder in use, such as <code>JfrPhaseRecorder.install()</code>, must be
+     * installed before, otherwise they replace the server timing recorder.
+     */
+    static synchronized void install() {
+        PhaseRecorder current = PhaseRecorder.getInstance();
+        if (!(current instanceof ServerTimingPhaseRecorder)) {
+            PhaseRecorder.setInstance(new ServerTimingPhaseRecorder(current));
+        }
+    }
+
+    /**
+     * Binds a timing to the current thread.
+     *
+     * @param timing
+     *         to record phases of the current thread into, may be null to stop timing
+     * @return previously bound timing or null
+     */
+    static ServerTiming bind(ServerTiming timing) {
+        ServerTiming previous = CURRENT.get();
+        if (timing == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(timing);
+        }
+        return previous;
+    }
+
+    @Override
+    public PhaseSpan begin(RenderingPhase phase) {
+        PhaseSpan span = delegate.begin(phase);
+        ServerTiming timing = CURRENT.get();
+        return timing == null ? span : timing.begin(phase, span);
+    }
+}
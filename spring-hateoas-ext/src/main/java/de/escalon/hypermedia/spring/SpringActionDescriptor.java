@@ -25,9 +25,11 @@ import org.springframework.core.MethodParameter;
 import org.springframework.util.Assert;
 
 import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -52,6 +54,7 @@ public class SpringActionDescriptor implements ActionDescriptor {
 
     private ActionInputParameter requestBody;
     private Cardinality cardinality = Cardinality.SINGLE;
+    private Method handlerMethod;
 
     /**
      * Creates an {@link ActionDescriptor}.
@@ -283,6 +286,26 @@ public class SpringActionDescriptor implements ActionDescriptor {
         this.requestBody = requestBody;
     }
 
+    /**
+     * Handler method which this action invokes, if the descriptor was created from a method invocation.
+     *
+     * @return handler method or null
+     */
+    public Method getHandlerMethod() {
+        return handlerMethod;
+    }
+
+    /**
+     * Sets the handler method which this action invokes. Its parameters and their annotations determine the inputs of
+     * the action, hence representations may cache what they derive from them per handler method.
+     *
+     * @param handlerMethod
+     *         invoked by the action
+     */
+    public void setHandlerMethod(Method handlerMethod) {
+        this.handlerMethod = handlerMethod;
+    }
+
     /**
      * Gets semantic type of action, e.g. a subtype of hydra:Operation or schema:Action. Use {@link Action} on a method
      * handler to define the semantic type of an action.
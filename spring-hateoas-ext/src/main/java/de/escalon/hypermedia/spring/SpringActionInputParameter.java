@@ -20,6 +20,7 @@ import de.escalon.hypermedia.action.Type;
 import de.escalon.hypermedia.affordance.ActionDescriptor;
 import de.escalon.hypermedia.affordance.ActionInputParameter;
 import de.escalon.hypermedia.affordance.DataType;
+import de.escalon.hypermedia.metrics.HypermediaMetrics;
 import org.springframework.core.LocalVariableTableParameterNameDiscoverer;
 import org.springframework.core.MethodParameter;
 import org.springframework.core.convert.ConversionService;
@@ -292,34 +293,14 @@ public class SpringActionInputParameter implements ActionInputParameter {
 
     public Object[] getPossibleValues(MethodParameter methodParameter, ActionDescriptor actionDescriptor) {
         try {
-            Class<?> parameterType = methodParameter.getNestedParameterType();
-            Object[] possibleValues;
-            Class<?> nested;
-            if (Enum[].class.isAssignableFrom(parameterType)) {
-                possibleValues = parameterType.getComponentType()
-                        .getEnumConstants();
-            } else if (Enum.class.isAssignableFrom(parameterType)) {
-                possibleValues = parameterType.getEnumConstants();
-            } else if (Collection.class.isAssignableFrom(parameterType)
-                    && Enum.class.isAssignableFrom(nested = TypeDescriptor.nested(methodParameter, 1)
-                    .getType())) {
-                possibleValues = nested.getEnumConstants();
-            } else {
+            Object[] possibleValues = getEnumConstants(methodParameter);
+            if (possibleValues == null) {
                 Select select = methodParameter.getParameterAnnotation(Select.class);
                 if (select != null) {
-                    Class<? extends Options> optionsClass = select.options();
-                    Options options = optionsClass.newInstance();
-                    // collect call values to pass to options.get
-                    List<Object> from = new ArrayList<Object>();
-                    for (String paramName : select.args()) {
-                        ActionInputParameter parameterValue = actionDescriptor.getActionInputParameter(paramName);
-                        if (parameterValue != null) {
-                            from.add(parameterValue.getValue());
-                        }
-                    }
-
-                    Object[] args = from.toArray();
-                    possibleValues = options.get(select.value(), args);
+                    Options options = select.options()
+                            .newInstance();
+                    possibleValues = lookUpOptions(options, select.value(), getOptionsArgs(select,
+                            actionDescriptor));
                 } else {
                     possibleValues = new Object[0];
                 }
@@ -330,6 +311,85 @@ public class SpringActionInputParameter implements ActionInputParameter {
         }
     }
 
+    /**
+     * Gets enum constants if the method parameter is an enum, an array of enums or a collection of enums.
+     *
+     * @param methodParameter
+     *         to check
+     * @return enum constants or null if the parameter is not enum-typed
+     */
+    static Object[] getEnumConstants(MethodParameter methodParameter) {
+        Class<?> parameterType = methodParameter.getNestedParameterType();
+        Object[] enumConstants;
+        Class<?> nested;
+        if (Enum[].class.isAssignableFrom(parameterType)) {
+            enumConstants = parameterType.getComponentType()
+                    .getEnumConstants();
+        } else if (Enum.class.isAssignableFrom(parameterType)) {
+            enumConstants = parameterType.getEnumConstants();
+        } else if (Collection.class.isAssignableFrom(parameterType)
+                && Enum.class.isAssignableFrom(nested = TypeDescriptor.nested(methodParameter, 1)
+                .getType())) {
+            enumConstants = nested.getEnumConstants();
+        } else {
+            enumConstants = null;
+        }
+        return enumConstants;
+    }
+
+    /**
+     * Collects the call values of the arguments named by {@link Select#args()}, to be passed to {@link Options#get}.
+     *
+     * @param select
+     *         annotation defining the args
+     * @param actionDescriptor
+     *         providing access to the other arguments of the same call
+     * @return args, may be empty
+     */
+    static Object[] getOptionsArgs(Select select, ActionDescriptor actionDescriptor) {
+        List<Object> from = new ArrayList<Object>();
+        for (String paramName : select.args()) {
+            ActionInputParameter parameterValue = actionDescriptor.getActionInputParameter(paramName);
+            if (parameterValue != null) {
+                from.add(parameterValue.getValue());
+            }
+        }
+        return from.toArray();
+    }
+
+    /**
+     * Looks up possible values and reports the lookup time to the {@link HypermediaMetrics}.
+     *
+     * @param options
+     *         to ask
+     * @param value
+     *         of the select annotation
+     * @param args
+     *         as returned by {@link #getOptionsArgs(Select, ActionDescriptor)}
+     * @return possible values
+     */
+    static Object[] lookUpOptions(Options options, String[] value, Object[] args) {
+        HypermediaMetrics metrics = HypermediaMetrics.getInstance();
+        if (!metrics.isEnabled()) {
+            return options.get(value, args);
+        }
+        long start = System.nanoTime();
+        try {
+            return options.get(value, args);
+        } finally {
+            metrics.recordOptionsLookup(options.getClass(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Underlying method parameter.
+     *
+     * @return method parameter
+     */
+    MethodParameter getMethodParameter() {
+        return methodParameter;
+    }
+
     /**
      * Determines if action input parameter is an array or collection.
      *
@@ -0,0 +1,347 @@
+package de.escalon.hypermedia.spring.siren;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import de.escalon.hypermedia.BeanMetadata;
+import de.escalon.hypermedia.RepresentationBudget;
+import de.escalon.hypermedia.affordance.Affordance;
+import de.escalon.hypermedia.affordance.DataType;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.Resource;
+import org.springframework.hateoas.ResourceSupport;
+import org.springframework.hateoas.Resources;
+
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.*;
+
+/**
+ * Writes a resource as siren entity directly to a {@link JsonGenerator}. Produces the same structure as {@link
+ * SirenUtils#toSirenEntity} followed by serialization of the resulting {@link SirenEntity}, but the resource is walked
+ * only once and no entity tree is built. While the properties of an entity are written, only references to the objects
+ * which become its sub-entities are kept; they are written as soon as the properties are complete. Actions are still
+ * created as {@link SirenAction}s, since they are few per entity and share the field logic of {@link SirenUtils}.
+ */
+class SirenJsonWriter {
+
+    private final SirenUtils sirenUtils;
+    private final JsonGenerator jgen;
+    private final RepresentationBudget.Usage budgetUsage;
+    /** number of entities and property objects enclosing the node being written */
+    private int depth;
+
+    /**
+     * Creates writer which counts entities and property objects against a budget.
+     *
+     * @param budgetUsage
+     *         to count nodes, may be null
+     */
+    SirenJsonWriter(SirenUtils sirenUtils, JsonGenerator jgen, RepresentationBudget.Usage budgetUsage) {
+        this.sirenUtils = sirenUtils;
+        this.jgen = jgen;
+        this.budgetUsage = budgetUsage;
+    }
+
+    /**
+     * Entity whose properties are being written.
+     */
+    private static class Entity {
+
+        List<Link> navigationalLinks = Collections.emptyList();
+        List<Link> actionLinks = Collections.emptyList();
+        /** embedded links, collection items and related beans, in the order they were found */
+        final List<Object> subEntities = new ArrayList<Object>();
+        boolean propertiesStarted;
+
+        void addLinks(SirenUtils.SirenLinks sirenLinks) {
+            navigationalLinks = sirenLinks.navigationalLinks;
+            subEntities.addAll(sirenLinks.embeddedLinks);
+            actionLinks = sirenLinks.actionLinks;
+        }
+
+        void addItems(Collection<?> items) {
+            for (Object item : items) {
+                subEntities.add(new EmbeddedItem(item));
+            }
+        }
+    }
+
+    /**
+     * Collection item, becomes an embedded representation without rel.
+     */
+    private static class EmbeddedItem {
+
+        final Object item;
+
+        EmbeddedItem(Object item) {
+            this.item = item;
+        }
+    }
+
+    /**
+     * Bean or resource found in a property, becomes an embedded representation with the property as rel.
+     */
+    private static class RelatedItem {
+
+        final Object content;
+        final String rel;
+
+        RelatedItem(Object content, String rel) {
+            this.content = content;
+            this.rel = rel;
+        }
+    }
+
+    void writeEntity(Object object) throws IOException {
+        writeEntity(object, null);
+    }
+
+    private void writeEntity(Object object, List<String> rels) throws IOException {
+        Entity entity = new Entity();
+        Object content = object;
+        // unwrap resources, their links apply to the entity
+        while (content != null) {
+            if (content instanceof Resource) {
+                Resource<?> resource = (Resource<?>) content;
+                entity.addLinks(sirenUtils.classifyLinks(resource.getLinks()));
+                content = resource.getContent();
+            } else if (content instanceof Resources) {
+                Resources<?> resources = (Resources<?>) content;
+                SirenUtils.SirenLinks sirenLinks = sirenUtils.classifyLinks(resources.getLinks());
+                entity.navigationalLinks = sirenLinks.navigationalLinks;
+                entity.addItems(resources.getContent());
+                entity.actionLinks = sirenLinks.actionLinks;
+                content = null;
+            } else if (content instanceof ResourceSupport) {
+                entity.addLinks(sirenUtils.classifyLinks(((ResourceSupport) content).getLinks()));
+                break;
+            } else if (content instanceof Collection) {
+                entity.addItems((Collection<?>) content);
+                content = null;
+            } else {
+                break;
+            }
+        }
+
+        enterNode();
+        jgen.writeStartObject();
+        if (content != null && !(content instanceof Map)) {
+            writeStrings("class", sirenUtils.getSirenClasses(content));
+        }
+        writeStrings("rel", rels);
+        if (content instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) content).entrySet()) {
+                String key = entry.getKey()
+                        .toString();
+                Object value = entry.getValue();
+                String docUrl = sirenUtils.getDocumentationProvider()
+                        .getDocumentationUrl(key, value);
+                writeAttribute(entity, true, key, docUrl, value);
+            }
+        } else if (content != null) {
+            writeBeanProperties(entity, true, content);
+        }
+        writeRemainder(entity);
+        depth--;
+    }
+
+    private void writeRelatedEntity(Object content, String rel) throws IOException {
+        Object bean;
+        List<Link> links;
+        if (content instanceof Resource) {
+            bean = ((Resource) content).getContent();
+            links = ((Resource) content).getLinks();
+        } else if (content instanceof ResourceSupport) {
+            bean = content;
+            links = ((ResourceSupport) content).getLinks();
+        } else {
+            bean = content;
+            links = Collections.emptyList();
+        }
+        Entity entity = new Entity();
+        entity.addLinks(sirenUtils.classifyLinks(links));
+
+        enterNode();
+        jgen.writeStartObject();
+        writeStrings("class", sirenUtils.getSirenClasses(bean));
+        writeStrings("rel", Collections.singletonList(rel));
+        writeBeanProperties(entity, true, bean);
+        writeRemainder(entity);
+        depth--;
+    }
+
+    /**
+     * Closes the properties of the entity, writes its sub-entities, actions and links and ends the entity.
+     */
+    private void writeRemainder(Entity entity) throws IOException {
+        if (entity.propertiesStarted) {
+            jgen.writeEndObject();
+        }
+        if (!entity.subEntities.isEmpty()) {
+            jgen.writeArrayFieldStart("entities");
+            for (Object subEntity : entity.subEntities) {
+                if (subEntity instanceof Link) {
+                    writeLink((Link) subEntity);
+                } else if (subEntity instanceof EmbeddedItem) {
+                    writeEntity(((EmbeddedItem) subEntity).item, null);
+                } else {
+                    RelatedItem relatedItem = (RelatedItem) subEntity;
+                    writeRelatedEntity(relatedItem.content, relatedItem.rel);
+                }
+            }
+            jgen.writeEndArray();
+        }
+        List<SirenAction> actions = sirenUtils.toSirenActions(entity.actionLinks);
+        if (!actions.isEmpty()) {
+            jgen.writeFieldName("actions");
+            jgen.writeObject(actions);
+        }
+        if (!entity.navigationalLinks.isEmpty()) {
+            jgen.writeArrayFieldStart("links");
+            for (Link link : entity.navigationalLinks) {
+                writeLink(link);
+            }
+            jgen.writeEndArray();
+        }
+        jgen.writeEndObject();
+    }
+
+    private void writeLink(Link link) throws IOException {
+        jgen.writeStartObject();
+        if (link instanceof Affordance) {
+            writeStrings("rel", ((Affordance) link).getRels());
+        } else {
+            writeStrings("rel", Collections.singletonList(link.getRel()));
+        }
+        String href = link.getHref();
+        if (href != null && !href.isEmpty()) {
+            jgen.writeStringField("href", href);
+        }
+        jgen.writeEndObject();
+    }
+
+    private void writeBeanProperties(Entity entity, boolean topLevel, Object bean) throws IOException {
+        BeanMetadata beanMetadata = BeanMetadata.forBean(bean);
+        try {
+            for (Map.Entry<String, Method> readMethodEntry : beanMetadata.getReadMethods()
+                    .entrySet()) {
+                String name = readMethodEntry.getKey();
+                if (SirenUtils.FILTER_RESOURCE_SUPPORT.contains(name)) {
+                    continue;
+                }
+                Method readMethod = readMethodEntry.getValue();
+                Object content = readMethod.invoke(bean);
+                String docUrl = sirenUtils.getDocumentationProvider()
+                        .getDocumentationUrl(readMethod, content);
+                writeAttribute(entity, topLevel, name, docUrl, content);
+            }
+
+            Map<String, PropertyDescriptor> propertyDescriptors = beanMetadata.getPropertyDescriptors();
+            for (Field field : beanMetadata.getFields()
+                    .values()) {
+                String name = field.getName();
+                if (!propertyDescriptors.containsKey(name)) {
+                    Object content = field.get(bean);
+                    String docUrl = sirenUtils.getDocumentationProvider()
+                            .getDocumentationUrl(field, content);
+                    writeAttribute(entity, topLevel, name, docUrl, content);
+                }
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("failed to transform object " + bean, e);
+        }
+    }
+
+    private void writeAttribute(Entity entity, boolean topLevel, String name, String docUrl, Object content)
+            throws IOException {
+        Object value = sirenUtils.getContentAsScalarValue(content);
+        if (value == SirenUtils.NULL_VALUE) {
+            return;
+        }
+        if (value != null) {
+            // for each scalar property of a simple bean, add valuepair
+            writePropertyName(entity, topLevel, name);
+            jgen.writeObject(value);
+        } else if (content instanceof Resources) {
+            Resources<?> resources = (Resources<?>) content;
+            SirenUtils.SirenLinks sirenLinks = sirenUtils.classifyLinks(resources.getLinks());
+            entity.navigationalLinks = sirenLinks.navigationalLinks;
+            entity.addItems(resources.getContent());
+            entity.actionLinks = sirenLinks.actionLinks;
+        } else if (content instanceof ResourceSupport) {
+            entity.subEntities.add(new RelatedItem(content, docUrl != null ? docUrl : name));
+        } else if (content instanceof Collection) {
+            boolean arrayStarted = false;
+            for (Object item : (Collection<?>) content) {
+                if (item == null) {
+                    continue;
+                }
+                if (DataType.isSingleValueType(item.getClass())) {
+                    if (!arrayStarted) {
+                        writePropertyName(entity, topLevel, name);
+                        jgen.writeStartArray();
+                        arrayStarted = true;
+                    }
+                    jgen.writeObject(item);
+                } else {
+                    entity.subEntities.add(new RelatedItem(item, docUrl != null ? docUrl : name));
+                }
+            }
+            if (arrayStarted) {
+                jgen.writeEndArray();
+            }
+        } else if (content instanceof Map) {
+            writePropertyName(entity, topLevel, name);
+            enterNode();
+            jgen.writeStartObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) content).entrySet()) {
+                writeAttribute(entity, false, String.valueOf(entry.getKey()), docUrl, entry.getValue());
+            }
+            jgen.writeEndObject();
+            depth--;
+        } else {
+            writePropertyName(entity, topLevel, name);
+            enterNode();
+            jgen.writeStartObject();
+            writeBeanProperties(entity, false, content);
+            jgen.writeEndObject();
+            depth--;
+        }
+    }
+
+    /**
+     * Counts the node which is about to be written against the budget and descends into it.
+     */
+    private void enterNode() throws IOException {
+        if (budgetUsage != null) {
+            budgetUsage.countNode(depth);
+        }
+        depth++;
+    }
+
+    /**
+     * Writes the name of a property. The properties object of the entity is started with its first property, so that
+     * entities without properties have no properties object.
+     */
+    private void writePropertyName(Entity entity, boolean topLevel, String name) throws IOException {
+        if (topLevel && !entity.propertiesStarted) {
+            jgen.writeObjectFieldStart("properties");
+            entity.propertiesStarted = true;
+        }
+        jgen.writeFieldName(name);
+    }
+
+    private void writeStrings(String fieldName, List<String> strings) throws IOException {
+        if (strings == null || strings.isEmpty()) {
+            return;
+        }
+        jgen.writeArrayFieldStart(fieldName);
+        for (String string : strings) {
+            jgen.writeString(string);
+        }
+        jgen.writeEndArray();
+    }
+}
@@ -5,7 +5,10 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import de.escalon.hypermedia.RepresentationBudget;
 import de.escalon.hypermedia.spring.DocumentationProvider;
+import de.escalon.hypermedia.spring.MeteredOutputMessage;
+import de.escalon.hypermedia.spring.OptionsPrefetcher;
 import org.springframework.hateoas.RelProvider;
 import org.springframework.http.HttpInputMessage;
 import org.springframework.http.HttpOutputMessage;
@@ -13,6 +16,7 @@ import org.springframework.http.MediaType;
 import org.springframework.http.converter.AbstractHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.util.Assert;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
@@ -26,6 +30,7 @@ public class SirenMessageConverter extends AbstractHttpMessageConverter<Object>
 
     private final SirenUtils sirenUtils;
     ObjectMapper objectMapper = new ObjectMapper();
+    private RepresentationBudget budget = RepresentationBudget.UNLIMITED;
 
     public SirenMessageConverter() {
         sirenUtils = new SirenUtils();
@@ -72,6 +77,28 @@ public class SirenMessageConverter extends AbstractHttpMessageConverter<Object>
         sirenUtils.setDocumentationProvider(documentationProvider);
     }
 
+    /**
+     * Sets prefetcher to look up possible values of all fields of an action concurrently before the action is
+     * written.
+     *
+     * @param optionsPrefetcher
+     *         to use, may be null to look up possible values one after another
+     */
+    public void setOptionsPrefetcher(OptionsPrefetcher optionsPrefetcher) {
+        sirenUtils.setOptionsPrefetcher(optionsPrefetcher);
+    }
+
+    /**
+     * Sets limits for the depth, number of nodes and size of every siren response. Responses which exceed them
+     * fail with a {@link de.escalon.hypermedia.RepresentationBudgetExceededException}.
+     *
+     * @param budget
+     *         to enforce, {@link RepresentationBudget#UNLIMITED} by default
+     */
+    public void setBudget(RepresentationBudget budget) {
+        Assert.notNull(budget, "budget must not be null");
+        this.budget = budget;
+    }
 
     @Override
     protected boolean supports(Class<?> clazz) {
@@ -87,13 +114,11 @@ public class SirenMessageConverter extends AbstractHttpMessageConverter<Object>
     @Override
     protected void writeInternal(Object o, HttpOutputMessage outputMessage) throws IOException,
             HttpMessageNotWritableException {
-        SirenEntity entity = new SirenEntity();
-        sirenUtils.toSirenEntity(entity, o);
-
-        JsonEncoding encoding = getJsonEncoding(outputMessage.getHeaders()
+        HttpOutputMessage message = MeteredOutputMessage.wrap(outputMessage);
+        JsonEncoding encoding = getJsonEncoding(message.getHeaders()
                 .getContentType());
         JsonGenerator jsonGenerator = this.objectMapper.getFactory()
-                .createGenerator(outputMessage.getBody(), encoding);
+                .createGenerator(budget.limit(message.getBody()), encoding);
 
         // A workaround for JsonGenerators not applying serialization features
         // https://github.com/FasterXML/jackson-databind/issues/12
@@ -102,9 +127,12 @@ public class SirenMessageConverter extends AbstractHttpMessageConverter<Object>
         }
 
         try {
-            this.objectMapper.writeValue(jsonGenerator, entity);
+            sirenUtils.writeSirenEntity(jsonGenerator, o, budget);
+            jsonGenerator.flush();
         } catch (JsonProcessingException ex) {
             throw new HttpMessageNotWritableException("Could not write JSON: " + ex.getMessage(), ex);
+        } finally {
+            MeteredOutputMessage.record(message, this, o);
         }
     }
 
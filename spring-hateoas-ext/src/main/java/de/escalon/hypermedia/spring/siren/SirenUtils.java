@@ -4,6 +4,7 @@ import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
@@ -13,15 +14,24 @@ import java.util.*;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import de.escalon.hypermedia.BeanMetadata;
 import de.escalon.hypermedia.PropertyUtils;
+import de.escalon.hypermedia.RepresentationBudget;
 import de.escalon.hypermedia.action.Type;
 import de.escalon.hypermedia.affordance.ActionDescriptor;
 import de.escalon.hypermedia.affordance.ActionInputParameter;
 import de.escalon.hypermedia.affordance.Affordance;
 import de.escalon.hypermedia.affordance.DataType;
+import de.escalon.hypermedia.metrics.PhaseRecorder;
+import de.escalon.hypermedia.metrics.PhaseSpan;
+import de.escalon.hypermedia.metrics.RenderingPhase;
 import de.escalon.hypermedia.spring.DefaultDocumentationProvider;
 import de.escalon.hypermedia.spring.DocumentationProvider;
+import de.escalon.hypermedia.spring.HypermediaTypes;
+import de.escalon.hypermedia.spring.OptionsPrefetcher;
+import de.escalon.hypermedia.spring.PrefetchedOptions;
 import de.escalon.hypermedia.spring.SpringActionInputParameter;
 import org.springframework.core.MethodParameter;
 import org.springframework.hateoas.*;
@@ -34,7 +44,9 @@ import org.springframework.util.ObjectUtils;
  */
 public class SirenUtils {
 
-    private static final Set<String> FILTER_RESOURCE_SUPPORT = new HashSet<String>(Arrays.asList("class", "links",
+    private static final String SIREN_JSON = HypermediaTypes.SIREN_JSON.toString();
+
+    static final Set<String> FILTER_RESOURCE_SUPPORT = new HashSet<String>(Arrays.asList("class", "links",
             "id"));
     private String requestMediaType;
 
@@ -44,6 +56,54 @@ public class SirenUtils {
 
     private DocumentationProvider documentationProvider = new DefaultDocumentationProvider();
 
+    private OptionsPrefetcher optionsPrefetcher;
+
+    private static final int MAX_TEMPLATED_LINK_ACTIONS = 256;
+
+    private static final SirenAction NO_ACTION = new SirenAction(null, null, null, null, null, null, null);
+
+    private final Map<String, SirenAction> templatedLinkActions = new LinkedHashMap<String, SirenAction>(16, 0.75f,
+            true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SirenAction> eldest) {
+            return size() > MAX_TEMPLATED_LINK_ACTIONS;
+        }
+    };
+
+    /**
+     * Writes the given object as siren entity to the generator, without building a {@link SirenEntity} first.
+     *
+     * @param jgen
+     *         to write to, must have an {@link com.fasterxml.jackson.databind.ObjectMapper} as codec
+     * @param object
+     *         to write
+     * @throws IOException
+     *         if writing fails
+     * @see SirenJsonWriter
+     */
+    public void writeSirenEntity(JsonGenerator jgen, Object object) throws IOException {
+        writeSirenEntity(jgen, object, RepresentationBudget.UNLIMITED);
+    }
+
+    /**
+     * Writes the given object as siren entity to the generator, counting entities and nested property objects
+     * against the given budget.
+     *
+     * @param jgen
+     *         to write to, must have an {@link com.fasterxml.jackson.databind.ObjectMapper} as codec
+     * @param object
+     *         to write
+     * @param budget
+     *         limiting depth and number of nodes
+     * @throws IOException
+     *         if writing fails, {@link de.escalon.hypermedia.RepresentationBudgetExceededException} if the entity
+     *         exceeds the budget
+     */
+    public void writeSirenEntity(JsonGenerator jgen, Object object, RepresentationBudget budget) throws
+            IOException {
+        new SirenJsonWriter(this, jgen, budget.isUnlimited() ? null : budget.newUsage()).writeEntity(object);
+    }
+
     public void toSirenEntity(SirenEntityContainer objectNode, Object object) {
         if (object == null) {
             return;
@@ -51,29 +111,27 @@ public class SirenUtils {
         try {
             if (object instanceof Resource) {
                 Resource<?> resource = (Resource<?>) object;
-                objectNode.setLinks(this.toSirenLinks(
-                        getNavigationalLinks(resource.getLinks())));
-                objectNode.setEmbeddedLinks(this.toSirenEmbeddedLinks(
-                        getEmbeddedLinks(resource.getLinks())));
-                objectNode.setActions(this.toSirenActions(getActions(resource.getLinks())));
+                SirenLinks sirenLinks = classifyLinks(resource.getLinks());
+                objectNode.setLinks(this.toSirenLinks(sirenLinks.navigationalLinks));
+                objectNode.setEmbeddedLinks(this.toSirenEmbeddedLinks(sirenLinks.embeddedLinks));
+                objectNode.setActions(this.toSirenActions(sirenLinks.actionLinks));
                 toSirenEntity(objectNode, resource.getContent());
                 return;
             } else if (object instanceof Resources) {
                 Resources<?> resources = (Resources<?>) object;
+                SirenLinks sirenLinks = classifyLinks(resources.getLinks());
 
-                objectNode.setLinks(this.toSirenLinks(getNavigationalLinks(resources.getLinks())));
+                objectNode.setLinks(this.toSirenLinks(sirenLinks.navigationalLinks));
                 Collection<?> content = resources.getContent();
                 toSirenEntity(objectNode, content);
-                objectNode.setActions(this.toSirenActions(getActions(resources.getLinks())));
+                objectNode.setActions(this.toSirenActions(sirenLinks.actionLinks));
                 return;
             } else if (object instanceof ResourceSupport) {
                 ResourceSupport resource = (ResourceSupport) object;
-                objectNode.setLinks(this.toSirenLinks(
-                        getNavigationalLinks(resource.getLinks())));
-                objectNode.setEmbeddedLinks(this.toSirenEmbeddedLinks(
-                        getEmbeddedLinks(resource.getLinks())));
-                objectNode.setActions(this.toSirenActions(
-                        getActions(resource.getLinks())));
+                SirenLinks sirenLinks = classifyLinks(resource.getLinks());
+                objectNode.setLinks(this.toSirenLinks(sirenLinks.navigationalLinks));
+                objectNode.setEmbeddedLinks(this.toSirenEmbeddedLinks(sirenLinks.embeddedLinks));
+                objectNode.setActions(this.toSirenActions(sirenLinks.actionLinks));
 
                 // wrap object attributes below to avoid endless loop
 
@@ -109,7 +167,7 @@ public class SirenUtils {
         }
     }
 
-    private List<String> getSirenClasses(Object object) {
+    List<String> getSirenClasses(Object object) {
         List<String> sirenClasses;
         String sirenClass = relProvider.getItemResourceRelFor(object.getClass());
         if (sirenClass != null) {
@@ -120,88 +178,81 @@ public class SirenUtils {
         return sirenClasses;
     }
 
-    private List<Link> getEmbeddedLinks(List<Link> links) {
-        List<Link> ret = new ArrayList<Link>();
-        for (Link link : links) {
-            if (!navigationalRels.contains(link.getRel())) {
-                if (link instanceof Affordance) {
-                    Affordance affordance = (Affordance) link;
-                    List<ActionDescriptor> actionDescriptors = affordance.getActionDescriptors();
-                    for (ActionDescriptor actionDescriptor : actionDescriptors) {
-                        if ("GET".equals(actionDescriptor.getHttpMethod()) && !affordance.isTemplated()) {
-                            ret.add(link);
-                        }
-                    }
-                } else {
-                    // templated links are actions, not embedded links
-                    if(!link.isTemplated()) {
-                        ret.add(link);
-                    }
-                }
-            }
-        }
-        return ret;
-    }
+    /**
+     * Links of a resource, sorted by the way siren represents them.
+     */
+    static class SirenLinks {
 
-    private List<Link> getNavigationalLinks(List<Link> links) {
-        List<Link> ret = new ArrayList<Link>();
-        for (Link link : links) {
-            if (navigationalRels.contains(link.getRel())) {
-                ret.add(link);
-            }
-        }
-        return ret;
+        final List<Link> navigationalLinks = new ArrayList<Link>();
+        final List<Link> embeddedLinks = new ArrayList<Link>();
+        final List<Link> actionLinks = new ArrayList<Link>();
     }
 
-    private List<Link> getActions(List<Link> links) {
-        List<Link> ret = new ArrayList<Link>();
+    /**
+     * Sorts links into navigational links, embedded links and actions in a single pass.
+     *
+     * @param links
+     *         to sort
+     * @return sorted links
+     */
+    SirenLinks classifyLinks(List<Link> links) {
+        SirenLinks ret = new SirenLinks();
         for (Link link : links) {
+            boolean navigational = navigationalRels.contains(link.getRel());
+            if (navigational) {
+                ret.navigationalLinks.add(link);
+            }
             if (link instanceof Affordance) {
                 Affordance affordance = (Affordance) link;
-
+                boolean action = false;
                 List<ActionDescriptor> actionDescriptors = affordance.getActionDescriptors();
                 for (ActionDescriptor actionDescriptor : actionDescriptors) {
+                    boolean get = "GET".equals(actionDescriptor.getHttpMethod());
+                    if (!navigational && get && !affordance.isTemplated()) {
+                        ret.embeddedLinks.add(link);
+                    }
                     // non-self GET non-GET and templated links are actions
-                    if (!("GET".equals(actionDescriptor.getHttpMethod())) || affordance.isTemplated()) {
-                        ret.add(link);
-                        // add just once for eligible link
-                        break;
+                    if (!get || affordance.isTemplated()) {
+                        action = true;
                     }
                 }
-            } else {
-                // templated links are actions
-                if (!navigationalRels.contains(link.getRel()) && link.isTemplated()) {
-                    ret.add(link);
+                if (action) {
+                    // add just once for eligible link
+                    ret.actionLinks.add(link);
+                }
+            } else if (!navigational) {
+                // templated links are actions, not embedded links
+                if (link.isTemplated()) {
+                    ret.actionLinks.add(link);
+                } else {
+                    ret.embeddedLinks.add(link);
                 }
             }
         }
         return ret;
     }
 
-
     private void createRecursiveSirenEntitiesFromPropertiesAndFields(SirenEntityContainer objectNode, Map<String,
             Object> propertiesNode,
                                                                      Object object) throws InvocationTargetException,
             IllegalAccessException {
-        Map<String, PropertyDescriptor> propertyDescriptors = PropertyUtils.getPropertyDescriptors(object);
-        for (PropertyDescriptor propertyDescriptor : propertyDescriptors.values()) {
-            String name = propertyDescriptor.getName();
+        BeanMetadata beanMetadata = BeanMetadata.forBean(object);
+        for (Map.Entry<String, Method> readMethodEntry : beanMetadata.getReadMethods()
+                .entrySet()) {
+            String name = readMethodEntry.getKey();
             if (FILTER_RESOURCE_SUPPORT.contains(name)) {
                 continue;
             }
 
-            Method readMethod = propertyDescriptor.getReadMethod();
-            if (readMethod != null) {
-                Object content = readMethod
-                        .invoke(object);
-                String docUrl = documentationProvider.getDocumentationUrl(readMethod, content);
-                traverseAttribute(objectNode, propertiesNode, name, docUrl, content);
-            }
+            Method readMethod = readMethodEntry.getValue();
+            Object content = readMethod.invoke(object);
+            String docUrl = documentationProvider.getDocumentationUrl(readMethod, content);
+            traverseAttribute(objectNode, propertiesNode, name, docUrl, content);
         }
 
-        Field[] fields = object.getClass()
-                .getFields();
-        for (Field field : fields) {
+        Map<String, PropertyDescriptor> propertyDescriptors = beanMetadata.getPropertyDescriptors();
+        for (Field field : beanMetadata.getFields()
+                .values()) {
             String name = field.getName();
             if (!propertyDescriptors.containsKey(name)) {
                 Object content = field.get(object);
@@ -276,26 +327,29 @@ public class SirenUtils {
 
         Map<String, Object> properties = new HashMap<String, Object>();
         List<String> rels = Collections.singletonList(docUrl != null ? docUrl : name);
+        SirenLinks sirenLinks = classifyLinks(links);
         SirenEmbeddedRepresentation subEntity = new SirenEmbeddedRepresentation(
-                getSirenClasses(bean), properties, null, toSirenActions(getActions(links)),
-                toSirenLinks(getNavigationalLinks(links)), rels, null);
+                getSirenClasses(bean), properties, null, toSirenActions(sirenLinks.actionLinks),
+                toSirenLinks(sirenLinks.navigationalLinks), rels, null);
         //subEntity.setProperties(properties);
         objectNode.addSubEntity(subEntity);
-        List<SirenEmbeddedLink> sirenEmbeddedLinks = toSirenEmbeddedLinks(getEmbeddedLinks(links));
+        List<SirenEmbeddedLink> sirenEmbeddedLinks = toSirenEmbeddedLinks(sirenLinks.embeddedLinks);
         for (SirenEmbeddedLink sirenEmbeddedLink : sirenEmbeddedLinks) {
             subEntity.addSubEntity(sirenEmbeddedLink);
         }
         createRecursiveSirenEntitiesFromPropertiesAndFields(subEntity, properties, bean);
     }
 
-    private List<SirenAction> toSirenActions(List<Link> links) {
+    List<SirenAction> toSirenActions(List<Link> links) {
         List<SirenAction> ret = new ArrayList<SirenAction>();
+        PrefetchedOptions prefetched = optionsPrefetcher != null ? optionsPrefetcher.prefetch(links) :
+                PrefetchedOptions.NONE;
         for (Link link : links) {
             if (link instanceof Affordance) {
                 Affordance affordance = (Affordance) link;
                 List<ActionDescriptor> actionDescriptors = affordance.getActionDescriptors();
                 for (ActionDescriptor actionDescriptor : actionDescriptors) {
-                    List<SirenField> fields = toSirenFields(actionDescriptor);
+                    List<SirenField> fields = toSirenFields(actionDescriptor, prefetched);
                     // TODO integrate getActions and this method so we do not need this check:
                     // only templated affordances or non-get affordances are actions
                     if (!"GET".equals(actionDescriptor.getHttpMethod()) || affordance.isTemplated()) {
@@ -313,23 +367,8 @@ public class SirenUtils {
                     }
                 }
             } else if (link.isTemplated()) {
-                List<SirenField> fields = new ArrayList<SirenField>();
-                List<TemplateVariable> variables = link.getVariables();
-                boolean queryOnly = false;
-                for (TemplateVariable variable : variables) {
-                    queryOnly = isQueryParam(variable);
-                    if (!queryOnly) {
-                        break;
-                    }
-                    fields.add(new SirenField(variable.getName(), "text", (String) null, variable.getDescription(),
-                            null));
-                }
-                // no support for non-query fields in siren
-                if (queryOnly) {
-                    String baseUri = new UriTemplate(link.getHref()).expand()
-                            .toASCIIString();
-                    SirenAction sirenAction = new SirenAction(null, null, null, "GET",
-                            baseUri, null, fields);
+                SirenAction sirenAction = getTemplatedLinkAction(link);
+                if (sirenAction != NO_ACTION) {
                     ret.add(sirenAction);
                 }
             }
@@ -337,6 +376,49 @@ public class SirenUtils {
         return ret;
     }
 
+    /**
+     * Gets query action for a templated link which is not an affordance. The action only depends on the link template,
+     * so it is parsed once per template.
+     *
+     * @param link
+     *         templated link
+     * @return action or {@link #NO_ACTION} if the template has variables other than query variables
+     */
+    private SirenAction getTemplatedLinkAction(Link link) {
+        String href = link.getHref();
+        synchronized (templatedLinkActions) {
+            SirenAction cached = templatedLinkActions.get(href);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        List<SirenField> fields = new ArrayList<SirenField>();
+        List<TemplateVariable> variables = link.getVariables();
+        boolean queryOnly = false;
+        for (TemplateVariable variable : variables) {
+            queryOnly = isQueryParam(variable);
+            if (!queryOnly) {
+                break;
+            }
+            fields.add(new SirenField(variable.getName(), "text", (String) null, variable.getDescription(),
+                    null));
+        }
+        // no support for non-query fields in siren
+        SirenAction ret;
+        if (queryOnly) {
+            String baseUri = new UriTemplate(href).expand()
+                    .toASCIIString();
+            ret = new SirenAction(null, null, null, "GET",
+                    baseUri, null, Collections.unmodifiableList(fields));
+        } else {
+            ret = NO_ACTION;
+        }
+        synchronized (templatedLinkActions) {
+            templatedLinkActions.put(href, ret);
+        }
+        return ret;
+    }
+
     private boolean isQueryParam(TemplateVariable variable) {
         boolean queryOnly;
         switch (variable.getType()) {
@@ -350,23 +432,28 @@ public class SirenUtils {
         return queryOnly;
     }
 
-    private List<SirenField> toSirenFields(ActionDescriptor actionDescriptor) {
+    private List<SirenField> toSirenFields(ActionDescriptor actionDescriptor, PrefetchedOptions prefetched) {
+        PhaseSpan span = PhaseRecorder.getInstance()
+                .begin(RenderingPhase.FORM_DESCRIPTION);
         List<SirenField> ret = new ArrayList<SirenField>();
+        Class<?> requestBodyType = null;
         if (actionDescriptor.hasRequestBody()) {
-            recurseBeanCreationParams(ret, actionDescriptor.getRequestBody()
-                    .getParameterType(), actionDescriptor, actionDescriptor.getRequestBody(), actionDescriptor
-                    .getRequestBody()
-                    .getValue(), "", Collections.<String>emptySet());
+            requestBodyType = actionDescriptor.getRequestBody()
+                    .getParameterType();
+            recurseBeanCreationParams(ret, requestBodyType, actionDescriptor, actionDescriptor.getRequestBody(),
+                    actionDescriptor.getRequestBody()
+                            .getValue(), "", Collections.<String>emptySet(), prefetched);
         } else {
             Collection<String> paramNames = actionDescriptor.getRequestParamNames();
             for (String paramName : paramNames) {
                 ActionInputParameter inputParameter = actionDescriptor.getActionInputParameter(paramName);
-                Object[] possibleValues = inputParameter.getPossibleValues(actionDescriptor);
+                Object[] possibleValues = prefetched.getPossibleValues(inputParameter, actionDescriptor);
 
                 ret.add(createSirenField(paramName, inputParameter.getValueFormatted(), inputParameter,
                         possibleValues));
             }
         }
+        span.finish(requestBodyType, SIREN_JSON, ret.size());
         return ret;
     }
 
@@ -378,23 +465,25 @@ public class SirenUtils {
      * @param annotatedParameters which describes the method
      * @param annotatedParameter which requires the bean
      * @param currentCallValue sample call value
+     * @param prefetched possible values looked up ahead of rendering
      */
     private void recurseBeanCreationParams(List<SirenField> sirenFields, Class<?> beanType,
                                            ActionDescriptor annotatedParameters,
                                            ActionInputParameter annotatedParameter, Object currentCallValue,
-                                           String parentParamName, Set<String> knownFields) {
+                                           String parentParamName, Set<String> knownFields,
+                                           PrefetchedOptions prefetched) {
         // TODO collection, map and object node creation are only describable by an annotation, not via type reflection
         if (ObjectNode.class.isAssignableFrom(beanType) || Map.class.isAssignableFrom(beanType)
                 || Collection.class.isAssignableFrom(beanType) || beanType.isArray()) {
             return; // use @Input(include) to list parameter names, at least? Or mix with hdiv's form builder?
         }
         try {
-            Constructor[] constructors = beanType.getConstructors();
+            BeanMetadata beanMetadata = BeanMetadata.forClass(beanType);
             // find default ctor
-            Constructor constructor = PropertyUtils.findDefaultCtor(constructors);
+            Constructor constructor = beanMetadata.getDefaultConstructor();
             // find ctor with JsonCreator ann
             if (constructor == null) {
-                constructor = PropertyUtils.findJsonCreator(constructors, JsonCreator.class);
+                constructor = beanMetadata.getCreatorConstructor(JsonCreator.class);
             }
             Assert.notNull(constructor, "no default constructor or JsonCreator found for type " + beanType
                     .getName());
@@ -420,7 +509,7 @@ public class SirenUtils {
                             addSirenFieldsForMethodParameter(sirenFields, methodParameter, annotatedParameter,
                                     annotatedParameters,
                                     parentParamName, paramName, parameterType, propertyValue,
-                                    knownFields);
+                                    knownFields, prefetched);
                             paramIndex++; // increase for each @JsonProperty
                         }
                     }
@@ -436,7 +525,7 @@ public class SirenUtils {
             }
 
             // TODO support Option provider by other method args?
-            Map<String, PropertyDescriptor> propertyDescriptors = PropertyUtils.getPropertyDescriptors(beanType);
+            Map<String, PropertyDescriptor> propertyDescriptors = beanMetadata.getPropertyDescriptors();
 
             // add input field for every setter
             for (PropertyDescriptor propertyDescriptor : propertyDescriptors.values()) {
@@ -453,7 +542,8 @@ public class SirenUtils {
 
                 addSirenFieldsForMethodParameter(sirenFields, methodParameter, annotatedParameter,
                         annotatedParameters,
-                        parentParamName, propertyName, propertyType, propertyValue, knownConstructorFields);
+                        parentParamName, propertyName, propertyType, propertyValue, knownConstructorFields,
+                        prefetched);
             }
         } catch (Exception e) {
             throw new RuntimeException("Failed to write input fields for constructor", e);
@@ -464,7 +554,7 @@ public class SirenUtils {
             methodParameter, ActionInputParameter annotatedParameter, ActionDescriptor annotatedParameters, String
                                                           parentParamName, String paramName, Class
                                                           parameterType, Object propertyValue, Set<String>
-                                                          knownFields) {
+                                                          knownFields, PrefetchedOptions prefetched) {
         if (DataType.isSingleValueType(parameterType)
                 || DataType.isArrayOrCollection(parameterType)) {
 
@@ -474,7 +564,7 @@ public class SirenUtils {
                         new SpringActionInputParameter(methodParameter, propertyValue);
 
                 final Object[] possibleValues =
-                        annotatedParameter.getPossibleValues(methodParameter, annotatedParameters);
+                        prefetched.getPossibleValues(annotatedParameter, methodParameter, annotatedParameters);
 
                 // dot-separated property path as field name
                 SirenField sirenField = createSirenField(parentParamName + paramName,
@@ -490,7 +580,7 @@ public class SirenUtils {
             }
             recurseBeanCreationParams(sirenFields, parameterType, annotatedParameters,
                     annotatedParameter,
-                    callValueBean, paramName + ".", knownFields);
+                    callValueBean, paramName + ".", knownFields, prefetched);
         }
     }
 
@@ -570,7 +660,7 @@ public class SirenUtils {
 
     public static final NullValue NULL_VALUE = new NullValue();
 
-    private Object getContentAsScalarValue(Object content) {
+    Object getContentAsScalarValue(Object content) {
         Object value = null;
 
         if (content == null) {
@@ -581,6 +671,10 @@ public class SirenUtils {
         return value;
     }
 
+    DocumentationProvider getDocumentationProvider() {
+        return documentationProvider;
+    }
+
     public void setRequestMediaType(String requestMediaType) {
         this.requestMediaType = requestMediaType;
     }
@@ -593,6 +687,10 @@ public class SirenUtils {
         this.documentationProvider = documentationProvider;
     }
 
+    public void setOptionsPrefetcher(OptionsPrefetcher optionsPrefetcher) {
+        this.optionsPrefetcher = optionsPrefetcher;
+    }
+
     public void setAdditionalNavigationalRels(Collection<String> additionalNavigationalRels) {
         this.navigationalRels.addAll(additionalNavigationalRels);
     }
@@ -18,7 +18,9 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import de.escalon.hypermedia.RepresentationBudget;
 import de.escalon.hypermedia.spring.HypermediaTypes;
+import de.escalon.hypermedia.spring.MeteredOutputMessage;
 import org.springframework.hateoas.ResourceSupport;
 import org.springframework.http.HttpInputMessage;
 import org.springframework.http.HttpOutputMessage;
@@ -37,12 +39,25 @@ public class UberJackson2HttpMessageConverter extends AbstractHttpMessageConvert
 
     private ObjectMapper objectMapper = new ObjectMapper();
     private Boolean prettyPrint;
+    private RepresentationBudget budget = RepresentationBudget.UNLIMITED;
 
     public UberJackson2HttpMessageConverter() {
         super(HypermediaTypes.UBER_JSON);
         objectMapper.configure(SerializationFeature.WRAP_ROOT_VALUE, true);
     }
 
+    /**
+     * Sets limits for the depth, number of nodes and size of every uber response. Responses which exceed them
+     * fail with a {@link de.escalon.hypermedia.RepresentationBudgetExceededException}.
+     *
+     * @param budget
+     *         to enforce, {@link RepresentationBudget#UNLIMITED} by default
+     */
+    public void setBudget(RepresentationBudget budget) {
+        Assert.notNull(budget, "budget must not be null");
+        this.budget = budget;
+    }
+
     @Override
     protected boolean supports(Class<?> clazz) {
         final boolean ret;
@@ -66,11 +81,11 @@ public class UberJackson2HttpMessageConverter extends AbstractHttpMessageConvert
     protected void writeInternal(Object t, HttpOutputMessage outputMessage) throws IOException,
             HttpMessageNotWritableException {
 
-        UberMessageModel uberModel = new UberMessageModel(t);
-        JsonEncoding encoding = getJsonEncoding(outputMessage.getHeaders()
+        HttpOutputMessage message = MeteredOutputMessage.wrap(outputMessage);
+        JsonEncoding encoding = getJsonEncoding(message.getHeaders()
                 .getContentType());
         JsonGenerator jsonGenerator = this.objectMapper.getFactory()
-                .createGenerator(outputMessage.getBody(), encoding);
+                .createGenerator(budget.limit(message.getBody()), encoding);
 
         // A workaround for JsonGenerators not applying serialization features
         // https://github.com/FasterXML/jackson-databind/issues/12
@@ -79,9 +94,12 @@ public class UberJackson2HttpMessageConverter extends AbstractHttpMessageConvert
         }
 
         try {
-            this.objectMapper.writeValue(jsonGenerator, uberModel);
+            UberUtils.writeUberMessage(jsonGenerator, t, budget);
+            jsonGenerator.flush();
         } catch (JsonProcessingException ex) {
             throw new HttpMessageNotWritableException("Could not write JSON: " + ex.getMessage(), ex);
+        } finally {
+            MeteredOutputMessage.record(message, this, t);
         }
     }
 
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2015. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring.uber;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import de.escalon.hypermedia.BeanMetadata;
+import de.escalon.hypermedia.RepresentationBudget;
+import de.escalon.hypermedia.affordance.ActionDescriptor;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.Resource;
+import org.springframework.hateoas.ResourceSupport;
+import org.springframework.hateoas.Resources;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes an object as uber message directly to a {@link JsonGenerator}. Produces the same structure as {@link
+ * UberUtils#toUberData} followed by serialization of the resulting {@link UberMessageModel}, but no {@link UberNode}s
+ * are created. Each node is written as soon as it is found, its data array is started with its first child.
+ */
+class UberJsonWriter {
+
+    private final JsonGenerator jgen;
+    private final RepresentationBudget.Usage budgetUsage;
+
+    /**
+     * Creates writer which counts data nodes against a budget.
+     *
+     * @param budgetUsage
+     *         to count nodes, may be null
+     */
+    UberJsonWriter(JsonGenerator jgen, RepresentationBudget.Usage budgetUsage) {
+        this.jgen = jgen;
+        this.budgetUsage = budgetUsage;
+    }
+
+    /**
+     * Node whose data are being written.
+     */
+    private static class Node {
+
+        /** number of data nodes enclosing the children of this node */
+        final int depth;
+        boolean dataStarted;
+
+        Node(int depth) {
+            this.depth = depth;
+        }
+    }
+
+    void writeMessage(Object object) throws IOException {
+        jgen.writeStartObject();
+        jgen.writeObjectFieldStart("uber");
+        jgen.writeStringField("version", "1.0");
+        Node message = new Node(0);
+        writeData(message, object);
+        endData(message);
+        jgen.writeEndObject();
+        jgen.writeEndObject();
+    }
+
+    private void writeData(Node node, Object object) throws IOException {
+        if (object == null) {
+            return;
+        }
+        try {
+            if (object instanceof Resource) {
+                Resource<?> resource = (Resource<?>) object;
+                writeLinks(node, resource.getLinks());
+                writeData(node, resource.getContent());
+                return;
+            } else if (object instanceof Resources) {
+                Resources<?> resources = (Resources<?>) object;
+                writeLinks(node, resources.getLinks());
+                writeData(node, resources.getContent());
+                return;
+            } else if (object instanceof ResourceSupport) {
+                writeLinks(node, ((ResourceSupport) object).getLinks());
+                // wrap object attributes below to avoid endless loop
+            } else if (object instanceof Collection) {
+                for (Object item : (Collection<?>) object) {
+                    Node itemNode = startChild(node);
+                    writeData(itemNode, item);
+                    endChild(itemNode);
+                }
+                return;
+            }
+            if (object instanceof Map) {
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                    writeProperty(node, entry.getKey()
+                            .toString(), entry.getValue());
+                }
+            } else {
+                BeanMetadata beanMetadata = BeanMetadata.forBean(object);
+                Map<String, PropertyDescriptor> propertyDescriptors = beanMetadata.getPropertyDescriptors();
+                for (PropertyDescriptor propertyDescriptor : propertyDescriptors.values()) {
+                    String name = propertyDescriptor.getName();
+                    if (UberUtils.FILTER_RESOURCE_SUPPORT.contains(name)) {
+                        continue;
+                    }
+                    Object content = beanMetadata.getPropertyValue(object, name);
+                    if (!UberUtils.isEmptyCollectionOrMap(content, propertyDescriptor.getPropertyType())) {
+                        writeProperty(node, name, content);
+                    }
+                }
+                for (Field field : beanMetadata.getFields()
+                        .values()) {
+                    String name = field.getName();
+                    if (!propertyDescriptors.containsKey(name)) {
+                        Object content = field.get(object);
+                        if (!UberUtils.isEmptyCollectionOrMap(content, field.getType())) {
+                            writeProperty(node, name, content);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("failed to transform object " + object, e);
+        }
+    }
+
+    private void writeProperty(Node node, String name, Object content) throws IOException {
+        Object value = UberUtils.getContentAsScalarValue(content);
+        Node propertyNode = startChild(node);
+        jgen.writeStringField("name", name);
+        if (value == UberNode.NULL_VALUE) {
+            jgen.writeNullField("value");
+        } else if (value != null) {
+            // for each scalar property of a simple bean, add valuepair nodes to data
+            jgen.writeStringField("value", value.toString());
+        } else {
+            writeData(propertyNode, content);
+        }
+        endChild(propertyNode);
+    }
+
+    private void writeLinks(Node node, List<Link> links) throws IOException {
+        for (Link link : links) {
+            List<String> rels = UberUtils.getRels(link);
+            UberUtils.UberLinkTemplate linkTemplate = UberUtils.getLinkTemplate(link.getHref());
+            for (ActionDescriptor actionDescriptor : UberUtils.getActionDescriptors(link)) {
+                Node linkNode = startChild(node);
+                jgen.writeArrayFieldStart("rel");
+                for (String rel : rels) {
+                    jgen.writeString(rel);
+                }
+                jgen.writeEndArray();
+                jgen.writeStringField("url", linkTemplate.url);
+                UberAction action = UberAction.forRequestMethod(RequestMethod.valueOf(actionDescriptor
+                        .getHttpMethod()));
+                if (action != null) {
+                    jgen.writeFieldName("action");
+                    jgen.writeObject(action);
+                }
+                String model = UberUtils.getModelProperty(link.getHref(), actionDescriptor);
+                if (model != null) {
+                    jgen.writeStringField("model", model);
+                }
+                if (linkTemplate.templated != null) {
+                    jgen.writeBooleanField("templated", linkTemplate.templated);
+                }
+                endChild(linkNode);
+            }
+        }
+    }
+
+    private Node startChild(Node node) throws IOException {
+        if (budgetUsage != null) {
+            budgetUsage.countNode(node.depth);
+        }
+        if (!node.dataStarted) {
+            jgen.writeArrayFieldStart("data");
+            node.dataStarted = true;
+        }
+        jgen.writeStartObject();
+        return new Node(node.depth + 1);
+    }
+
+    private void endChild(Node child) throws IOException {
+        endData(child);
+        jgen.writeEndObject();
+    }
+
+    private void endData(Node node) throws IOException {
+        if (node.dataStarted) {
+            jgen.writeEndArray();
+        }
+    }
+}
@@ -15,8 +15,11 @@ package de.escalon.hypermedia.spring.uber;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import de.escalon.hypermedia.BeanMetadata;
 import de.escalon.hypermedia.PropertyUtils;
+import de.escalon.hypermedia.RepresentationBudget;
 import de.escalon.hypermedia.action.Type;
 import de.escalon.hypermedia.affordance.*;
 import de.escalon.hypermedia.spring.SpringActionDescriptor;
@@ -30,6 +33,7 @@ import org.springframework.util.Assert;
 import org.springframework.web.bind.annotation.RequestMethod;
 
 import java.beans.PropertyDescriptor;
+import java.io.IOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
@@ -46,6 +50,66 @@ public class UberUtils {
     static final Set<String> FILTER_RESOURCE_SUPPORT = new HashSet<String>(Arrays.asList("class", "links", "id"));
     static final String MODEL_FORMAT = "%s={%s}";
 
+    /**
+     * Parsed href of a link. Holds everything about an uber link which depends on the href only.
+     */
+    static class UberLinkTemplate {
+
+        final String url;
+        final Boolean templated;
+
+        UberLinkTemplate(String href) {
+            PartialUriTemplateComponents partialUriTemplateComponents = new PartialUriTemplate(href).expand
+                    (Collections.<String, Object>emptyMap());
+            this.url = partialUriTemplateComponents.toString();
+            this.templated = partialUriTemplateComponents.hasVariables() ? Boolean.TRUE : null;
+        }
+    }
+
+    /**
+     * Parses the href of a link once for all uber links written for it.
+     *
+     * @param href
+     *         of a link
+     * @return parsed href
+     */
+    static UberLinkTemplate getLinkTemplate(String href) {
+        return new UberLinkTemplate(href);
+    }
+
+    /**
+     * Writes object as uber message directly to the given generator, without creating an {@link UberMessageModel}.
+     *
+     * @param jgen
+     *         to write to
+     * @param object
+     *         to convert
+     * @throws IOException
+     *         if writing fails
+     */
+    public static void writeUberMessage(JsonGenerator jgen, Object object) throws IOException {
+        writeUberMessage(jgen, object, RepresentationBudget.UNLIMITED);
+    }
+
+    /**
+     * Writes object as uber message directly to the given generator, counting its data nodes against the given
+     * budget.
+     *
+     * @param jgen
+     *         to write to
+     * @param object
+     *         to convert
+     * @param budget
+     *         limiting depth and number of data nodes
+     * @throws IOException
+     *         if writing fails, {@link de.escalon.hypermedia.RepresentationBudgetExceededException} if the message
+     *         exceeds the budget
+     */
+    public static void writeUberMessage(JsonGenerator jgen, Object object, RepresentationBudget budget) throws
+            IOException {
+        new UberJsonWriter(jgen, budget.isUnlimited() ? null : budget.newUsage()).writeMessage(object);
+    }
+
 
     /**
      * Recursively converts object to nodes of uber data.
@@ -112,15 +176,15 @@ public class UberUtils {
                     }
                 }
             } else {
-                Map<String, PropertyDescriptor> propertyDescriptors = PropertyUtils.getPropertyDescriptors(object);
+                BeanMetadata beanMetadata = BeanMetadata.forBean(object);
+                Map<String, PropertyDescriptor> propertyDescriptors = beanMetadata.getPropertyDescriptors();
                 for (PropertyDescriptor propertyDescriptor : propertyDescriptors.values()) {
                     String name = propertyDescriptor.getName();
                     if (filtered.contains(name)) {
                         continue;
                     }
                     UberNode propertyNode = new UberNode();
-                    Object content = propertyDescriptor.getReadMethod()
-                            .invoke(object);
+                    Object content = beanMetadata.getPropertyValue(object, name);
 
                     if (isEmptyCollectionOrMap(content, propertyDescriptor.getPropertyType())) {
                         continue;
@@ -137,9 +201,8 @@ public class UberUtils {
                     }
                 }
 
-                Field[] fields = object.getClass()
-                        .getFields();
-                for (Field field : fields) {
+                for (Field field : beanMetadata.getFields()
+                        .values()) {
                     String name = field.getName();
                     if (!propertyDescriptors.containsKey(name)) {
                         Object content = field.get(object);
@@ -167,12 +230,12 @@ public class UberUtils {
         }
     }
 
-    private static boolean isEmptyCollectionOrMap(Object content, Class<?> type) {
+    static boolean isEmptyCollectionOrMap(Object content, Class<?> type) {
         if (Collection.class.isAssignableFrom(type)) {
             if (content == null) {
                 return true;
             } else {
-                if (((List) content).isEmpty()) {
+                if (((Collection) content).isEmpty()) {
                     return true;
                 }
             }
@@ -180,7 +243,7 @@ public class UberUtils {
             if (content == null) {
                 return true;
             } else {
-                if (((List) content).isEmpty()) {
+                if (((Map) content).isEmpty()) {
                     return true;
                 }
             }
@@ -189,7 +252,7 @@ public class UberUtils {
     }
 
 
-    private static Object getContentAsScalarValue(Object content) {
+    static Object getContentAsScalarValue(Object content) {
         final Object value;
         if (content == null) {
             value = UberNode.NULL_VALUE;
@@ -231,10 +294,9 @@ public class UberUtils {
         Assert.notNull(actionDescriptor, "actionDescriptor must not be null");
         UberNode uberLink = new UberNode();
         uberLink.setRel(rels);
-        PartialUriTemplateComponents partialUriTemplateComponents = new PartialUriTemplate(href).expand(Collections
-                .<String, Object>emptyMap());
-        uberLink.setUrl(partialUriTemplateComponents.toString());
-        uberLink.setTemplated(partialUriTemplateComponents.hasVariables() ? Boolean.TRUE : null);
+        UberLinkTemplate linkTemplate = getLinkTemplate(href);
+        uberLink.setUrl(linkTemplate.url);
+        uberLink.setTemplated(linkTemplate.templated);
         uberLink.setModel(getModelProperty(href, actionDescriptor));
         if (actionDescriptor != null) {
             RequestMethod requestMethod = RequestMethod.valueOf(actionDescriptor.getHttpMethod());
@@ -243,7 +305,7 @@ public class UberUtils {
         return uberLink;
     }
 
-    private static String getModelProperty(String href, ActionDescriptor actionDescriptor) {
+    static String getModelProperty(String href, ActionDescriptor actionDescriptor) {
 
         RequestMethod httpMethod = RequestMethod.valueOf(actionDescriptor.getHttpMethod());
         StringBuffer model = new StringBuffer();
@@ -368,12 +430,12 @@ public class UberUtils {
             return; // use @Input(include) to list parameter names, at least? Or mix with hdiv's form builder?
         }
         try {
-            Constructor[] constructors = beanType.getConstructors();
+            BeanMetadata beanMetadata = BeanMetadata.forClass(beanType);
             // find default ctor
-            Constructor constructor = PropertyUtils.findDefaultCtor(constructors);
+            Constructor constructor = beanMetadata.getDefaultConstructor();
             // find ctor with JsonCreator ann
             if (constructor == null) {
-                constructor = PropertyUtils.findJsonCreator(constructors, JsonCreator.class);
+                constructor = beanMetadata.getCreatorConstructor(JsonCreator.class);
             }
             Assert.notNull(constructor, "no default constructor or JsonCreator found for type " + beanType
                     .getName());
@@ -415,7 +477,7 @@ public class UberUtils {
             }
 
             // TODO support Option provider by other method args?
-            Map<String, PropertyDescriptor> propertyDescriptors = PropertyUtils.getPropertyDescriptors(beanType);
+            Map<String, PropertyDescriptor> propertyDescriptors = beanMetadata.getPropertyDescriptors();
 
             // add input field for every setter
             for (PropertyDescriptor propertyDescriptor : propertyDescriptors.values()) {
@@ -444,11 +506,8 @@ public class UberUtils {
         if (link instanceof Affordance) {
             actionDescriptors = ((Affordance) link).getActionDescriptors();
         } else {
-            SpringActionDescriptor actionDescriptor = new SpringActionDescriptor("get", RequestMethod.GET
-                    .name());
-            PartialUriTemplate partialUriTemplate = new PartialUriTemplate(link.getHref());
-            PartialUriTemplateComponents parts = partialUriTemplate.asComponents();
-            actionDescriptors = Arrays.asList((ActionDescriptor) actionDescriptor);
+            actionDescriptors = Collections.singletonList((ActionDescriptor) new SpringActionDescriptor("get",
+                    RequestMethod.GET.name()));
         }
         return actionDescriptors;
     }
@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring.xhtml;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import de.escalon.hypermedia.BeanMetadata;
+import de.escalon.hypermedia.affordance.DataType;
+import de.escalon.hypermedia.metrics.HypermediaMetrics;
+import org.springframework.util.Assert;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+import java.beans.PropertyDescriptor;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Creates a bean from form parameters, as given by {@link javax.servlet.ServletRequest#getParameterMap()}. The
+ * constructor to use, the names and types of its <code>&#064;JsonProperty</code> arguments and the writable
+ * properties are determined once per class, so that binding a request only looks up parameter values and converts
+ * them. Properties of nested beans are expected as dotted parameter names, e.g. <code>workPerformed.name</code>.
+ */
+final class FormBinder {
+
+    private static final ConcurrentMap<Class<?>, FormBinder> BINDERS = new ConcurrentReferenceHashMap<Class<?>,
+            FormBinder>();
+
+    private final Class<?> clazz;
+    private final Constructor constructor;
+    private final Binding[] arguments;
+    private final Binding[] properties;
+
+    /**
+     * Parameter name and conversion of a creator argument or a writable property.
+     */
+    private static class Binding {
+
+        final String name;
+        final Class<?> type;
+        /** scalar types are converted from a single value, other types are bound from nested parameters */
+        final boolean scalar;
+        final boolean string;
+        final Method writeMethod;
+
+        Binding(String name, Class<?> type, Method writeMethod) {
+            this.name = name;
+            this.type = type;
+            this.scalar = DataType.isSingleValueType(type);
+            this.string = String.class == type;
+            this.writeMethod = writeMethod;
+        }
+
+        Object convert(String value) {
+            return string ? value : DataType.asType(type, value);
+        }
+    }
+
+    private FormBinder(Class<?> clazz) {
+        this.clazz = clazz;
+        BeanMetadata beanMetadata = BeanMetadata.forClass(clazz);
+        Constructor constructor = beanMetadata.getDefaultConstructor();
+        if (constructor == null) {
+            constructor = beanMetadata.getCreatorConstructor(JsonCreator.class);
+        }
+        Assert.notNull(constructor, "no default constructor or JsonCreator found");
+        this.constructor = constructor;
+
+        Class[] parameterTypes = constructor.getParameterTypes();
+        Annotation[][] annotationsOnParameters = constructor.getParameterAnnotations();
+        List<Binding> arguments = new ArrayList<Binding>(parameterTypes.length);
+        for (int i = 0; i < annotationsOnParameters.length; i++) {
+            for (Annotation annotation : annotationsOnParameters[i]) {
+                if (JsonProperty.class == annotation.annotationType()) {
+                    arguments.add(new Binding(((JsonProperty) annotation).value(), parameterTypes[i], null));
+                }
+            }
+        }
+        Assert.isTrue(parameterTypes.length == arguments.size(), "not all constructor arguments of @JsonCreator " +
+                "are annotated with @JsonProperty");
+        this.arguments = arguments.toArray(new Binding[arguments.size()]);
+
+        List<Binding> properties = new ArrayList<Binding>();
+        Map<String, Method> writeMethods = beanMetadata.getWriteMethods();
+        for (PropertyDescriptor propertyDescriptor : beanMetadata.getPropertyDescriptors()
+                .values()) {
+            Method writeMethod = writeMethods.get(propertyDescriptor.getName());
+            if (writeMethod != null) {
+                properties.add(new Binding(propertyDescriptor.getName(), propertyDescriptor.getPropertyType(),
+                        writeMethod));
+            }
+        }
+        this.properties = properties.toArray(new Binding[properties.size()]);
+    }
+
+    /**
+     * Gets the binder for the given class, creating it on first use.
+     *
+     * @param clazz
+     *         to bind
+     * @return binder
+     * @throws IllegalArgumentException
+     *         if clazz is a map or collection
+     */
+    static FormBinder forClass(Class<?> clazz) {
+        FormBinder binder = BINDERS.get(clazz);
+        HypermediaMetrics metrics = HypermediaMetrics.getInstance();
+        if (metrics.isEnabled()) {
+            metrics.recordCacheAccess("FormBinder", binder != null);
+        }
+        if (binder == null) {
+            if (Map.class.isAssignableFrom(clazz)) {
+                throw new IllegalArgumentException("Map not supported");
+            } else if (Collection.class.isAssignableFrom(clazz)) {
+                throw new IllegalArgumentException("Collection not supported");
+            }
+            try {
+                binder = new FormBinder(clazz);
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to instantiate bean " + clazz.getName(), e);
+            }
+            FormBinder existing = BINDERS.putIfAbsent(clazz, binder);
+            if (existing != null) {
+                binder = existing;
+            }
+        }
+        return binder;
+    }
+
+    /**
+     * Creates a bean of the given class from form parameters.
+     *
+     * @param clazz
+     *         to create
+     * @param formValues
+     *         parameter values by parameter name
+     * @param parentParamName
+     *         prefix of the parameter names for clazz, empty or ending with a dot
+     * @return bean
+     */
+    static Object bind(Class<?> clazz, Map<String, String[]> formValues, String parentParamName) {
+        return forClass(clazz).bind(formValues, parentParamName);
+    }
+
+    Object bind(Map<String, String[]> formValues, String parentParamName) {
+        try {
+            Object[] args = new Object[arguments.length];
+            for (int i = 0; i < arguments.length; i++) {
+                Binding argument = arguments[i];
+                String paramName = parameterName(parentParamName, argument.name);
+                if (argument.scalar) {
+                    String[] formValue = formValues.get(paramName);
+                    if (formValue != null) {
+                        if (formValue.length == 1) {
+                            args[i] = argument.convert(formValue[0]);
+                        } else {
+                            // TODO create proper collection type
+                            throw new IllegalArgumentException("variable list not supported");
+                        }
+                    }
+                } else {
+                    args[i] = forClass(argument.type).bind(formValues, paramName + ".");
+                }
+            }
+            Object ret = constructor.newInstance(args);
+            for (Binding property : properties) {
+                String[] formValue = formValues.get(parameterName(parentParamName, property.name));
+                if (formValue != null && formValue.length == 1) {
+                    // TODO lists, consume values from ctor
+                    property.writeMethod.invoke(ret, property.convert(formValue[0]));
+                }
+            }
+            return ret;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to instantiate bean " + clazz.getName(), e);
+        }
+    }
+
+    private static String parameterName(String parentParamName, String name) {
+        return parentParamName.length() == 0 ? name : parentParamName + name;
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring.xhtml;
+
+import de.escalon.hypermedia.PropertyUtils;
+import de.escalon.hypermedia.affordance.ActionDescriptor;
+import de.escalon.hypermedia.affordance.ActionInputParameter;
+import de.escalon.hypermedia.metrics.HypermediaMetrics;
+import de.escalon.hypermedia.spring.DocumentationProvider;
+import de.escalon.hypermedia.spring.PrefetchedOptions;
+import de.escalon.hypermedia.spring.SpringActionDescriptor;
+import org.springframework.util.ConcurrentReferenceHashMap;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Static markup of a form, rendered once per handler method. The markup is split into pre-encoded fragments around
+ * slots for the parts which change from render to render: the action url, the values of input fields and the options
+ * of select fields. Labels, documentation links, input constraints and the hidden method field are part of the static
+ * markup.
+ * <p>
+ * The structure of a form only depends on the handler method as long as it has no list inputs and as long as the
+ * fields render as inputs or selects as they did when the template was recorded. The documentation provider is asked
+ * for the url of a field with the current value of the field, so the template is only used if the type of that value
+ * has not changed either. Otherwise the form must be rendered without template.
+ */
+final class FormTemplate {
+
+    private static final ConcurrentMap<Key, FormTemplate> TEMPLATES = new ConcurrentReferenceHashMap<Key,
+            FormTemplate>();
+
+    /**
+     * Stands in for forms whose structure depends on call values, e.g. forms with one input per list item.
+     */
+    static final FormTemplate UNCACHEABLE = new FormTemplate(new byte[0][], new Slot[0]);
+
+    /**
+     * Markup before each slot, the last fragment follows the last slot.
+     */
+    final byte[][] markup;
+    final Slot[] slots;
+
+    private FormTemplate(byte[][] markup, Slot[] slots) {
+        this.markup = markup;
+        this.slots = slots;
+    }
+
+    /**
+     * Gets the cache key for the form of the given action.
+     *
+     * @param actionDescriptor
+     *         of the form
+     * @param documentationProvider
+     *         used to render labels
+     * @param methodParam
+     *         name of the hidden method field
+     * @return key or null if the action was not created from a handler method
+     */
+    static Key keyFor(ActionDescriptor actionDescriptor, DocumentationProvider documentationProvider, String
+            methodParam) {
+        if (!(actionDescriptor instanceof SpringActionDescriptor)) {
+            return null;
+        }
+        Method handlerMethod = ((SpringActionDescriptor) actionDescriptor).getHandlerMethod();
+        if (handlerMethod == null) {
+            return null;
+        }
+        return new Key(handlerMethod, actionDescriptor.getHttpMethod(), documentationProvider, methodParam);
+    }
+
+    static FormTemplate get(Key key) {
+        FormTemplate template = TEMPLATES.get(key);
+        HypermediaMetrics metrics = HypermediaMetrics.getInstance();
+        if (metrics.isEnabled()) {
+            metrics.recordCacheAccess("FormTemplate", template != null);
+        }
+        return template;
+    }
+
+    static void put(Key key, FormTemplate template) {
+        TEMPLATES.putIfAbsent(key, template);
+    }
+
+    /**
+     * Identifies a form template. The include, exclude, hidden and readOnly settings of the inputs are taken from
+     * <code>&#064;Input</code> annotations on the handler method parameters, so they are covered by the handler method.
+     */
+    static final class Key {
+
+        private final Method handlerMethod;
+        private final String httpMethod;
+        private final DocumentationProvider documentationProvider;
+        private final String methodParam;
+
+        Key(Method handlerMethod, String httpMethod, DocumentationProvider documentationProvider, String
+                methodParam) {
+            this.handlerMethod = handlerMethod;
+            this.httpMethod = httpMethod;
+            this.documentationProvider = documentationProvider;
+            this.methodParam = methodParam;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return handlerMethod.equals(key.handlerMethod)
+                    && httpMethod.equals(key.httpMethod)
+                    && documentationProvider == key.documentationProvider
+                    && (methodParam == null ? key.methodParam == null : methodParam.equals(key.methodParam));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = handlerMethod.hashCode();
+            result = 31 * result + httpMethod.hashCode();
+            result = 31 * result + System.identityHashCode(documentationProvider);
+            result = 31 * result + (methodParam != null ? methodParam.hashCode() : 0);
+            return result;
+        }
+    }
+
+    enum SlotType {
+        /** the action url of the form */
+        ACTION,
+        /** the value attribute of an input */
+        VALUE,
+        /** the options of a select */
+        OPTIONS,
+        /** the options of a select which allows multiple selections */
+        MULTIPLE_OPTIONS
+    }
+
+    /**
+     * Part of a form which is rendered per call.
+     */
+    static final class Slot {
+
+        final SlotType type;
+        final Source source;
+        /** true if the documentation url in the label was determined with the value of the slot */
+        private final boolean documented;
+        private final Class<?> documentedValueType;
+
+        private Slot(SlotType type, Source source, boolean documented, Object documentedValue) {
+            this.type = type;
+            this.source = source;
+            this.documented = documented;
+            this.documentedValueType = typeOf(documentedValue);
+        }
+
+        static Slot action() {
+            return new Slot(SlotType.ACTION, null, false, null);
+        }
+
+        /**
+         * Creates slot for the value of an input.
+         *
+         * @param source
+         *         of the value, null if the value cannot be looked up per call
+         * @param documented
+         *         true if the value was used to find a documentation url
+         * @param value
+         *         current value
+         * @return slot
+         */
+        static Slot value(Source source, boolean documented, Object value) {
+            return new Slot(SlotType.VALUE, source, documented, value);
+        }
+
+        static Slot options(Source source, Object callValue) {
+            return new Slot(SlotType.OPTIONS, source, true, callValue);
+        }
+
+        static Slot multipleOptions(Source source, Object[] callValues) {
+            return new Slot(SlotType.MULTIPLE_OPTIONS, source, true, firstOf(callValues));
+        }
+
+        /**
+         * Determines if the current value and possible values of this slot fit into the template.
+         *
+         * @param value
+         *         current value of the slot
+         * @param possibleValues
+         *         current possible values of the slot
+         * @return true if the form would render a field of the same kind with the same documentation url
+         */
+        boolean fits(Object value, Object[] possibleValues) {
+            if ((possibleValues.length > 0) != (type != SlotType.VALUE)) {
+                return false;
+            }
+            if (!documented) {
+                return true;
+            }
+            Object documentedValue = type == SlotType.MULTIPLE_OPTIONS ? firstOf((Object[]) value) : value;
+            return typeOf(documentedValue) == documentedValueType;
+        }
+
+        private static Object firstOf(Object[] values) {
+            return values.length > 0 ? values[0] : null;
+        }
+
+        private static Class<?> typeOf(Object value) {
+            return value == null ? null : value.getClass();
+        }
+    }
+
+    /**
+     * Looks up the value and the possible values of a field for the current call, either from a request parameter or
+     * from a property of the request body.
+     */
+    static final class Source {
+
+        private final String requestParamName;
+        private final PropertyPath propertyPath;
+        private final Constructor constructor;
+        private final Method writeMethod;
+        private final int parameterIndex;
+
+        private Source(String requestParamName, PropertyPath propertyPath, Constructor constructor, Method
+                writeMethod, int parameterIndex) {
+            this.requestParamName = requestParamName;
+            this.propertyPath = propertyPath;
+            this.constructor = constructor;
+            this.writeMethod = writeMethod;
+            this.parameterIndex = parameterIndex;
+        }
+
+        static Source forRequestParam(String requestParamName) {
+            return new Source(requestParamName, null, null, null, 0);
+        }
+
+        static Source forConstructorParameter(PropertyPath propertyPath, Constructor constructor, int
+                parameterIndex) {
+            return new Source(null, propertyPath, constructor, null, parameterIndex);
+        }
+
+        static Source forWriteMethod(PropertyPath propertyPath, Method writeMethod) {
+            return new Source(null, propertyPath, null, writeMethod, 0);
+        }
+
+        /**
+         * Gets the value of an input field, formatted in case of a request parameter.
+         *
+         * @param actionDescriptor
+         *         of current call
+         * @return value
+         */
+        Object getInputValue(ActionDescriptor actionDescriptor) {
+            if (requestParamName != null) {
+                return actionDescriptor.getActionInputParameter(requestParamName)
+                        .getValueFormatted();
+            }
+            return getValue(actionDescriptor);
+        }
+
+        Object getValue(ActionDescriptor actionDescriptor) {
+            if (requestParamName != null) {
+                return actionDescriptor.getActionInputParameter(requestParamName)
+                        .getValue();
+            }
+            return propertyPath.getValue(actionDescriptor.getRequestBody()
+                    .getValue());
+        }
+
+        Object[] getValues(ActionDescriptor actionDescriptor) {
+            if (requestParamName != null) {
+                return actionDescriptor.getActionInputParameter(requestParamName)
+                        .getValues();
+            }
+            Object value = getValue(actionDescriptor);
+            if (value == null) {
+                return new Object[0];
+            } else if (value instanceof Collection) {
+                return ((Collection<?>) value).toArray();
+            } else {
+                return (Object[]) value;
+            }
+        }
+
+        Object[] getPossibleValues(ActionDescriptor actionDescriptor, PrefetchedOptions prefetchedOptions) {
+            if (requestParamName != null) {
+                return prefetchedOptions.getPossibleValues(actionDescriptor.getActionInputParameter
+                        (requestParamName), actionDescriptor);
+            }
+            ActionInputParameter requestBody = actionDescriptor.getRequestBody();
+            if (constructor != null) {
+                return prefetchedOptions.getPossibleValues(requestBody, constructor, parameterIndex,
+                        actionDescriptor);
+            } else {
+                return prefetchedOptions.getPossibleValues(requestBody, writeMethod, 0, actionDescriptor);
+            }
+        }
+    }
+
+    /**
+     * Path from the request body to a nested property.
+     */
+    static final class PropertyPath {
+
+        static final PropertyPath ROOT = new PropertyPath(null, null, false);
+
+        private final PropertyPath parent;
+        private final String name;
+        private final boolean orField;
+
+        private PropertyPath(PropertyPath parent, String name, boolean orField) {
+            this.parent = parent;
+            this.name = name;
+            this.orField = orField;
+        }
+
+        /**
+         * Creates path to a property of the bean at this path.
+         *
+         * @param name
+         *         of property
+         * @param orField
+         *         true if a public field of that name should be read if there is no read method
+         * @return child path
+         */
+        PropertyPath child(String name, boolean orField) {
+            return new PropertyPath(this, name, orField);
+        }
+
+        Object getValue(Object requestBody) {
+            if (parent == null) {
+                return requestBody;
+            }
+            Object bean = parent.getValue(requestBody);
+            return orField ? PropertyUtils.getPropertyOrFieldValue(bean, name) : PropertyUtils.getBeanPropertyValue
+                    (bean, name);
+        }
+    }
+
+    /**
+     * Collects the static markup of a form while it is rendered into a byte array.
+     */
+    static final class Builder {
+
+        private final ByteArrayOutputStream bytes;
+        private final List<byte[]> markup = new ArrayList<byte[]>();
+        private final List<Slot> slots = new ArrayList<Slot>();
+        private final List<Object[]> possibleValues = new ArrayList<Object[]>();
+        private boolean cacheable = true;
+
+        /**
+         * Creates builder.
+         *
+         * @param bytes
+         *         into which the form is rendered
+         */
+        Builder(ByteArrayOutputStream bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Ends the current markup fragment with a slot. The markup written so far must have been drained into the
+         * byte array.
+         *
+         * @param slot
+         *         to add
+         * @param possibleValues
+         *         of the field while recording, empty for inputs and null for the action url
+         */
+        void addSlot(Slot slot, Object[] possibleValues) {
+            if (slot.type != SlotType.ACTION && slot.source == null) {
+                cacheable = false;
+            }
+            markup.add(bytes.toByteArray());
+            bytes.reset();
+            slots.add(slot);
+            this.possibleValues.add(possibleValues);
+        }
+
+        /**
+         * Gets the possible values which were looked up while recording, so that the form which caused the recording
+         * can be written without looking them up again.
+         *
+         * @return possible values per slot
+         */
+        Object[][] getPossibleValues() {
+            return possibleValues.toArray(new Object[possibleValues.size()][]);
+        }
+
+        /**
+         * Marks the form as dependent on call values.
+         */
+        void uncacheable() {
+            cacheable = false;
+        }
+
+        FormTemplate build() {
+            if (!cacheable) {
+                return UNCACHEABLE;
+            }
+            markup.add(bytes.toByteArray());
+            return new FormTemplate(markup.toArray(new byte[markup.size()][]), slots.toArray(new Slot[slots
+                    .size()]));
+        }
+    }
+}
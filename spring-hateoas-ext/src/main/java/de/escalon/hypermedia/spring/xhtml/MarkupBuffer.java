@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring.xhtml;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Buffers markup as UTF-8 bytes. Constant markup is written as pre-encoded fragments, text and attribute values are
+ * encoded char by char, escaping markup characters by table lookup. The byte array is taken from a per-thread pool
+ * and returned to it by {@link #release}. The buffer is drained to the underlying stream when it is full. If the
+ * target is a {@link Writer}, the bytes are decoded again and passed on after every write, so that the markup appears
+ * in the writer without flushing, as it did before the markup was buffered.
+ */
+final class MarkupBuffer {
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final int BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<byte[]> POOL = new ThreadLocal<byte[]>();
+
+    private static final byte[][] TEXT_ESCAPES = new byte[128][];
+    private static final byte[][] ATTRIBUTE_ESCAPES = new byte[128][];
+
+    static {
+        TEXT_ESCAPES['&'] = fragment("&amp;");
+        TEXT_ESCAPES['<'] = fragment("&lt;");
+        TEXT_ESCAPES['>'] = fragment("&gt;");
+        System.arraycopy(TEXT_ESCAPES, 0, ATTRIBUTE_ESCAPES, 0, TEXT_ESCAPES.length);
+        ATTRIBUTE_ESCAPES['"'] = fragment("&quot;");
+    }
+
+    private final OutputStream outputStream;
+    private final Writer writer;
+    private byte[] buf;
+    private int count;
+    /** bytes drained since the last flush */
+    private long unflushed;
+
+    MarkupBuffer(OutputStream outputStream) {
+        this.outputStream = outputStream;
+        this.writer = null;
+    }
+
+    MarkupBuffer(Writer writer) {
+        this.outputStream = null;
+        this.writer = writer;
+    }
+
+    /**
+     * Encodes constant markup.
+     *
+     * @param markup
+     *         to encode
+     * @return UTF-8 bytes
+     */
+    static byte[] fragment(String markup) {
+        return markup.getBytes(UTF_8);
+    }
+
+    void write(byte[] fragment) throws IOException {
+        ensureCapacity(fragment.length);
+        if (fragment.length > buf.length) {
+            drain();
+            writeThrough(fragment, fragment.length);
+            unflushed += fragment.length;
+        } else {
+            System.arraycopy(fragment, 0, buf, count, fragment.length);
+            count += fragment.length;
+        }
+        passOnToWriter();
+    }
+
+    /**
+     * Writes markup without escaping.
+     *
+     * @param markup
+     *         to write
+     */
+    void writeRaw(CharSequence markup) throws IOException {
+        encode(markup, null);
+    }
+
+    void writeRaw(char[] markup, int off, int len) throws IOException {
+        for (int i = off, end = off + len; i < end; i++) {
+            i = encode(markup[i], i + 1 < end ? markup[i + 1] : 0, i, null);
+        }
+        passOnToWriter();
+    }
+
+    /**
+     * Writes text content, escaping ampersand, less-than and greater-than.
+     *
+     * @param text
+     *         to write
+     */
+    void writeText(CharSequence text) throws IOException {
+        encode(text, TEXT_ESCAPES);
+    }
+
+    /**
+     * Writes the value of a double-quoted attribute, escaping ampersand, less-than, greater-than and quotes.
+     *
+     * @param value
+     *         to write
+     */
+    void writeAttributeValue(CharSequence value) throws IOException {
+        encode(value, ATTRIBUTE_ESCAPES);
+    }
+
+    private void encode(CharSequence chars, byte[][] escapes) throws IOException {
+        for (int i = 0, length = chars.length(); i < length; i++) {
+            char c = chars.charAt(i);
+            if (c < 0x80) {
+                byte[] escape = escapes == null ? null : escapes[c];
+                if (escape != null) {
+                    write(escape);
+                } else {
+                    ensureCapacity(1);
+                    buf[count++] = (byte) c;
+                }
+            } else {
+                i = encode(c, i + 1 < length ? chars.charAt(i + 1) : 0, i, escapes);
+            }
+        }
+        passOnToWriter();
+    }
+
+    private void passOnToWriter() throws IOException {
+        if (writer != null) {
+            drain();
+        }
+    }
+
+    /**
+     * Encodes a single char.
+     *
+     * @param c
+     *         to encode
+     * @param next
+     *         char after c or 0, needed to encode surrogate pairs
+     * @param index
+     *         of c
+     * @return index of the last char consumed
+     */
+    private int encode(char c, char next, int index, byte[][] escapes) throws IOException {
+        ensureCapacity(4);
+        if (c < 0x80) {
+            byte[] escape = escapes == null ? null : escapes[c];
+            if (escape != null) {
+                write(escape);
+            } else {
+                buf[count++] = (byte) c;
+            }
+        } else if (c < 0x800) {
+            buf[count++] = (byte) (0xc0 | (c >> 6));
+            buf[count++] = (byte) (0x80 | (c & 0x3f));
+        } else if (Character.isHighSurrogate(c) && Character.isLowSurrogate(next)) {
+            int codePoint = Character.toCodePoint(c, next);
+            buf[count++] = (byte) (0xf0 | (codePoint >> 18));
+            buf[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+            buf[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+            buf[count++] = (byte) (0x80 | (codePoint & 0x3f));
+            return index + 1;
+        } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+            // unpaired surrogate, like OutputStreamWriter
+            buf[count++] = '?';
+        } else {
+            buf[count++] = (byte) (0xe0 | (c >> 12));
+            buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+            buf[count++] = (byte) (0x80 | (c & 0x3f));
+        }
+        return index;
+    }
+
+    /**
+     * Makes room for the given number of bytes. Since the buffer is only drained before a char is encoded, it always
+     * contains complete UTF-8 sequences.
+     */
+    private void ensureCapacity(int length) throws IOException {
+        if (buf == null) {
+            buf = POOL.get();
+            if (buf == null) {
+                buf = new byte[BUFFER_SIZE];
+            } else {
+                POOL.set(null);
+            }
+        }
+        if (count + length > buf.length) {
+            drain();
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the underlying stream or writer without flushing it.
+     */
+    void drain() throws IOException {
+        if (count > 0) {
+            writeThrough(buf, count);
+            unflushed += count;
+            count = 0;
+        }
+    }
+
+    private void writeThrough(byte[] bytes, int length) throws IOException {
+        if (outputStream != null) {
+            outputStream.write(bytes, 0, length);
+        } else {
+            writer.write(new String(bytes, 0, length, UTF_8));
+        }
+    }
+
+    /**
+     * Number of bytes written since the last flush, whether they have been drained already or not.
+     *
+     * @return unflushed bytes
+     */
+    long getBytesSinceFlush() {
+        return unflushed + count;
+    }
+
+    void flush() throws IOException {
+        drain();
+        unflushed = 0;
+        if (outputStream != null) {
+            outputStream.flush();
+        } else {
+            writer.flush();
+        }
+    }
+
+    void close() throws IOException {
+        try {
+            release();
+        } finally {
+            if (outputStream != null) {
+                outputStream.close();
+            } else {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the byte array to the pool, after the buffered bytes have been drained. The buffer takes a new array
+     * from the pool if it is written to again.
+     */
+    void release() throws IOException {
+        if (buf != null) {
+            drain();
+            POOL.set(buf);
+            buf = null;
+        }
+    }
+}
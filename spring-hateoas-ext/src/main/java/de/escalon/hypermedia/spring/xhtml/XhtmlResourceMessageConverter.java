@@ -13,12 +13,12 @@
 
 package de.escalon.hypermedia.spring.xhtml;
 
-import com.fasterxml.jackson.annotation.JsonCreator;
-import com.fasterxml.jackson.annotation.JsonProperty;
-import de.escalon.hypermedia.PropertyUtils;
+import de.escalon.hypermedia.BeanMetadata;
 import de.escalon.hypermedia.affordance.DataType;
 import de.escalon.hypermedia.spring.DefaultDocumentationProvider;
 import de.escalon.hypermedia.spring.DocumentationProvider;
+import de.escalon.hypermedia.spring.MeteredOutputMessage;
+import de.escalon.hypermedia.spring.OptionsPrefetcher;
 import org.springframework.hateoas.Resource;
 import org.springframework.hateoas.ResourceSupport;
 import org.springframework.hateoas.Resources;
@@ -32,14 +32,10 @@ import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.util.*;
 
 import javax.servlet.http.HttpServletRequest;
-import java.beans.BeanInfo;
-import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.io.*;
-import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
 import java.net.URLDecoder;
-import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.util.*;
 import java.util.Map.Entry;
@@ -60,7 +56,9 @@ public class XhtmlResourceMessageConverter extends AbstractHttpMessageConverter<
     private List<String> stylesheets = Collections.emptyList();
 
     private DocumentationProvider documentationProvider = new DefaultDocumentationProvider();
-
+    private OptionsPrefetcher optionsPrefetcher;
+    private int flushThresholdBytes;
+    private int flushThresholdItems;
 
     public XhtmlResourceMessageConverter() {
         this.setSupportedMediaTypes(Arrays.asList(MediaType.TEXT_HTML, MediaType.APPLICATION_FORM_URLENCODED));
@@ -96,7 +94,6 @@ public class XhtmlResourceMessageConverter extends AbstractHttpMessageConverter<
     protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException,
             HttpMessageNotReadableException {
 
-        InputStream is;
         if (inputMessage instanceof ServletServerHttpRequest) {
             // this is necessary to support HiddenHttpMethodFilter
             // thanks to https://www.w3.org/html/wg/tracker/issues/195
@@ -104,52 +101,15 @@ public class XhtmlResourceMessageConverter extends AbstractHttpMessageConverter<
             // and http://cameronjones.github.io/form-http-extensions/index.html
             // and http://www.w3.org/TR/form-http-extensions/
             // TODO recognize this more safely or make the filter mandatory
-            MediaType contentType = inputMessage.getHeaders()
-                    .getContentType();
-            Charset charset = contentType.getCharSet() != null ? contentType.getCharSet() : this.charset;
-            ServletServerHttpRequest servletServerHttpRequest = (ServletServerHttpRequest) inputMessage;
-            HttpServletRequest servletRequest = servletServerHttpRequest.getServletRequest();
-            is = getBodyFromServletRequestParameters(servletRequest, charset.displayName(Locale.US));
+            // Use ServletRequest#getParameterMap() rather than the body, which can fail if any other code has used
+            // ServletRequest to access a parameter thus causing the input stream to be "consumed".
+            HttpServletRequest servletRequest = ((ServletServerHttpRequest) inputMessage).getServletRequest();
+            @SuppressWarnings("unchecked")
+            Map<String, String[]> form = servletRequest.getParameterMap();
+            return FormBinder.bind(clazz, form, "");
         } else {
-            is = inputMessage.getBody();
+            return readRequestBody(clazz, inputMessage.getBody(), charset);
         }
-        return readRequestBody(clazz, is, charset);
-    }
-
-    /**
-     * From {@link ServletServerHttpRequest}: Use {@link javax.servlet.ServletRequest#getParameterMap()} to reconstruct
-     * the body of a form 'POST' providing a predictable outcome as opposed to reading from the body, which can fail if
-     * any other code has used ServletRequest to access a parameter thus causing the input stream to be "consumed".
-     */
-    private InputStream getBodyFromServletRequestParameters(HttpServletRequest request, String charset) throws
-            IOException {
-
-        ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
-        Writer writer = new OutputStreamWriter(bos, charset);
-        @SuppressWarnings("unchecked")
-        Map<String, String[]> form = request.getParameterMap();
-        for (Iterator<String> nameIterator = form.keySet()
-                .iterator(); nameIterator.hasNext(); ) {
-            String name = nameIterator.next();
-            List<String> values = Arrays.asList(form.get(name));
-            for (Iterator<String> valueIterator = values.iterator(); valueIterator.hasNext(); ) {
-                String value = valueIterator.next();
-                writer.write(URLEncoder.encode(name, charset));
-                if (value != null) {
-                    writer.write('=');
-                    writer.write(URLEncoder.encode(value, charset));
-                    if (valueIterator.hasNext()) {
-                        writer.write('&');
-                    }
-                }
-            }
-            if (nameIterator.hasNext()) {
-                writer.append('&');
-            }
-        }
-        writer.flush();
-
-        return new ByteArrayInputStream(bos.toByteArray());
     }
 
     private Object readRequestBody(Class<?> clazz, InputStream inputStream, Charset charset) throws
@@ -176,90 +136,39 @@ public class XhtmlResourceMessageConverter extends AbstractHttpMessageConverter<
     }
 
     Object recursivelyCreateObject(Class<?> clazz, MultiValueMap<String, String> formValues, String parentParamName) {
-
-        if (Map.class.isAssignableFrom(clazz)) {
-            throw new IllegalArgumentException("Map not supported");
-        } else if (Collection.class.isAssignableFrom(clazz)) {
-            throw new IllegalArgumentException("Collection not supported");
-        } else {
-            try {
-                Constructor[] constructors = clazz.getConstructors();
-                Constructor constructor = PropertyUtils.findDefaultCtor(constructors);
-                if (constructor == null) {
-                    constructor = PropertyUtils.findJsonCreator(constructors, JsonCreator.class);
-                }
-                Assert.notNull(constructor, "no default constructor or JsonCreator found");
-                int parameterCount = constructor.getParameterTypes().length;
-                Object[] args = new Object[parameterCount];
-                if (parameterCount > 0) {
-                    Annotation[][] annotationsOnParameters = constructor.getParameterAnnotations();
-                    Class[] parameters = constructor.getParameterTypes();
-                    int paramIndex = 0;
-                    for (Annotation[] annotationsOnParameter : annotationsOnParameters) {
-                        for (Annotation annotation : annotationsOnParameter) {
-                            if (JsonProperty.class == annotation.annotationType()) {
-                                JsonProperty jsonProperty = (JsonProperty) annotation;
-                                String paramName = jsonProperty.value();
-                                List<String> formValue = formValues.get(parentParamName + paramName);
-                                Class<?> parameterType = parameters[paramIndex];
-                                if (DataType.isSingleValueType(parameterType)) {
-                                    if (formValue != null) {
-                                        if (formValue.size() == 1) {
-                                            args[paramIndex++] = DataType.asType(parameterType, formValue.get(0));
-                                        } else {
-//                                        // TODO create proper collection type
-                                            throw new IllegalArgumentException("variable list not supported");
-//                                        List<Object> listValue = new ArrayList<Object>();
-//                                        for (String item : formValue) {
-//                                            listValue.add(DataType.asType(parameterType, formValue.get(0)));
-//                                        }
-//                                        args[paramIndex++] = listValue;
-                                        }
-                                    } else {
-                                        args[paramIndex++] = null;
-                                    }
-                                } else {
-                                    args[paramIndex++] = recursivelyCreateObject(parameterType, formValues,
-                                            parentParamName + paramName + ".");
-                                }
-                            }
-                        }
-                    }
-                    Assert.isTrue(args.length == paramIndex, "not all constructor arguments of @JsonCreator are " +
-                            "annotated with @JsonProperty");
-                }
-                Object ret = constructor.newInstance(args);
-                BeanInfo beanInfo = Introspector.getBeanInfo(clazz);
-                PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
-                for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
-                    Method writeMethod = propertyDescriptor.getWriteMethod();
-                    String name = propertyDescriptor.getName();
-                    List<String> strings = formValues.get(name);
-                    if (writeMethod != null && strings != null && strings.size() == 1) {
-                        writeMethod.invoke(ret, DataType.asType(propertyDescriptor.getPropertyType(), strings.get(0))
-                        ); // TODO lists, consume values from ctor
-                    }
-                }
-                return ret;
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to instantiate bean " + clazz.getName(), e);
-            }
+        Map<String, String[]> parameterMap = new HashMap<String, String[]>(formValues.size() * 2);
+        for (Entry<String, List<String>> entry : formValues.entrySet()) {
+            List<String> values = entry.getValue();
+            parameterMap.put(entry.getKey(), values.toArray(new String[values.size()]));
         }
+        return FormBinder.bind(clazz, parameterMap, parentParamName);
     }
 
     @Override
     protected void writeInternal(Object t, HttpOutputMessage outputMessage) throws IOException,
             HttpMessageNotWritableException {
 
-        XhtmlWriter xhtmlWriter = new XhtmlWriter(new OutputStreamWriter(outputMessage.getBody(), "UTF-8"));
+        HttpOutputMessage message = MeteredOutputMessage.wrap(outputMessage);
+        XhtmlWriter xhtmlWriter = new XhtmlWriter(message.getBody());
         xhtmlWriter.setMethodParam(methodParam);
         xhtmlWriter.setStylesheets(stylesheets);
         xhtmlWriter.setDocumentationProvider(documentationProvider);
+        xhtmlWriter.setOptionsPrefetcher(optionsPrefetcher);
+        xhtmlWriter.setFlushThresholds(flushThresholdBytes, flushThresholdItems);
 
-        xhtmlWriter.beginHtml("Form");
-        writeNewResource(xhtmlWriter, t);
-        xhtmlWriter.endHtml();
-        xhtmlWriter.flush();
+        try {
+            xhtmlWriter.beginHtml("Form");
+            if (xhtmlWriter.isFlushingProgressively()) {
+                // let the client start rendering before the body is complete
+                xhtmlWriter.flush();
+            }
+            writeNewResource(xhtmlWriter, t);
+            xhtmlWriter.endHtml();
+            xhtmlWriter.flush();
+        } finally {
+            xhtmlWriter.release();
+            MeteredOutputMessage.record(message, this, t);
+        }
     }
 
     static final Set<String> FILTER_RESOURCE_SUPPORT = new HashSet<String>(Arrays.asList("class", "links", "id"));
@@ -318,6 +227,7 @@ public class XhtmlResourceMessageConverter extends AbstractHttpMessageConverter<
                 Collection<?> collection = (Collection<?>) object;
                 for (Object item : collection) {
                     writeResource(writer, item);
+                    writer.endCollectionItem();
                 }
             } else { // TODO: write li for simple objects in Resources Collection
                 writeObject(writer, object);
@@ -362,11 +272,11 @@ public class XhtmlResourceMessageConverter extends AbstractHttpMessageConverter<
             String docUrl = documentationProvider.getDocumentationUrl(name, object);
             writeDdForScalarValue(writer, object);
         } else {
-            Class<?> aClass = object.getClass();
-            Map<String, PropertyDescriptor> propertyDescriptors = PropertyUtils.getPropertyDescriptors(object);
+            BeanMetadata beanMetadata = BeanMetadata.forBean(object);
+            Map<String, PropertyDescriptor> propertyDescriptors = beanMetadata.getPropertyDescriptors();
             // getFields retrieves public only
-            Field[] fields = aClass.getFields();
-            for (Field field : fields) {
+            for (Field field : beanMetadata.getFields()
+                    .values()) {
                 String name = field.getName();
                 if (!propertyDescriptors.containsKey(name)) {
                     Object content = field.get(object);
@@ -375,17 +285,16 @@ public class XhtmlResourceMessageConverter extends AbstractHttpMessageConverter<
                     writeObjectAttributeRecursively(writer, name, content, docUrl);
                 }
             }
-            for (PropertyDescriptor propertyDescriptor : propertyDescriptors.values()) {
-                String name = propertyDescriptor.getName();
+            for (Entry<String, Method> readMethodEntry : beanMetadata.getReadMethods()
+                    .entrySet()) {
+                String name = readMethodEntry.getKey();
                 if (FILTER_RESOURCE_SUPPORT.contains(name)) {
                     continue;
                 }
-                Method readMethod = propertyDescriptor.getReadMethod();
-                if (readMethod != null) {
-                    Object content = readMethod.invoke(object);
-                    String docUrl = documentationProvider.getDocumentationUrl(readMethod, content);
-                    writeObjectAttributeRecursively(writer, name, content, docUrl);
-                }
+                Method readMethod = readMethodEntry.getValue();
+                Object content = readMethod.invoke(object);
+                String docUrl = documentationProvider.getDocumentationUrl(readMethod, content);
+                writeObjectAttributeRecursively(writer, name, content, docUrl);
             }
         }
         if (!DataType.isSingleValueType(object.getClass())) {
@@ -433,13 +342,12 @@ public class XhtmlResourceMessageConverter extends AbstractHttpMessageConverter<
     private void writeDtWithDoc(XhtmlWriter writer, String name, String documentationUrl) throws IOException {
         if (documentationUrl == null) {
             writer.beginDt();
-            writer.write(name);
+            writer.writeText(name);
             writer.endDt();
         } else {
             writer.beginDt();
-            writer.beginAnchor(XhtmlWriter.OptionalAttributes.attr("href", documentationUrl)
-                    .and("title", documentationUrl));
-            writer.write(name);
+            writer.beginDocumentationAnchor(documentationUrl);
+            writer.writeText(name);
             writer.endAnchor();
             writer.endDt();
         }
@@ -447,7 +355,7 @@ public class XhtmlResourceMessageConverter extends AbstractHttpMessageConverter<
 
     private void writeDdForScalarValue(XhtmlWriter writer, Object value) throws IOException {
         writer.beginDd();
-        writer.write(value.toString());
+        writer.writeText(value.toString());
         writer.endDd();
     }
 
@@ -478,6 +386,32 @@ public class XhtmlResourceMessageConverter extends AbstractHttpMessageConverter<
         this.documentationProvider = documentationProvider;
     }
 
+    /**
+     * Sets prefetcher to look up possible values of all select fields of a form concurrently before the form is
+     * written.
+     *
+     * @param optionsPrefetcher
+     *         to use, may be null to look up possible values one after another
+     */
+    public void setOptionsPrefetcher(OptionsPrefetcher optionsPrefetcher) {
+        this.optionsPrefetcher = optionsPrefetcher;
+    }
+
+    /**
+     * Enables progressive output. The response is flushed after the html head and then whenever a collection item
+     * has been written and one of the given thresholds has been reached. Once the response has been flushed, an
+     * error while rendering the rest of it can no longer change the response status.
+     *
+     * @param flushThresholdBytes
+     *         minimum number of bytes between two flushes, 0 to disable
+     * @param flushThresholdItems
+     *         number of collection items between two flushes, 0 to disable
+     */
+    public void setFlushThresholds(int flushThresholdBytes, int flushThresholdItems) {
+        this.flushThresholdBytes = flushThresholdBytes;
+        this.flushThresholdItems = flushThresholdItems;
+    }
+
     static class NullValue {
 
     }
@@ -2,6 +2,7 @@ package de.escalon.hypermedia.spring.xhtml;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import de.escalon.hypermedia.BeanMetadata;
 import de.escalon.hypermedia.PropertyUtils;
 import de.escalon.hypermedia.action.Input;
 import de.escalon.hypermedia.action.Type;
@@ -11,6 +12,8 @@ import de.escalon.hypermedia.affordance.Affordance;
 import de.escalon.hypermedia.affordance.DataType;
 import de.escalon.hypermedia.spring.DefaultDocumentationProvider;
 import de.escalon.hypermedia.spring.DocumentationProvider;
+import de.escalon.hypermedia.spring.OptionsPrefetcher;
+import de.escalon.hypermedia.spring.PrefetchedOptions;
 import de.escalon.hypermedia.spring.SpringActionInputParameter;
 import org.springframework.core.MethodParameter;
 import org.springframework.core.convert.Property;
@@ -20,25 +23,26 @@ import org.springframework.util.Assert;
 import org.springframework.util.ObjectUtils;
 import org.springframework.web.bind.annotation.RequestMethod;
 
-import java.beans.BeanInfo;
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.*;
 
-import static de.escalon.hypermedia.spring.xhtml.XhtmlWriter.OptionalAttributes.attr;
+import static de.escalon.hypermedia.spring.xhtml.MarkupBuffer.fragment;
 
 /**
+ * Writes xhtml markup. Tags are written as pre-encoded UTF-8 fragments into a pooled {@link MarkupBuffer}, text and
+ * attribute values are escaped.
  * Created by Dietrich on 09.02.2015.
  */
 public class XhtmlWriter extends Writer {
 
-    private Writer writer;
+    private final MarkupBuffer out;
     private List<String> stylesheets = Collections.emptyList();
 
     public static final String HTML_HEAD_START = "" + //
@@ -65,15 +69,96 @@ public class XhtmlWriter extends Writer {
             "  </body>" + //
             "</html>";
 
+    private static final byte[] HEAD_START_BEFORE_TITLE = fragmentBefore(HTML_HEAD_START);
+    private static final byte[] HEAD_START_AFTER_TITLE = fragmentAfter(HTML_HEAD_START);
+    private static final byte[] STYLESHEET_BEFORE_HREF = fragmentBefore(HTML_STYLESHEET);
+    private static final byte[] STYLESHEET_AFTER_HREF = fragmentAfter(HTML_STYLESHEET);
+    private static final byte[] HEAD_END = fragment(HTML_HEAD_END);
+    private static final byte[] END = fragment(HTML_END);
+
+    private static final byte[] DIV = fragment("<div>");
+    private static final byte[] DIV_WITH_ATTRIBUTES = fragment("<div ");
+    private static final byte[] DIV_END = fragment("</div>");
+    private static final byte[] UL = fragment("<ul class=\"list-group\">");
+    private static final byte[] UL_END = fragment("</ul>");
+    private static final byte[] LI = fragment("<li class=\"list-group-item\">");
+    private static final byte[] LI_END = fragment("</li>");
+    private static final byte[] SPAN = fragment("<span>");
+    private static final byte[] SPAN_END = fragment("</span>");
+    private static final byte[] DL = fragment("<dl >");
+    private static final byte[] DL_END = fragment("</dl>");
+    private static final byte[] DT = fragment("<dt>");
+    private static final byte[] DT_END = fragment("</dt>");
+    private static final byte[] DD = fragment("<dd>");
+    private static final byte[] DD_END = fragment("</dd>");
+    private static final byte[] H4_FORM = fragment("<h4>Form ");
+    private static final byte[] H4_END = fragment("</h4>");
+    private static final byte[] FORM = fragment("<form class=\"well\" ");
+    private static final byte[] FORM_END = fragment("</form>");
+    private static final byte[] BUTTON_TYPE = fragment("<input type=\"");
+    private static final byte[] BUTTON_VALUE = fragment("\" value=\"");
+    private static final byte[] INPUT_NAME = fragment("<input name=\"");
+    private static final byte[] INPUT_TYPE = fragment("\" type=\"");
+    private static final byte[] INPUT_CLASS = fragment("\" class=\"");
+    private static final byte[] INPUT_ATTRIBUTES = fragment("\" ");
+    private static final byte[] EMPTY_TAG_END = fragment("/>");
+    private static final byte[] QUOTE_EMPTY_TAG_END = fragment("\"/>");
+    private static final byte[] LABEL = fragment("<label");
+    private static final byte[] LABEL_END = fragment("</label>");
+    private static final byte[] A = fragment("<a ");
+    private static final byte[] A_END = fragment("</a>");
+    private static final byte[] BR = fragment("<br />");
+    private static final byte[] OPTION = fragment("<option");
+    private static final byte[] OPTION_END = fragment("</option>");
+    private static final byte[] SELECT_NAME = fragment("<select name=\"");
+    private static final byte[] SELECT_ID = fragment("\" id=\"");
+    private static final byte[] SELECT_END = fragment("</select>");
+    private static final byte[] ATTRIBUTE_NAME_START = fragment(" ");
+    private static final byte[] ATTRIBUTE_VALUE_START = fragment("=\"");
+    private static final byte[] QUOTE = fragment("\"");
+    private static final byte[] TAG_END = fragment(">");
+    private static final byte[] COLON = fragment(":");
+    private static final byte[] FORM_ACTION = fragment("<form class=\"well\"  action=\"");
+    private static final byte[] VALUE_ATTRIBUTE = fragment(" value=\"");
+
+    private static final DocumentationProvider DEFAULT_DOCUMENTATION_PROVIDER = new DefaultDocumentationProvider();
+
     private String methodParam = "_method";
-    private DocumentationProvider documentationProvider = new DefaultDocumentationProvider();
+    private DocumentationProvider documentationProvider = DEFAULT_DOCUMENTATION_PROVIDER;
+    private OptionsPrefetcher optionsPrefetcher;
+    private PrefetchedOptions prefetchedOptions = PrefetchedOptions.NONE;
 
     private String formControlClass = "form-control";
     private String formGroupClass = "form-group";
     private String controlLabelClass = "control-label";
 
+    private int flushThresholdBytes;
+    private int flushThresholdItems;
+    private int itemsSinceFlush;
+
+    /** set while the static markup of a form is recorded */
+    private FormTemplate.Builder formTemplateBuilder;
+
     public XhtmlWriter(Writer writer) {
-        this.writer = writer;
+        this.out = new MarkupBuffer(writer);
+    }
+
+    /**
+     * Creates writer which encodes the markup as UTF-8 directly to the given stream.
+     *
+     * @param outputStream
+     *         to write to
+     */
+    public XhtmlWriter(OutputStream outputStream) {
+        this.out = new MarkupBuffer(outputStream);
+    }
+
+    private static byte[] fragmentBefore(String template) {
+        return fragment(template.substring(0, template.indexOf("%s")));
+    }
+
+    private static byte[] fragmentAfter(String template) {
+        return fragment(template.substring(template.indexOf("%s") + 2));
     }
 
     public void setMethodParam(String methodParam) {
@@ -81,107 +166,190 @@ public class XhtmlWriter extends Writer {
     }
 
     public void beginHtml(String title) throws IOException {
-        write(String.format(HTML_HEAD_START, title));
+        out.write(HEAD_START_BEFORE_TITLE);
+        out.writeText(title);
+        out.write(HEAD_START_AFTER_TITLE);
         for (String stylesheet : stylesheets) {
-            write(String.format(HTML_STYLESHEET, stylesheet));
+            out.write(STYLESHEET_BEFORE_HREF);
+            out.writeAttributeValue(stylesheet);
+            out.write(STYLESHEET_AFTER_HREF);
         }
-        write(String.format(HTML_HEAD_END, title));
+        out.write(HEAD_END);
     }
 
 
     public void endHtml() throws IOException {
-        write(HTML_END);
+        out.write(END);
     }
 
     public void beginDiv() throws IOException {
-        writer.write("<div>");
+        out.write(DIV);
     }
 
     public void beginDiv(OptionalAttributes attributes) throws IOException {
-        writer.write("<div ");
+        out.write(DIV_WITH_ATTRIBUTES);
         writeAttributes(attributes);
-        endTag();
+        out.write(TAG_END);
+    }
+
+    private void beginDivWithClass(String cssClass) throws IOException {
+        out.write(DIV_WITH_ATTRIBUTES);
+        writeAttribute("class", cssClass);
+        out.write(TAG_END);
     }
 
     public void endDiv() throws IOException {
-        writer.write("</div>");
+        out.write(DIV_END);
     }
 
     @Override
     public void write(char[] cbuf, int off, int len) throws IOException {
-        writer.write(cbuf, off, len);
+        out.writeRaw(cbuf, off, len);
+    }
+
+    @Override
+    public void write(String str) throws IOException {
+        out.writeRaw(str);
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        out.writeRaw(str.subSequence(off, off + len));
+    }
+
+    /**
+     * Writes text content, escaping markup characters.
+     *
+     * @param text
+     *         to write
+     * @throws IOException
+     *         if writing fails
+     */
+    public void writeText(String text) throws IOException {
+        out.writeText(text);
     }
 
     @Override
     public void flush() throws IOException {
-        writer.flush();
+        out.flush();
+        itemsSinceFlush = 0;
+    }
+
+    /**
+     * Makes the writer flush progressively while the items of a collection are written, so that clients receive
+     * the beginning of large lists early and the markup buffered by the server stays bounded.
+     *
+     * @param flushThresholdBytes
+     *         flush after an item if at least this many bytes have been written since the last flush, 0 to disable
+     * @param flushThresholdItems
+     *         flush after this many items, 0 to disable
+     * @see #endCollectionItem()
+     */
+    public void setFlushThresholds(int flushThresholdBytes, int flushThresholdItems) {
+        this.flushThresholdBytes = flushThresholdBytes;
+        this.flushThresholdItems = flushThresholdItems;
+    }
+
+    /**
+     * Tells if flush thresholds are set.
+     *
+     * @return true if the writer flushes progressively
+     */
+    public boolean isFlushingProgressively() {
+        return flushThresholdBytes > 0 || flushThresholdItems > 0;
+    }
+
+    /**
+     * Signals that a collection item has been written completely. Flushes if one of the flush thresholds has been
+     * reached.
+     *
+     * @throws IOException
+     *         if flushing fails
+     */
+    public void endCollectionItem() throws IOException {
+        itemsSinceFlush++;
+        if (flushThresholdItems > 0 && itemsSinceFlush >= flushThresholdItems
+                || flushThresholdBytes > 0 && out.getBytesSinceFlush() >= flushThresholdBytes) {
+            flush();
+        }
     }
 
     @Override
     public void close() throws IOException {
-        writer.close();
+        out.close();
+    }
+
+    /**
+     * Drains the buffered markup to the underlying stream and returns the buffer to the pool. The writer may still be
+     * used afterwards.
+     *
+     * @throws IOException
+     *         if writing fails
+     */
+    void release() throws IOException {
+        out.release();
     }
 
     public void beginUnorderedList() throws IOException {
-        writer.write("<ul class=\"list-group\">");
+        out.write(UL);
     }
 
     public void endUnorderedList() throws IOException {
-        writer.write("</ul>");
+        out.write(UL_END);
     }
 
     public void beginListItem() throws IOException {
-        writer.write("<li class=\"list-group-item\">");
+        out.write(LI);
     }
 
     public void endListItem() throws IOException {
-        writer.write("</li>");
+        out.write(LI_END);
     }
 
 
     public void beginSpan() throws IOException {
-        writer.write("<span>");
+        out.write(SPAN);
     }
 
     public void endSpan() throws IOException {
-        writer.write("</span>");
+        out.write(SPAN_END);
     }
 
     public void beginDl() throws IOException {
         // TODO: make this configurable?
-        writer.write("<dl >");
+        out.write(DL);
     }
 
     public void endDl() throws IOException {
-        writer.write("</dl>");
+        out.write(DL_END);
     }
 
 
     public void beginDt() throws IOException {
-        writer.write("<dt>");
+        out.write(DT);
     }
 
     public void endDt() throws IOException {
-        writer.write("</dt>");
+        out.write(DT_END);
     }
 
     public void beginDd() throws IOException {
-        writer.write("<dd>");
+        out.write(DD);
     }
 
     public void endDd() throws IOException {
-        writer.write("</dd>");
+        out.write(DD_END);
     }
 
     public void writeSpan(Object value) throws IOException {
         beginSpan();
-        writer.write(value.toString());
+        out.writeText(value.toString());
         endSpan();
     }
 
     public void writeDefinitionTerm(Object value) throws IOException {
         beginDt();
-        writer.write(value.toString());
+        out.writeText(value.toString());
         endDt();
     }
 
@@ -194,6 +362,17 @@ public class XhtmlWriter extends Writer {
         this.documentationProvider = documentationProvider;
     }
 
+    /**
+     * Sets prefetcher to look up possible values of all select fields of a form concurrently before the form is
+     * written.
+     *
+     * @param optionsPrefetcher
+     *         to use, may be null to look up possible values one after another
+     */
+    public void setOptionsPrefetcher(OptionsPrefetcher optionsPrefetcher) {
+        this.optionsPrefetcher = optionsPrefetcher;
+    }
+
     public static class OptionalAttributes {
 
         private Map<String, String> attributes = new LinkedHashMap<String, String>();
@@ -247,6 +426,9 @@ public class XhtmlWriter extends Writer {
 
 
     public void writeLinks(List<Link> links) throws IOException {
+        if (optionsPrefetcher != null) {
+            prefetchedOptions = optionsPrefetcher.prefetch(links);
+        }
         for (Link link : links) {
 
             if (link instanceof Affordance) {
@@ -277,9 +459,8 @@ public class XhtmlWriter extends Writer {
                                             .isEmpty()) {
                                 beginDiv();
                                 // GET without params is simple <a href>
-                                writeAnchor(OptionalAttributes.attr("href", affordance.expand()
-                                        .getHref())
-                                        .and("rel", affordance.getRel()), affordance.getRel());
+                                writeAnchor(affordance.expand()
+                                        .getHref(), affordance.getRel(), affordance.getRel());
                                 endDiv();
                             } else {
                                 appendForm(affordance, actionDescriptor);
@@ -309,42 +490,151 @@ public class XhtmlWriter extends Writer {
      * MVC HiddenHttpMethodFilter</a>
      */
     private void appendForm(Affordance affordance, ActionDescriptor actionDescriptor) throws IOException {
+        FormTemplate.Key key = FormTemplate.keyFor(actionDescriptor, documentationProvider, methodParam);
+        if (key == null) {
+            writeForm(affordance, actionDescriptor);
+            return;
+        }
+        FormTemplate template = FormTemplate.get(key);
+        Object[][] recordedPossibleValues = null;
+        if (template == null) {
+            FormTemplate.Builder recording = recordFormTemplate(affordance, actionDescriptor);
+            template = recording.build();
+            recordedPossibleValues = recording.getPossibleValues();
+            FormTemplate.put(key, template);
+        }
+        if (template == FormTemplate.UNCACHEABLE || !writeForm(template, affordance, actionDescriptor,
+                recordedPossibleValues)) {
+            writeForm(affordance, actionDescriptor);
+        }
+    }
+
+    /**
+     * Renders the form into a byte array to record its static markup.
+     *
+     * @param affordance
+     *         to make into a form
+     * @param actionDescriptor
+     *         describing the form action
+     * @return recording of the form
+     * @throws IOException
+     */
+    private FormTemplate.Builder recordFormTemplate(Affordance affordance, ActionDescriptor actionDescriptor) throws
+            IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        XhtmlWriter recorder = new XhtmlWriter(bytes);
+        recorder.setMethodParam(methodParam);
+        recorder.setDocumentationProvider(documentationProvider);
+        recorder.prefetchedOptions = prefetchedOptions;
+        recorder.formTemplateBuilder = new FormTemplate.Builder(bytes);
+        recorder.writeForm(affordance, actionDescriptor);
+        recorder.release();
+        return recorder.formTemplateBuilder;
+    }
+
+    /**
+     * Writes form from template, filling in the action url, the current values and possible values.
+     *
+     * @param template
+     *         of the form
+     * @param affordance
+     *         to make into a form
+     * @param actionDescriptor
+     *         describing the form action
+     * @param recordedPossibleValues
+     *         possible values per slot looked up while recording the template, null to look them up
+     * @return false if the current values do not fit into the template, nothing has been written in that case
+     * @throws IOException
+     */
+    private boolean writeForm(FormTemplate template, Affordance affordance, ActionDescriptor actionDescriptor,
+                              Object[][] recordedPossibleValues) throws IOException {
+        FormTemplate.Slot[] slots = template.slots;
+        Object[] values = new Object[slots.length];
+        Object[][] possibleValues = new Object[slots.length][];
+        for (int i = 0; i < slots.length; i++) {
+            FormTemplate.Slot slot = slots[i];
+            if (slot.type == FormTemplate.SlotType.ACTION) {
+                // Link's expand method removes non-required variables from URL
+                values[i] = affordance.expand()
+                        .getHref();
+            } else {
+                if (slot.type == FormTemplate.SlotType.VALUE) {
+                    values[i] = slot.source.getInputValue(actionDescriptor);
+                } else if (slot.type == FormTemplate.SlotType.OPTIONS) {
+                    values[i] = slot.source.getValue(actionDescriptor);
+                } else {
+                    values[i] = slot.source.getValues(actionDescriptor);
+                }
+                possibleValues[i] = recordedPossibleValues != null ? recordedPossibleValues[i] :
+                        slot.source.getPossibleValues(actionDescriptor, prefetchedOptions);
+                if (!slot.fits(values[i], possibleValues[i])) {
+                    return false;
+                }
+            }
+        }
+        for (int i = 0; i < slots.length; i++) {
+            out.write(template.markup[i]);
+            FormTemplate.SlotType type = slots[i].type;
+            if (type == FormTemplate.SlotType.ACTION) {
+                out.writeAttributeValue((String) values[i]);
+            } else if (type == FormTemplate.SlotType.VALUE) {
+                out.writeAttributeValue(values[i] == null ? "" : values[i].toString());
+            } else if (type == FormTemplate.SlotType.OPTIONS) {
+                writeOptions(possibleValues[i], values[i]);
+            } else {
+                writeMultipleOptions(possibleValues[i], (Object[]) values[i]);
+            }
+        }
+        out.write(template.markup[slots.length]);
+        return true;
+    }
+
+    private void writeForm(Affordance affordance, ActionDescriptor actionDescriptor) throws IOException {
         String formName = actionDescriptor.getActionName();
         RequestMethod httpMethod = RequestMethod.valueOf(actionDescriptor.getHttpMethod());
 
-        // Link's expand method removes non-required variables from URL
-        String actionUrl = affordance.expand()
-                .getHref();
-        beginForm(OptionalAttributes.attr("action", actionUrl)
-                .and("method", getHtmlConformingHttpMethod(httpMethod))
-                .and("name", formName));
-        write("<h4>");
-        write("Form " + formName);
-        write("</h4>");
+        out.write(FORM_ACTION);
+        if (formTemplateBuilder != null) {
+            addFormTemplateSlot(FormTemplate.Slot.action(), null);
+        } else {
+            // Link's expand method removes non-required variables from URL
+            out.writeAttributeValue(affordance.expand()
+                    .getHref());
+        }
+        out.write(QUOTE);
+        writeAttribute("method", getHtmlConformingHttpMethod(httpMethod));
+        writeAttribute("name", formName);
+        out.write(TAG_END);
+        out.write(H4_FORM);
+        out.writeText(String.valueOf(formName));
+        out.write(H4_END);
 
         writeHiddenHttpMethodField(httpMethod);
         // build the form
         if (actionDescriptor.hasRequestBody()) { // parameter bean
             ActionInputParameter requestBody = actionDescriptor.getRequestBody();
             Class<?> parameterType = requestBody.getParameterType();
-            recurseBeanProperties(parameterType, actionDescriptor, requestBody, requestBody.getValue(), "");
+            recurseBeanProperties(parameterType, actionDescriptor, requestBody, requestBody.getValue(), "",
+                    FormTemplate.PropertyPath.ROOT);
         } else { // plain parameter list
             Collection<String> requestParams = actionDescriptor.getRequestParamNames();
             for (String requestParamName : requestParams) {
                 ActionInputParameter actionInputParameter = actionDescriptor.getActionInputParameter(requestParamName);
 
-                Object[] possibleValues = actionInputParameter.getPossibleValues(actionDescriptor);
+                Object[] possibleValues = prefetchedOptions.getPossibleValues(actionInputParameter, actionDescriptor);
+                FormTemplate.Source source = FormTemplate.Source.forRequestParam(requestParamName);
                 // TODO duplication with appendInputOrSelect
                 if (possibleValues.length > 0) {
                     if (actionInputParameter.isArrayOrCollection()) {
-                        appendSelectMulti(requestParamName, possibleValues, actionInputParameter);
+                        appendSelectMulti(requestParamName, possibleValues, actionInputParameter, source);
                     } else {
-                        appendSelectOne(requestParamName, possibleValues, actionInputParameter);
+                        appendSelectOne(requestParamName, possibleValues, actionInputParameter, source);
                     }
                 } else {
                     if (actionInputParameter.isArrayOrCollection()) {
                         // have as many inputs as there are call values, list of 5 nulls gives you five input fields
                         // TODO support for free list input instead, code on demand?
+                        markFormTemplateUncacheable();
                         Object[] callValues = actionInputParameter.getValues();
                         int items = callValues.length;
                         for (int i = 0; i < items; i++) {
@@ -355,12 +645,12 @@ public class XhtmlWriter extends Writer {
                                 value = null;
                             }
                             appendInput(requestParamName, actionInputParameter, value, actionInputParameter
-									.isReadOnly(requestParamName)); // not readonly
+									.isReadOnly(requestParamName), null); // not readonly
                         }
                     } else {
                         String callValueFormatted = actionInputParameter.getValueFormatted();
                         appendInput(requestParamName, actionInputParameter, callValueFormatted, actionInputParameter
-								.isReadOnly(requestParamName)); // not readonly
+								.isReadOnly(requestParamName), source); // not readonly
                     }
                 }
             }
@@ -374,8 +664,7 @@ public class XhtmlWriter extends Writer {
         if (link.isTemplated()) {
             // TODO ensure that template expansion takes place for base uri
             Link expanded = link.expand(); // remove query variables
-            beginForm(OptionalAttributes.attr("action", expanded.getHref())
-                    .and("method", "GET"));
+            beginForm(expanded.getHref(), "GET", null);
             List<TemplateVariable> variables = link.getVariables();
             for (TemplateVariable variable : variables) {
                 String variableName = variable.getName();
@@ -387,8 +676,7 @@ public class XhtmlWriter extends Writer {
             String rel = link.getRel();
             String title = (rel != null ? rel : link.getHref());
             // TODO: write html <link> instead of anchor  <a> here?
-            writeAnchor(OptionalAttributes.attr("href", link.getHref())
-                    .and("rel", link.getRel()), title);
+            writeAnchor(link.getHref(), link.getRel(), title);
         }
     }
 
@@ -402,96 +690,142 @@ public class XhtmlWriter extends Writer {
      * @throws IOException
      */
     private void inputButton(Type type, String value) throws IOException {
-        write("<input type=\"");
-        write(type.toString());
-        write("\" ");
-        write("value");
-        write("=");
-        quote();
-        write(value);
-        quote();
-        write("/>");
-    }
-
-    private void input(String fieldName, Type type, OptionalAttributes attributes) throws IOException {
-        write("<input name=\"");
-        write(fieldName);
-        write("\" type=\"");
-        write(type.toString());
-        write("\" class=\"");
-        write(formControlClass);
-        write("\" ");
-        writeAttributes(attributes);
-        write("/>");
+        out.write(BUTTON_TYPE);
+        out.writeRaw(type.toString());
+        out.write(BUTTON_VALUE);
+        out.writeAttributeValue(value);
+        out.write(QUOTE_EMPTY_TAG_END);
     }
 
-    private void input(String fieldName, Type type) throws IOException {
-        input(fieldName, type, OptionalAttributes.attr());
+    /**
+     * Begins input tag, must be followed by optional attributes and {@link #endInput}.
+     */
+    private void beginInput(String fieldName, Type type) throws IOException {
+        out.write(INPUT_NAME);
+        out.writeAttributeValue(fieldName);
+        out.write(INPUT_TYPE);
+        out.writeRaw(type.toString());
+        out.write(INPUT_CLASS);
+        out.writeAttributeValue(formControlClass);
+        out.write(INPUT_ATTRIBUTES);
     }
 
-//    private void beginLabel(String label) throws IOException {
-//        beginLabel(label, attr());
-//    }
-
-//    private void beginLabel(String label, OptionalAttributes attributes) throws IOException {
-//        beginLabel(attributes);
-//        write(label);
-//    }
+    private void endInput() throws IOException {
+        out.write(EMPTY_TAG_END);
+    }
 
-    private void beginLabel(OptionalAttributes attributes) throws IOException {
-        write("<label");
-        writeAttributes(attributes);
-        endTag();
+    private void input(String fieldName, Type type) throws IOException {
+        beginInput(fieldName, type);
+        endInput();
     }
 
     private void endLabel() throws IOException {
-        write("</label>");
+        out.write(LABEL_END);
     }
 
 
-    private void beginForm(OptionalAttributes attrs) throws IOException {
-        write("<form class=\"well\" ");
-        writeAttributes(attrs);
-        write(">");
+    private void beginForm(String action, String method, String name) throws IOException {
+        out.write(FORM);
+        writeAttribute("action", action);
+        writeAttribute("method", method);
+        writeAttribute("name", name);
+        out.write(TAG_END);
     }
 
     private void writeAttributes(OptionalAttributes attrs) throws IOException {
         Map<String, String> attributes = attrs.build();
         for (Map.Entry<String, String> entry : attributes.entrySet()) {
-            write(" ");
-            write(entry.getKey());
-            write("=");
-            quote();
-            write(entry.getValue());
-            quote();
+            writeAttribute(entry.getKey(), entry.getValue());
         }
     }
 
-    private void quote() throws IOException {
-        write("\"");
+    /**
+     * Writes attribute preceded by a blank, if value is not null.
+     *
+     * @param name
+     *         of attribute
+     * @param value
+     *         of attribute, may be null
+     * @throws IOException
+     */
+    private void writeAttribute(String name, String value) throws IOException {
+        if (value != null) {
+            out.write(ATTRIBUTE_NAME_START);
+            out.writeRaw(name);
+            out.write(ATTRIBUTE_VALUE_START);
+            out.writeAttributeValue(value);
+            out.write(QUOTE);
+        }
+    }
+
+    /**
+     * Writes value attribute of an input, or adds a slot for the value if a form template is being recorded.
+     *
+     * @param value
+     *         of attribute
+     * @param slot
+     *         standing in for the value in a form template
+     * @throws IOException
+     */
+    private void writeValueAttribute(String value, FormTemplate.Slot slot) throws IOException {
+        out.write(VALUE_ATTRIBUTE);
+        if (formTemplateBuilder != null) {
+            addFormTemplateSlot(slot, new Object[0]);
+        } else {
+            out.writeAttributeValue(value);
+        }
+        out.write(QUOTE);
+    }
+
+    private void addFormTemplateSlot(FormTemplate.Slot slot, Object[] possibleValues) throws IOException {
+        out.drain();
+        formTemplateBuilder.addSlot(slot, possibleValues);
+    }
+
+    private void markFormTemplateUncacheable() {
+        if (formTemplateBuilder != null) {
+            formTemplateBuilder.uncacheable();
+        }
     }
 
     private void endForm() throws IOException {
-        write("</form>");
+        out.write(FORM_END);
     }
 
     public void beginAnchor(OptionalAttributes attrs) throws IOException {
-        write("<a ");
+        out.write(A);
         writeAttributes(attrs);
-        endTag();
+        out.write(TAG_END);
+    }
+
+    /**
+     * Begins anchor which links to documentation, using the documentation url as title.
+     *
+     * @param documentationUrl
+     *         to link to
+     * @throws IOException
+     */
+    void beginDocumentationAnchor(String documentationUrl) throws IOException {
+        out.write(A);
+        writeAttribute("href", documentationUrl);
+        writeAttribute("title", documentationUrl);
+        out.write(TAG_END);
     }
 
     public void endAnchor() throws IOException {
-        write("</a>");
+        out.write(A_END);
     }
 
     public void writeBr() throws IOException {
-        write("<br />");
+        out.write(BR);
     }
 
-    private void writeAnchor(OptionalAttributes attrs, String value) throws IOException {
-        beginAnchor(attrs);
-        write(value);
+    private void writeAnchor(String href, String rel, String value) throws IOException {
+        out.write(A);
+        writeAttribute("href", href);
+        writeAttribute("rel", rel);
+        out.write(TAG_END);
+        out.writeText(value);
         endAnchor();
     }
 
@@ -512,7 +846,9 @@ public class XhtmlWriter extends Writer {
             case POST:
                 break;
             default:
-                input(methodParam, Type.HIDDEN, OptionalAttributes.attr("value", httpMethod.name()));
+                beginInput(methodParam, Type.HIDDEN);
+                writeAttribute("value", httpMethod.name());
+                endInput();
         }
     }
 
@@ -541,13 +877,15 @@ public class XhtmlWriter extends Writer {
      *         which requires the bean
      * @param currentCallValue
      *         sample call value
+     * @param propertyPath
+     *         from the request body to the bean
      * @throws IOException
      */
     private void recurseBeanProperties(Class<?> beanType, ActionDescriptor actionDescriptor, ActionInputParameter
-            actionInputParameter, Object currentCallValue, String parentParamName) throws IOException {
+            actionInputParameter, Object currentCallValue, String parentParamName, FormTemplate.PropertyPath
+            propertyPath) throws IOException {
         // TODO support Option provider by other method args?
-        final BeanInfo beanInfo = getBeanInfo(beanType);
-        final PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
+        final BeanMetadata beanMetadata = BeanMetadata.forClass(beanType);
         // TODO collection and map
 
         // TODO: do not add two inputs for setter and ctor
@@ -555,12 +893,11 @@ public class XhtmlWriter extends Writer {
         // TODO almost duplicate of HtmlResourceMessageConverter.recursivelyCreateObject
         if (RequestMethod.POST == RequestMethod.valueOf(actionDescriptor.getHttpMethod())) {
             try {
-                Constructor[] constructors = beanType.getConstructors();
                 // find default ctor
-                Constructor constructor = PropertyUtils.findDefaultCtor(constructors);
+                Constructor constructor = beanMetadata.getDefaultConstructor();
                 // find ctor with JsonCreator ann
                 if (constructor == null) {
-                    constructor = PropertyUtils.findJsonCreator(constructors, JsonCreator.class);
+                    constructor = beanMetadata.getCreatorConstructor(JsonCreator.class);
                 }
                 Assert.notNull(constructor, "no default constructor or JsonCreator found for type " + beanType
                         .getName());
@@ -591,13 +928,16 @@ public class XhtmlWriter extends Writer {
                                                 (new MethodParameter(constructor, paramIndex), propertyValue);
 
                                         final Object[] possibleValues =
-                                                actionInputParameter.getPossibleValues(
+                                                prefetchedOptions.getPossibleValues(actionInputParameter,
                                                         constructor, paramIndex, actionDescriptor);
 
                                         appendInputOrSelect(actionInputParameter, parentParamName + paramName,
-                                                constructorParamInputParameter, possibleValues);
+                                                constructorParamInputParameter, possibleValues,
+                                                FormTemplate.Source.forConstructorParameter(propertyPath.child
+                                                        (paramName, true), constructor, paramIndex));
                                     }
                                 } else if (DataType.isArrayOrCollection(parameterType)) {
+                                    markFormTemplateUncacheable();
                                     Object[] callValues = actionInputParameter.getValues();
                                     int items = callValues.length;
                                     for (int i = 0; i < items; i++) {
@@ -608,15 +948,17 @@ public class XhtmlWriter extends Writer {
                                             value = null;
                                         }
                                         recurseBeanProperties(actionInputParameter.getParameterType(),
-                                                actionDescriptor, actionInputParameter, value, parentParamName);
+                                                actionDescriptor, actionInputParameter, value, parentParamName,
+                                                propertyPath);
                                     }
                                 } else {
                                     beginDiv();
-                                    write(paramName + ":");
+                                    out.writeText(paramName);
+                                    out.write(COLON);
                                     Object propertyValue = PropertyUtils.getPropertyOrFieldValue(currentCallValue,
                                             paramName);
                                     recurseBeanProperties(parameterType, actionDescriptor, actionInputParameter,
-                                            propertyValue, paramName + ".");
+                                            propertyValue, paramName + ".", propertyPath.child(paramName, true));
                                     endDiv();
                                 }
                                 paramIndex++; // increase for each @JsonProperty
@@ -634,7 +976,8 @@ public class XhtmlWriter extends Writer {
 
             // TODO non-writable properties and public fields: make sure the inputs are part of a form
             // write input field for every setter
-            for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
+            for (PropertyDescriptor propertyDescriptor : beanMetadata.getPropertyDescriptors()
+                    .values()) {
                 final Method writeMethod = propertyDescriptor.getWriteMethod();
                 if (writeMethod == null) {
                     continue;
@@ -652,12 +995,13 @@ public class XhtmlWriter extends Writer {
                     MethodParameter methodParameter = new MethodParameter(propertyDescriptor.getWriteMethod(), 0);
                     ActionInputParameter propertySetterInputParameter = new SpringActionInputParameter(methodParameter,
                             propertyValue);
-                    final Object[] possibleValues = actionInputParameter.getPossibleValues(propertyDescriptor
-                                    .getWriteMethod(), 0,
-                            actionDescriptor);
+                    final Object[] possibleValues = prefetchedOptions.getPossibleValues(actionInputParameter,
+                            propertyDescriptor.getWriteMethod(), 0, actionDescriptor);
                     appendInputOrSelect(actionInputParameter, propertyName, propertySetterInputParameter,
-							possibleValues);
+							possibleValues, FormTemplate.Source.forWriteMethod(propertyPath.child(propertyName, true),
+                                    writeMethod));
                 } else if (actionInputParameter.isArrayOrCollection()) {
+                    markFormTemplateUncacheable();
                     Object[] callValues = actionInputParameter.getValues();
                     int items = callValues.length;
                     for (int i = 0; i < items; i++) {
@@ -668,14 +1012,15 @@ public class XhtmlWriter extends Writer {
                             value = null;
                         }
                         recurseBeanProperties(actionInputParameter.getParameterType(), actionDescriptor,
-                                actionInputParameter, value, parentParamName);
+                                actionInputParameter, value, parentParamName, propertyPath);
                     }
                 } else {
                     beginDiv();
-                    write(propertyName + ":");
+                    out.writeText(propertyName);
+                    out.write(COLON);
                     Object propertyValue = PropertyUtils.getPropertyValue(currentCallValue, propertyDescriptor);
                     recurseBeanProperties(propertyType, actionDescriptor, actionInputParameter, propertyValue,
-							parentParamName);
+							parentParamName, propertyPath.child(propertyName, false));
                     endDiv();
                 }
             }
@@ -693,37 +1038,31 @@ public class XhtmlWriter extends Writer {
      *         the current input to be rendered
      * @param possibleValues
      *         suitable for childInputParameter
+     * @param source
+     *         of the child input values
      * @throws IOException
      */
     private void appendInputOrSelect(ActionInputParameter parentInputParameter, String paramName, ActionInputParameter
-            childInputParameter, Object[] possibleValues) throws IOException {
+            childInputParameter, Object[] possibleValues, FormTemplate.Source source) throws IOException {
         if (possibleValues.length > 0) {
             if (childInputParameter.isArrayOrCollection()) {
                 // TODO multiple formatted callvalues
                 appendSelectMulti(paramName, possibleValues,
-                        childInputParameter);
+                        childInputParameter, source);
             } else {
                 appendSelectOne(paramName, possibleValues,
-                        childInputParameter);
+                        childInputParameter, source);
             }
         } else {
             appendInput(paramName, childInputParameter,
                     childInputParameter.getValue(),
-                    parentInputParameter.isReadOnly(paramName));
+                    parentInputParameter.isReadOnly(paramName), source);
         }
     }
 
 
-    private BeanInfo getBeanInfo(Class<?> beanType) {
-        try {
-            return Introspector.getBeanInfo(beanType);
-        } catch (IntrospectionException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
     private void appendInput(String requestParamName, ActionInputParameter actionInputParameter, Object value, boolean
-            readOnly) throws
+            readOnly, FormTemplate.Source source) throws
             IOException {
         if (actionInputParameter.isRequestBody()) { // recurseBeanProperties does that
             throw new IllegalArgumentException("cannot append input field for requestBody");
@@ -732,38 +1071,42 @@ public class XhtmlWriter extends Writer {
         Type htmlInputFieldType = actionInputParameter.getHtmlInputFieldType();
         Assert.notNull(htmlInputFieldType);
         String val = value == null ? "" : value.toString();
-        beginDiv(OptionalAttributes.attr("class", formGroupClass));
+        beginDivWithClass(formGroupClass);
         if (Type.HIDDEN.equals(htmlInputFieldType)) {
-            input(requestParamName, htmlInputFieldType, OptionalAttributes.attr("value", val));
+            beginInput(requestParamName, htmlInputFieldType);
+            writeValueAttribute(val, FormTemplate.Slot.value(source, false, value));
+            endInput();
         } else {
             String documentationUrl = documentationProvider.getDocumentationUrl(actionInputParameter, value);
             // TODO consider @Input-include/exclude/hidden here
-            OptionalAttributes attrs = OptionalAttributes.attr("value", val);
+            writeLabelWithDoc(fieldLabel, requestParamName, documentationUrl);
+            beginInput(requestParamName, htmlInputFieldType);
+            writeValueAttribute(val, FormTemplate.Slot.value(source, true, value));
             if (readOnly) {
-                attrs.and(Input.READONLY, Input.READONLY);
+                writeAttribute(Input.READONLY, Input.READONLY);
             }
-            writeLabelWithDoc(fieldLabel, requestParamName, documentationUrl);
             if (actionInputParameter.hasInputConstraints()) {
                 for (Map.Entry<String, Object> inputConstraint : actionInputParameter.getInputConstraints()
                         .entrySet()) {
-                    attrs.and(inputConstraint.getKey(), inputConstraint.getValue()
+                    writeAttribute(inputConstraint.getKey(), inputConstraint.getValue()
                             .toString());
                 }
             }
-            input(requestParamName, htmlInputFieldType, attrs);
+            endInput();
         }
         endDiv();
     }
 
     private void writeLabelWithDoc(String label, String fieldName, String documentationUrl) throws IOException {
-        beginLabel(OptionalAttributes.attr("for", fieldName)
-                .and("class", controlLabelClass));
+        out.write(LABEL);
+        writeAttribute("for", fieldName);
+        writeAttribute("class", controlLabelClass);
+        out.write(TAG_END);
         if (documentationUrl == null) {
-            write(label);
+            out.writeText(label);
         } else {
-            beginAnchor(XhtmlWriter.OptionalAttributes.attr("href", documentationUrl)
-                    .and("title", documentationUrl));
-            write(label);
+            beginDocumentationAnchor(documentationUrl);
+            out.writeText(label);
             endAnchor();
         }
         endLabel();
@@ -771,20 +1114,17 @@ public class XhtmlWriter extends Writer {
 
 
     private void appendSelectOne(String requestParamName, Object[] possibleValues, ActionInputParameter
-            actionInputParameter)
+            actionInputParameter, FormTemplate.Source source)
             throws IOException {
-        beginDiv(OptionalAttributes.attr("class", formGroupClass));
+        beginDivWithClass(formGroupClass);
         Object callValue = actionInputParameter.getValue();
         String documentationUrl = documentationProvider.getDocumentationUrl(actionInputParameter, callValue);
         writeLabelWithDoc(requestParamName, requestParamName, documentationUrl);
-        beginSelect(requestParamName, requestParamName, possibleValues.length,
-                OptionalAttributes.attr("class", formControlClass));
-        for (Object possibleValue : possibleValues) {
-            if (possibleValue.equals(callValue)) {
-                option(possibleValue.toString(), attr("selected", "selected"));
-            } else {
-                option(possibleValue.toString());
-            }
+        beginSelect(requestParamName, requestParamName, false);
+        if (formTemplateBuilder != null) {
+            addFormTemplateSlot(FormTemplate.Slot.options(source, callValue), possibleValues);
+        } else {
+            writeOptions(possibleValues, callValue);
         }
         endSelect();
 
@@ -793,8 +1133,8 @@ public class XhtmlWriter extends Writer {
 
 
     private void appendSelectMulti(String requestParamName, Object[] possibleValues, ActionInputParameter
-            actionInputParameter) throws IOException {
-        beginDiv(OptionalAttributes.attr("class", formGroupClass));
+            actionInputParameter, FormTemplate.Source source) throws IOException {
+        beginDivWithClass(formGroupClass);
         Object[] actualValues = actionInputParameter.getValues();
         final Object aCallValue;
         if (actualValues.length > 0) {
@@ -804,65 +1144,53 @@ public class XhtmlWriter extends Writer {
         }
         String documentationUrl = documentationProvider.getDocumentationUrl(actionInputParameter, aCallValue);
         writeLabelWithDoc(requestParamName, requestParamName, documentationUrl);
-        beginSelect(requestParamName, requestParamName, possibleValues.length,
-                OptionalAttributes.attr("multiple", "multiple")
-                        .and("class", formControlClass));
-        for (Object possibleValue : possibleValues) {
-            if (ObjectUtils.containsElement(actualValues, possibleValue)) {
-                option(possibleValue.toString(), attr("selected", "selected"));
-            } else {
-                option(possibleValue.toString());
-            }
+        beginSelect(requestParamName, requestParamName, true);
+        if (formTemplateBuilder != null) {
+            addFormTemplateSlot(FormTemplate.Slot.multipleOptions(source, actualValues), possibleValues);
+        } else {
+            writeMultipleOptions(possibleValues, actualValues);
         }
         endForm();
         endDiv();
     }
 
-    private void option(String option) throws IOException {
-        option(option, attr());
-    }
-
-    private void option(String option, OptionalAttributes attr) throws IOException {
-        // <option selected='selected'>%s</option>
-        beginTag("option");
-        writeAttributes(attr);
-        endTag();
-        write(option);
-        write("</option>");
-    }
-
-    private void beginTag(String tag) throws IOException {
-        write("<");
-        write(tag);
+    private void writeOptions(Object[] possibleValues, Object callValue) throws IOException {
+        for (Object possibleValue : possibleValues) {
+            option(possibleValue.toString(), possibleValue.equals(callValue));
+        }
     }
 
-    private void endTag() throws IOException {
-        write(">");
+    private void writeMultipleOptions(Object[] possibleValues, Object[] callValues) throws IOException {
+        for (Object possibleValue : possibleValues) {
+            option(possibleValue.toString(), ObjectUtils.containsElement(callValues, possibleValue));
+        }
     }
 
-    private void beginSelect(String name, String id, int size) throws IOException {
-        beginSelect(name, id, size, attr());
+    private void option(String option, boolean selected) throws IOException {
+        // <option selected='selected'>%s</option>
+        out.write(OPTION);
+        if (selected) {
+            writeAttribute("selected", "selected");
+        }
+        out.write(TAG_END);
+        out.writeText(option);
+        out.write(OPTION_END);
     }
 
-    private void beginSelect(String name, String id, int size, OptionalAttributes attrs) throws IOException {
-        beginTag("select");
-        write(" name=");
-        quote(name);
-        write(" id=");
-        quote(id);
-        //write(" size=");
-        //quote(Integer.toString(size));
-        writeAttributes(attrs);
-        endTag();
+    private void beginSelect(String name, String id, boolean multiple) throws IOException {
+        out.write(SELECT_NAME);
+        out.writeAttributeValue(name);
+        out.write(SELECT_ID);
+        out.writeAttributeValue(id);
+        out.write(QUOTE);
+        if (multiple) {
+            writeAttribute("multiple", "multiple");
+        }
+        writeAttribute("class", formControlClass);
+        out.write(TAG_END);
     }
 
     private void endSelect() throws IOException {
-        write("</select>");
-    }
-
-    private void quote(String s) throws IOException {
-        quote();
-        write(s);
-        quote();
+        out.write(SELECT_END);
     }
 }
@@ -0,0 +1,147 @@
+package de.escalon.hypermedia;
+
+import org.junit.Test;
+import org.springframework.hateoas.Link;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ResourceTraversalTest {
+
+    public static class Parent {
+
+        private String name = "Alice";
+        private Child child;
+
+        public String getName() {
+            return name;
+        }
+
+        public Child getChild() {
+            return child;
+        }
+    }
+
+    public static class Child {
+
+        private String name = "Bob";
+        private Parent parent;
+
+        public String getName() {
+            return name;
+        }
+
+        public Parent getParent() {
+            return parent;
+        }
+    }
+
+    public static class Node {
+
+        private Node next;
+
+        public Node getNext() {
+            return next;
+        }
+    }
+
+    static class RecordingVisitor implements ResourceSupportVisitor {
+
+        List<String> events = new ArrayList<String>();
+
+        @Override
+        public boolean visitLinks(List<Link> links) {
+            return true;
+        }
+
+        @Override
+        public boolean visitEnterCollection(Collection<?> collection) {
+            return true;
+        }
+
+        @Override
+        public boolean visitLeaveCollection(Collection<?> collection) {
+            return true;
+        }
+
+        @Override
+        public boolean visitEnterProperty(String name, Class<?> propertyType, Object value) {
+            events.add("enter:" + name);
+            return true;
+        }
+
+        @Override
+        public boolean visitProperty(String name, Object value, Object o) {
+            events.add("value:" + name + "=" + o);
+            return true;
+        }
+
+        @Override
+        public boolean visitLeaveProperty(String name, Class<?> propertyType, Object value) {
+            events.add("leave:" + name);
+            return true;
+        }
+    }
+
+    private Parent createBidirectional() {
+        Parent parent = new Parent();
+        Child child = new Child();
+        parent.child = child;
+        child.parent = parent;
+        return parent;
+    }
+
+    @Test
+    public void doesNotEnterObjectsOnCurrentPathAgain() {
+        RecordingVisitor visitor = new RecordingVisitor();
+
+        new ResourceTraversal().traverseResource(visitor, createBidirectional());
+
+        assertEquals(Arrays.asList("enter:child", "enter:name", "value:name=Bob", "leave:name", "enter:parent",
+                "leave:parent", "leave:child", "enter:name", "value:name=Alice", "leave:name"), visitor.events);
+    }
+
+    @Test
+    public void skipsObjectsBeyondMaxDepth() {
+        RecordingVisitor visitor = new RecordingVisitor();
+        ResourceTraversal resourceTraversal = new ResourceTraversal();
+        resourceTraversal.setMaxDepth(0);
+
+        resourceTraversal.traverseResource(visitor, createBidirectional());
+
+        assertEquals(Arrays.asList("enter:child", "leave:child", "enter:name", "value:name=Alice", "leave:name"),
+                visitor.events);
+    }
+
+    @Test
+    public void skipsObjectsBeyondMaxNodes() {
+        RecordingVisitor visitor = new RecordingVisitor();
+        ResourceTraversal resourceTraversal = new ResourceTraversal();
+        resourceTraversal.setMaxNodes(1);
+
+        resourceTraversal.traverseResource(visitor, createBidirectional());
+
+        assertEquals(Arrays.asList("enter:child", "leave:child", "enter:name", "value:name=Alice", "leave:name"),
+                visitor.events);
+    }
+
+    @Test
+    public void traversesDeepStructuresWithoutRecursion() {
+        Node head = new Node();
+        Node tail = head;
+        for (int i = 0; i < 100000; i++) {
+            tail.next = new Node();
+            tail = tail.next;
+        }
+        RecordingVisitor visitor = new RecordingVisitor();
+
+        new ResourceTraversal().traverseResource(visitor, head);
+
+        // enter, leave for every node with successor, enter, value, leave for the last one
+        assertEquals(2 * 100000 + 3, visitor.events.size());
+    }
+}
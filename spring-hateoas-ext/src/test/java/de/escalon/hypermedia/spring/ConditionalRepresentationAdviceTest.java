@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring;
+
+import de.escalon.hypermedia.spring.siren.SirenMessageConverter;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.hateoas.ResourceSupport;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.standaloneSetup;
+
+public class ConditionalRepresentationAdviceTest {
+
+    public static class Order extends ResourceSupport implements Fingerprinted {
+
+        private final String version;
+
+        public Order(String version) {
+            this.version = version;
+        }
+
+        public String getStatus() {
+            return "ordered";
+        }
+
+        @Override
+        public String fingerprint() {
+            return version;
+        }
+    }
+
+    @Controller
+    static class OrderController {
+
+        String version = "1";
+
+        @RequestMapping("/orders/1")
+        @ResponseBody
+        public Order getOrder() {
+            return new Order(version);
+        }
+
+        @RequestMapping("/orders")
+        @ResponseStatus(HttpStatus.CREATED)
+        @ResponseBody
+        public Order createOrder() {
+            return new Order(version);
+        }
+    }
+
+    @ControllerAdvice
+    static class ETagAdvice extends ConditionalRepresentationAdvice {
+    }
+
+    static class CountingSirenMessageConverter extends SirenMessageConverter {
+
+        int writes;
+
+        CountingSirenMessageConverter() {
+            setSupportedMediaTypes(Collections.singletonList(HypermediaTypes.SIREN_JSON));
+        }
+
+        @Override
+        protected void writeInternal(Object o, HttpOutputMessage outputMessage) throws IOException {
+            writes++;
+            super.writeInternal(o, outputMessage);
+        }
+    }
+
+    OrderController orderController = new OrderController();
+
+    CountingSirenMessageConverter converter = new CountingSirenMessageConverter();
+
+    MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        mockMvc = standaloneSetup(orderController)
+                .setMessageConverters(converter)
+                .setControllerAdvice(new ETagAdvice())
+                .build();
+    }
+
+    @Test
+    public void answersIfNoneMatchWithoutSerializing() throws Exception {
+        MvcResult result = mockMvc.perform(get("/orders/1").accept(HypermediaTypes.SIREN_JSON))
+                .andExpect(status().isOk())
+                .andReturn();
+        String etag = result.getResponse()
+                .getHeader("ETag");
+        assertNotNull(etag);
+        assertEquals(1, converter.writes);
+
+        mockMvc.perform(get("/orders/1").accept(HypermediaTypes.SIREN_JSON)
+                .header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().string(""));
+        assertEquals(1, converter.writes);
+    }
+
+    @Test
+    public void servesChangedRepresentation() throws Exception {
+        String etag = mockMvc.perform(get("/orders/1").accept(HypermediaTypes.SIREN_JSON))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+        orderController.version = "2";
+
+        mockMvc.perform(get("/orders/1").accept(HypermediaTypes.SIREN_JSON)
+                .header("If-None-Match", etag))
+                .andExpect(status().isOk());
+        assertEquals(2, converter.writes);
+    }
+
+    @Test
+    public void leavesResponsesOtherThanOkAlone() throws Exception {
+        mockMvc.perform(get("/orders").accept(HypermediaTypes.SIREN_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist("ETag"));
+        assertEquals(1, converter.writes);
+    }
+
+    @Test
+    public void variesETagByMediaTypeAndConfiguration() {
+        ConditionalRepresentationAdvice advice = new ConditionalRepresentationAdvice();
+        String sirenETag = advice.getETag("1", HypermediaTypes.SIREN_JSON, SirenMessageConverter.class);
+        assertEquals(sirenETag, advice.getETag("1", HypermediaTypes.SIREN_JSON, SirenMessageConverter.class));
+        assertNotEquals(sirenETag, advice.getETag("1", MediaType.TEXT_HTML, SirenMessageConverter.class));
+
+        advice.setConverterConfiguration("v2");
+        assertNotEquals(sirenETag, advice.getETag("1", HypermediaTypes.SIREN_JSON, SirenMessageConverter.class));
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring;
+
+import de.escalon.hypermedia.action.Options;
+import de.escalon.hypermedia.action.Select;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OptionsPrefetcherTest {
+
+    private static final long LOOKUP_MILLIS = 300;
+
+    private ExecutorService executorService;
+
+    public static class SlowOptions implements Options {
+
+        @Override
+        public Object[] get(String[] value, Object... args) {
+            try {
+                Thread.sleep(LOOKUP_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                        .interrupt();
+            }
+            return value;
+        }
+    }
+
+    static class DummyController {
+
+        @RequestMapping
+        public void search(@RequestParam @Select(value = {"red", "green"}, options = SlowOptions.class) String color,
+                           @RequestParam @Select(value = {"S", "M", "L"}, options = SlowOptions.class) String size) {
+
+        }
+    }
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void prefetchesPossibleValuesConcurrently() throws Exception {
+        SpringActionDescriptor actionDescriptor = createSearchDescriptor();
+
+        long start = System.currentTimeMillis();
+        PrefetchedOptions prefetched = new OptionsPrefetcher(executorService, 5000).prefetch(actionDescriptor);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue("lookups took " + elapsed + " ms", elapsed < 2 * LOOKUP_MILLIS);
+        start = System.currentTimeMillis();
+        assertArrayEquals(new Object[]{"red", "green"}, prefetched.getPossibleValues(actionDescriptor
+                .getActionInputParameter("color"), actionDescriptor));
+        assertArrayEquals(new Object[]{"S", "M", "L"}, prefetched.getPossibleValues(actionDescriptor
+                .getActionInputParameter("size"), actionDescriptor));
+        elapsed = System.currentTimeMillis() - start;
+        assertTrue("prefetched values were looked up again", elapsed < LOOKUP_MILLIS);
+    }
+
+    @Test
+    public void rendersEmptySelectionOnTimeout() throws Exception {
+        SpringActionDescriptor actionDescriptor = createSearchDescriptor();
+
+        PrefetchedOptions prefetched = new OptionsPrefetcher(executorService, 10).prefetch(actionDescriptor);
+
+        assertEquals(0, prefetched.getPossibleValues(actionDescriptor.getActionInputParameter("color"),
+                actionDescriptor).length);
+        assertEquals(0, prefetched.getPossibleValues(actionDescriptor.getActionInputParameter("size"),
+                actionDescriptor).length);
+    }
+
+    @Test
+    public void leavesActionDescriptorUnchanged() throws Exception {
+        SpringActionDescriptor actionDescriptor = createSearchDescriptor();
+
+        new OptionsPrefetcher(executorService, 10).prefetch(actionDescriptor);
+
+        assertArrayEquals(new Object[]{"red", "green"}, actionDescriptor.getActionInputParameter("color")
+                .getPossibleValues(actionDescriptor));
+        assertArrayEquals(new Object[]{"red", "green"}, PrefetchedOptions.NONE.getPossibleValues(actionDescriptor
+                .getActionInputParameter("color"), actionDescriptor));
+    }
+
+    private SpringActionDescriptor createSearchDescriptor() throws NoSuchMethodException {
+        Method search = DummyController.class.getMethod("search", String.class, String.class);
+        SpringActionDescriptor actionDescriptor = new SpringActionDescriptor("search", "GET");
+        actionDescriptor.addRequestParam("color", new SpringActionInputParameter(new MethodParameter(search, 0),
+                null));
+        actionDescriptor.addRequestParam("size", new SpringActionInputParameter(new MethodParameter(search, 1),
+                null));
+        return actionDescriptor;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class RepresentationCacheFilterTest {
+
+    RepresentationCache representationCache = new RepresentationCache(1024 * 1024);
+
+    RepresentationCacheFilter filter = new RepresentationCacheFilter(representationCache, new
+            RepresentationKeyResolver() {
+                @Override
+                public String resolveVersionKey(HttpServletRequest request) {
+                    return request.getRequestURI()
+                            .startsWith("/events") ? "events@1" : null;
+                }
+            });
+
+    static class EventsHandler implements FilterChain {
+
+        int calls;
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response) throws IOException,
+                ServletException {
+            calls++;
+            HttpServletResponse httpServletResponse = (HttpServletResponse) response;
+            httpServletResponse.setContentType(HypermediaTypes.APPLICATION_JSONLD_STR);
+            httpServletResponse.setHeader("Link", "</events?page=2>; rel=\"next\"");
+            httpServletResponse.getOutputStream()
+                    .write(("{\"@type\":\"Event\",\"call\":" + calls + "}").getBytes("UTF-8"));
+        }
+    }
+
+    private MockHttpServletResponse get(String uri, String accept, FilterChain filterChain) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.addHeader("Accept", accept);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, filterChain);
+        return response;
+    }
+
+    @Test
+    public void servesCachedRepresentationWithoutInvokingHandler() throws Exception {
+        EventsHandler eventsHandler = new EventsHandler();
+        MockHttpServletResponse first = get("/events", "application/ld+json", eventsHandler);
+        MockHttpServletResponse second = get("/events", "application/ld+json", eventsHandler);
+
+        assertEquals(1, eventsHandler.calls);
+        assertEquals("{\"@type\":\"Event\",\"call\":1}", first.getContentAsString());
+        assertEquals(first.getContentAsString(), second.getContentAsString());
+        assertEquals(HypermediaTypes.APPLICATION_JSONLD_STR, second.getContentType());
+        assertEquals("</events?page=2>; rel=\"next\"", second.getHeader("Link"));
+    }
+
+    @Test
+    public void variesByAcceptAndInvalidation() throws Exception {
+        EventsHandler eventsHandler = new EventsHandler();
+        get("/events", "application/ld+json", eventsHandler);
+        get("/events", "application/ld+json;q=0.9", eventsHandler);
+        assertEquals(2, eventsHandler.calls);
+
+        representationCache.invalidate("events@1");
+        get("/events", "application/ld+json", eventsHandler);
+        assertEquals(3, eventsHandler.calls);
+    }
+
+    @Test
+    public void passesUncacheableRequests() throws Exception {
+        EventsHandler eventsHandler = new EventsHandler();
+        get("/orders", "application/ld+json", eventsHandler);
+        get("/orders", "application/ld+json", eventsHandler);
+        assertEquals(2, eventsHandler.calls);
+        assertEquals(0, representationCache.size());
+    }
+
+    @Test
+    public void bypassesRequestsWithCredentials() throws Exception {
+        EventsHandler eventsHandler = new EventsHandler();
+        get("/events", "application/ld+json", eventsHandler);
+        for (String credentialHeader : new String[]{"Authorization", "Cookie"}) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/events");
+            request.addHeader("Accept", "application/ld+json");
+            request.addHeader(credentialHeader, "secret");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, eventsHandler);
+        }
+        assertEquals(3, eventsHandler.calls);
+        assertEquals(1, representationCache.size());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class RepresentationCacheTest {
+
+    RepresentationCache representationCache = new RepresentationCache(10);
+
+    private static RepresentationCache.Representation representation(int size) {
+        return new RepresentationCache.Representation(new byte[size], "application/ld+json", Collections
+                .<String, List<String>>emptyMap());
+    }
+
+    private static RepresentationCache.Key key(String versionKey, String uri) {
+        return new RepresentationCache.Key(versionKey, uri, "http\napplication/ld+json,");
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedWhenFull() {
+        representationCache.put(key("event-1@1", "/events/1"), representation(4));
+        representationCache.put(key("event-2@1", "/events/2"), representation(4));
+        representationCache.get(key("event-1@1", "/events/1"));
+        representationCache.put(key("event-3@1", "/events/3"), representation(4));
+
+        assertNotNull(representationCache.get(key("event-1@1", "/events/1")));
+        assertNull(representationCache.get(key("event-2@1", "/events/2")));
+        assertNotNull(representationCache.get(key("event-3@1", "/events/3")));
+    }
+
+    @Test
+    public void doesNotCacheBodyLargerThanCache() {
+        representationCache.put(key("event-1@1", "/events/1"), representation(11));
+        assertEquals(0, representationCache.size());
+    }
+
+    @Test
+    public void invalidatesAllRepresentationsOfVersion() {
+        representationCache.put(key("event-1@1", "/events/1"), representation(2));
+        representationCache.put(key("event-1@1", "/events/1?view=short"), representation(2));
+        representationCache.put(key("event-2@1", "/events/2"), representation(2));
+
+        representationCache.invalidate("event-1@1");
+
+        assertEquals(1, representationCache.size());
+        assertNotNull(representationCache.get(key("event-2@1", "/events/2")));
+        representationCache.put(key("event-3@1", "/events/3"), representation(8));
+        assertEquals(2, representationCache.size());
+    }
+}
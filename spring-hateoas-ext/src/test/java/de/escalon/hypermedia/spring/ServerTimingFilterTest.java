@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2014. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring;
+
+import de.escalon.hypermedia.metrics.PhaseRecorder;
+import de.escalon.hypermedia.metrics.PhaseSpan;
+import de.escalon.hypermedia.metrics.RenderingPhase;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ServerTimingFilterTest {
+
+    ServerTimingFilter filter = new ServerTimingFilter();
+
+    static class EventsHandler implements FilterChain {
+
+        final String contentType;
+        PhaseSpan linkSpan;
+
+        EventsHandler(String contentType) {
+            this.contentType = contentType;
+        }
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response) throws IOException,
+                ServletException {
+            linkSpan = PhaseRecorder.getInstance()
+                    .begin(RenderingPhase.AFFORDANCE_BUILD);
+            linkSpan.finish(EventsHandler.class, null, 0);
+            HttpServletResponse httpServletResponse = (HttpServletResponse) response;
+            httpServletResponse.setContentType(contentType);
+            httpServletResponse.getOutputStream()
+                    .write("{\"@type\":\"Event\"}".getBytes("UTF-8"));
+            httpServletResponse.flushBuffer();
+        }
+    }
+
+    private MockHttpServletResponse get(FilterChain filterChain) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/events"), response, filterChain);
+        return response;
+    }
+
+    @Test
+    public void addsServerTimingToHypermediaResponse() throws Exception {
+        EventsHandler eventsHandler = new EventsHandler(HypermediaTypes.APPLICATION_JSONLD_STR);
+        MockHttpServletResponse response = get(eventsHandler);
+
+        String serverTiming = response.getHeader(ServerTimingFilter.SERVER_TIMING);
+        assertTrue(serverTiming, serverTiming.matches("assembly;dur=\\d+\\.\\d, links;dur=\\d+\\.\\d, " +
+                "context;dur=0\\.0, serialization;dur=0\\.0, total;dur=\\d+\\.\\d"));
+        assertTrue(eventsHandler.linkSpan.isRecording());
+        assertEquals("{\"@type\":\"Event\"}", response.getContentAsString());
+    }
+
+    @Test
+    public void omitsServerTimingForOtherMediaTypes() throws Exception {
+        MockHttpServletResponse response = get(new EventsHandler("application/json"));
+
+        assertNull(response.getHeader(ServerTimingFilter.SERVER_TIMING));
+        assertEquals("{\"@type\":\"Event\"}", response.getContentAsString());
+    }
+
+    @Test
+    public void passesRequestsWhenDisabled() throws Exception {
+        filter.setEnabled(false);
+        EventsHandler eventsHandler = new EventsHandler(HypermediaTypes.APPLICATION_JSONLD_STR);
+        MockHttpServletResponse response = get(eventsHandler);
+
+        assertNull(response.getHeader(ServerTimingFilter.SERVER_TIMING));
+        assertFalse(eventsHandler.linkSpan.isRecording());
+        assertTrue(response.isCommitted());
+    }
+}
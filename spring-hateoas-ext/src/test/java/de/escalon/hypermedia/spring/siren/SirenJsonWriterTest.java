@@ -0,0 +1,133 @@
+package de.escalon.hypermedia.spring.siren;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.escalon.hypermedia.RepresentationBudget;
+import de.escalon.hypermedia.RepresentationBudgetExceededException;
+import org.junit.Test;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.Resource;
+import org.springframework.hateoas.Resources;
+import org.springframework.hateoas.core.Relation;
+
+import java.io.StringWriter;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SirenJsonWriterTest {
+
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    SirenUtils sirenUtils = new SirenUtils();
+
+    @Relation("city")
+    public static class City {
+
+        public String getPostalCode() {
+            return "74199";
+        }
+
+        public String getName() {
+            return "Donnbronn";
+        }
+    }
+
+    @Relation("address")
+    public static class Address {
+
+        public String street = "Grant Street";
+
+        public City getCity() {
+            return new City();
+        }
+    }
+
+    public static class Customer {
+
+        public String getName() {
+            return "Peter Joseph";
+        }
+
+        public List<Integer> getFavoriteNumbers() {
+            return Arrays.asList(1, 3, 5, 7);
+        }
+
+        public List<Address> getAddresses() {
+            return Arrays.asList(new Address(), new Address());
+        }
+
+        public Resource<Address> getBillingAddress() {
+            Resource<Address> ret = new Resource<Address>(new Address());
+            ret.add(new Link("http://example.com/addresses/1"));
+            return ret;
+        }
+    }
+
+    private void assertSameAsEntityTree(Object object) throws Exception {
+        SirenEntity entity = new SirenEntity();
+        sirenUtils.toSirenEntity(entity, object);
+        JsonNode expected = objectMapper.valueToTree(entity);
+
+        StringWriter json = new StringWriter();
+        JsonGenerator jsonGenerator = objectMapper.getFactory()
+                .createGenerator(json);
+        sirenUtils.writeSirenEntity(jsonGenerator, object);
+        jsonGenerator.flush();
+
+        assertEquals(expected, objectMapper.readTree(json.toString()));
+    }
+
+    @Test
+    public void writesBeanWithNestedAndRelatedBeans() throws Exception {
+        assertSameAsEntityTree(new Customer());
+    }
+
+    @Test
+    public void writesResourceWithLinks() throws Exception {
+        Resource<Customer> customerResource = new Resource<Customer>(new Customer());
+        customerResource.add(new Link("http://example.com/customers/1"));
+        customerResource.add(new Link("http://example.com/customers/1/orders", "orders"));
+        customerResource.add(new Link("http://example.com/customers{?name}", "search"));
+
+        assertSameAsEntityTree(customerResource);
+    }
+
+    @Test
+    public void writesResources() throws Exception {
+        Resources<Address> addresses = new Resources<Address>(Arrays.asList(new Address(), new Address()));
+        addresses.add(new Link("http://example.com/addresses"));
+
+        assertSameAsEntityTree(addresses);
+    }
+
+    @Test
+    public void writesMap() throws Exception {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("name", "Joe");
+        map.put("address", new Resource<Address>(new Address()));
+
+        assertSameAsEntityTree(map);
+    }
+
+    @Test
+    public void writesEmptyEntityForNull() throws Exception {
+        assertSameAsEntityTree(null);
+    }
+
+    @Test
+    public void failsBeyondDepthBudget() throws Exception {
+        JsonGenerator jsonGenerator = objectMapper.getFactory()
+                .createGenerator(new StringWriter());
+        try {
+            // the city of a related address is nested two levels deep
+            sirenUtils.writeSirenEntity(jsonGenerator, new Customer(), RepresentationBudget.UNLIMITED
+                    .withMaxDepth(1));
+            fail("depth budget not enforced");
+        } catch (RepresentationBudgetExceededException e) {
+            assertEquals(RepresentationBudget.Limit.DEPTH, e.getLimit());
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2015. Escalon System-Entwicklung, Dietrich Schulten
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for
+ * the specific language governing permissions and limitations under the License.
+ */
+
+package de.escalon.hypermedia.spring.uber;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.hateoas.Link;
+import org.springframework.hateoas.Resource;
+import org.springframework.hateoas.Resources;
+
+import java.io.StringWriter;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class UberJsonWriterTest {
+
+    private ObjectMapper objectMapper;
+
+    public static class Bean {
+
+        public String foo = "foo";
+
+        public String getBar() {
+            return "bar";
+        }
+
+        public String getNothing() {
+            return null;
+        }
+
+        public List<String> getEmptyList() {
+            return Collections.emptyList();
+        }
+
+        public Map<String, Object> getAttributes() {
+            Map<String, Object> ret = new LinkedHashMap<String, Object>();
+            ret.put("color", "blue");
+            return ret;
+        }
+    }
+
+    public static class NestedBean {
+
+        public Bean getBean() {
+            return new Bean();
+        }
+
+        public List<Bean> getBeans() {
+            return Arrays.asList(new Bean(), new Bean());
+        }
+    }
+
+    @Before
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+        objectMapper.configure(SerializationFeature.WRAP_ROOT_VALUE, true);
+    }
+
+    private void assertSameAsMessageModel(Object object) throws Exception {
+        String expected = objectMapper.writeValueAsString(new UberMessageModel(object));
+
+        StringWriter json = new StringWriter();
+        JsonGenerator jsonGenerator = objectMapper.getFactory()
+                .createGenerator(json);
+        UberUtils.writeUberMessage(jsonGenerator, object);
+        jsonGenerator.flush();
+
+        assertEquals(objectMapper.readTree(expected), objectMapper.readTree(json.toString()));
+    }
+
+    @Test
+    public void writesNestedBeans() throws Exception {
+        assertSameAsMessageModel(new NestedBean());
+    }
+
+    @Test
+    public void writesResourceWithLinks() throws Exception {
+        Resource<Bean> resource = new Resource<Bean>(new Bean());
+        resource.add(new Link("http://example.com/beans/1"));
+        resource.add(new Link("http://example.com/beans{?foo}", "search"));
+
+        assertSameAsMessageModel(resource);
+    }
+
+    @Test
+    public void writesResources() throws Exception {
+        Resources<Bean> resources = new Resources<Bean>(Arrays.asList(new Bean(), new Bean()));
+        resources.add(new Link("http://example.com/beans"));
+
+        assertSameAsMessageModel(resources);
+    }
+
+    @Test
+    public void writesMap() throws Exception {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("name", "Doe");
+        map.put("bean", new Bean());
+        map.put("missing", null);
+
+        assertSameAsMessageModel(map);
+    }
+
+    @Test
+    public void writesEmptyMessage() throws Exception {
+        assertSameAsMessageModel(Collections.emptyMap());
+    }
+
+    @Test
+    public void createsReadActionDescriptorPerCall() {
+        // action descriptors are mutable, callers must not share them
+        assertNotSame(UberUtils.getActionDescriptors(new Link("http://example.com/beans/1"))
+                .get(0), UberUtils.getActionDescriptors(new Link("http://example.com/beans/1", "item"))
+                .get(0));
+    }
+}
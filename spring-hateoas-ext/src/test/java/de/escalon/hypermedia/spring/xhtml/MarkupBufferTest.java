@@ -0,0 +1,108 @@
+package de.escalon.hypermedia.spring.xhtml;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+public class MarkupBufferTest {
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    MarkupBuffer buffer = new MarkupBuffer(bytes);
+
+    private String written() throws Exception {
+        buffer.flush();
+        return new String(bytes.toByteArray(), "UTF-8");
+    }
+
+    @Test
+    public void escapesText() throws Exception {
+        buffer.writeText("<b>Fish & \"Chips\"</b>");
+        assertEquals("&lt;b&gt;Fish &amp; \"Chips\"&lt;/b&gt;", written());
+    }
+
+    @Test
+    public void escapesAttributeValue() throws Exception {
+        buffer.writeAttributeValue("/search?q=\"x\"&page=1");
+        assertEquals("/search?q=&quot;x&quot;&amp;page=1", written());
+    }
+
+    @Test
+    public void writesRawMarkup() throws Exception {
+        buffer.write(MarkupBuffer.fragment("<dl >"));
+        buffer.writeRaw("<dt>");
+        buffer.writeRaw("<dd>".toCharArray(), 0, 4);
+        assertEquals("<dl ><dt><dd>", written());
+    }
+
+    @Test
+    public void encodesNonAsciiAsUtf8() throws Exception {
+        String text = "Stra\u00dfe \u20ac \ud83d\ude00";
+        buffer.writeText(text);
+        assertEquals(text, written());
+    }
+
+    @Test
+    public void drainsWhenFull() throws Exception {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < MarkupBuffer.BUFFER_SIZE; i++) {
+            expected.append("\u00e4&");
+        }
+        buffer.writeText(expected.toString());
+        assertEquals(expected.toString()
+                .replace("&", "&amp;"), written());
+    }
+
+    @Test
+    public void writesLargeFragmentThrough() throws Exception {
+        StringBuilder markup = new StringBuilder();
+        for (int i = 0; i < MarkupBuffer.BUFFER_SIZE; i++) {
+            markup.append("<br/>");
+        }
+        buffer.writeRaw("<p>");
+        buffer.write(MarkupBuffer.fragment(markup.toString()));
+        assertEquals("<p>" + markup, written());
+    }
+
+    @Test
+    public void decodesForWriter() throws Exception {
+        StringWriter writer = new StringWriter();
+        MarkupBuffer writerBuffer = new MarkupBuffer(writer);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < MarkupBuffer.BUFFER_SIZE; i++) {
+            expected.append("\u20ac");
+        }
+        writerBuffer.writeText(expected.toString());
+        writerBuffer.flush();
+        assertEquals(expected.toString(), writer.toString());
+    }
+
+    @Test
+    public void passesMarkupOnToWriterWithoutFlush() throws Exception {
+        StringWriter writer = new StringWriter();
+        MarkupBuffer writerBuffer = new MarkupBuffer(writer);
+        writerBuffer.write(MarkupBuffer.fragment("<li>"));
+        writerBuffer.writeText("a & b");
+        assertEquals("<li>a &amp; b", writer.toString());
+    }
+
+    @Test
+    public void countsBytesSinceFlush() throws Exception {
+        buffer.writeText("\u00e4<");
+        assertEquals(6, buffer.getBytesSinceFlush());
+        buffer.drain();
+        assertEquals(6, buffer.getBytesSinceFlush());
+        buffer.flush();
+        assertEquals(0, buffer.getBytesSinceFlush());
+    }
+
+    @Test
+    public void canBeWrittenAfterRelease() throws Exception {
+        buffer.writeRaw("<ul>");
+        buffer.release();
+        buffer.writeRaw("</ul>");
+        assertEquals("<ul></ul>", written());
+    }
+}
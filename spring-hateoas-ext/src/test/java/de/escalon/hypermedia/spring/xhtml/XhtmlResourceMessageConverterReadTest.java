@@ -1,10 +1,15 @@
 package de.escalon.hypermedia.spring.xhtml;
 
+import de.escalon.hypermedia.spring.sample.test.CreativeWork;
 import de.escalon.hypermedia.spring.sample.test.Event;
+import de.escalon.hypermedia.spring.sample.test.EventStatusType;
 import org.junit.Test;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.util.LinkedMultiValueMap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class XhtmlResourceMessageConverterReadTest {
 
@@ -20,4 +25,25 @@ public class XhtmlResourceMessageConverterReadTest {
                 .getContent().name);
         assertEquals("Harmonie Heilbronn", event.location);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testReadsServletRequestParameters() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/events");
+        request.setContentType("application/x-www-form-urlencoded");
+        request.addParameter("workPerformed.name", "Hamlet & Ophelia");
+        request.addParameter("location", "Harmonie Heilbronn");
+        request.addParameter("eventStatus", "EVENT_SCHEDULED");
+        request.addParameter("typicalAgeRange", "11-");
+        Event event = (Event) converter.read(Event.class, new ServletServerHttpRequest(request));
+        assertEquals("Hamlet & Ophelia", event.getWorkPerformed()
+                .getContent().name);
+        assertEquals("Harmonie Heilbronn", event.location);
+        assertEquals(EventStatusType.EVENT_SCHEDULED, event.getEventStatus());
+        assertEquals("11-", event.getTypicalAgeRange());
+    }
+
+    @Test
+    public void testReusesBinderPerClass() {
+        assertSame(FormBinder.forClass(CreativeWork.class), FormBinder.forClass(CreativeWork.class));
+    }
+}
@@ -1,6 +1,8 @@
 package de.escalon.hypermedia.spring.xhtml;
 
 import de.escalon.hypermedia.action.Input;
+import de.escalon.hypermedia.action.Options;
+import de.escalon.hypermedia.action.Select;
 import de.escalon.hypermedia.spring.AffordanceBuilder;
 import de.escalon.hypermedia.spring.sample.test.CreativeWork;
 import de.escalon.hypermedia.spring.sample.test.Event;
@@ -20,13 +22,19 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
 
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
 
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
@@ -53,6 +61,17 @@ public class XhtmlWriterTest {
 
     }
 
+    public static class CountingOptions implements Options {
+
+        static final AtomicInteger LOOKUPS = new AtomicInteger();
+
+        @Override
+        public Object[] get(String[] value, Object... args) {
+            LOOKUPS.incrementAndGet();
+            return value;
+        }
+    }
+
     @Before
     public void setup() {
         this.mockMvc = webAppContextSetup(this.wac).build();
@@ -225,4 +244,97 @@ public class XhtmlWriterTest {
         XMLAssert.assertXpathNotExists("//select[@name='typicalAgeRange']", xml);
         XMLAssert.assertXpathNotExists("//input[@name='location']", xml);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testReusesFormTemplateWithCurrentValues() throws Exception {
+
+        @RequestMapping("/")
+        class DummyController {
+
+            @RequestMapping(method = RequestMethod.POST)
+            public ResponseEntity<Void> postEvent(@RequestBody Event event) {
+                return null;
+            }
+        }
+
+        Link first = AffordanceBuilder.linkTo(AffordanceBuilder.methodOn(DummyController.class)
+                .postEvent(new Event(0, "Walk off the Earth", new CreativeWork(null), "Wiesbaden",
+                        EventStatusType.EVENT_SCHEDULED)))
+                .withSelfRel();
+        Link second = AffordanceBuilder.linkTo(AffordanceBuilder.methodOn(DummyController.class)
+                .postEvent(new Event(0, "Cindy Lauper", new CreativeWork(null), "Harmonie & Co",
+                        EventStatusType.EVENT_CANCELLED)))
+                .withSelfRel();
+
+        xhtml.writeLinks(Arrays.asList(first));
+        StringWriter secondWriter = new StringWriter();
+        new XhtmlWriter(secondWriter).writeLinks(Arrays.asList(second));
+
+        String firstXml = writer.toString();
+        String xml = secondWriter.toString();
+
+        XMLAssert.assertXpathEvaluatesTo("Walk off the Earth", "//input[@name='performer']/@value", firstXml);
+        XMLAssert.assertXpathEvaluatesTo("Cindy Lauper", "//input[@name='performer']/@value", xml);
+        XMLAssert.assertXpathEvaluatesTo("Harmonie & Co", "//input[@name='location']/@value", xml);
+        XMLAssert.assertXpathEvaluatesTo("EVENT_CANCELLED", "//select[@name='eventStatus']/option[@selected]", xml);
+        assertEquals(firstXml.replace("Walk off the Earth", "Cindy Lauper")
+                .replace("Wiesbaden", "Harmonie &amp; Co")
+                .replace("<option selected=\"selected\">EVENT_SCHEDULED", "<option>EVENT_SCHEDULED")
+                .replace("<option>EVENT_CANCELLED", "<option selected=\"selected\">EVENT_CANCELLED"), xml);
+    }
+
+    @Test
+    public void testLooksUpOptionsOnceWhenRecordingFormTemplate() throws Exception {
+
+        @RequestMapping("/")
+        class DummyController {
+
+            @RequestMapping(method = RequestMethod.PUT)
+            public ResponseEntity<Void> putColor(@RequestParam @Select(value = {"red", "green"}, options =
+                    CountingOptions.class) String color) {
+                return null;
+            }
+        }
+
+        Link link = AffordanceBuilder.linkTo(AffordanceBuilder.methodOn(DummyController.class)
+                .putColor("green"))
+                .withSelfRel();
+
+        CountingOptions.LOOKUPS.set(0);
+        xhtml.writeLinks(Arrays.asList(link));
+        assertEquals(1, CountingOptions.LOOKUPS.get());
+
+        new XhtmlWriter(new StringWriter()).writeLinks(Arrays.asList(link));
+        assertEquals(2, CountingOptions.LOOKUPS.get());
+
+        String xml = writer.toString();
+        XMLAssert.assertXpathEvaluatesTo("green", "//select[@name='color']/option[@selected]", xml);
+        XMLAssert.assertXpathEvaluatesTo("2", "count(//select[@name='color']/option)", xml);
+    }
+
+    @Test
+    public void testFlushesAfterItemThreshold() throws Exception {
+        final List<String> flushed = new ArrayList<String>();
+        Writer flushRecorder = new StringWriter() {
+            @Override
+            public void flush() {
+                flushed.add(toString());
+            }
+        };
+        XhtmlWriter progressiveXhtml = new XhtmlWriter(flushRecorder);
+        progressiveXhtml.setFlushThresholds(0, 2);
+
+        progressiveXhtml.beginUnorderedList();
+        for (int i = 0; i < 5; i++) {
+            progressiveXhtml.beginListItem();
+            progressiveXhtml.writeSpan(i);
+            progressiveXhtml.endListItem();
+            progressiveXhtml.endCollectionItem();
+        }
+        progressiveXhtml.endUnorderedList();
+
+        assertEquals(2, flushed.size());
+        assertEquals("<ul class=\"list-group\"><li class=\"list-group-item\"><span>0</span></li>" +
+                "<li class=\"list-group-item\"><span>1</span></li>", flushed.get(0));
+    }
+}